@@ -0,0 +1,306 @@
+package com.myname.finguard.common.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+/**
+ * Bounded in-process map with segmented-LRU eviction, shared by the provider caches, the provider budgets and
+ * the in-memory rate limiter.
+ * <p>
+ * New entries start in a probation segment and move to a protected segment (80% of the weight bound) on their
+ * next access; entries pushed out of the protected segment drop back to the head of probation. When the total
+ * weight exceeds the bound, the least recently used probation entry is evicted first, so a burst of one-off keys
+ * cannot flush entries that are read repeatedly. Every operation is O(1): entries sit in intrusive doubly linked
+ * lists next to a hash index, and nothing is ever sorted.
+ * <p>
+ * A single monitor guards the structure; critical sections are a few pointer updates. A bound of zero or less
+ * disables eviction. Hits, misses and evictions are counted and can be exported with {@link #bindTo}.
+ */
+public final class BoundedCache<K, V> {
+
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final long maximumWeight;
+    private final long protectedMaximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final Map<K, Node<K, V>> index = new HashMap<>();
+    private final Segment<K, V> probation = new Segment<>();
+    private final Segment<K, V> protectedSegment = new Segment<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BoundedCache(long maximumWeight) {
+        this(maximumWeight, null);
+    }
+
+    /**
+     * {@code weigher} sizes each entry (negative weights count as zero); {@code null} weighs every entry as one.
+     */
+    public BoundedCache(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        this.maximumWeight = Math.max(0, maximumWeight);
+        this.protectedMaximumWeight = this.maximumWeight == 0 ? Long.MAX_VALUE : (long) (this.maximumWeight * PROTECTED_SHARE);
+        this.weigher = weigher;
+    }
+
+    /**
+     * Value of {@code key}, or {@code null}; counts a hit or a miss and marks the entry as used.
+     */
+    public synchronized V get(K key) {
+        Node<K, V> node = index.get(key);
+        if (node == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Value of {@code key}, or {@code null}, without touching statistics or recency.
+     */
+    public synchronized V peek(K key) {
+        Node<K, V> node = index.get(key);
+        return node == null ? null : node.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        Node<K, V> node = index.get(key);
+        if (node == null) {
+            insert(key, value);
+        } else {
+            update(node, value);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Atomically replaces the value of {@code key} with {@code remapping(key, current)}, where {@code current}
+     * is {@code null} when absent; a {@code null} result removes the entry. Counts a hit or a miss.
+     */
+    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Node<K, V> node = index.get(key);
+        if (node == null) {
+            misses += 1;
+        } else {
+            hits += 1;
+        }
+        V next = remapping.apply(key, node == null ? null : node.value);
+        if (next == null) {
+            if (node != null) {
+                unlink(node);
+            }
+            return null;
+        }
+        if (node == null) {
+            insert(key, next);
+        } else {
+            update(node, next);
+        }
+        evictIfNeeded();
+        return next;
+    }
+
+    public synchronized V remove(K key) {
+        Node<K, V> node = index.get(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    /**
+     * Removes entries from the least recently used end while {@code stale} holds for them and returns how many
+     * were removed. Callers use it to drop expired entries without scanning the whole cache: the walk stops at
+     * the first entry that is still live.
+     */
+    public synchronized int removeColdestWhile(BiPredicate<? super K, ? super V> stale) {
+        int removed = 0;
+        while (true) {
+            Node<K, V> coldest = probation.tail != null ? probation.tail : protectedSegment.tail;
+            if (coldest == null || !stale.test(coldest.key, coldest.value)) {
+                return removed;
+            }
+            unlink(coldest);
+            removed += 1;
+        }
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long weight() {
+        return probation.weight + protectedSegment.weight;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, index.size(), probation.weight + protectedSegment.weight);
+    }
+
+    /**
+     * Exports {@code cache_hits}, {@code cache_misses}, {@code cache_evictions}, {@code cache_size} and
+     * {@code cache_weight}, tagged {@code cache=name}.
+     */
+    public void bindTo(MeterRegistry registry, String name) {
+        if (registry == null) {
+            return;
+        }
+        FunctionCounter.builder("cache_hits", this, cache -> cache.stats().hits()).tag("cache", name).register(registry);
+        FunctionCounter.builder("cache_misses", this, cache -> cache.stats().misses()).tag("cache", name).register(registry);
+        FunctionCounter.builder("cache_evictions", this, cache -> cache.stats().evictions()).tag("cache", name).register(registry);
+        Gauge.builder("cache_size", this, BoundedCache::size).tag("cache", name).register(registry);
+        Gauge.builder("cache_weight", this, BoundedCache::weight).tag("cache", name).register(registry);
+    }
+
+    private void insert(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, weigh(key, value));
+        index.put(key, node);
+        probation.addFirst(node);
+    }
+
+    private void update(Node<K, V> node, V value) {
+        int weight = weigh(node.key, value);
+        Segment<K, V> segment = segmentOf(node);
+        segment.weight += weight - node.weight;
+        node.value = value;
+        node.weight = weight;
+        onAccess(node);
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.inProtected) {
+            protectedSegment.moveToFirst(node);
+            return;
+        }
+        probation.remove(node);
+        node.inProtected = true;
+        protectedSegment.addFirst(node);
+        while (protectedSegment.weight > protectedMaximumWeight && protectedSegment.tail != null
+                && protectedSegment.tail != node) {
+            Node<K, V> demoted = protectedSegment.tail;
+            protectedSegment.remove(demoted);
+            demoted.inProtected = false;
+            probation.addFirst(demoted);
+        }
+    }
+
+    private void evictIfNeeded() {
+        if (maximumWeight <= 0) {
+            return;
+        }
+        while (probation.weight + protectedSegment.weight > maximumWeight) {
+            Node<K, V> victim = probation.tail != null ? probation.tail : protectedSegment.tail;
+            if (victim == null) {
+                return;
+            }
+            unlink(victim);
+            evictions += 1;
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        index.remove(node.key);
+        segmentOf(node).remove(node);
+    }
+
+    private Segment<K, V> segmentOf(Node<K, V> node) {
+        return node.inProtected ? protectedSegment : probation;
+    }
+
+    private int weigh(K key, V value) {
+        return weigher == null ? 1 : Math.max(0, weigher.weigh(key, value));
+    }
+
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, long weight) {
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        int weight;
+        boolean inProtected;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        private Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Doubly linked list ordered from most ({@code head}) to least ({@code tail}) recently used.
+     */
+    private static final class Segment<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        long weight;
+
+        void addFirst(Node<K, V> node) {
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+            if (tail == null) {
+                tail = node;
+            }
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToFirst(Node<K, V> node) {
+            if (head == node) {
+                return;
+            }
+            remove(node);
+            addFirst(node);
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+}
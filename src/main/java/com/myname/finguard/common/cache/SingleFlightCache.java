@@ -0,0 +1,327 @@
+package com.myname.finguard.common.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process loading cache for provider-backed values with one in-flight load per key: callers that miss
+ * while a load for the same key is running join it instead of calling the provider themselves.
+ * <p>
+ * Values younger than {@code softTtl} are served from memory. Between {@code softTtl} and {@code hardTtl} the
+ * cached value is still returned at once while one background refresh per key reloads it
+ * (stale-while-revalidate); only past {@code hardTtl} do callers block on the load. A zero soft ttl disables
+ * hits altogether. A failed load falls back to the last cached value whatever its age; without one, the
+ * loader's runtime exception is rethrown to every caller that joined it (checked exceptions are wrapped in
+ * {@link CacheLoadException}).
+ * <p>
+ * Entries live in a {@link BoundedCache} bounded by {@code maxEntries} (zero for unbounded), so eviction is
+ * O(1) and hit/miss/eviction counts can be exported with {@link #bindTo}.
+ * <p>
+ * An optional {@link SecondLevel} store (shared by every node) is read inside the single flight when memory has
+ * no usable value: a stored value younger than the hard ttl is adopted with its original fetch time (and
+ * refreshed in the background once past the soft ttl) instead of calling the provider. Values loaded from the
+ * provider are written behind to it on the refresh executor. Warm-up is therefore lazy and per key.
+ */
+public final class SingleFlightCache<K, V> {
+
+    private final Duration softTtl;
+    private final Duration hardTtl;
+    private final Clock clock;
+    private final Executor refreshExecutor;
+    private final SecondLevel<K, V> secondLevel;
+    private final BoundedCache<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlightCache(Duration ttl, int maxEntries, Clock clock) {
+        this(ttl, ttl, maxEntries, clock);
+    }
+
+    public SingleFlightCache(Duration softTtl, Duration hardTtl, int maxEntries, Clock clock) {
+        this(softTtl, hardTtl, maxEntries, clock, null);
+    }
+
+    /**
+     * {@code refreshExecutor} runs background refreshes; {@code null} uses a small shared daemon pool.
+     */
+    public SingleFlightCache(Duration softTtl, Duration hardTtl, int maxEntries, Clock clock, Executor refreshExecutor) {
+        this(softTtl, hardTtl, maxEntries, clock, refreshExecutor, null);
+    }
+
+    /**
+     * {@code secondLevel} is consulted on memory misses and written behind; {@code null} keeps the cache in memory
+     * only. It is ignored when the soft ttl is zero.
+     */
+    public SingleFlightCache(
+            Duration softTtl,
+            Duration hardTtl,
+            int maxEntries,
+            Clock clock,
+            Executor refreshExecutor,
+            SecondLevel<K, V> secondLevel
+    ) {
+        this.softTtl = softTtl == null || softTtl.isNegative() ? Duration.ZERO : softTtl;
+        Duration hard = hardTtl == null || hardTtl.compareTo(this.softTtl) < 0 ? this.softTtl : hardTtl;
+        this.hardTtl = this.softTtl.isZero() ? Duration.ZERO : hard;
+        this.entries = new BoundedCache<>(Math.max(0, maxEntries));
+        this.clock = clock == null ? Clock.systemUTC() : clock;
+        this.refreshExecutor = refreshExecutor == null ? SharedRefreshPool.POOL : refreshExecutor;
+        this.secondLevel = this.softTtl.isZero() ? null : secondLevel;
+    }
+
+    /**
+     * Cached value of {@code key} while it is younger than the soft ttl; a stale value up to the hard ttl
+     * (starting a background refresh); otherwise the result of loading it.
+     */
+    public V get(K key, Loader<V> loader) {
+        Entry<V> cached = entries.get(key);
+        Duration age = age(cached);
+        if (age != null && age.compareTo(softTtl) < 0) {
+            return cached.value();
+        }
+        if (age != null && age.compareTo(hardTtl) < 0) {
+            refreshInBackground(key, loader);
+            return cached.value();
+        }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return join(key, running);
+        }
+        // A load for this key may have completed between the freshness check and the claim.
+        Entry<V> latest = entries.peek(key);
+        Duration latestAge = age(latest);
+        if (latest != cached && latestAge != null && latestAge.compareTo(softTtl) < 0) {
+            inFlight.remove(key, mine);
+            mine.complete(latest.value());
+            return latest.value();
+        }
+        Entry<V> stored = readSecondLevel(key);
+        Duration storedAge = age(stored);
+        if (storedAge != null && storedAge.compareTo(hardTtl) < 0) {
+            entries.put(key, stored);
+            inFlight.remove(key, mine);
+            mine.complete(stored.value());
+            if (storedAge.compareTo(softTtl) >= 0) {
+                refreshInBackground(key, loader);
+            }
+            return stored.value();
+        }
+        try {
+            return load(key, loader, mine, false);
+        } catch (Throwable ex) {
+            return fallback(key, ex);
+        }
+    }
+
+    /**
+     * Age of the cached value of {@code key}, or {@code null} when nothing is cached.
+     */
+    public Duration age(K key) {
+        return age(entries.peek(key));
+    }
+
+    /**
+     * Last cached value of {@code key} whatever its age, or {@code null}; never loads.
+     */
+    public V getIfPresent(K key) {
+        Entry<V> cached = entries.get(key);
+        return cached == null ? null : cached.value();
+    }
+
+    public void put(K key, V value) {
+        put(key, value, Instant.now(clock));
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public BoundedCache.Stats stats() {
+        return entries.stats();
+    }
+
+    public void bindTo(MeterRegistry registry, String name) {
+        entries.bindTo(registry, name);
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private void refreshInBackground(K key, Loader<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, mine) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, loader, mine, true);
+                } catch (Throwable ignored) {
+                    // the stale value stays until a later refresh or the hard ttl
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Loads {@code key} for the claim {@code mine}; with {@code preferStored}, a value another node stored within
+     * the soft ttl is adopted instead of calling the loader.
+     */
+    private V load(K key, Loader<V> loader, CompletableFuture<V> mine, boolean preferStored) throws Exception {
+        try {
+            Entry<V> stored = preferStored ? readSecondLevel(key) : null;
+            Duration storedAge = age(stored);
+            if (storedAge != null && storedAge.compareTo(softTtl) < 0) {
+                entries.put(key, stored);
+                mine.complete(stored.value());
+                return stored.value();
+            }
+            Instant startedAt = Instant.now(clock);
+            V loaded = loader.load();
+            put(key, loaded, startedAt);
+            writeBehind(key, loaded, startedAt);
+            mine.complete(loaded);
+            return loaded;
+        } catch (Throwable ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Entry<V> readSecondLevel(K key) {
+        if (secondLevel == null) {
+            return null;
+        }
+        try {
+            SecondLevel.Stored<V> stored = secondLevel.read(key);
+            return stored == null || stored.value() == null || stored.fetchedAt() == null
+                    ? null
+                    : new Entry<>(stored.value(), stored.fetchedAt());
+        } catch (RuntimeException ex) {
+            // The shared store is an optimisation; fall back to the provider.
+            return null;
+        }
+    }
+
+    private void writeBehind(K key, V value, Instant fetchedAt) {
+        if (secondLevel == null || value == null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    secondLevel.write(key, value, fetchedAt);
+                } catch (RuntimeException ignored) {
+                    // best effort
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // skipped; the next load writes it
+        }
+    }
+
+    private void put(K key, V value, Instant fetchedAt) {
+        if (value == null) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, fetchedAt));
+    }
+
+    private V join(K key, CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            return fallback(key, ex.getCause() == null ? ex : ex.getCause());
+        }
+    }
+
+    private V fallback(K key, Throwable failure) {
+        Entry<V> cached = entries.peek(key);
+        if (cached != null) {
+            return cached.value();
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        throw new CacheLoadException(failure);
+    }
+
+    private Duration age(Entry<V> entry) {
+        if (entry == null) {
+            return null;
+        }
+        Duration age = Duration.between(entry.fetchedAt(), Instant.now(clock));
+        return age.isNegative() ? Duration.ZERO : age;
+    }
+
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws Exception;
+    }
+
+    /**
+     * Persistent store shared by nodes behind the in-memory cache.
+     */
+    public interface SecondLevel<K, V> {
+
+        /**
+         * Stored value of {@code key} with the time it was fetched from the provider, or {@code null}.
+         */
+        Stored<V> read(K key);
+
+        void write(K key, V value, Instant fetchedAt);
+
+        record Stored<V>(V value, Instant fetchedAt) {
+        }
+    }
+
+    public static final class CacheLoadException extends RuntimeException {
+        CacheLoadException(Throwable cause) {
+            super(cause == null ? null : cause.getMessage(), cause);
+        }
+    }
+
+    private record Entry<V>(V value, Instant fetchedAt) {
+    }
+
+    private static final class SharedRefreshPool {
+
+        private static final ThreadPoolExecutor POOL = createPool();
+
+        private static ThreadPoolExecutor createPool() {
+            AtomicInteger index = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024), runnable -> {
+                Thread thread = new Thread(runnable, "cache-refresh-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.myname.finguard.common.service.CryptoRatesService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.Duration;
 import java.util.List;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -39,6 +40,7 @@ public class CryptoController {
                         rate.sparkline()
                 ))
                 .toList();
-        return ResponseEntity.ok(new CryptoRatesResponse(rates.baseCurrency(), rates.asOf(), items));
+        Duration age = cryptoRatesService.ratesAge(base);
+        return ResponseEntity.ok(new CryptoRatesResponse(rates.baseCurrency(), rates.asOf(), items, age == null ? null : age.toSeconds()));
     }
 }
@@ -11,6 +11,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,7 +49,8 @@ public class FxController {
     ) {
         FxRatesProvider.FxRates rates = currencyService.latestRates(base);
         Map<String, BigDecimal> filtered = filterQuotes(rates, quote);
-        return ResponseEntity.ok(new FxRatesResponse(rates.baseCurrency(), rates.asOf(), filtered));
+        Duration age = currencyService.ratesAge(base);
+        return ResponseEntity.ok(new FxRatesResponse(rates.baseCurrency(), rates.asOf(), filtered, age == null ? null : age.toSeconds()));
     }
 
     @PostMapping("/rates")
@@ -57,7 +59,7 @@ public class FxController {
     @ApiResponse(responseCode = "200", description = "Rates stored")
     public ResponseEntity<FxRatesResponse> upsertRates(@Valid @RequestBody FxRatesUpsertRequest request) {
         FxRatesProvider.FxRates saved = fxRateService.upsertSnapshot(request.baseCurrency(), request.asOf(), request.rates());
-        return ResponseEntity.ok(new FxRatesResponse(saved.baseCurrency(), saved.asOf(), saved.rates()));
+        return ResponseEntity.ok(new FxRatesResponse(saved.baseCurrency(), saved.asOf(), saved.rates(), 0L));
     }
 
     private Map<String, BigDecimal> filterQuotes(FxRatesProvider.FxRates rates, List<String> quotes) {
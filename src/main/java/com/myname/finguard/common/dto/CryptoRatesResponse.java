@@ -3,5 +3,9 @@ package com.myname.finguard.common.dto;
 import java.time.Instant;
 import java.util.List;
 
-public record CryptoRatesResponse(String baseCurrency, Instant asOf, List<CryptoRateDto> rates) {
+/**
+ * {@code ageSeconds} is how long ago the rates were fetched from the provider (they may be served stale while a
+ * refresh runs); {@code null} when unknown.
+ */
+public record CryptoRatesResponse(String baseCurrency, Instant asOf, List<CryptoRateDto> rates, Long ageSeconds) {
 }
@@ -4,5 +4,9 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Map;
 
-public record FxRatesResponse(String baseCurrency, Instant asOf, Map<String, BigDecimal> rates) {
+/**
+ * {@code ageSeconds} is how long ago the rates were loaded (they may be served stale while a refresh runs);
+ * {@code null} when unknown.
+ */
+public record FxRatesResponse(String baseCurrency, Instant asOf, Map<String, BigDecimal> rates, Long ageSeconds) {
 }
@@ -0,0 +1,6 @@
+package com.myname.finguard.common.events;
+
+import com.myname.finguard.common.service.CryptoRatesProvider;
+
+public record CryptoRatesFetchedEvent(CryptoRatesProvider.CryptoRates rates) {
+}
@@ -2,15 +2,27 @@ package com.myname.finguard.common.service;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface CryptoRatesProvider {
 
     CryptoRates fetchLatest(String baseCurrency);
 
+    /**
+     * Daily USD prices of {@code assetCode} in {@code [from, to]}, one per UTC day (the last quote of the day);
+     * providers without history return an empty list.
+     */
+    default List<HistoricalPrice> fetchDailyHistory(String assetCode, LocalDate from, LocalDate to) {
+        return List.of();
+    }
+
     record CryptoRates(String baseCurrency, Instant asOf, List<CryptoRate> rates) {
     }
 
+    record HistoricalPrice(LocalDate day, BigDecimal priceUsd) {
+    }
+
     record CryptoRate(String code, String name, BigDecimal price, BigDecimal changePct24h, List<BigDecimal> sparkline) {
     }
 }
@@ -1,15 +1,16 @@
 package com.myname.finguard.common.service;
 
+import com.myname.finguard.common.cache.SingleFlightCache;
 import com.myname.finguard.common.constants.ErrorCodes;
+import com.myname.finguard.common.events.CryptoRatesFetchedEvent;
 import com.myname.finguard.common.exception.ApiException;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Clock;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -17,63 +18,93 @@ import org.springframework.stereotype.Service;
 public class CryptoRatesService {
 
     private static final long DEFAULT_RATES_CACHE_TTL_SECONDS = 120;
+    private static final long DEFAULT_RATES_CACHE_HARD_TTL_SECONDS = 900;
 
     private final CryptoRatesProvider cryptoRatesProvider;
-    private final Duration ratesCacheTtl;
-    private final Clock clock;
-    private final Map<String, CachedRates> ratesCache = new ConcurrentHashMap<>();
+    private final SingleFlightCache<String, CryptoRatesProvider.CryptoRates> ratesCache;
+    @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
 
     public CryptoRatesService() {
-        this(null, Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS), Clock.systemUTC());
+        this(null, Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS), Duration.ofSeconds(DEFAULT_RATES_CACHE_HARD_TTL_SECONDS),
+                Clock.systemUTC());
     }
 
     @Autowired
     public CryptoRatesService(
             ObjectProvider<CryptoRatesProvider> cryptoRatesProvider,
-            @Value("${app.crypto.cache-ttl-seconds:" + DEFAULT_RATES_CACHE_TTL_SECONDS + "}") long ratesCacheTtlSeconds
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.crypto.cache-ttl-seconds:" + DEFAULT_RATES_CACHE_TTL_SECONDS + "}") long ratesCacheTtlSeconds,
+            @Value("${app.crypto.cache-hard-ttl-seconds:" + DEFAULT_RATES_CACHE_HARD_TTL_SECONDS + "}") long ratesCacheHardTtlSeconds
     ) {
         this(cryptoRatesProvider.getIfAvailable(),
                 Duration.ofSeconds(Math.max(0, ratesCacheTtlSeconds)),
+                Duration.ofSeconds(Math.max(0, ratesCacheHardTtlSeconds)),
                 Clock.systemUTC());
+        ratesCache.bindTo(meterRegistry.getIfAvailable(), "crypto_rates");
     }
 
     CryptoRatesService(CryptoRatesProvider cryptoRatesProvider, Duration ratesCacheTtl, Clock clock) {
+        this(cryptoRatesProvider, ratesCacheTtl, ratesCacheTtl, clock);
+    }
+
+    CryptoRatesService(CryptoRatesProvider cryptoRatesProvider, Duration ratesCacheTtl, Duration ratesCacheHardTtl, Clock clock) {
         this.cryptoRatesProvider = cryptoRatesProvider;
-        this.ratesCacheTtl = ratesCacheTtl == null ? Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS) : ratesCacheTtl;
-        this.clock = clock == null ? Clock.systemUTC() : clock;
+        this.ratesCache = new SingleFlightCache<>(
+                ratesCacheTtl == null ? Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS) : ratesCacheTtl,
+                ratesCacheHardTtl == null ? Duration.ofSeconds(DEFAULT_RATES_CACHE_HARD_TTL_SECONDS) : ratesCacheHardTtl,
+                0,
+                clock
+        );
     }
 
     public CryptoRatesProvider.CryptoRates latestRates(String baseCurrency) {
         String base = normalizeBase(baseCurrency);
-        Instant now = Instant.now(clock);
-        CachedRates cached = ratesCache.get(base);
-        if (cached != null && ratesCacheTtl.compareTo(Duration.ZERO) > 0) {
-            Duration age = Duration.between(cached.fetchedAt(), now);
-            if (age.compareTo(ratesCacheTtl) < 0) {
-                return cached.rates();
-            }
-        }
+        return ratesCache.get(base, () -> fetch(base));
+    }
 
+    private CryptoRatesProvider.CryptoRates fetch(String base) {
         if (cryptoRatesProvider == null) {
-            if (cached != null) {
-                return cached.rates();
-            }
             throw new ApiException(ErrorCodes.INTERNAL_ERROR, "Crypto rates provider is not configured", HttpStatus.SERVICE_UNAVAILABLE);
         }
-
+        CryptoRatesProvider.CryptoRates fetched;
         try {
-            CryptoRatesProvider.CryptoRates fetched = cryptoRatesProvider.fetchLatest(base);
+            fetched = cryptoRatesProvider.fetchLatest(base);
             if (fetched == null || fetched.rates() == null || fetched.rates().isEmpty()) {
                 throw new IllegalStateException("Empty crypto rates response");
             }
-            ratesCache.put(base, new CachedRates(fetched, now));
-            return fetched;
         } catch (Exception e) {
-            if (cached != null) {
-                return cached.rates();
-            }
             throw new ApiException(ErrorCodes.INTERNAL_ERROR, "Failed to fetch crypto rates", HttpStatus.SERVICE_UNAVAILABLE);
         }
+        publishFetched(fetched);
+        return fetched;
+    }
+
+    /**
+     * Last rates fetched for {@code baseCurrency} whatever their age, without calling the provider;
+     * {@code null} before the first successful fetch.
+     */
+    public CryptoRatesProvider.CryptoRates cachedRates(String baseCurrency) {
+        return ratesCache.getIfPresent(normalizeBase(baseCurrency));
+    }
+
+    /**
+     * Age of the cached rates for {@code baseCurrency}, or {@code null} when none are cached.
+     */
+    public Duration ratesAge(String baseCurrency) {
+        return ratesCache.age(normalizeBase(baseCurrency));
+    }
+
+    private void publishFetched(CryptoRatesProvider.CryptoRates rates) {
+        if (eventPublisher == null) {
+            return;
+        }
+        try {
+            // Listeners (the local price history) must never fail a rates read.
+            eventPublisher.publishEvent(new CryptoRatesFetchedEvent(rates));
+        } catch (RuntimeException ignored) {
+            // best effort
+        }
     }
 
     private String normalizeBase(String baseCurrency) {
@@ -82,7 +113,4 @@ public class CryptoRatesService {
         }
         return baseCurrency.trim().toUpperCase();
     }
-
-    private record CachedRates(CryptoRatesProvider.CryptoRates rates, Instant fetchedAt) {
-    }
 }
@@ -1,15 +1,16 @@
 package com.myname.finguard.common.service;
 
+import com.myname.finguard.common.cache.SingleFlightCache;
 import com.myname.finguard.common.dto.CurrencyDto;
 import com.myname.finguard.common.constants.ErrorCodes;
 import com.myname.finguard.common.exception.ApiException;
 import com.myname.finguard.fx.model.FxRate;
 import com.myname.finguard.fx.repository.FxRateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
 import java.util.HashMap;
 import org.springframework.beans.factory.ObjectProvider;
@@ -31,27 +32,31 @@ public class CurrencyService {
     );
 
     private static final long DEFAULT_RATES_CACHE_TTL_SECONDS = 300;
+    private static final long DEFAULT_RATES_CACHE_HARD_TTL_SECONDS = 3600;
 
     private final FxRatesProvider fxRatesProvider;
     private final FxRateRepository fxRateRepository;
-    private final Duration ratesCacheTtl;
-    private final Clock clock;
-    private final Map<String, CachedRates> ratesCache = new ConcurrentHashMap<>();
+    private final SingleFlightCache<String, FxRatesProvider.FxRates> ratesCache;
 
     public CurrencyService() {
-        this(null, null, Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS), Clock.systemUTC());
+        this(null, null, Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS), Duration.ofSeconds(DEFAULT_RATES_CACHE_HARD_TTL_SECONDS),
+                Clock.systemUTC());
     }
 
     @Autowired
     public CurrencyService(
             ObjectProvider<FxRatesProvider> fxRatesProvider,
             ObjectProvider<FxRateRepository> fxRateRepository,
-            @Value("${app.fx.cache-ttl-seconds:" + DEFAULT_RATES_CACHE_TTL_SECONDS + "}") long ratesCacheTtlSeconds
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.fx.cache-ttl-seconds:" + DEFAULT_RATES_CACHE_TTL_SECONDS + "}") long ratesCacheTtlSeconds,
+            @Value("${app.fx.cache-hard-ttl-seconds:" + DEFAULT_RATES_CACHE_HARD_TTL_SECONDS + "}") long ratesCacheHardTtlSeconds
     ) {
         this(fxRatesProvider.getIfAvailable(),
                 fxRateRepository.getIfAvailable(),
                 Duration.ofSeconds(Math.max(0, ratesCacheTtlSeconds)),
+                Duration.ofSeconds(Math.max(0, ratesCacheHardTtlSeconds)),
                 Clock.systemUTC());
+        ratesCache.bindTo(meterRegistry.getIfAvailable(), "fx_rates");
     }
 
     CurrencyService(FxRatesProvider fxRatesProvider, Duration ratesCacheTtl, Clock clock) {
@@ -59,10 +64,24 @@ public class CurrencyService {
     }
 
     CurrencyService(FxRatesProvider fxRatesProvider, FxRateRepository fxRateRepository, Duration ratesCacheTtl, Clock clock) {
+        this(fxRatesProvider, fxRateRepository, ratesCacheTtl, ratesCacheTtl, clock);
+    }
+
+    CurrencyService(
+            FxRatesProvider fxRatesProvider,
+            FxRateRepository fxRateRepository,
+            Duration ratesCacheTtl,
+            Duration ratesCacheHardTtl,
+            Clock clock
+    ) {
         this.fxRatesProvider = fxRatesProvider;
         this.fxRateRepository = fxRateRepository;
-        this.ratesCacheTtl = ratesCacheTtl == null ? Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS) : ratesCacheTtl;
-        this.clock = clock == null ? Clock.systemUTC() : clock;
+        this.ratesCache = new SingleFlightCache<>(
+                ratesCacheTtl == null ? Duration.ofSeconds(DEFAULT_RATES_CACHE_TTL_SECONDS) : ratesCacheTtl,
+                ratesCacheHardTtl == null ? Duration.ofSeconds(DEFAULT_RATES_CACHE_HARD_TTL_SECONDS) : ratesCacheHardTtl,
+                0,
+                clock
+        );
     }
 
     public List<CurrencyDto> supportedCurrencies() {
@@ -86,48 +105,53 @@ public class CurrencyService {
         if (!isSupported(base)) {
             throw new ApiException(ErrorCodes.BAD_REQUEST, "Unsupported base currency", HttpStatus.BAD_REQUEST);
         }
+        return ratesCache.get(base, () -> loadRates(base));
+    }
 
-        Instant now = Instant.now(clock);
-        CachedRates cached = ratesCache.get(base);
-        if (cached != null && ratesCacheTtl.compareTo(Duration.ZERO) > 0) {
-            Duration age = Duration.between(cached.fetchedAt(), now);
-            if (age.compareTo(ratesCacheTtl) < 0) {
-                return cached.rates();
-            }
-        }
-
+    private FxRatesProvider.FxRates loadRates(String base) {
         FxRatesProvider.FxRates stored = latestStoredRates(base);
         if (stored != null) {
-            ratesCache.put(base, new CachedRates(stored, now));
             return stored;
         }
-
         if (fxRatesProvider == null) {
-            if (cached != null) {
-                return cached.rates();
-            }
             throw new ApiException(ErrorCodes.INTERNAL_ERROR, "FX rates provider is not configured", HttpStatus.SERVICE_UNAVAILABLE);
         }
-
         try {
             FxRatesProvider.FxRates fetched = fxRatesProvider.fetchLatest(base);
             if (fetched == null || fetched.rates() == null || fetched.rates().isEmpty()) {
                 throw new IllegalStateException("Empty FX rates response");
             }
-            ratesCache.put(base, new CachedRates(fetched, now));
             return fetched;
         } catch (Exception e) {
-            if (cached != null) {
-                return cached.rates();
-            }
             throw new ApiException(ErrorCodes.INTERNAL_ERROR, "Failed to fetch FX rates", HttpStatus.SERVICE_UNAVAILABLE);
         }
     }
 
+    /**
+     * Rates for {@code baseCurrency} already held by this node, from the in-memory cache whatever its age or
+     * from the stored {@code fx_rates} table; never calls the provider. Returns {@code null} when neither
+     * has them.
+     */
+    public FxRatesProvider.FxRates localRates(String baseCurrency) {
+        String base = normalize(baseCurrency);
+        if (!isSupported(base)) {
+            return null;
+        }
+        FxRatesProvider.FxRates cached = ratesCache.getIfPresent(base);
+        return cached != null ? cached : latestStoredRates(base);
+    }
+
+    /**
+     * Age of the in-memory rates for {@code baseCurrency}, or {@code null} when none are cached.
+     */
+    public Duration ratesAge(String baseCurrency) {
+        return ratesCache.age(normalize(baseCurrency));
+    }
+
     public void evictRatesCache(String baseCurrency) {
         String base = normalize(baseCurrency);
         if (!base.isBlank()) {
-            ratesCache.remove(base);
+            ratesCache.invalidate(base);
         }
     }
 
@@ -160,7 +184,4 @@ public class CurrencyService {
         }
         return new FxRatesProvider.FxRates(base, asOf, Map.copyOf(rates));
     }
-
-    private record CachedRates(FxRatesProvider.FxRates rates, Instant fetchedAt) {
-    }
 }
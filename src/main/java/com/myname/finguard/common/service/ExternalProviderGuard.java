@@ -1,5 +1,7 @@
 package com.myname.finguard.common.service;
 
+import com.myname.finguard.common.cache.BoundedCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -8,6 +10,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -24,25 +28,38 @@ public class ExternalProviderGuard {
     private final long maxBackoffMs;
     private final int circuitFailureThreshold;
     private final long circuitOpenMs;
-    private final int budgetMaxEntries;
 
-    private final Map<String, BudgetBucket> budgets = new ConcurrentHashMap<>();
+    private final BoundedCache<String, BudgetBucket> budgets;
     private final Map<String, CircuitState> circuits = new ConcurrentHashMap<>();
 
+    @Autowired
     public ExternalProviderGuard(
             @Value("${app.external.providers.retry.max-attempts:2}") int maxAttempts,
             @Value("${app.external.providers.retry.initial-backoff-ms:150}") long initialBackoffMs,
             @Value("${app.external.providers.retry.max-backoff-ms:1500}") long maxBackoffMs,
             @Value("${app.external.providers.circuit.failure-threshold:5}") int circuitFailureThreshold,
             @Value("${app.external.providers.circuit.open-ms:30000}") long circuitOpenMs,
-            @Value("${app.external.providers.budget.max-entries:2000}") int budgetMaxEntries
+            @Value("${app.external.providers.budget.max-entries:2000}") int budgetMaxEntries,
+            ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        this(maxAttempts, initialBackoffMs, maxBackoffMs, circuitFailureThreshold, circuitOpenMs, budgetMaxEntries);
+        budgets.bindTo(meterRegistry.getIfAvailable(), "external_provider_budgets");
+    }
+
+    public ExternalProviderGuard(
+            int maxAttempts,
+            long initialBackoffMs,
+            long maxBackoffMs,
+            int circuitFailureThreshold,
+            long circuitOpenMs,
+            int budgetMaxEntries
     ) {
         this.maxAttempts = clamp(maxAttempts, 1, 5);
         this.initialBackoffMs = Math.max(0, initialBackoffMs);
         this.maxBackoffMs = Math.max(0, maxBackoffMs);
         this.circuitFailureThreshold = Math.max(0, circuitFailureThreshold);
         this.circuitOpenMs = Math.max(0, circuitOpenMs);
-        this.budgetMaxEntries = clamp(budgetMaxEntries, 10, 200_000);
+        this.budgets = new BoundedCache<>(clamp(budgetMaxEntries, 10, 200_000));
     }
 
     public <T> T execute(String providerKey, int budgetLimit, long budgetWindowMs, Supplier<T> call) {
@@ -82,6 +99,22 @@ public class ExternalProviderGuard {
         throw new IllegalStateException("External provider call failed", last);
     }
 
+    /**
+     * Calls still allowed for {@code providerKey} in its current budget window, without consuming one.
+     * Background work uses it to leave headroom for interactive requests; unlimited budgets report
+     * {@link Integer#MAX_VALUE}.
+     */
+    public int remainingBudget(String providerKey, int budgetLimit) {
+        if (budgetLimit <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        BudgetBucket bucket = budgets.peek(normalizeKey(providerKey));
+        if (bucket == null || System.currentTimeMillis() - bucket.windowStartMs >= bucket.windowMs) {
+            return budgetLimit;
+        }
+        return Math.max(0, budgetLimit - bucket.count);
+    }
+
     private boolean isRetryable(Exception ex) {
         if (ex instanceof IllegalArgumentException) {
             return false;
@@ -154,13 +187,14 @@ public class ExternalProviderGuard {
             return bucket;
         });
         evictBudgetExpired(now);
-        evictBudgetIfNeeded();
         return allowed.get();
     }
 
+    /**
+     * Drops expired buckets from the cold end of the budget cache; the size bound itself is enforced by the cache.
+     */
     private void evictBudgetExpired(long nowMs) {
-        budgets.entrySet().removeIf(entry -> {
-            BudgetBucket bucket = entry.getValue();
+        budgets.removeColdestWhile((key, bucket) -> {
             long window = bucket.windowMs <= 0 ? 0 : bucket.windowMs;
             if (window <= 0) {
                 return false;
@@ -169,19 +203,6 @@ public class ExternalProviderGuard {
         });
     }
 
-    private void evictBudgetIfNeeded() {
-        int size = budgets.size();
-        if (size <= budgetMaxEntries) {
-            return;
-        }
-        int toRemove = Math.max(0, size - budgetMaxEntries);
-        budgets.entrySet().stream()
-                .sorted((a, b) -> Long.compare(a.getValue().lastSeenMs, b.getValue().lastSeenMs))
-                .limit(toRemove)
-                .map(Map.Entry::getKey)
-                .forEach(budgets::remove);
-    }
-
     private String normalizeKey(String raw) {
         if (raw == null || raw.isBlank()) {
             return "external";
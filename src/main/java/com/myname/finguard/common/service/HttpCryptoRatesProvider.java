@@ -2,9 +2,13 @@ package com.myname.finguard.common.service;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.Supplier;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -81,6 +85,45 @@ public class HttpCryptoRatesProvider implements CryptoRatesProvider {
         return new CryptoRates(base.toUpperCase(), asOf, rates);
     }
 
+    @Override
+    public List<HistoricalPrice> fetchDailyHistory(String assetCode, LocalDate from, LocalDate to) {
+        CryptoAsset asset = assetCode == null ? null : ASSETS.stream()
+                .filter(item -> item.code().equalsIgnoreCase(assetCode.trim()))
+                .findFirst()
+                .orElse(null);
+        if (asset == null || from == null || to == null || to.isBefore(from)) {
+            return List.of();
+        }
+        long fromSeconds = from.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        long toSeconds = to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond() - 1;
+        CoinGeckoMarketChart response = guarded(() -> restClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/coins/{id}/market_chart/range")
+                        .queryParam("vs_currency", "usd")
+                        .queryParam("from", fromSeconds)
+                        .queryParam("to", toSeconds)
+                        .build(asset.id()))
+                .retrieve()
+                .body(CoinGeckoMarketChart.class));
+        if (response == null || response.prices() == null) {
+            return List.of();
+        }
+        // Points are time-ordered; the last one of each UTC day wins.
+        Map<LocalDate, BigDecimal> byDay = new TreeMap<>();
+        for (List<BigDecimal> point : response.prices()) {
+            if (point == null || point.size() < 2 || point.get(0) == null || point.get(1) == null) {
+                continue;
+            }
+            LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(point.get(0).longValue()), ZoneOffset.UTC);
+            if (!day.isBefore(from) && !day.isAfter(to)) {
+                byDay.put(day, point.get(1));
+            }
+        }
+        List<HistoricalPrice> prices = new ArrayList<>(byDay.size());
+        byDay.forEach((day, price) -> prices.add(new HistoricalPrice(day, price)));
+        return prices;
+    }
+
     private <T> T guarded(Supplier<T> call) {
         if (guard == null) {
             return call.get();
@@ -133,4 +176,7 @@ public class HttpCryptoRatesProvider implements CryptoRatesProvider {
 
     private record Sparkline(List<BigDecimal> price) {
     }
+
+    private record CoinGeckoMarketChart(List<List<BigDecimal>> prices) {
+    }
 }
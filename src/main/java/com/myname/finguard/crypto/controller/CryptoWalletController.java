@@ -5,6 +5,7 @@ import com.myname.finguard.auth.repository.UserRepository;
 import com.myname.finguard.common.constants.ErrorCodes;
 import com.myname.finguard.common.exception.ApiException;
 import com.myname.finguard.crypto.dto.CreateCryptoWalletRequest;
+import com.myname.finguard.crypto.dto.CryptoWalletAnalysisBatchResponse;
 import com.myname.finguard.crypto.dto.CryptoWalletAnalysisInsightsResponse;
 import com.myname.finguard.crypto.dto.CryptoWalletAnalysisSeriesResponse;
 import com.myname.finguard.crypto.dto.CryptoWalletAnalysisStatusResponse;
@@ -14,6 +15,7 @@ import com.myname.finguard.crypto.dto.CryptoWalletSummaryResponse;
 import com.myname.finguard.crypto.dto.UpdateCryptoWalletRequest;
 import com.myname.finguard.crypto.service.CryptoWalletAnalysisService;
 import com.myname.finguard.crypto.service.CryptoWalletService;
+import com.myname.finguard.crypto.service.WalletAnalysisProgressStream;
 import com.myname.finguard.security.RateLimiterService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -24,6 +26,7 @@ import jakarta.validation.Valid;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -35,8 +38,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/crypto/wallets")
@@ -45,6 +50,7 @@ public class CryptoWalletController {
 
     private final CryptoWalletService cryptoWalletService;
     private final CryptoWalletAnalysisService cryptoWalletAnalysisService;
+    private final WalletAnalysisProgressStream analysisProgressStream;
     private final UserRepository userRepository;
     private final RateLimiterService rateLimiterService;
     private final int walletsListLimit;
@@ -59,6 +65,7 @@ public class CryptoWalletController {
     public CryptoWalletController(
             CryptoWalletService cryptoWalletService,
             CryptoWalletAnalysisService cryptoWalletAnalysisService,
+            WalletAnalysisProgressStream analysisProgressStream,
             UserRepository userRepository,
             RateLimiterService rateLimiterService,
             @Value("${app.security.rate-limit.wallets.list.limit:120}") int walletsListLimit,
@@ -72,6 +79,7 @@ public class CryptoWalletController {
     ) {
         this.cryptoWalletService = cryptoWalletService;
         this.cryptoWalletAnalysisService = cryptoWalletAnalysisService;
+        this.analysisProgressStream = analysisProgressStream;
         this.userRepository = userRepository;
         this.rateLimiterService = rateLimiterService;
         this.walletsListLimit = walletsListLimit;
@@ -106,6 +114,21 @@ public class CryptoWalletController {
         return ResponseEntity.ok(cryptoWalletService.walletsSummary(userId));
     }
 
+    @PostMapping("/analysis")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Analyze all wallets", description = "Queues analysis for every wallet without a job in flight, sharing rates and balances across them.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Analysis queued"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<CryptoWalletAnalysisBatchResponse> analyzeAll(Authentication authentication) {
+        Long userId = resolveUserId(authentication);
+        enforceRateLimit("wallets:update:user:" + userId, walletsUpdateLimit, walletsUpdateWindowMs);
+        List<Long> walletIds = cryptoWalletAnalysisService.enqueueUserAnalysis(userId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(new CryptoWalletAnalysisBatchResponse(walletIds.size(), walletIds));
+    }
+
     @GetMapping("/{id}/analysis/status")
     @PreAuthorize("isAuthenticated()")
     @Operation(summary = "Wallet analysis status", description = "Returns async wallet bootstrap analysis progress.")
@@ -120,6 +143,50 @@ public class CryptoWalletController {
         return ResponseEntity.ok(cryptoWalletAnalysisService.status(userId, id));
     }
 
+    @DeleteMapping("/{id}/analysis")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Cancel wallet analysis", description = "Cancels the wallet's queued or running analysis job and returns the resulting status.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Analysis cancelled or already finished"),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<CryptoWalletAnalysisStatusResponse> cancelAnalysis(
+            @PathVariable Long id,
+            Authentication authentication
+    ) {
+        Long userId = resolveUserId(authentication);
+        enforceRateLimit("wallets:update:user:" + userId, walletsUpdateLimit, walletsUpdateWindowMs);
+        return ResponseEntity.ok(cryptoWalletAnalysisService.cancel(userId, id));
+    }
+
+    @GetMapping(value = "/{id}/analysis/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Wallet analysis progress stream",
+            description = "Server-sent `status` events with analysis progress; closes when the job finishes. Supports resume via Last-Event-ID.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "204", description = "Client already has the final state")
+    })
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<SseEmitter> analysisEvents(
+            @PathVariable Long id,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+            Authentication authentication
+    ) {
+        Long userId = resolveUserId(authentication);
+        enforceRateLimit("wallets:list:user:" + userId, walletsListLimit, walletsListWindowMs);
+        SseEmitter emitter = analysisProgressStream.open(userId, id, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-store")
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+
     @GetMapping("/{id}/analysis/summary")
     @PreAuthorize("isAuthenticated()")
     @Operation(summary = "Wallet analysis summary", description = "Returns quick analysis summary for wallet insights.")
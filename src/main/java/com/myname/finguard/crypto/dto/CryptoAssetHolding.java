@@ -0,0 +1,10 @@
+package com.myname.finguard.crypto.dto;
+
+import java.math.BigDecimal;
+
+public record CryptoAssetHolding(
+        String assetCode,
+        BigDecimal quantity,
+        BigDecimal priceUsd
+) {
+}
@@ -0,0 +1,9 @@
+package com.myname.finguard.crypto.dto;
+
+import java.util.List;
+
+public record CryptoWalletAnalysisBatchResponse(
+        int queued,
+        List<Long> walletIds
+) {
+}
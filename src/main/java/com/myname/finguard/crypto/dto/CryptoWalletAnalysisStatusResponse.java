@@ -1,6 +1,7 @@
 package com.myname.finguard.crypto.dto;
 
 import java.time.Instant;
+import java.util.Map;
 
 public record CryptoWalletAnalysisStatusResponse(
         String status,
@@ -11,6 +12,7 @@ public record CryptoWalletAnalysisStatusResponse(
         Instant finishedAt,
         boolean partialReady,
         Integer etaSeconds,
-        String lastSuccessfulStage
+        String lastSuccessfulStage,
+        Map<String, Long> stageDurationsMs
 ) {
 }
@@ -3,6 +3,11 @@ package com.myname.finguard.crypto.dto;
 import java.math.BigDecimal;
 import java.time.Instant;
 
+/**
+ * {@code balanceAgeSeconds} is how long ago the balance was fetched from the provider and
+ * {@code portfolioAgeSeconds} how long ago the oldest token portfolio included in {@code valueInBase} was;
+ * {@code null} when unknown or not part of the value.
+ */
 public record CryptoWalletDto(
         Long id,
         String network,
@@ -11,7 +16,9 @@ public record CryptoWalletDto(
         BigDecimal balance,
         BigDecimal valueInBase,
         String baseCurrency,
-        Instant asOf
+        Instant asOf,
+        Long balanceAgeSeconds,
+        Long portfolioAgeSeconds
 ) {
 }
 
@@ -0,0 +1,6 @@
+package com.myname.finguard.crypto.events;
+
+import com.myname.finguard.crypto.service.WalletAnalysisJobStateRegistry.JobState;
+
+public record WalletAnalysisProgressEvent(JobState state) {
+}
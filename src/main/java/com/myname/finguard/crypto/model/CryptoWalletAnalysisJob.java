@@ -43,6 +43,10 @@ public class CryptoWalletAnalysisJob {
     @Column(nullable = false, length = 32)
     private CryptoWalletAnalysisStage stage;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private CryptoWalletAnalysisJobPriority priority = CryptoWalletAnalysisJobPriority.BACKGROUND;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "last_successful_stage", length = 32)
     private CryptoWalletAnalysisStage lastSuccessfulStage;
@@ -59,6 +63,23 @@ public class CryptoWalletAnalysisJob {
     @Column(name = "finished_at")
     private Instant finishedAt;
 
+    @Column(name = "stage_durations_ms", length = 512)
+    private String stageDurationsMs;
+
+    /** Bumped on every progress transition; progress stream event ids carry it. */
+    @Column(name = "progress_version", nullable = false)
+    private long progressVersion;
+
+    @Column(name = "claimed_by", length = 64)
+    private String claimedBy;
+
+    @Column(name = "claimed_at")
+    private Instant claimedAt;
+
+    /** Wallet id while the job is active, {@code null} once it finished; unique per wallet. */
+    @Column(name = "active_wallet_id")
+    private Long activeWalletId;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
@@ -159,6 +180,54 @@ public class CryptoWalletAnalysisJob {
         this.finishedAt = finishedAt;
     }
 
+    public String getStageDurationsMs() {
+        return stageDurationsMs;
+    }
+
+    public void setStageDurationsMs(String stageDurationsMs) {
+        this.stageDurationsMs = stageDurationsMs;
+    }
+
+    public long getProgressVersion() {
+        return progressVersion;
+    }
+
+    public void setProgressVersion(long progressVersion) {
+        this.progressVersion = progressVersion;
+    }
+
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public Instant getClaimedAt() {
+        return claimedAt;
+    }
+
+    public void setClaimedAt(Instant claimedAt) {
+        this.claimedAt = claimedAt;
+    }
+
+    public CryptoWalletAnalysisJobPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(CryptoWalletAnalysisJobPriority priority) {
+        this.priority = priority;
+    }
+
+    public Long getActiveWalletId() {
+        return activeWalletId;
+    }
+
+    public void setActiveWalletId(Long activeWalletId) {
+        this.activeWalletId = activeWalletId;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
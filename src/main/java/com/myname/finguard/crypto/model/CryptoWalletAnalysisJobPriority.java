@@ -0,0 +1,10 @@
+package com.myname.finguard.crypto.model;
+
+/**
+ * Executor lane of an analysis job: INTERACTIVE for work a user is waiting on (a new wallet, an explicit
+ * refresh), BACKGROUND for scheduled sweeps and recovered jobs.
+ */
+public enum CryptoWalletAnalysisJobPriority {
+    INTERACTIVE,
+    BACKGROUND
+}
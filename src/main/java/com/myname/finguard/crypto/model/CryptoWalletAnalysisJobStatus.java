@@ -5,5 +5,6 @@ public enum CryptoWalletAnalysisJobStatus {
     RUNNING,
     PARTIAL,
     DONE,
-    FAILED
+    FAILED,
+    CANCELLED
 }
@@ -0,0 +1,120 @@
+package com.myname.finguard.crypto.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+@Entity
+@Table(name = "wallet_analysis_sweep_leases")
+public class WalletAnalysisSweepLease {
+
+    @Id
+    @Column(name = "shard_id")
+    private Integer shardId;
+
+    @Column(name = "sweep_started_at", nullable = false)
+    private Instant sweepStartedAt;
+
+    @Column(name = "cursor_wallet_id", nullable = false)
+    private long cursorWalletId;
+
+    @Column(name = "wallets_visited", nullable = false)
+    private long walletsVisited;
+
+    @Column(name = "wallets_enqueued", nullable = false)
+    private long walletsEnqueued;
+
+    @Column(name = "leased_by", length = 64)
+    private String leasedBy;
+
+    @Column(name = "lease_until")
+    private Instant leaseUntil;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
+
+    public Integer getShardId() {
+        return shardId;
+    }
+
+    public void setShardId(Integer shardId) {
+        this.shardId = shardId;
+    }
+
+    public Instant getSweepStartedAt() {
+        return sweepStartedAt;
+    }
+
+    public void setSweepStartedAt(Instant sweepStartedAt) {
+        this.sweepStartedAt = sweepStartedAt;
+    }
+
+    public long getCursorWalletId() {
+        return cursorWalletId;
+    }
+
+    public void setCursorWalletId(long cursorWalletId) {
+        this.cursorWalletId = cursorWalletId;
+    }
+
+    public long getWalletsVisited() {
+        return walletsVisited;
+    }
+
+    public void setWalletsVisited(long walletsVisited) {
+        this.walletsVisited = walletsVisited;
+    }
+
+    public long getWalletsEnqueued() {
+        return walletsEnqueued;
+    }
+
+    public void setWalletsEnqueued(long walletsEnqueued) {
+        this.walletsEnqueued = walletsEnqueued;
+    }
+
+    public String getLeasedBy() {
+        return leasedBy;
+    }
+
+    public void setLeasedBy(String leasedBy) {
+        this.leasedBy = leasedBy;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Instant leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
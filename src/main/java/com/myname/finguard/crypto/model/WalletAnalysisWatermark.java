@@ -0,0 +1,166 @@
+package com.myname.finguard.crypto.model;
+
+import com.myname.finguard.auth.model.User;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import java.time.LocalDate;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+@Entity
+@Table(name = "wallet_analysis_watermarks")
+public class WalletAnalysisWatermark {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "wallet_id", nullable = false, unique = true)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private CryptoWallet wallet;
+
+    @Column(name = "raw_tx_at")
+    private Instant rawTxAt;
+
+    @Column(name = "raw_block_number")
+    private Long rawBlockNumber;
+
+    @Column(name = "raw_cursor", length = 256)
+    private String rawCursor;
+
+    @Column(name = "enriched_through")
+    private Instant enrichedThrough;
+
+    @Column(name = "snapshots_through")
+    private Instant snapshotsThrough;
+
+    @Column(name = "last_snapshot_day")
+    private LocalDate lastSnapshotDay;
+
+    @Column(name = "recurring_through")
+    private Instant recurringThrough;
+
+    @Column(name = "recurring_tx_at")
+    private Instant recurringTxAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public CryptoWallet getWallet() {
+        return wallet;
+    }
+
+    public void setWallet(CryptoWallet wallet) {
+        this.wallet = wallet;
+    }
+
+    public Instant getRawTxAt() {
+        return rawTxAt;
+    }
+
+    public void setRawTxAt(Instant rawTxAt) {
+        this.rawTxAt = rawTxAt;
+    }
+
+    public Long getRawBlockNumber() {
+        return rawBlockNumber;
+    }
+
+    public void setRawBlockNumber(Long rawBlockNumber) {
+        this.rawBlockNumber = rawBlockNumber;
+    }
+
+    public String getRawCursor() {
+        return rawCursor;
+    }
+
+    public void setRawCursor(String rawCursor) {
+        this.rawCursor = rawCursor;
+    }
+
+    public Instant getEnrichedThrough() {
+        return enrichedThrough;
+    }
+
+    public void setEnrichedThrough(Instant enrichedThrough) {
+        this.enrichedThrough = enrichedThrough;
+    }
+
+    public Instant getSnapshotsThrough() {
+        return snapshotsThrough;
+    }
+
+    public void setSnapshotsThrough(Instant snapshotsThrough) {
+        this.snapshotsThrough = snapshotsThrough;
+    }
+
+    public LocalDate getLastSnapshotDay() {
+        return lastSnapshotDay;
+    }
+
+    public void setLastSnapshotDay(LocalDate lastSnapshotDay) {
+        this.lastSnapshotDay = lastSnapshotDay;
+    }
+
+    public Instant getRecurringThrough() {
+        return recurringThrough;
+    }
+
+    public void setRecurringThrough(Instant recurringThrough) {
+        this.recurringThrough = recurringThrough;
+    }
+
+    public Instant getRecurringTxAt() {
+        return recurringTxAt;
+    }
+
+    public void setRecurringTxAt(Instant recurringTxAt) {
+        this.recurringTxAt = recurringTxAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
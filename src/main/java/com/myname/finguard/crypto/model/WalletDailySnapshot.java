@@ -60,6 +60,9 @@ public class WalletDailySnapshot {
     @Column(nullable = false, length = 32)
     private String source;
 
+    @Column(name = "holdings")
+    private byte[] holdings;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
@@ -168,6 +171,14 @@ public class WalletDailySnapshot {
         this.source = source;
     }
 
+    public byte[] getHoldings() {
+        return holdings;
+    }
+
+    public void setHoldings(byte[] holdings) {
+        this.holdings = holdings;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
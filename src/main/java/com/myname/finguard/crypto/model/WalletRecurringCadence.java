@@ -0,0 +1,187 @@
+package com.myname.finguard.crypto.model;
+
+import com.myname.finguard.auth.model.User;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+@Entity
+@Table(name = "wallet_recurring_cadences")
+public class WalletRecurringCadence {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private CryptoWallet wallet;
+
+    @Column(name = "counterparty_key", nullable = false, length = 160)
+    private String counterpartyKey;
+
+    @Column(name = "charge_count", nullable = false)
+    private int chargeCount;
+
+    @Column(name = "amount_mean_usd", nullable = false)
+    private double amountMeanUsd;
+
+    @Column(name = "amount_m2", nullable = false)
+    private double amountM2;
+
+    @Column(name = "interval_count", nullable = false)
+    private int intervalCount;
+
+    @Column(name = "interval_mean_days", nullable = false)
+    private double intervalMeanDays;
+
+    @Column(name = "interval_m2", nullable = false)
+    private double intervalM2;
+
+    @Column(name = "first_charge_at")
+    private Instant firstChargeAt;
+
+    @Column(name = "last_charge_at")
+    private Instant lastChargeAt;
+
+    @Column(name = "fallback_only", nullable = false)
+    private boolean fallbackOnly = true;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public CryptoWallet getWallet() {
+        return wallet;
+    }
+
+    public void setWallet(CryptoWallet wallet) {
+        this.wallet = wallet;
+    }
+
+    public String getCounterpartyKey() {
+        return counterpartyKey;
+    }
+
+    public void setCounterpartyKey(String counterpartyKey) {
+        this.counterpartyKey = counterpartyKey;
+    }
+
+    public int getChargeCount() {
+        return chargeCount;
+    }
+
+    public void setChargeCount(int chargeCount) {
+        this.chargeCount = chargeCount;
+    }
+
+    public double getAmountMeanUsd() {
+        return amountMeanUsd;
+    }
+
+    public void setAmountMeanUsd(double amountMeanUsd) {
+        this.amountMeanUsd = amountMeanUsd;
+    }
+
+    public double getAmountM2() {
+        return amountM2;
+    }
+
+    public void setAmountM2(double amountM2) {
+        this.amountM2 = amountM2;
+    }
+
+    public int getIntervalCount() {
+        return intervalCount;
+    }
+
+    public void setIntervalCount(int intervalCount) {
+        this.intervalCount = intervalCount;
+    }
+
+    public double getIntervalMeanDays() {
+        return intervalMeanDays;
+    }
+
+    public void setIntervalMeanDays(double intervalMeanDays) {
+        this.intervalMeanDays = intervalMeanDays;
+    }
+
+    public double getIntervalM2() {
+        return intervalM2;
+    }
+
+    public void setIntervalM2(double intervalM2) {
+        this.intervalM2 = intervalM2;
+    }
+
+    public Instant getFirstChargeAt() {
+        return firstChargeAt;
+    }
+
+    public void setFirstChargeAt(Instant firstChargeAt) {
+        this.firstChargeAt = firstChargeAt;
+    }
+
+    public Instant getLastChargeAt() {
+        return lastChargeAt;
+    }
+
+    public void setLastChargeAt(Instant lastChargeAt) {
+        this.lastChargeAt = lastChargeAt;
+    }
+
+    public boolean isFallbackOnly() {
+        return fallbackOnly;
+    }
+
+    public void setFallbackOnly(boolean fallbackOnly) {
+        this.fallbackOnly = fallbackOnly;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
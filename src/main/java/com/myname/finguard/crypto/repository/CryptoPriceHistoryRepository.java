@@ -0,0 +1,241 @@
+package com.myname.finguard.crypto.repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Local USD price history of crypto assets: daily prices in {@code crypto_price_history} and hourly ones in
+ * {@code crypto_price_history_hourly}. Rows are append-only: a bucket that already has a price for an asset is
+ * never rewritten. Reads are batched over a set of assets and a range in one query per chunk of codes.
+ */
+@Repository
+public class CryptoPriceHistoryRepository {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int CODES_PER_QUERY = 200;
+
+    private static final String INSERT = """
+            insert into crypto_price_history (asset_code, price_day, price_usd, source, created_at)
+            values (?, ?, ?, ?, ?)""";
+
+    private static final String INSERT_IF_ABSENT = INSERT + " on conflict (asset_code, price_day) do nothing";
+
+    private static final String HOURLY_INSERT = """
+            insert into crypto_price_history_hourly (asset_code, price_hour, price_usd, source, created_at)
+            values (?, ?, ?, ?, ?)""";
+
+    private static final String HOURLY_INSERT_IF_ABSENT = HOURLY_INSERT + " on conflict (asset_code, price_hour) do nothing";
+
+    private static final String DAILY_SINCE = """
+            select asset_code, price_day, price_usd from crypto_price_history
+            where price_day >= ?
+            order by asset_code asc, price_day asc""";
+
+    private static final String HOURLY_SINCE = """
+            select asset_code, price_hour, price_usd from crypto_price_history_hourly
+            where price_hour >= ?
+            order by asset_code asc, price_hour asc""";
+
+    private static final String HOURLY_EXISTING = """
+            select asset_code, price_hour from crypto_price_history_hourly
+            where price_hour between ? and ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean upsertSupported;
+
+    public CryptoPriceHistoryRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${spring.datasource.url:}") String datasourceUrl
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsertSupported = datasourceUrl != null
+                && datasourceUrl.trim().toLowerCase(Locale.ROOT).startsWith("jdbc:postgresql:");
+    }
+
+    /**
+     * Streams the stored daily prices of {@code assetCodes} in {@code [from, to]}, ordered by asset and day.
+     */
+    public void forEachDailyPrice(Collection<String> assetCodes, LocalDate from, LocalDate to, DailyPriceVisitor visitor) {
+        if (assetCodes == null || assetCodes.isEmpty() || from == null || to == null || visitor == null) {
+            return;
+        }
+        List<String> codes = new ArrayList<>(new HashSet<>(assetCodes));
+        for (int start = 0; start < codes.size(); start += CODES_PER_QUERY) {
+            List<String> chunk = codes.subList(start, Math.min(codes.size(), start + CODES_PER_QUERY));
+            String sql = "select asset_code, price_day, price_usd from crypto_price_history"
+                    + " where asset_code in (" + placeholders(chunk.size()) + ") and price_day between ? and ?"
+                    + " order by asset_code asc, price_day asc";
+            Object[] args = new Object[chunk.size() + 2];
+            for (int i = 0; i < chunk.size(); i += 1) {
+                args[i] = chunk.get(i);
+            }
+            args[chunk.size()] = from;
+            args[chunk.size() + 1] = to;
+            jdbcTemplate.query(sql, rs -> {
+                visitor.accept(
+                        rs.getString("asset_code"),
+                        rs.getObject("price_day", LocalDate.class),
+                        rs.getBigDecimal("price_usd")
+                );
+            }, args);
+        }
+    }
+
+    /**
+     * Streams every stored daily price from {@code from} on, ordered by asset and day.
+     */
+    public void forEachDailyPrice(LocalDate from, DailyPriceVisitor visitor) {
+        if (from == null || visitor == null) {
+            return;
+        }
+        jdbcTemplate.query(DAILY_SINCE, rs -> {
+            visitor.accept(
+                    rs.getString("asset_code"),
+                    rs.getObject("price_day", LocalDate.class),
+                    rs.getBigDecimal("price_usd")
+            );
+        }, from);
+    }
+
+    /**
+     * Streams every stored hourly price from {@code from} on, ordered by asset and hour.
+     */
+    public void forEachHourlyPrice(Instant from, HourlyPriceVisitor visitor) {
+        if (from == null || visitor == null) {
+            return;
+        }
+        jdbcTemplate.query(HOURLY_SINCE, rs -> {
+            visitor.accept(
+                    rs.getString("asset_code"),
+                    rs.getObject("price_hour", OffsetDateTime.class).toInstant(),
+                    rs.getBigDecimal("price_usd")
+            );
+        }, from.atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Appends prices for (asset, hour) pairs that have none yet; {@code hour} must be truncated to the hour.
+     * Returns how many rows were written.
+     */
+    public int appendHourlyPrices(List<HourlyPrice> prices) {
+        if (prices == null || prices.isEmpty()) {
+            return 0;
+        }
+        Map<String, HourlyPrice> byKey = new LinkedHashMap<>();
+        Instant minHour = null;
+        Instant maxHour = null;
+        for (HourlyPrice price : prices) {
+            if (price == null || price.assetCode() == null || price.hour() == null
+                    || price.priceUsd() == null || price.priceUsd().signum() <= 0) {
+                continue;
+            }
+            byKey.putIfAbsent(price.assetCode() + "@" + price.hour(), price);
+            minHour = minHour == null || price.hour().isBefore(minHour) ? price.hour() : minHour;
+            maxHour = maxHour == null || price.hour().isAfter(maxHour) ? price.hour() : maxHour;
+        }
+        if (byKey.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> existing = new HashSet<>();
+        jdbcTemplate.query(HOURLY_EXISTING, rs -> {
+            existing.add(rs.getString("asset_code") + "@" + rs.getObject("price_hour", OffsetDateTime.class).toInstant());
+        }, minHour.atOffset(ZoneOffset.UTC), maxHour.atOffset(ZoneOffset.UTC));
+
+        OffsetDateTime now = Instant.now().atOffset(ZoneOffset.UTC);
+        List<Object[]> inserts = new ArrayList<>();
+        for (Map.Entry<String, HourlyPrice> entry : byKey.entrySet()) {
+            if (existing.contains(entry.getKey())) {
+                continue;
+            }
+            HourlyPrice price = entry.getValue();
+            inserts.add(new Object[]{price.assetCode(), price.hour().atOffset(ZoneOffset.UTC), price.priceUsd(), price.source(), now});
+        }
+        for (int start = 0; start < inserts.size(); start += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(upsertSupported ? HOURLY_INSERT_IF_ABSENT : HOURLY_INSERT, inserts.subList(start, Math.min(inserts.size(), start + BATCH_SIZE)));
+        }
+        return inserts.size();
+    }
+
+    /**
+     * Appends prices for (asset, day) pairs that have none yet; returns how many rows were written.
+     */
+    public int appendDailyPrices(List<DailyPrice> prices) {
+        if (prices == null || prices.isEmpty()) {
+            return 0;
+        }
+        Map<String, DailyPrice> byKey = new LinkedHashMap<>();
+        LocalDate minDay = null;
+        LocalDate maxDay = null;
+        for (DailyPrice price : prices) {
+            if (price == null || price.assetCode() == null || price.day() == null
+                    || price.priceUsd() == null || price.priceUsd().signum() <= 0) {
+                continue;
+            }
+            byKey.putIfAbsent(key(price.assetCode(), price.day()), price);
+            minDay = minDay == null || price.day().isBefore(minDay) ? price.day() : minDay;
+            maxDay = maxDay == null || price.day().isAfter(maxDay) ? price.day() : maxDay;
+        }
+        if (byKey.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> existing = new HashSet<>();
+        Set<String> codes = new HashSet<>();
+        byKey.values().forEach(price -> codes.add(price.assetCode()));
+        forEachDailyPrice(codes, minDay, maxDay, (code, day, price) -> existing.add(key(code, day)));
+
+        OffsetDateTime now = Instant.now().atOffset(ZoneOffset.UTC);
+        List<Object[]> inserts = new ArrayList<>();
+        for (Map.Entry<String, DailyPrice> entry : byKey.entrySet()) {
+            if (existing.contains(entry.getKey())) {
+                continue;
+            }
+            DailyPrice price = entry.getValue();
+            inserts.add(new Object[]{price.assetCode(), price.day(), price.priceUsd(), price.source(), now});
+        }
+        for (int start = 0; start < inserts.size(); start += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(upsertSupported ? INSERT_IF_ABSENT : INSERT, inserts.subList(start, Math.min(inserts.size(), start + BATCH_SIZE)));
+        }
+        return inserts.size();
+    }
+
+    private static String key(String assetCode, LocalDate day) {
+        return assetCode + "@" + day;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    @FunctionalInterface
+    public interface DailyPriceVisitor {
+        void accept(String assetCode, LocalDate day, BigDecimal priceUsd);
+    }
+
+    @FunctionalInterface
+    public interface HourlyPriceVisitor {
+        void accept(String assetCode, Instant hour, BigDecimal priceUsd);
+    }
+
+    public record DailyPrice(String assetCode, LocalDate day, BigDecimal priceUsd, String source) {
+    }
+
+    public record HourlyPrice(String assetCode, Instant hour, BigDecimal priceUsd, String source) {
+    }
+}
@@ -1,12 +1,18 @@
 package com.myname.finguard.crypto.repository;
 
 import com.myname.finguard.crypto.model.CryptoWalletAnalysisJob;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobPriority;
 import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisStage;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface CryptoWalletAnalysisJobRepository extends JpaRepository<CryptoWalletAnalysisJob, Long> {
 
@@ -14,8 +20,141 @@ public interface CryptoWalletAnalysisJobRepository extends JpaRepository<CryptoW
 
     Optional<CryptoWalletAnalysisJob> findTopByWalletIdAndUserIdOrderByCreatedAtDesc(Long walletId, Long userId);
 
+    List<CryptoWalletAnalysisJob> findByUserIdAndStatusIn(Long userId, Collection<CryptoWalletAnalysisJobStatus> statuses);
+
+    long countByStatus(CryptoWalletAnalysisJobStatus status);
+
     List<CryptoWalletAnalysisJob> findTop100ByStatusInAndUpdatedAtBeforeOrderByUpdatedAtAsc(
             Collection<CryptoWalletAnalysisJobStatus> statuses,
             Instant updatedBefore
     );
+
+    @Query(value = """
+            select id
+            from crypto_wallet_analysis_jobs
+            where status = 'QUEUED'
+              and (claimed_at is null or claimed_at < :claimExpiredBefore)
+            order by case when priority = 'INTERACTIVE' then 0 else 1 end, created_at asc
+            limit :batchSize
+            for update skip locked
+            """, nativeQuery = true)
+    List<Long> lockClaimableJobIdsSkipLocked(
+            @Param("claimExpiredBefore") Instant claimExpiredBefore,
+            @Param("batchSize") int batchSize
+    );
+
+    @Query(value = """
+            select id
+            from crypto_wallet_analysis_jobs
+            where status = 'QUEUED'
+              and (claimed_at is null or claimed_at < :claimExpiredBefore)
+            order by case when priority = 'INTERACTIVE' then 0 else 1 end, created_at asc
+            limit :batchSize
+            """, nativeQuery = true)
+    List<Long> findClaimableJobIdsPortable(
+            @Param("claimExpiredBefore") Instant claimExpiredBefore,
+            @Param("batchSize") int batchSize
+    );
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update CryptoWalletAnalysisJob j set j.claimedBy = :nodeId, j.claimedAt = :claimedAt where j.id in :ids")
+    int markClaimed(@Param("ids") Collection<Long> ids, @Param("nodeId") String nodeId, @Param("claimedAt") Instant claimedAt);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update CryptoWalletAnalysisJob j set j.claimedBy = null, j.claimedAt = null where j.id = :id")
+    int releaseClaim(@Param("id") Long id);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update CryptoWalletAnalysisJob j set j.priority = :priority where j.id = :id")
+    @Transactional
+    int updatePriority(@Param("id") Long id, @Param("priority") CryptoWalletAnalysisJobPriority priority);
+
+    /**
+     * Starts a QUEUED job claimed by {@code nodeId}. Returns 0 when the job already left QUEUED or its claim
+     * expired and passed to another node; the caller must then not run it.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update CryptoWalletAnalysisJob j set
+                j.status = com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus.RUNNING,
+                j.claimedAt = :now,
+                j.updatedAt = :now,
+                j.progressVersion = j.progressVersion + 1
+            where j.id = :id
+              and j.status = com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus.QUEUED
+              and j.claimedBy = :nodeId
+            """)
+    @Transactional
+    int markRunning(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("now") Instant now);
+
+    /**
+     * Writes job progress without loading the entity. Null status/stage/last stage/durations keep the
+     * stored value, {@code startedAt} is only set once, and {@code finishedAt} is only set when non-null.
+     * A terminal status releases the wallet's active-job key; a cancelled job is never written again.
+     * The progress version moves to {@code version} when that is newer and is bumped by one otherwise, so
+     * writers without an in-memory version pass zero.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update CryptoWalletAnalysisJob j set
+                j.status = coalesce(:status, j.status),
+                j.stage = coalesce(:stage, j.stage),
+                j.lastSuccessfulStage = coalesce(:lastSuccessfulStage, j.lastSuccessfulStage),
+                j.progressPct = :progressPct,
+                j.errorMessage = :errorMessage,
+                j.startedAt = coalesce(j.startedAt, :startedAt),
+                j.finishedAt = coalesce(:finishedAt, j.finishedAt),
+                j.stageDurationsMs = coalesce(:stageDurationsMs, j.stageDurationsMs),
+                j.updatedAt = :updatedAt,
+                j.progressVersion = case
+                    when j.progressVersion < :version then :version
+                    else j.progressVersion + 1
+                end,
+                j.activeWalletId = case
+                    when coalesce(:status, j.status) in (
+                        com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus.DONE,
+                        com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus.FAILED,
+                        com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus.CANCELLED
+                    ) then null
+                    else j.activeWalletId
+                end
+            where j.id = :id
+              and j.status <> com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus.CANCELLED
+            """)
+    @Transactional
+    int updateProgress(
+            @Param("id") Long id,
+            @Param("status") CryptoWalletAnalysisJobStatus status,
+            @Param("stage") CryptoWalletAnalysisStage stage,
+            @Param("lastSuccessfulStage") CryptoWalletAnalysisStage lastSuccessfulStage,
+            @Param("progressPct") int progressPct,
+            @Param("errorMessage") String errorMessage,
+            @Param("startedAt") Instant startedAt,
+            @Param("finishedAt") Instant finishedAt,
+            @Param("stageDurationsMs") String stageDurationsMs,
+            @Param("updatedAt") Instant updatedAt,
+            @Param("version") long version
+    );
+
+    /**
+     * Cancels the wallet's active job, if any, and releases its active-job key. Returns the number of jobs
+     * cancelled.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update CryptoWalletAnalysisJob j set
+                j.status = com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus.CANCELLED,
+                j.errorMessage = 'Analysis cancelled',
+                j.finishedAt = :now,
+                j.updatedAt = :now,
+                j.progressVersion = j.progressVersion + 1,
+                j.activeWalletId = null
+            where j.wallet.id = :walletId
+              and j.user.id = :userId
+              and j.activeWalletId is not null
+            """)
+    @Transactional
+    int cancelActive(@Param("walletId") Long walletId, @Param("userId") Long userId, @Param("now") Instant now);
+
+    boolean existsByIdAndStatus(Long id, CryptoWalletAnalysisJobStatus status);
 }
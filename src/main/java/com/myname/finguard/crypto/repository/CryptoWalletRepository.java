@@ -4,7 +4,10 @@ import com.myname.finguard.crypto.model.CryptoNetwork;
 import com.myname.finguard.crypto.model.CryptoWallet;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface CryptoWalletRepository extends JpaRepository<CryptoWallet, Long> {
     List<CryptoWallet> findByUserIdAndArchivedFalseOrderByCreatedAtDesc(Long userId);
@@ -16,4 +19,19 @@ public interface CryptoWalletRepository extends JpaRepository<CryptoWallet, Long
     boolean existsByUserIdAndNetworkAndAddressNormalized(Long userId, CryptoNetwork network, String addressNormalized);
 
     Optional<CryptoWallet> findByUserIdAndNetworkAndAddressNormalized(Long userId, CryptoNetwork network, String addressNormalized);
+
+    /**
+     * Next active wallet ids of one sweep shard ({@code id mod shards = shard}) after {@code afterId}, in key order.
+     */
+    @Query("""
+            select w.id from CryptoWallet w
+            where w.archived = false and mod(w.id, :shards) = :shard and w.id > :afterId
+            order by w.id asc
+            """)
+    List<Long> findSweepBatchIds(
+            @Param("shards") int shards,
+            @Param("shard") int shard,
+            @Param("afterId") long afterId,
+            Pageable page
+    );
 }
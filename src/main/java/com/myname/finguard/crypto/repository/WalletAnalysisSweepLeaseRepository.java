@@ -0,0 +1,82 @@
+package com.myname.finguard.crypto.repository;
+
+import com.myname.finguard.crypto.model.WalletAnalysisSweepLease;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface WalletAnalysisSweepLeaseRepository extends JpaRepository<WalletAnalysisSweepLease, Integer> {
+
+    List<WalletAnalysisSweepLease> findAllByOrderByShardIdAsc();
+
+    /**
+     * Resets every shard whose sweep started before {@code startedBefore}, so nodes firing the same cron a
+     * few moments apart start one sweep, not several.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update WalletAnalysisSweepLease l set
+                l.sweepStartedAt = :startedAt,
+                l.cursorWalletId = 0,
+                l.walletsVisited = 0,
+                l.walletsEnqueued = 0,
+                l.leasedBy = null,
+                l.leaseUntil = null,
+                l.completedAt = null,
+                l.updatedAt = :startedAt
+            where l.sweepStartedAt < :startedBefore
+            """)
+    @Transactional
+    int restartSweep(@Param("startedAt") Instant startedAt, @Param("startedBefore") Instant startedBefore);
+
+    /**
+     * Takes or renews the lease on an unfinished shard; returns 0 while another node holds an unexpired lease.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update WalletAnalysisSweepLease l set l.leasedBy = :nodeId, l.leaseUntil = :leaseUntil, l.updatedAt = :now
+            where l.shardId = :shardId
+              and l.completedAt is null
+              and (l.leasedBy is null or l.leasedBy = :nodeId or l.leaseUntil < :now)
+            """)
+    @Transactional
+    int tryLease(
+            @Param("shardId") int shardId,
+            @Param("nodeId") String nodeId,
+            @Param("now") Instant now,
+            @Param("leaseUntil") Instant leaseUntil
+    );
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update WalletAnalysisSweepLease l set
+                l.cursorWalletId = :cursorWalletId,
+                l.walletsVisited = l.walletsVisited + :visited,
+                l.walletsEnqueued = l.walletsEnqueued + :enqueued,
+                l.leaseUntil = :leaseUntil,
+                l.updatedAt = :now
+            where l.shardId = :shardId and l.leasedBy = :nodeId
+            """)
+    @Transactional
+    int advance(
+            @Param("shardId") int shardId,
+            @Param("nodeId") String nodeId,
+            @Param("cursorWalletId") long cursorWalletId,
+            @Param("visited") long visited,
+            @Param("enqueued") long enqueued,
+            @Param("leaseUntil") Instant leaseUntil,
+            @Param("now") Instant now
+    );
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update WalletAnalysisSweepLease l set l.completedAt = :now, l.leasedBy = null, l.leaseUntil = null, l.updatedAt = :now
+            where l.shardId = :shardId and l.leasedBy = :nodeId
+            """)
+    @Transactional
+    int complete(@Param("shardId") int shardId, @Param("nodeId") String nodeId, @Param("now") Instant now);
+}
@@ -0,0 +1,12 @@
+package com.myname.finguard.crypto.repository;
+
+import com.myname.finguard.crypto.model.WalletAnalysisWatermark;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface WalletAnalysisWatermarkRepository extends JpaRepository<WalletAnalysisWatermark, Long> {
+
+    Optional<WalletAnalysisWatermark> findByWalletId(Long walletId);
+
+    void deleteByWalletId(Long walletId);
+}
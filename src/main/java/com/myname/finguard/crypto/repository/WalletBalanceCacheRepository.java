@@ -0,0 +1,89 @@
+package com.myname.finguard.crypto.repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Persistent second-level cache of provider wallet balances and portfolios in {@code wallet_balance_cache}, one
+ * row per (network, address, kind). A write only replaces a row with an older {@code fetched_at}, so nodes racing
+ * to store the same address keep the freshest payload.
+ */
+@Repository
+public class WalletBalanceCacheRepository {
+
+    private static final String FIND = """
+            select fetched_at, payload from wallet_balance_cache
+            where network = ? and address = ? and kind = ?""";
+
+    private static final String INSERT = """
+            insert into wallet_balance_cache (network, address, kind, fetched_at, payload)
+            values (?, ?, ?, ?, ?)""";
+
+    private static final String UPSERT = INSERT + """
+             on conflict (network, address, kind) do update set
+                fetched_at = excluded.fetched_at,
+                payload = excluded.payload
+            where wallet_balance_cache.fetched_at < excluded.fetched_at""";
+
+    private static final String UPDATE = """
+            update wallet_balance_cache set fetched_at = ?, payload = ?
+            where network = ? and address = ? and kind = ? and fetched_at < ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean upsertSupported;
+
+    public WalletBalanceCacheRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${spring.datasource.url:}") String datasourceUrl
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsertSupported = datasourceUrl != null
+                && datasourceUrl.trim().toLowerCase(Locale.ROOT).startsWith("jdbc:postgresql:");
+    }
+
+    /**
+     * Stored row of (network, address, kind), or {@code null}.
+     */
+    public CachedRow find(String network, String address, String kind) {
+        if (network == null || address == null || kind == null) {
+            return null;
+        }
+        List<CachedRow> rows = jdbcTemplate.query(FIND, (rs, rowNum) -> new CachedRow(
+                rs.getObject("fetched_at", OffsetDateTime.class).toInstant(),
+                rs.getBytes("payload")
+        ), network, address, kind);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Stores {@code payload} unless the row already holds one fetched at or after {@code fetchedAt}.
+     */
+    public void save(String network, String address, String kind, Instant fetchedAt, byte[] payload) {
+        if (network == null || address == null || kind == null || fetchedAt == null || payload == null) {
+            return;
+        }
+        OffsetDateTime at = fetchedAt.atOffset(ZoneOffset.UTC);
+        if (upsertSupported) {
+            jdbcTemplate.update(UPSERT, network, address, kind, at, payload);
+            return;
+        }
+        if (jdbcTemplate.update(UPDATE, at, payload, network, address, kind, at) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT, network, address, kind, at, payload);
+        } catch (DuplicateKeyException ignored) {
+            // the row exists and is at least as fresh
+        }
+    }
+
+    public record CachedRow(Instant fetchedAt, byte[] payload) {
+    }
+}
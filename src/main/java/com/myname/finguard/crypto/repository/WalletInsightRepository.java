@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface WalletInsightRepository extends JpaRepository<WalletInsight, Long> {
 
@@ -21,7 +22,10 @@ public interface WalletInsightRepository extends JpaRepository<WalletInsight, Lo
             Instant after
     );
 
-    void deleteByWalletId(Long walletId);
+    @Modifying
+    @Query("delete from WalletInsight i where i.wallet.id = :walletId")
+    @Transactional
+    void deleteByWalletId(@Param("walletId") Long walletId);
 
     @Modifying
     @Query("delete from WalletInsight i where i.asOf < :threshold")
@@ -0,0 +1,19 @@
+package com.myname.finguard.crypto.repository;
+
+import com.myname.finguard.crypto.model.WalletRecurringCadence;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface WalletRecurringCadenceRepository extends JpaRepository<WalletRecurringCadence, Long> {
+
+    List<WalletRecurringCadence> findByWalletId(Long walletId);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("delete from WalletRecurringCadence c where c.wallet.id = :walletId")
+    @Transactional
+    int deleteAllForWallet(@Param("walletId") Long walletId);
+}
@@ -0,0 +1,574 @@
+package com.myname.finguard.crypto.repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Set-based writes for the wallet analysis pipeline. Existing rows are read once by their unique key
+ * ({@code wallet_id} plus the batch's {@code tx_hash} values) or, for snapshots, by day range; unchanged rows
+ * are skipped, and the rest go out as JDBC batches: a single {@code INSERT ... ON CONFLICT ... DO UPDATE} on
+ * PostgreSQL, or batched insert + update-by-id elsewhere.
+ */
+@Repository
+public class WalletTxBulkRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String RAW_COLUMNS = """
+            user_id, wallet_id, network, tx_hash, log_index, tx_at, block_number, direction, asset_code,
+            amount, amount_usd, fee_usd, counterparty, source, raw_payload, created_at, updated_at""";
+
+    private static final String RAW_INSERT = "insert into wallet_tx_raw (" + RAW_COLUMNS + ")"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String RAW_UPSERT = RAW_INSERT + """
+             on conflict (wallet_id, tx_hash, log_index) do update set
+                user_id = excluded.user_id,
+                network = excluded.network,
+                tx_at = excluded.tx_at,
+                block_number = excluded.block_number,
+                direction = excluded.direction,
+                asset_code = excluded.asset_code,
+                amount = excluded.amount,
+                amount_usd = excluded.amount_usd,
+                fee_usd = excluded.fee_usd,
+                counterparty = excluded.counterparty,
+                source = excluded.source,
+                raw_payload = excluded.raw_payload,
+                updated_at = excluded.updated_at""";
+
+    private static final String RAW_UPDATE = """
+            update wallet_tx_raw set
+                user_id = ?, network = ?, tx_at = ?, block_number = ?, direction = ?, asset_code = ?,
+                amount = ?, amount_usd = ?, fee_usd = ?, counterparty = ?, source = ?, raw_payload = ?, updated_at = ?
+            where id = ?""";
+
+    private static final String RAW_EXISTING = """
+            select id, tx_hash, log_index, tx_at, block_number, direction, asset_code, amount, amount_usd,
+                   fee_usd, counterparty, source, raw_payload
+            from wallet_tx_raw
+            where wallet_id = ? and tx_hash in (%s)""";
+
+    private static final String ENRICHED_COLUMNS = """
+            user_id, wallet_id, raw_tx_id, tx_hash, log_index, tx_at, direction, asset_code, amount, amount_usd,
+            category, counterparty_normalized, recurring_candidate, confidence, source, created_at, updated_at""";
+
+    private static final String ENRICHED_INSERT = "insert into wallet_tx_enriched (" + ENRICHED_COLUMNS + ")"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ENRICHED_UPSERT = ENRICHED_INSERT + """
+             on conflict (wallet_id, tx_hash, log_index) do update set
+                user_id = excluded.user_id,
+                raw_tx_id = excluded.raw_tx_id,
+                tx_at = excluded.tx_at,
+                direction = excluded.direction,
+                asset_code = excluded.asset_code,
+                amount = excluded.amount,
+                amount_usd = excluded.amount_usd,
+                category = excluded.category,
+                counterparty_normalized = excluded.counterparty_normalized,
+                recurring_candidate = excluded.recurring_candidate,
+                confidence = excluded.confidence,
+                source = excluded.source,
+                updated_at = excluded.updated_at""";
+
+    private static final String ENRICHED_UPDATE = """
+            update wallet_tx_enriched set
+                user_id = ?, raw_tx_id = ?, tx_at = ?, direction = ?, asset_code = ?, amount = ?, amount_usd = ?,
+                category = ?, counterparty_normalized = ?, recurring_candidate = ?, confidence = ?, source = ?, updated_at = ?
+            where id = ?""";
+
+    private static final String ENRICHED_EXISTING = """
+            select id, raw_tx_id, tx_hash, log_index, tx_at, direction, asset_code, amount, amount_usd, category,
+                   counterparty_normalized, recurring_candidate, confidence, source
+            from wallet_tx_enriched
+            where wallet_id = ? and tx_hash in (%s)""";
+
+    private static final String ENRICHED_COLUMNS_SCAN = """
+            select tx_at, direction, asset_code, amount, amount_usd, counterparty_normalized, category, source
+            from wallet_tx_enriched
+            where wallet_id = ? and tx_at between ? and ?
+            order by tx_at asc, id asc""";
+
+    private static final String SNAPSHOT_COLUMNS = """
+            user_id, wallet_id, snapshot_day, portfolio_usd, inflow_usd, outflow_usd, net_flow_usd, pnl_usd, pnl_pct,
+            source, holdings, created_at, updated_at""";
+
+    private static final String SNAPSHOT_INSERT = "insert into wallet_daily_snapshots (" + SNAPSHOT_COLUMNS + ")"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SNAPSHOT_UPSERT = SNAPSHOT_INSERT + """
+             on conflict (wallet_id, snapshot_day) do update set
+                user_id = excluded.user_id,
+                portfolio_usd = excluded.portfolio_usd,
+                inflow_usd = excluded.inflow_usd,
+                outflow_usd = excluded.outflow_usd,
+                net_flow_usd = excluded.net_flow_usd,
+                pnl_usd = excluded.pnl_usd,
+                pnl_pct = excluded.pnl_pct,
+                source = excluded.source,
+                holdings = excluded.holdings,
+                updated_at = excluded.updated_at""";
+
+    private static final String SNAPSHOT_UPDATE = """
+            update wallet_daily_snapshots set
+                user_id = ?, portfolio_usd = ?, inflow_usd = ?, outflow_usd = ?, net_flow_usd = ?, pnl_usd = ?, pnl_pct = ?,
+                source = ?, holdings = ?, updated_at = ?
+            where id = ?""";
+
+    private static final String SNAPSHOT_EXISTING = """
+            select id, snapshot_day, portfolio_usd, inflow_usd, outflow_usd, net_flow_usd, pnl_usd, pnl_pct, source, holdings
+            from wallet_daily_snapshots
+            where wallet_id = ? and snapshot_day between ? and ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean upsertSupported;
+
+    public WalletTxBulkRepository(
+            JdbcTemplate jdbcTemplate,
+            @Value("${spring.datasource.url:}") String datasourceUrl
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsertSupported = isPostgresDatasource(datasourceUrl);
+    }
+
+    /**
+     * Upserts raw rows on {@code (wallet_id, tx_hash, log_index)}. Existing rows are looked up by that key, not
+     * by time, so a row whose {@code tx_at} moved (a reorg, a corrected timestamp) is updated instead of
+     * violating the unique key on insert.
+     */
+    public WriteResult upsertRaw(Long walletId, List<RawRow> rows) {
+        if (walletId == null || rows == null || rows.isEmpty()) {
+            return WriteResult.EMPTY;
+        }
+        Map<String, Existing<RawRow>> existing = new HashMap<>();
+        queryByTxHash(RAW_EXISTING, walletId, rows.stream().filter(Objects::nonNull).map(RawRow::txHash).toList(), rs -> {
+            RawRow row = readRaw(rs);
+            existing.put(key(row.txHash(), row.logIndex()), new Existing<>(rs.getLong("id"), row));
+        });
+
+        OffsetDateTime now = toDb(Instant.now());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        for (RawRow row : dedupe(rows, r -> key(r.txHash(), r.logIndex()))) {
+            Existing<RawRow> current = existing.get(key(row.txHash(), row.logIndex()));
+            if (current == null) {
+                inserts.add(rawInsertArgs(row, now));
+                inserted += 1;
+            } else if (sameContent(current.row(), row)) {
+                unchanged += 1;
+            } else {
+                if (upsertSupported) {
+                    inserts.add(rawInsertArgs(row, now));
+                } else {
+                    updates.add(rawUpdateArgs(row, now, current.id()));
+                }
+                updated += 1;
+            }
+        }
+        batch(upsertSupported ? RAW_UPSERT : RAW_INSERT, inserts);
+        batch(RAW_UPDATE, updates);
+        return new WriteResult(inserted, updated, unchanged);
+    }
+
+    /**
+     * Upserts enriched rows on {@code (wallet_id, tx_hash, log_index)}, looking existing rows up by key like
+     * {@link #upsertRaw}.
+     */
+    public WriteResult upsertEnriched(Long walletId, List<EnrichedRow> rows) {
+        if (walletId == null || rows == null || rows.isEmpty()) {
+            return WriteResult.EMPTY;
+        }
+        Map<String, Existing<EnrichedRow>> existing = new HashMap<>();
+        queryByTxHash(ENRICHED_EXISTING, walletId, rows.stream().filter(Objects::nonNull).map(EnrichedRow::txHash).toList(), rs -> {
+            EnrichedRow row = readEnriched(rs);
+            existing.put(key(row.txHash(), row.logIndex()), new Existing<>(rs.getLong("id"), row));
+        });
+
+        OffsetDateTime now = toDb(Instant.now());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        for (EnrichedRow row : dedupe(rows, r -> key(r.txHash(), r.logIndex()))) {
+            Existing<EnrichedRow> current = existing.get(key(row.txHash(), row.logIndex()));
+            if (current == null) {
+                inserts.add(enrichedInsertArgs(row, now));
+                inserted += 1;
+            } else if (sameContent(current.row(), row)) {
+                unchanged += 1;
+            } else {
+                if (upsertSupported) {
+                    inserts.add(enrichedInsertArgs(row, now));
+                } else {
+                    updates.add(enrichedUpdateArgs(row, now, current.id()));
+                }
+                updated += 1;
+            }
+        }
+        batch(upsertSupported ? ENRICHED_UPSERT : ENRICHED_INSERT, inserts);
+        batch(ENRICHED_UPDATE, updates);
+        return new WriteResult(inserted, updated, unchanged);
+    }
+
+    /**
+     * Streams the analysis-relevant columns of enriched rows in {@code [from, to]} ordered by {@code tx_at},
+     * without materialising entities.
+     */
+    public void forEachEnriched(Long walletId, Instant from, Instant to, EnrichedColumnsVisitor visitor) {
+        if (walletId == null || visitor == null) {
+            return;
+        }
+        jdbcTemplate.query(ENRICHED_COLUMNS_SCAN, rs -> {
+            visitor.accept(
+                    fromDb(rs.getObject("tx_at", OffsetDateTime.class)),
+                    rs.getString("direction"),
+                    rs.getString("asset_code"),
+                    rs.getBigDecimal("amount"),
+                    rs.getBigDecimal("amount_usd"),
+                    rs.getString("counterparty_normalized"),
+                    rs.getString("category"),
+                    rs.getString("source")
+            );
+        }, walletId, toDb(from), toDb(to));
+    }
+
+    /**
+     * Upserts one snapshot row per day on {@code uq_wallet_daily_snapshots_wallet_day}; existing rows in
+     * {@code [fromDay, toDay]} are read once and days whose values did not change are not rewritten.
+     */
+    public WriteResult upsertSnapshots(Long walletId, LocalDate fromDay, LocalDate toDay, List<SnapshotRow> rows) {
+        if (walletId == null || rows == null || rows.isEmpty()) {
+            return WriteResult.EMPTY;
+        }
+        Map<LocalDate, Existing<SnapshotRow>> existing = new HashMap<>();
+        jdbcTemplate.query(SNAPSHOT_EXISTING, rs -> {
+            SnapshotRow row = readSnapshot(rs);
+            existing.put(row.day(), new Existing<>(rs.getLong("id"), row));
+        }, walletId, fromDay, toDay);
+
+        OffsetDateTime now = toDb(Instant.now());
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        for (SnapshotRow row : dedupe(rows, r -> String.valueOf(r.day()))) {
+            Existing<SnapshotRow> current = existing.get(row.day());
+            if (current == null) {
+                inserts.add(snapshotInsertArgs(row, now));
+                inserted += 1;
+            } else if (sameContent(current.row(), row)) {
+                unchanged += 1;
+            } else {
+                if (upsertSupported) {
+                    inserts.add(snapshotInsertArgs(row, now));
+                } else {
+                    updates.add(snapshotUpdateArgs(row, now, current.id()));
+                }
+                updated += 1;
+            }
+        }
+        batch(upsertSupported ? SNAPSHOT_UPSERT : SNAPSHOT_INSERT, inserts);
+        batch(SNAPSHOT_UPDATE, updates);
+        return new WriteResult(inserted, updated, unchanged);
+    }
+
+    /**
+     * Runs {@code sqlTemplate} (with one {@code %s} for the placeholder list) for the distinct {@code txHashes}
+     * of the wallet, at most {@link #BATCH_SIZE} hashes per statement.
+     */
+    private void queryByTxHash(String sqlTemplate, Long walletId, List<String> txHashes, RowCallbackHandler handler) {
+        List<String> distinct = txHashes.stream().filter(Objects::nonNull).distinct().toList();
+        for (int start = 0; start < distinct.size(); start += BATCH_SIZE) {
+            List<String> chunk = distinct.subList(start, Math.min(distinct.size(), start + BATCH_SIZE));
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = walletId;
+            for (int i = 0; i < chunk.size(); i += 1) {
+                args[i + 1] = chunk.get(i);
+            }
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(sqlTemplate.formatted(placeholders), handler, args);
+        }
+    }
+
+    private void batch(String sql, List<Object[]> args) {
+        for (int start = 0; start < args.size(); start += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, args.subList(start, Math.min(args.size(), start + BATCH_SIZE)));
+        }
+    }
+
+    private Object[] rawInsertArgs(RawRow row, OffsetDateTime now) {
+        return new Object[]{
+                row.userId(), row.walletId(), row.network(), row.txHash(), row.logIndex(), toDb(row.txAt()),
+                row.blockNumber(), row.direction(), row.assetCode(), row.amount(), row.amountUsd(), row.feeUsd(),
+                row.counterparty(), row.source(), row.rawPayload(), now, now
+        };
+    }
+
+    private Object[] rawUpdateArgs(RawRow row, OffsetDateTime now, long id) {
+        return new Object[]{
+                row.userId(), row.network(), toDb(row.txAt()), row.blockNumber(), row.direction(), row.assetCode(),
+                row.amount(), row.amountUsd(), row.feeUsd(), row.counterparty(), row.source(), row.rawPayload(), now, id
+        };
+    }
+
+    private Object[] enrichedInsertArgs(EnrichedRow row, OffsetDateTime now) {
+        return new Object[]{
+                row.userId(), row.walletId(), row.rawTxId(), row.txHash(), row.logIndex(), toDb(row.txAt()),
+                row.direction(), row.assetCode(), row.amount(), row.amountUsd(), row.category(),
+                row.counterpartyNormalized(), row.recurringCandidate(), row.confidence(), row.source(), now, now
+        };
+    }
+
+    private Object[] enrichedUpdateArgs(EnrichedRow row, OffsetDateTime now, long id) {
+        return new Object[]{
+                row.userId(), row.rawTxId(), toDb(row.txAt()), row.direction(), row.assetCode(), row.amount(),
+                row.amountUsd(), row.category(), row.counterpartyNormalized(), row.recurringCandidate(),
+                row.confidence(), row.source(), now, id
+        };
+    }
+
+    private Object[] snapshotInsertArgs(SnapshotRow row, OffsetDateTime now) {
+        return new Object[]{
+                row.userId(), row.walletId(), row.day(), row.portfolioUsd(), row.inflowUsd(), row.outflowUsd(),
+                row.netFlowUsd(), row.pnlUsd(), row.pnlPct(), row.source(), row.holdings(), now, now
+        };
+    }
+
+    private Object[] snapshotUpdateArgs(SnapshotRow row, OffsetDateTime now, long id) {
+        return new Object[]{
+                row.userId(), row.portfolioUsd(), row.inflowUsd(), row.outflowUsd(), row.netFlowUsd(), row.pnlUsd(),
+                row.pnlPct(), row.source(), row.holdings(), now, id
+        };
+    }
+
+    private RawRow readRaw(ResultSet rs) throws SQLException {
+        return new RawRow(
+                null,
+                null,
+                null,
+                rs.getString("tx_hash"),
+                rs.getLong("log_index"),
+                fromDb(rs.getObject("tx_at", OffsetDateTime.class)),
+                rs.getObject("block_number", Long.class),
+                rs.getString("direction"),
+                rs.getString("asset_code"),
+                rs.getBigDecimal("amount"),
+                rs.getBigDecimal("amount_usd"),
+                rs.getBigDecimal("fee_usd"),
+                rs.getString("counterparty"),
+                rs.getString("source"),
+                rs.getString("raw_payload")
+        );
+    }
+
+    private EnrichedRow readEnriched(ResultSet rs) throws SQLException {
+        return new EnrichedRow(
+                null,
+                null,
+                rs.getObject("raw_tx_id", Long.class),
+                rs.getString("tx_hash"),
+                rs.getLong("log_index"),
+                fromDb(rs.getObject("tx_at", OffsetDateTime.class)),
+                rs.getString("direction"),
+                rs.getString("asset_code"),
+                rs.getBigDecimal("amount"),
+                rs.getBigDecimal("amount_usd"),
+                rs.getString("category"),
+                rs.getString("counterparty_normalized"),
+                rs.getBoolean("recurring_candidate"),
+                rs.getBigDecimal("confidence"),
+                rs.getString("source")
+        );
+    }
+
+    private SnapshotRow readSnapshot(ResultSet rs) throws SQLException {
+        return new SnapshotRow(
+                null,
+                null,
+                rs.getObject("snapshot_day", LocalDate.class),
+                rs.getBigDecimal("portfolio_usd"),
+                rs.getBigDecimal("inflow_usd"),
+                rs.getBigDecimal("outflow_usd"),
+                rs.getBigDecimal("net_flow_usd"),
+                rs.getBigDecimal("pnl_usd"),
+                rs.getBigDecimal("pnl_pct"),
+                rs.getString("source"),
+                rs.getBytes("holdings")
+        );
+    }
+
+    private boolean sameContent(RawRow a, RawRow b) {
+        return Objects.equals(a.txAt(), b.txAt())
+                && Objects.equals(a.blockNumber(), b.blockNumber())
+                && Objects.equals(a.direction(), b.direction())
+                && Objects.equals(a.assetCode(), b.assetCode())
+                && sameAmount(a.amount(), b.amount())
+                && sameAmount(a.amountUsd(), b.amountUsd())
+                && sameAmount(a.feeUsd(), b.feeUsd())
+                && Objects.equals(a.counterparty(), b.counterparty())
+                && Objects.equals(a.source(), b.source())
+                && Objects.equals(a.rawPayload(), b.rawPayload());
+    }
+
+    private boolean sameContent(EnrichedRow a, EnrichedRow b) {
+        return Objects.equals(a.rawTxId(), b.rawTxId())
+                && Objects.equals(a.txAt(), b.txAt())
+                && Objects.equals(a.direction(), b.direction())
+                && Objects.equals(a.assetCode(), b.assetCode())
+                && sameAmount(a.amount(), b.amount())
+                && sameAmount(a.amountUsd(), b.amountUsd())
+                && Objects.equals(a.category(), b.category())
+                && Objects.equals(a.counterpartyNormalized(), b.counterpartyNormalized())
+                && a.recurringCandidate() == b.recurringCandidate()
+                && sameAmount(a.confidence(), b.confidence())
+                && Objects.equals(a.source(), b.source());
+    }
+
+    private boolean sameContent(SnapshotRow a, SnapshotRow b) {
+        return sameAmount(a.portfolioUsd(), b.portfolioUsd())
+                && sameAmount(a.inflowUsd(), b.inflowUsd())
+                && sameAmount(a.outflowUsd(), b.outflowUsd())
+                && sameAmount(a.netFlowUsd(), b.netFlowUsd())
+                && sameAmount(a.pnlUsd(), b.pnlUsd())
+                && sameAmount(a.pnlPct(), b.pnlPct())
+                && Objects.equals(a.source(), b.source())
+                && Arrays.equals(a.holdings(), b.holdings());
+    }
+
+    private boolean sameAmount(BigDecimal a, BigDecimal b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.compareTo(b) == 0;
+    }
+
+    private <T> List<T> dedupe(List<T> rows, Function<T, String> keyFn) {
+        Map<String, T> byKey = new LinkedHashMap<>();
+        for (T row : rows) {
+            if (row != null) {
+                byKey.put(keyFn.apply(row), row);
+            }
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    private static String key(String txHash, long logIndex) {
+        return txHash + "#" + logIndex;
+    }
+
+    private static OffsetDateTime toDb(Instant instant) {
+        return instant == null ? null : instant.atOffset(ZoneOffset.UTC);
+    }
+
+    private static Instant fromDb(OffsetDateTime value) {
+        return value == null ? null : value.toInstant();
+    }
+
+    private boolean isPostgresDatasource(String datasourceUrl) {
+        String value = datasourceUrl == null ? "" : datasourceUrl.trim().toLowerCase(Locale.ROOT);
+        return value.startsWith("jdbc:postgresql:");
+    }
+
+    @FunctionalInterface
+    public interface EnrichedColumnsVisitor {
+        void accept(
+                Instant txAt,
+                String direction,
+                String assetCode,
+                BigDecimal amount,
+                BigDecimal amountUsd,
+                String counterpartyNormalized,
+                String category,
+                String source
+        );
+    }
+
+    public record RawRow(
+            Long userId,
+            Long walletId,
+            String network,
+            String txHash,
+            long logIndex,
+            Instant txAt,
+            Long blockNumber,
+            String direction,
+            String assetCode,
+            BigDecimal amount,
+            BigDecimal amountUsd,
+            BigDecimal feeUsd,
+            String counterparty,
+            String source,
+            String rawPayload
+    ) {
+    }
+
+    public record EnrichedRow(
+            Long userId,
+            Long walletId,
+            Long rawTxId,
+            String txHash,
+            long logIndex,
+            Instant txAt,
+            String direction,
+            String assetCode,
+            BigDecimal amount,
+            BigDecimal amountUsd,
+            String category,
+            String counterpartyNormalized,
+            boolean recurringCandidate,
+            BigDecimal confidence,
+            String source
+    ) {
+    }
+
+    public record SnapshotRow(
+            Long userId,
+            Long walletId,
+            LocalDate day,
+            BigDecimal portfolioUsd,
+            BigDecimal inflowUsd,
+            BigDecimal outflowUsd,
+            BigDecimal netFlowUsd,
+            BigDecimal pnlUsd,
+            BigDecimal pnlPct,
+            String source,
+            byte[] holdings
+    ) {
+    }
+
+    public record WriteResult(int inserted, int updated, int unchanged) {
+        static final WriteResult EMPTY = new WriteResult(0, 0, 0);
+
+        public int written() {
+            return inserted + updated;
+        }
+    }
+
+    private record Existing<T>(long id, T row) {
+    }
+}
@@ -17,6 +17,9 @@ public interface WalletTxEnrichedRepository extends JpaRepository<WalletTxEnrich
 
     List<WalletTxEnriched> findByWalletIdOrderByTxAtDesc(Long walletId);
 
+    @Query("select min(e.txAt) from WalletTxEnriched e where e.wallet.id = :walletId and e.updatedAt > :updatedAfter")
+    Instant findEarliestTxAtUpdatedAfter(@Param("walletId") Long walletId, @Param("updatedAfter") Instant updatedAfter);
+
     void deleteByWalletId(Long walletId);
 
     @Modifying
@@ -15,6 +15,8 @@ public interface WalletTxRawRepository extends JpaRepository<WalletTxRaw, Long>
 
     List<WalletTxRaw> findByWalletIdAndTxAtBetweenOrderByTxAtAsc(Long walletId, Instant from, Instant to);
 
+    List<WalletTxRaw> findByWalletIdAndUpdatedAtAfterOrderByTxAtAsc(Long walletId, Instant updatedAfter);
+
     void deleteByWalletId(Long walletId);
 
     @Modifying
@@ -0,0 +1,488 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.common.events.CryptoRatesFetchedEvent;
+import com.myname.finguard.common.service.CryptoRatesProvider;
+import com.myname.finguard.crypto.repository.CryptoPriceHistoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Historical USD prices of crypto assets, served from an in-memory index over the local append-only history
+ * tables. Per asset the index holds sorted primitive arrays (epoch day to price, epoch hour to price) that are
+ * replaced copy-on-write when a price is appended, so lookups are a map read plus a binary search and never
+ * lock. The history is filled by every USD {@code latestRates} fetch (through {@link CryptoRatesFetchedEvent},
+ * recorded on a single background thread so the fetching request never waits on the history tables) and by a
+ * nightly backfill of missing days from the rates provider. Rows appended by other nodes become visible when
+ * the index is reloaded every {@code reload-ms}; until then lookups fall back to the nearest earlier price.
+ */
+@Service
+public class CryptoPriceHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(CryptoPriceHistoryService.class);
+    private static final long SECONDS_PER_HOUR = 3_600L;
+    private static final long HOURS_PER_DAY = 24L;
+
+    private final CryptoPriceHistoryRepository repository;
+    private final CryptoRatesProvider ratesProvider;
+    private final MeterRegistry meterRegistry;
+    private final boolean backfillEnabled;
+    private final int backfillDays;
+    private final int indexDays;
+    private final int hourlyIndexDays;
+    private final List<String> backfillAssets;
+    private final Clock clock;
+    private final Executor recordExecutor;
+    private final Map<String, PriceSeries> daily = new ConcurrentHashMap<>();
+    private final Map<String, PriceSeries> hourly = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    @Autowired
+    public CryptoPriceHistoryService(
+            CryptoPriceHistoryRepository repository,
+            ObjectProvider<CryptoRatesProvider> ratesProvider,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.crypto.price-history.backfill.enabled:true}") boolean backfillEnabled,
+            @Value("${app.crypto.price-history.backfill.days:365}") int backfillDays,
+            @Value("${app.crypto.price-history.backfill.assets:BTC,ETH,SOL}") List<String> backfillAssets,
+            @Value("${app.crypto.price-history.index-days:1095}") int indexDays,
+            @Value("${app.crypto.price-history.hourly-index-days:30}") int hourlyIndexDays
+    ) {
+        this(repository, ratesProvider.getIfAvailable(), meterRegistry.getIfAvailable(), backfillEnabled, backfillDays,
+                backfillAssets, indexDays, hourlyIndexDays, Clock.systemUTC(), recordPool());
+    }
+
+    CryptoPriceHistoryService(
+            CryptoPriceHistoryRepository repository,
+            CryptoRatesProvider ratesProvider,
+            MeterRegistry meterRegistry,
+            boolean backfillEnabled,
+            int backfillDays,
+            List<String> backfillAssets,
+            int indexDays,
+            int hourlyIndexDays,
+            Clock clock,
+            Executor recordExecutor
+    ) {
+        this.repository = repository;
+        this.ratesProvider = ratesProvider;
+        this.meterRegistry = meterRegistry;
+        this.backfillEnabled = backfillEnabled;
+        this.backfillDays = Math.max(1, backfillDays);
+        this.indexDays = Math.max(this.backfillDays, indexDays);
+        this.hourlyIndexDays = Math.max(1, hourlyIndexDays);
+        this.backfillAssets = backfillAssets == null ? List.of() : backfillAssets.stream()
+                .map(CryptoPriceHistoryService::normalizeAsset)
+                .filter(code -> code != null)
+                .distinct()
+                .toList();
+        this.clock = clock == null ? Clock.systemUTC() : clock;
+        this.recordExecutor = recordExecutor == null ? Runnable::run : recordExecutor;
+    }
+
+    /**
+     * USD price of {@code assetCode} at {@code at}: the latest hourly price at or before it when one exists on
+     * the same day, otherwise the latest daily price at or before its day. {@code NaN} when nothing is known.
+     */
+    public double priceAt(String assetCode, Instant at) {
+        if (assetCode == null || at == null) {
+            return Double.NaN;
+        }
+        ensureLoaded();
+        String code = indexKey(assetCode);
+        long epochHour = Math.floorDiv(at.getEpochSecond(), SECONDS_PER_HOUR);
+        long epochDay = Math.floorDiv(epochHour, HOURS_PER_DAY);
+        PriceSeries hours = hourly.get(code);
+        int hourIndex = hours == null ? -1 : hours.floorIndex(epochHour);
+        if (hourIndex >= 0 && Math.floorDiv(hours.keys[hourIndex], HOURS_PER_DAY) == epochDay) {
+            return hours.values[hourIndex];
+        }
+        PriceSeries days = daily.get(code);
+        int dayIndex = days == null ? -1 : days.floorIndex(epochDay);
+        if (dayIndex >= 0) {
+            return days.values[dayIndex];
+        }
+        return hourIndex >= 0 ? hours.values[hourIndex] : Double.NaN;
+    }
+
+    /**
+     * Daily USD prices of {@code assetCode} for each day of {@code [from, to]}; days without a stored price are
+     * {@code NaN} (callers decide how to fill gaps).
+     */
+    public double[] prices(String assetCode, LocalDate from, LocalDate to) {
+        if (assetCode == null || from == null || to == null || to.isBefore(from)) {
+            return new double[0];
+        }
+        ensureLoaded();
+        long firstDay = from.toEpochDay();
+        double[] out = new double[(int) (to.toEpochDay() - firstDay) + 1];
+        Arrays.fill(out, Double.NaN);
+        PriceSeries days = daily.get(indexKey(assetCode));
+        if (days == null) {
+            return out;
+        }
+        int start = days.ceilIndex(firstDay);
+        for (int i = start; i < days.keys.length; i += 1) {
+            long offset = days.keys[i] - firstDay;
+            if (offset >= out.length) {
+                break;
+            }
+            out[(int) offset] = days.values[i];
+        }
+        return out;
+    }
+
+    /**
+     * Appends {@code usdPrices} observed at {@code at} as that day's and that hour's price of each asset,
+     * unless the history already has one. Returns how many daily rows were new.
+     */
+    public int record(Map<String, BigDecimal> usdPrices, Instant at, String source) {
+        if (usdPrices == null || usdPrices.isEmpty() || at == null) {
+            return 0;
+        }
+        ensureLoaded();
+        LocalDate day = LocalDate.ofInstant(at, ZoneOffset.UTC);
+        Instant hour = at.truncatedTo(ChronoUnit.HOURS);
+        List<CryptoPriceHistoryRepository.DailyPrice> dailyRows = new ArrayList<>();
+        List<CryptoPriceHistoryRepository.HourlyPrice> hourlyRows = new ArrayList<>();
+        for (Map.Entry<String, BigDecimal> entry : usdPrices.entrySet()) {
+            String code = normalizeAsset(entry.getKey());
+            BigDecimal price = entry.getValue();
+            if (code == null || price == null || price.signum() <= 0) {
+                continue;
+            }
+            dailyRows.add(new CryptoPriceHistoryRepository.DailyPrice(code, day, price, source));
+            hourlyRows.add(new CryptoPriceHistoryRepository.HourlyPrice(code, hour, price, source));
+        }
+        int written = repository.appendDailyPrices(dailyRows);
+        repository.appendHourlyPrices(hourlyRows);
+        long epochHour = Math.floorDiv(hour.getEpochSecond(), SECONDS_PER_HOUR);
+        for (CryptoPriceHistoryRepository.DailyPrice row : dailyRows) {
+            index(daily, row.assetCode(), day.toEpochDay(), row.priceUsd());
+            index(hourly, row.assetCode(), epochHour, row.priceUsd());
+        }
+        return written;
+    }
+
+    /**
+     * Queues the fetched USD prices for recording; when the queue is full the observation is dropped, since
+     * the next fetch or the nightly backfill covers the same day.
+     */
+    @EventListener
+    public void onRatesFetched(CryptoRatesFetchedEvent event) {
+        CryptoRatesProvider.CryptoRates rates = event == null ? null : event.rates();
+        if (rates == null || rates.rates() == null || !"USD".equalsIgnoreCase(rates.baseCurrency())) {
+            return;
+        }
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (CryptoRatesProvider.CryptoRate rate : rates.rates()) {
+            if (rate != null && rate.code() != null && rate.price() != null) {
+                prices.putIfAbsent(rate.code(), rate.price());
+            }
+        }
+        Instant at = rates.asOf() == null ? Instant.now(clock) : rates.asOf();
+        try {
+            recordExecutor.execute(() -> {
+                try {
+                    record(prices, at, "LIVE");
+                } catch (RuntimeException ex) {
+                    log.debug("Failed to record fetched crypto rates: {}", ex.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.debug("Skipped recording fetched crypto rates: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the index from the history tables so rows appended by other nodes become visible. Prices
+     * indexed locally meanwhile are kept.
+     */
+    @Scheduled(fixedDelayString = "${app.crypto.price-history.reload-ms:3600000}",
+            initialDelayString = "${app.crypto.price-history.reload-ms:3600000}")
+    public void reload() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            load(true);
+        } catch (RuntimeException ex) {
+            log.debug("Price history reload failed: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (recordExecutor instanceof ExecutorService service) {
+            service.shutdownNow();
+        }
+    }
+
+    @Scheduled(cron = "${app.crypto.price-history.backfill.cron:0 15 3 * * *}")
+    public void scheduledBackfill() {
+        if (backfillEnabled) {
+            backfill();
+        }
+    }
+
+    /**
+     * Fetches the missing days of the last {@code backfill.days} (up to yesterday) for each backfill asset, one
+     * provider call per asset spanning its first to last missing day. Returns how many rows were appended.
+     */
+    public int backfill() {
+        if (ratesProvider == null || backfillAssets.isEmpty()) {
+            return 0;
+        }
+        ensureLoaded();
+        LocalDate to = LocalDate.now(clock).minusDays(1);
+        LocalDate from = to.minusDays(backfillDays - 1L);
+        int appended = 0;
+        for (String code : backfillAssets) {
+            double[] known = prices(code, from, to);
+            int first = 0;
+            while (first < known.length && !Double.isNaN(known[first])) {
+                first += 1;
+            }
+            if (first == known.length) {
+                continue;
+            }
+            int last = known.length - 1;
+            while (!Double.isNaN(known[last])) {
+                last -= 1;
+            }
+            try {
+                List<CryptoPriceHistoryRepository.DailyPrice> rows = new ArrayList<>();
+                for (CryptoRatesProvider.HistoricalPrice price : ratesProvider.fetchDailyHistory(code, from.plusDays(first), from.plusDays(last))) {
+                    if (price != null && price.day() != null && price.priceUsd() != null && price.priceUsd().signum() > 0) {
+                        rows.add(new CryptoPriceHistoryRepository.DailyPrice(code, price.day(), price.priceUsd(), "BACKFILL"));
+                    }
+                }
+                appended += repository.appendDailyPrices(rows);
+                for (CryptoPriceHistoryRepository.DailyPrice row : rows) {
+                    index(daily, code, row.day().toEpochDay(), row.priceUsd());
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Price history backfill failed for {}: {}", code, ex.getMessage());
+            }
+        }
+        if (meterRegistry != null && appended > 0) {
+            meterRegistry.counter("crypto_price_history_backfilled").increment(appended);
+        }
+        return appended;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            load(false);
+            loaded = true;
+        }
+    }
+
+    /**
+     * Reads the indexed window of both tables. With {@code merge}, each loaded series is combined with the
+     * current one atomically per asset, so a price indexed by a concurrent {@link #record} is not lost.
+     */
+    private synchronized void load(boolean merge) {
+        LocalDate today = LocalDate.now(clock);
+        long firstDay = today.minusDays(indexDays).toEpochDay();
+        Map<String, PriceSeries.Builder> dailyRows = new HashMap<>();
+        repository.forEachDailyPrice(today.minusDays(indexDays), (code, day, price) ->
+                dailyRows.computeIfAbsent(normalizeAsset(code), ignored -> new PriceSeries.Builder())
+                        .add(day.toEpochDay(), price));
+        Map<String, PriceSeries.Builder> hourlyRows = new HashMap<>();
+        Instant hourlyFrom = Instant.now(clock).minus(hourlyIndexDays, ChronoUnit.DAYS);
+        long firstHour = Math.floorDiv(hourlyFrom.getEpochSecond(), SECONDS_PER_HOUR);
+        repository.forEachHourlyPrice(hourlyFrom, (code, hour, price) ->
+                hourlyRows.computeIfAbsent(normalizeAsset(code), ignored -> new PriceSeries.Builder())
+                        .add(Math.floorDiv(hour.getEpochSecond(), SECONDS_PER_HOUR), price));
+        replace(daily, dailyRows, merge, firstDay);
+        replace(hourly, hourlyRows, merge, firstHour);
+    }
+
+    private static void replace(Map<String, PriceSeries> target, Map<String, PriceSeries.Builder> rows, boolean merge, long firstKey) {
+        if (!merge) {
+            rows.forEach((code, builder) -> target.put(code, builder.build()));
+            return;
+        }
+        rows.forEach((code, builder) -> {
+            PriceSeries loaded = builder.build();
+            target.compute(code, (ignored, current) -> current == null ? loaded : loaded.union(current, firstKey));
+        });
+        for (String code : List.copyOf(target.keySet())) {
+            if (!rows.containsKey(code)) {
+                target.computeIfPresent(code, (ignored, current) -> current.union(null, firstKey));
+            }
+        }
+    }
+
+    private static ExecutorService recordPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64), runnable -> {
+            Thread thread = new Thread(runnable, "crypto-price-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static void index(Map<String, PriceSeries> target, String code, long key, BigDecimal price) {
+        double value = price.doubleValue();
+        target.compute(code, (ignored, series) -> series == null ? PriceSeries.of(key, value) : series.withIfAbsent(key, value));
+    }
+
+    private static String indexKey(String assetCode) {
+        // Codes from rates and working sets are usually upper-case already; skip the allocation then.
+        for (int i = 0; i < assetCode.length(); i += 1) {
+            char c = assetCode.charAt(i);
+            if (Character.isLowerCase(c) || Character.isWhitespace(c)) {
+                return normalizeAsset(assetCode);
+            }
+        }
+        return assetCode;
+    }
+
+    private static String normalizeAsset(String assetCode) {
+        if (assetCode == null || assetCode.isBlank()) {
+            return null;
+        }
+        return assetCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Immutable sorted (key, price) arrays of one asset; appends produce a new instance.
+     */
+    private static final class PriceSeries {
+
+        private final long[] keys;
+        private final double[] values;
+
+        private PriceSeries(long[] keys, double[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        static PriceSeries of(long key, double value) {
+            return new PriceSeries(new long[]{key}, new double[]{value});
+        }
+
+        /**
+         * Index of the last key {@code <= key}, or -1.
+         */
+        int floorIndex(long key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        /**
+         * Index of the first key {@code >= key}, or {@code keys.length}.
+         */
+        int ceilIndex(long key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        PriceSeries withIfAbsent(long key, double value) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return this;
+            }
+            int insertAt = -index - 1;
+            long[] nextKeys = new long[keys.length + 1];
+            double[] nextValues = new double[values.length + 1];
+            System.arraycopy(keys, 0, nextKeys, 0, insertAt);
+            System.arraycopy(values, 0, nextValues, 0, insertAt);
+            nextKeys[insertAt] = key;
+            nextValues[insertAt] = value;
+            System.arraycopy(keys, insertAt, nextKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(values, insertAt, nextValues, insertAt + 1, values.length - insertAt);
+            return new PriceSeries(nextKeys, nextValues);
+        }
+
+        /**
+         * Union of this series and {@code other} without keys below {@code minKey}; {@code null} when nothing
+         * is left. Both hold the same price for a shared key (the tables are append-only), so this one wins.
+         */
+        PriceSeries union(PriceSeries other, long minKey) {
+            long[] otherKeys = other == null ? new long[0] : other.keys;
+            double[] otherValues = other == null ? new double[0] : other.values;
+            long[] nextKeys = new long[keys.length + otherKeys.length];
+            double[] nextValues = new double[nextKeys.length];
+            int i = ceilIndex(minKey);
+            int j = other == null ? 0 : other.ceilIndex(minKey);
+            int size = 0;
+            while (i < keys.length || j < otherKeys.length) {
+                boolean takeThis = j >= otherKeys.length || (i < keys.length && keys[i] <= otherKeys[j]);
+                if (takeThis) {
+                    if (j < otherKeys.length && otherKeys[j] == keys[i]) {
+                        j += 1;
+                    }
+                    nextKeys[size] = keys[i];
+                    nextValues[size] = values[i];
+                    i += 1;
+                } else {
+                    nextKeys[size] = otherKeys[j];
+                    nextValues[size] = otherValues[j];
+                    j += 1;
+                }
+                size += 1;
+            }
+            return size == 0 ? null : new PriceSeries(Arrays.copyOf(nextKeys, size), Arrays.copyOf(nextValues, size));
+        }
+
+        static final class Builder {
+
+            private long[] keys = new long[64];
+            private double[] values = new double[64];
+            private int size;
+
+            void add(long key, BigDecimal price) {
+                if (price == null || (size > 0 && keys[size - 1] == key)) {
+                    return;
+                }
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                keys[size] = key;
+                values[size] = price.doubleValue();
+                size += 1;
+            }
+
+            PriceSeries build() {
+                return new PriceSeries(Arrays.copyOf(keys, size), Arrays.copyOf(values, size));
+            }
+        }
+    }
+}
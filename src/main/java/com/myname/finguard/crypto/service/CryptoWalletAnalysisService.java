@@ -1,10 +1,13 @@
 package com.myname.finguard.crypto.service;
 
+import com.myname.finguard.common.cache.BoundedCache;
 import com.myname.finguard.common.constants.ErrorCodes;
 import com.myname.finguard.common.exception.ApiException;
 import com.myname.finguard.common.service.CryptoRatesProvider;
 import com.myname.finguard.common.service.CryptoRatesService;
 import com.myname.finguard.common.service.CurrencyService;
+import com.myname.finguard.common.service.FxRatesProvider;
+import com.myname.finguard.crypto.dto.CryptoAssetHolding;
 import com.myname.finguard.crypto.dto.CryptoWalletAnalysisInsightItem;
 import com.myname.finguard.crypto.dto.CryptoWalletAnalysisInsightsResponse;
 import com.myname.finguard.crypto.dto.CryptoWalletAnalysisSeriesResponse;
@@ -14,22 +17,28 @@ import com.myname.finguard.crypto.dto.CryptoWalletDto;
 import com.myname.finguard.crypto.dto.CryptoWalletSummaryResponse;
 import com.myname.finguard.crypto.model.CryptoWallet;
 import com.myname.finguard.crypto.model.CryptoWalletAnalysisJob;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobPriority;
 import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus;
 import com.myname.finguard.crypto.model.CryptoWalletAnalysisStage;
+import com.myname.finguard.crypto.model.WalletAnalysisWatermark;
 import com.myname.finguard.crypto.model.WalletDailySnapshot;
 import com.myname.finguard.crypto.model.WalletInsight;
-import com.myname.finguard.crypto.model.WalletTxEnriched;
+import com.myname.finguard.crypto.model.WalletRecurringCadence;
 import com.myname.finguard.crypto.model.WalletTxRaw;
 import com.myname.finguard.crypto.repository.CryptoWalletAnalysisJobRepository;
 import com.myname.finguard.crypto.repository.CryptoWalletRepository;
+import com.myname.finguard.crypto.repository.WalletAnalysisWatermarkRepository;
 import com.myname.finguard.crypto.repository.WalletDailySnapshotRepository;
 import com.myname.finguard.crypto.repository.WalletInsightRepository;
+import com.myname.finguard.crypto.repository.WalletRecurringCadenceRepository;
+import com.myname.finguard.crypto.repository.WalletTxBulkRepository;
 import com.myname.finguard.crypto.repository.WalletTxEnrichedRepository;
 import com.myname.finguard.crypto.repository.WalletTxRawRepository;
 import com.myname.finguard.transactions.model.Transaction;
 import com.myname.finguard.transactions.model.TransactionType;
 import com.myname.finguard.transactions.repository.TransactionRepository;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import java.math.BigDecimal;
@@ -40,22 +49,31 @@ import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -65,6 +83,13 @@ public class CryptoWalletAnalysisService {
 
     private static final Logger log = LoggerFactory.getLogger(CryptoWalletAnalysisService.class);
     private static final int DEFAULT_BACKFILL_DAYS = 365;
+    private static final int RECURRING_WINDOW_DAYS = 120;
+    private static final int INSIGHT_WINDOW_DAYS = 30;
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+    private static final double PNL_PCT_LIMIT = 999_999d;
+    private static final int MAX_RECURRING_INSIGHTS = 3;
+    private static final int MAX_ANOMALY_INSIGHTS = 3;
+    private static final long CANCEL_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
 
     private final CryptoWalletRepository cryptoWalletRepository;
     private final CryptoWalletAnalysisJobRepository jobRepository;
@@ -72,15 +97,30 @@ public class CryptoWalletAnalysisService {
     private final TransactionRepository transactionRepository;
     private final WalletTxRawRepository walletTxRawRepository;
     private final WalletTxEnrichedRepository walletTxEnrichedRepository;
+    private final WalletTxBulkRepository walletTxBulkRepository;
     private final WalletDailySnapshotRepository walletDailySnapshotRepository;
     private final WalletInsightRepository walletInsightRepository;
+    private final WalletAnalysisWatermarkRepository watermarkRepository;
+    private final WalletRecurringCadenceRepository recurringCadenceRepository;
+    private final CryptoPriceHistoryService priceHistoryService;
     private final CurrencyService currencyService;
     private final CryptoRatesService cryptoRatesService;
+    private final WalletAnalysisExecutor analysisExecutor;
+    private final WalletAnalysisJobQueue jobQueue;
+    private final WalletAnalysisJobStateRegistry jobStateRegistry;
+    private final WalletEventsProvider walletEventsProvider;
     private final MeterRegistry meterRegistry;
     private final long simulatedDelayMs;
+    private final boolean demoPacing;
     private final int backfillDays;
     private final long stalledJobAfterMs;
     private final boolean transactionFallbackEnabled;
+    private final boolean liveEventsEnabled;
+    private final int liveEventsMaxPages;
+    private final long userContextTtlNanos;
+    private final BoundedCache<Long, CompletableFuture<UserAnalysisContext>> userContexts;
+    private final WalletUsdSeriesCache seriesCache;
+    private final Set<Long> cancelledJobs = ConcurrentHashMap.newKeySet();
 
     public CryptoWalletAnalysisService(
             CryptoWalletRepository cryptoWalletRepository,
@@ -89,15 +129,29 @@ public class CryptoWalletAnalysisService {
             TransactionRepository transactionRepository,
             WalletTxRawRepository walletTxRawRepository,
             WalletTxEnrichedRepository walletTxEnrichedRepository,
+            WalletTxBulkRepository walletTxBulkRepository,
             WalletDailySnapshotRepository walletDailySnapshotRepository,
             WalletInsightRepository walletInsightRepository,
+            WalletAnalysisWatermarkRepository watermarkRepository,
+            WalletRecurringCadenceRepository recurringCadenceRepository,
+            CryptoPriceHistoryService priceHistoryService,
             CurrencyService currencyService,
             CryptoRatesService cryptoRatesService,
+            WalletAnalysisExecutor analysisExecutor,
+            WalletAnalysisJobQueue jobQueue,
+            WalletAnalysisJobStateRegistry jobStateRegistry,
+            WalletEventsProvider walletEventsProvider,
             ObjectProvider<MeterRegistry> meterRegistry,
             @Value("${app.crypto.analysis.simulated-delay-ms:300}") long simulatedDelayMs,
+            @Value("${app.crypto.analysis.demo-pacing:false}") boolean demoPacing,
             @Value("${app.crypto.analysis.backfill-days:" + DEFAULT_BACKFILL_DAYS + "}") int backfillDays,
             @Value("${app.crypto.analysis.stalled-after-ms:120000}") long stalledJobAfterMs,
-            @Value("${app.crypto.analysis.transaction-fallback-enabled:false}") boolean transactionFallbackEnabled
+            @Value("${app.crypto.analysis.transaction-fallback-enabled:false}") boolean transactionFallbackEnabled,
+            @Value("${app.crypto.analysis.user-context-ttl-ms:30000}") long userContextTtlMs,
+            @Value("${app.crypto.analysis.user-context-max-entries:10000}") int userContextMaxEntries,
+            @Value("${app.crypto.analysis.live-events.enabled:true}") boolean liveEventsEnabled,
+            @Value("${app.crypto.analysis.live-events.max-pages-per-run:20}") int liveEventsMaxPages,
+            @Value("${app.crypto.analysis.series-cache.max-entries:10000}") int seriesCacheMaxEntries
     ) {
         this.cryptoWalletRepository = cryptoWalletRepository;
         this.jobRepository = jobRepository;
@@ -105,15 +159,30 @@ public class CryptoWalletAnalysisService {
         this.transactionRepository = transactionRepository;
         this.walletTxRawRepository = walletTxRawRepository;
         this.walletTxEnrichedRepository = walletTxEnrichedRepository;
+        this.walletTxBulkRepository = walletTxBulkRepository;
         this.walletDailySnapshotRepository = walletDailySnapshotRepository;
         this.walletInsightRepository = walletInsightRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.recurringCadenceRepository = recurringCadenceRepository;
+        this.priceHistoryService = priceHistoryService;
         this.currencyService = currencyService;
         this.cryptoRatesService = cryptoRatesService;
+        this.analysisExecutor = analysisExecutor;
+        this.jobQueue = jobQueue;
+        this.jobStateRegistry = jobStateRegistry;
+        this.walletEventsProvider = walletEventsProvider;
         this.meterRegistry = meterRegistry.getIfAvailable();
         this.simulatedDelayMs = Math.max(0, simulatedDelayMs);
+        this.demoPacing = demoPacing;
         this.backfillDays = Math.max(30, backfillDays);
         this.stalledJobAfterMs = Math.max(30_000, stalledJobAfterMs);
         this.transactionFallbackEnabled = transactionFallbackEnabled;
+        this.userContextTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, userContextTtlMs));
+        this.userContexts = new BoundedCache<>(Math.max(1, userContextMaxEntries));
+        this.liveEventsEnabled = liveEventsEnabled;
+        this.liveEventsMaxPages = Math.max(1, liveEventsMaxPages);
+        this.seriesCache = new WalletUsdSeriesCache(seriesCacheMaxEntries);
+        this.seriesCache.bindTo(this.meterRegistry, "wallet_usd_series");
     }
 
     public void enqueueInitialAnalysis(CryptoWallet wallet) {
@@ -124,6 +193,99 @@ public class CryptoWalletAnalysisService {
         if (existing != null && !isTerminal(existing.getStatus())) {
             return;
         }
+        boolean claimLocally = analysisExecutor.claimableSlots() > 0;
+        CryptoWalletAnalysisJob saved = insertQueuedJob(newQueuedJob(wallet, claimLocally, CryptoWalletAnalysisJobPriority.INTERACTIVE));
+        if (saved == null) {
+            return;
+        }
+        if (claimLocally && !runAsync(saved, wallet.getUser().getId())) {
+            jobQueue.release(saved.getId());
+        }
+    }
+
+    /**
+     * Queues a background re-analysis of the wallet unless it has a job in flight or one that finished after
+     * {@code freshAfter}. The pipeline is incremental through its watermarks; the job is left unclaimed so
+     * {@link #dispatchQueuedJobs()} picks it up when a worker is free. Returns whether a job was queued.
+     */
+    public boolean enqueueRefresh(CryptoWallet wallet, Instant freshAfter) {
+        if (wallet == null || wallet.getId() == null || wallet.getUser() == null || wallet.getUser().getId() == null) {
+            return false;
+        }
+        CryptoWalletAnalysisJob existing = latestJob(wallet.getUser().getId(), wallet.getId());
+        if (existing != null && !isTerminal(existing.getStatus())) {
+            return false;
+        }
+        if (existing != null && freshAfter != null && existing.getFinishedAt() != null && existing.getFinishedAt().isAfter(freshAfter)) {
+            return false;
+        }
+        return insertQueuedJob(newQueuedJob(wallet, false, CryptoWalletAnalysisJobPriority.BACKGROUND)) != null;
+    }
+
+    /**
+     * Queues analysis for every active wallet of the user that has no job in flight. The user's base
+     * currency, wallet summary and rates are resolved once and shared by all of the wallet pipelines, which
+     * then run in parallel on the analysis executor (bounded by its per-user concurrency cap). Each wallet
+     * still gets exactly one job row. Returns the ids of the wallets that were queued.
+     */
+    public List<Long> enqueueUserAnalysis(Long userId) {
+        if (userId == null) {
+            return List.of();
+        }
+        List<CryptoWallet> wallets = cryptoWalletRepository.findByUserIdAndArchivedFalseOrderByCreatedAtDesc(userId);
+        if (wallets.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> inFlight = new HashSet<>();
+        for (CryptoWalletAnalysisJob job : jobRepository.findByUserIdAndStatusIn(userId, EnumSet.of(
+                CryptoWalletAnalysisJobStatus.QUEUED,
+                CryptoWalletAnalysisJobStatus.RUNNING,
+                CryptoWalletAnalysisJobStatus.PARTIAL))) {
+            if (job != null && job.getWallet() != null) {
+                inFlight.add(job.getWallet().getId());
+            }
+        }
+
+        int slots = analysisExecutor.claimableSlots();
+        List<CryptoWalletAnalysisJob> jobs = new ArrayList<>();
+        for (CryptoWallet wallet : wallets) {
+            if (wallet == null || wallet.getId() == null || inFlight.contains(wallet.getId())) {
+                continue;
+            }
+            jobs.add(newQueuedJob(wallet, jobs.size() < slots, CryptoWalletAnalysisJobPriority.INTERACTIVE));
+        }
+        if (jobs.isEmpty()) {
+            return List.of();
+        }
+        List<CryptoWalletAnalysisJob> saved = new ArrayList<>(jobs.size());
+        for (CryptoWalletAnalysisJob job : jobs) {
+            CryptoWalletAnalysisJob inserted = insertQueuedJob(job);
+            if (inserted != null) {
+                saved.add(inserted);
+            }
+        }
+        if (saved.isEmpty()) {
+            return List.of();
+        }
+
+        // Drop the shared inputs so the first wallet pipeline rebuilds them off the request thread and the
+        // others join it.
+        userContexts.remove(userId);
+
+        List<Long> walletIds = new ArrayList<>(saved.size());
+        for (CryptoWalletAnalysisJob job : saved) {
+            walletIds.add(job.getWallet().getId());
+            if (job.getClaimedBy() != null && !runAsync(job, userId)) {
+                jobQueue.release(job.getId());
+            }
+        }
+        if (meterRegistry != null) {
+            DistributionSummary.builder("wallet_analysis_batch_size").register(meterRegistry).record(walletIds.size());
+        }
+        return walletIds;
+    }
+
+    private CryptoWalletAnalysisJob newQueuedJob(CryptoWallet wallet, boolean claimLocally, CryptoWalletAnalysisJobPriority priority) {
         CryptoWalletAnalysisJob job = new CryptoWalletAnalysisJob();
         job.setUser(wallet.getUser());
         job.setWallet(wallet);
@@ -132,14 +294,79 @@ public class CryptoWalletAnalysisService {
         job.setProgressPct(0);
         job.setErrorMessage(null);
         job.setLastSuccessfulStage(null);
-        CryptoWalletAnalysisJob saved = jobRepository.save(job);
-        runAsync(saved.getId());
+        job.setActiveWalletId(wallet.getId());
+        job.setPriority(priority);
+        if (claimLocally) {
+            job.setClaimedBy(jobQueue.nodeId());
+            job.setClaimedAt(Instant.now());
+        }
+        return job;
+    }
+
+    /**
+     * Inserts a new active job. The unique active-job key makes the insert the claim: when another request
+     * or node queued a job for the wallet first, this returns {@code null} instead of a duplicate.
+     */
+    private CryptoWalletAnalysisJob insertQueuedJob(CryptoWalletAnalysisJob job) {
+        try {
+            return jobRepository.save(job);
+        } catch (DataIntegrityViolationException ex) {
+            if (meterRegistry != null) {
+                Counter.builder("wallet_analysis_job_dedup").register(meterRegistry).increment();
+            }
+            log.debug("Wallet analysis job already active for walletId={}", job.getActiveWalletId());
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the wallet's active analysis job and returns the resulting status. A pipeline running on any
+     * node stops at its next stage or batch boundary without writing further results.
+     */
+    public CryptoWalletAnalysisStatusResponse cancel(Long userId, Long walletId) {
+        requireWallet(userId, walletId);
+        cancelActiveJobs(userId, walletId);
+        return statusResponse(latestJobState(userId, walletId));
+    }
+
+    /**
+     * Cancels the wallet's active job without checking that the wallet exists, e.g. right before it is
+     * deleted. Returns whether a job was cancelled.
+     */
+    public boolean cancelActiveJobs(Long userId, Long walletId) {
+        if (userId == null || walletId == null) {
+            return false;
+        }
+        WalletAnalysisJobStateRegistry.JobState running = jobStateRegistry.findActive(userId, walletId).orElse(null);
+        if (running != null) {
+            // Signal the local run, then write the cancel through the registry so progress streams see it.
+            cancelledJobs.add(running.jobId());
+            jobStateRegistry.update(running.jobId(), CryptoWalletAnalysisJobStatus.CANCELLED, null, running.progressPct(),
+                    "Analysis cancelled", false, true, null, null);
+        }
+        boolean cancelled = jobRepository.cancelActive(walletId, userId, Instant.now()) > 0 || running != null;
+        if (cancelled && meterRegistry != null) {
+            Counter.builder("wallet_analysis_cancelled").tag("phase", "requested").register(meterRegistry).increment();
+        }
+        return cancelled;
     }
 
     public CryptoWalletAnalysisStatusResponse status(Long userId, Long walletId) {
+        return statusResponse(currentJobState(userId, walletId));
+    }
+
+    /**
+     * State of the wallet's latest analysis job, enqueueing the initial analysis when the wallet has none.
+     * Jobs running on this node are answered from memory without touching the database.
+     */
+    WalletAnalysisJobStateRegistry.JobState currentJobState(Long userId, Long walletId) {
         if (userId == null || walletId == null) {
             throw walletNotFound();
         }
+        WalletAnalysisJobStateRegistry.JobState active = jobStateRegistry.findActive(userId, walletId).orElse(null);
+        if (active != null) {
+            return active;
+        }
         CryptoWallet wallet = cryptoWalletRepository.findByIdAndUserId(walletId, userId)
                 .orElseThrow(this::walletNotFound);
 
@@ -148,7 +375,23 @@ public class CryptoWalletAnalysisService {
             enqueueInitialAnalysis(wallet);
             latest = latestJob(userId, walletId);
         }
-        if (latest == null) {
+        return latest == null ? null : WalletAnalysisJobStateRegistry.JobState.of(latest);
+    }
+
+    /**
+     * Like {@link #currentJobState(Long, Long)} for an already authorized wallet, without enqueueing.
+     */
+    WalletAnalysisJobStateRegistry.JobState latestJobState(Long userId, Long walletId) {
+        WalletAnalysisJobStateRegistry.JobState active = jobStateRegistry.findActive(userId, walletId).orElse(null);
+        if (active != null) {
+            return active;
+        }
+        CryptoWalletAnalysisJob latest = latestJob(userId, walletId);
+        return latest == null ? null : WalletAnalysisJobStateRegistry.JobState.of(latest);
+    }
+
+    CryptoWalletAnalysisStatusResponse statusResponse(WalletAnalysisJobStateRegistry.JobState state) {
+        if (state == null) {
             return new CryptoWalletAnalysisStatusResponse(
                     CryptoWalletAnalysisJobStatus.QUEUED.name(),
                     0,
@@ -158,11 +401,11 @@ public class CryptoWalletAnalysisService {
                     null,
                     false,
                     null,
-                    null
+                    null,
+                    Map.of()
             );
         }
-
-        return toResponse(latest);
+        return toResponse(state);
     }
 
     public CryptoWalletAnalysisSummaryResponse summary(Long userId, Long walletId) {
@@ -234,13 +477,12 @@ public class CryptoWalletAnalysisService {
     }
 
     public CryptoWalletAnalysisSeriesResponse series(Long userId, Long walletId, String window) {
-        requireWallet(userId, walletId);
+        CryptoWallet wallet = requireWallet(userId, walletId);
         Instant now = Instant.now();
         int windowDays = parseWindowDays(window);
         String normalizedWindow = normalizeWindow(windowDays);
-
-        CryptoWalletSummaryResponse walletSummary = cryptoWalletService.walletsSummary(userId);
-        String baseCurrency = normalizeCurrency(walletSummary == null ? null : walletSummary.baseCurrency());
+        // The base currency comes from the user row: valuing the wallets here would call balance providers.
+        String baseCurrency = normalizeCurrency(wallet.getUser() == null ? null : wallet.getUser().getBaseCurrency());
 
         List<CryptoWalletAnalysisSeriesResponse.SeriesPoint> fromSnapshots = buildSeriesFromSnapshots(walletId, baseCurrency, windowDays, now);
         if (!fromSnapshots.isEmpty()) {
@@ -257,15 +499,32 @@ public class CryptoWalletAnalysisService {
         return jobRepository.findTopByWalletIdAndUserIdOrderByCreatedAtDesc(walletId, userId).orElse(null);
     }
 
-    private void runAsync(Long jobId) {
+    private boolean runAsync(CryptoWalletAnalysisJob job, Long userId) {
+        Long jobId = job == null ? null : job.getId();
         if (jobId == null) {
+            return false;
+        }
+        return analysisExecutor.submit(jobId, userId, job.getPriority(), () -> runPipeline(jobId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.crypto.analysis.queue-poll-ms:2000}")
+    public void dispatchQueuedJobs() {
+        int slots = analysisExecutor.claimableSlots();
+        if (slots <= 0) {
             return;
         }
-        CompletableFuture.runAsync(() -> runPipeline(jobId))
-                .exceptionally(ex -> {
-                    log.debug("Wallet analysis async task failed for jobId={}: {}", jobId, ex.getMessage());
-                    return null;
-                });
+        List<Long> claimed = jobQueue.claimQueued(slots, Instant.now().minusMillis(stalledJobAfterMs));
+        if (claimed.isEmpty()) {
+            return;
+        }
+        for (CryptoWalletAnalysisJob job : jobRepository.findAllById(claimed)) {
+            if (job == null || job.getId() == null || job.getUser() == null) {
+                continue;
+            }
+            if (!runAsync(job, job.getUser().getId()) && !analysisExecutor.isTracked(job.getId())) {
+                jobQueue.release(job.getId());
+            }
+        }
     }
 
     @Scheduled(fixedDelayString = "${app.crypto.analysis.recover-fixed-delay-ms:45000}")
@@ -275,14 +534,18 @@ public class CryptoWalletAnalysisService {
                 EnumSet.of(CryptoWalletAnalysisJobStatus.QUEUED, CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisJobStatus.PARTIAL),
                 threshold
         );
+        boolean requeued = false;
         for (CryptoWalletAnalysisJob job : stale) {
-            if (job == null || job.getId() == null) {
+            if (job == null || job.getId() == null || analysisExecutor.isTracked(job.getId())) {
                 continue;
             }
             log.debug("Resuming stale wallet analysis jobId={} walletId={} stage={}",
                     job.getId(),
                     job.getWallet() == null ? null : job.getWallet().getId(),
                     job.getStage());
+            jobStateRegistry.forget(job.getId());
+            // Recovered work yields to users who are waiting on a fresh analysis.
+            jobRepository.updatePriority(job.getId(), CryptoWalletAnalysisJobPriority.BACKGROUND);
             updateJob(job.getId(), CryptoWalletAnalysisJobStatus.QUEUED,
                     job.getStage() == null ? CryptoWalletAnalysisStage.FETCH_TX : job.getStage(),
                     Math.max(0, Math.min(job.getProgressPct(), 98)),
@@ -290,54 +553,82 @@ public class CryptoWalletAnalysisService {
                     job.getStartedAt() == null,
                     false,
                     job.getLastSuccessfulStage());
-            runAsync(job.getId());
+            jobQueue.release(job.getId());
+            requeued = true;
+        }
+        if (requeued) {
+            dispatchQueuedJobs();
         }
     }
 
     protected void runPipeline(Long jobId) {
         Timer.Sample sample = meterRegistry == null ? null : Timer.start(meterRegistry);
+        StageProgress progress = new StageProgress(jobId);
         CryptoWalletAnalysisStage failedAt = CryptoWalletAnalysisStage.FETCH_TX;
         try {
+            // Only the node still holding the claim of a QUEUED job may start it; a job that was reclaimed
+            // elsewhere, cancelled or already finished is skipped.
+            if (jobRepository.markRunning(jobId, jobQueue.nodeId(), Instant.now()) == 0) {
+                recordSkippedStart();
+                return;
+            }
             CryptoWalletAnalysisJob job = jobRepository.findById(jobId).orElse(null);
             if (job == null || job.getWallet() == null || job.getUser() == null) {
                 return;
             }
+            jobStateRegistry.track(job);
 
             Long userId = job.getUser().getId();
             Long walletId = job.getWallet().getId();
             Instant now = Instant.now();
-            String baseCurrency = resolveBaseCurrency(userId);
+            UserAnalysisContext context = userContext(userId);
             CryptoWallet wallet = job.getWallet();
+            WalletAnalysisWatermark watermark = loadWatermark(wallet);
 
             failedAt = CryptoWalletAnalysisStage.FETCH_TX;
-            updateJob(jobId, CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.FETCH_TX, 8, null, true, false, job.getLastSuccessfulStage());
-            int rawCount = ingestRawWalletEvents(wallet, baseCurrency, now);
+            progress.enter(CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.FETCH_TX, 8, true, job.getLastSuccessfulStage());
+            long stageStartedAt = System.nanoTime();
+            int rawCount = ingestRawWalletEvents(wallet, context, watermark, progress, now);
             if (rawCount == 0 && transactionFallbackEnabled) {
-                rawCount += ingestRawTransactionsFallback(userId, wallet, baseCurrency, now);
+                rawCount += ingestRawTransactionsFallback(userId, wallet, context, watermark, now);
             }
-            sleepStep();
+            watermark = watermarkRepository.save(watermark);
+            recordStageThroughput("raw", rawCount, stageStartedAt);
+            progress.complete(CryptoWalletAnalysisStage.FETCH_TX, stageStartedAt);
 
             failedAt = CryptoWalletAnalysisStage.ENRICH_TX;
-            updateJob(jobId, CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.ENRICH_TX, 30, null, false, false, CryptoWalletAnalysisStage.FETCH_TX);
-            int enrichedCount = enrichTransactions(userId, wallet, now);
-            sleepStep();
+            progress.enter(CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.ENRICH_TX, 30, false, CryptoWalletAnalysisStage.FETCH_TX);
+            stageStartedAt = System.nanoTime();
+            int enrichedCount = enrichTransactions(userId, wallet, watermark, now);
+            watermark = watermarkRepository.save(watermark);
+            recordStageThroughput("enriched", enrichedCount, stageStartedAt);
+            progress.complete(CryptoWalletAnalysisStage.ENRICH_TX, stageStartedAt);
 
             failedAt = CryptoWalletAnalysisStage.BUILD_SNAPSHOTS;
-            updateJob(jobId, CryptoWalletAnalysisJobStatus.PARTIAL, CryptoWalletAnalysisStage.BUILD_SNAPSHOTS, 58, null, false, false, CryptoWalletAnalysisStage.ENRICH_TX);
-            int snapshotsCount = buildSnapshots(userId, walletId, baseCurrency, now);
-            sleepStep();
+            progress.enter(CryptoWalletAnalysisJobStatus.PARTIAL, CryptoWalletAnalysisStage.BUILD_SNAPSHOTS, 58, false, CryptoWalletAnalysisStage.ENRICH_TX);
+            stageStartedAt = System.nanoTime();
+            WalletTxWorkingSet workingSet = loadWorkingSet(walletId, now);
+            int snapshotsCount = buildSnapshots(userId, walletId, context, watermark, workingSet, now);
+            watermarkRepository.save(watermark);
+            seriesCache.invalidate(walletId);
+            recordStageThroughput("snapshots", snapshotsCount, stageStartedAt);
+            progress.complete(CryptoWalletAnalysisStage.BUILD_SNAPSHOTS, stageStartedAt);
 
             failedAt = CryptoWalletAnalysisStage.DETECT_RECURRING;
-            updateJob(jobId, CryptoWalletAnalysisJobStatus.PARTIAL, CryptoWalletAnalysisStage.DETECT_RECURRING, 76, null, false, false, CryptoWalletAnalysisStage.BUILD_SNAPSHOTS);
-            RecurringCandidate recurring = detectRecurringFromEnriched(walletId, baseCurrency, now);
-            sleepStep();
+            progress.enter(CryptoWalletAnalysisJobStatus.PARTIAL, CryptoWalletAnalysisStage.DETECT_RECURRING, 76, false, CryptoWalletAnalysisStage.BUILD_SNAPSHOTS);
+            stageStartedAt = System.nanoTime();
+            List<RecurringCandidate> recurring = detectRecurring(wallet, watermark, workingSet, context.conversion(), now);
+            watermarkRepository.save(watermark);
+            progress.complete(CryptoWalletAnalysisStage.DETECT_RECURRING, stageStartedAt);
 
             failedAt = CryptoWalletAnalysisStage.BUILD_INSIGHTS;
-            updateJob(jobId, CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.BUILD_INSIGHTS, 90, null, false, false, CryptoWalletAnalysisStage.DETECT_RECURRING);
-            int insightsCount = persistInsights(userId, walletId, baseCurrency, recurring, now);
-            sleepStep();
+            progress.enter(CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.BUILD_INSIGHTS, 90, false, CryptoWalletAnalysisStage.DETECT_RECURRING);
+            stageStartedAt = System.nanoTime();
+            int insightsCount = persistInsights(userId, walletId, context, recurring, workingSet, now);
+            recordStageThroughput("insights", insightsCount, stageStartedAt);
+            progress.complete(CryptoWalletAnalysisStage.BUILD_INSIGHTS, stageStartedAt);
 
-            updateJob(jobId, CryptoWalletAnalysisJobStatus.DONE, CryptoWalletAnalysisStage.DONE, 100, null, false, true, CryptoWalletAnalysisStage.BUILD_INSIGHTS);
+            progress.enter(CryptoWalletAnalysisJobStatus.DONE, CryptoWalletAnalysisStage.DONE, 100, false, CryptoWalletAnalysisStage.BUILD_INSIGHTS);
 
             if (meterRegistry != null) {
                 Counter.builder("wallet_analysis_pipeline_rows")
@@ -357,19 +648,103 @@ public class CryptoWalletAnalysisService {
                         .register(meterRegistry)
                         .increment(insightsCount);
             }
+        } catch (PipelineCancelledException ex) {
+            jobStateRegistry.forget(jobId);
+            if (meterRegistry != null) {
+                Counter.builder("wallet_analysis_cancelled").tag("phase", "stopped").register(meterRegistry).increment();
+            }
+            log.debug("Wallet analysis pipeline cancelled for jobId={} at stage={}", jobId, failedAt);
         } catch (Exception ex) {
-            updateJob(jobId, CryptoWalletAnalysisJobStatus.FAILED, failedAt, 100, "Analysis failed", false, true, null);
+            progress.fail(failedAt);
             if (meterRegistry != null) {
                 Counter.builder("wallet_analysis_fail_rate").register(meterRegistry).increment();
             }
             log.debug("Wallet analysis pipeline failed for jobId={}: {}", jobId, ex.getMessage());
         } finally {
+            cancelledJobs.remove(jobId);
+            if (!demoPacing || simulatedDelayMs <= 0) {
+                // Paced runs stop being tracked when their replayed terminal transition is written.
+                jobStateRegistry.forget(jobId);
+            }
             if (sample != null) {
                 sample.stop(meterRegistry.timer("wallet_analysis_duration"));
             }
         }
     }
 
+    /**
+     * Publishes stage transitions of one pipeline run and collects measured stage durations. Stages always
+     * run back to back; in demo pacing mode the transitions are replayed on the executor's timer at
+     * {@code simulated-delay-ms} intervals so the UI can follow along without a worker thread sleeping.
+     */
+    private final class StageProgress {
+
+        private final Long jobId;
+        private final Map<CryptoWalletAnalysisStage, Long> durationsMs = new EnumMap<>(CryptoWalletAnalysisStage.class);
+        private long pacedDelayMs;
+        private long lastCancelCheckNanos = System.nanoTime() - CANCEL_CHECK_INTERVAL_NANOS;
+
+        private StageProgress(Long jobId) {
+            this.jobId = jobId;
+        }
+
+        void enter(
+                CryptoWalletAnalysisJobStatus status,
+                CryptoWalletAnalysisStage stage,
+                int progressPct,
+                boolean markStarted,
+                CryptoWalletAnalysisStage lastSuccessfulStage
+        ) {
+            checkpoint();
+            boolean markFinished = status == CryptoWalletAnalysisJobStatus.DONE;
+            String durations = formatStageDurations(durationsMs);
+            publish(() -> updateJob(jobId, status, stage, progressPct, null, markStarted, markFinished, lastSuccessfulStage, durations));
+        }
+
+        void complete(CryptoWalletAnalysisStage stage, long startedAtNanos) {
+            long elapsedNanos = Math.max(0, System.nanoTime() - startedAtNanos);
+            durationsMs.put(stage, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            if (meterRegistry != null) {
+                Timer.builder("wallet_analysis_stage_duration")
+                        .tag("stage", stage.name())
+                        .register(meterRegistry)
+                        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Stops the run when its job was cancelled: immediately when cancelled on this node, otherwise once
+         * the row shows it, polled at most every {@link #CANCEL_CHECK_INTERVAL_NANOS}.
+         */
+        void checkpoint() {
+            if (cancelledJobs.contains(jobId)) {
+                throw new PipelineCancelledException();
+            }
+            long nowNanos = System.nanoTime();
+            if (nowNanos - lastCancelCheckNanos < CANCEL_CHECK_INTERVAL_NANOS) {
+                return;
+            }
+            lastCancelCheckNanos = nowNanos;
+            if (jobRepository.existsByIdAndStatus(jobId, CryptoWalletAnalysisJobStatus.CANCELLED)) {
+                throw new PipelineCancelledException();
+            }
+        }
+
+        void fail(CryptoWalletAnalysisStage failedAt) {
+            String durations = formatStageDurations(durationsMs);
+            publish(() -> updateJob(jobId, CryptoWalletAnalysisJobStatus.FAILED, failedAt, 100, "Analysis failed", false, true, null, durations));
+        }
+
+        private void publish(Runnable update) {
+            if (!demoPacing || simulatedDelayMs <= 0) {
+                update.run();
+                return;
+            }
+            analysisExecutor.schedule(update, pacedDelayMs);
+            pacedDelayMs += simulatedDelayMs;
+        }
+    }
+
     protected void updateJob(
             Long jobId,
             CryptoWalletAnalysisJobStatus status,
@@ -391,180 +766,529 @@ public class CryptoWalletAnalysisService {
             boolean markStarted,
             boolean markFinished,
             CryptoWalletAnalysisStage lastSuccessfulStage
+    ) {
+        updateJob(jobId, status, stage, progressPct, errorMessage, markStarted, markFinished, lastSuccessfulStage, null);
+    }
+
+    protected void updateJob(
+            Long jobId,
+            CryptoWalletAnalysisJobStatus status,
+            CryptoWalletAnalysisStage stage,
+            int progressPct,
+            String errorMessage,
+            boolean markStarted,
+            boolean markFinished,
+            CryptoWalletAnalysisStage lastSuccessfulStage,
+            String stageDurationsMs
     ) {
         if (jobId == null) {
             return;
         }
-        CryptoWalletAnalysisJob job = jobRepository.findById(jobId).orElse(null);
-        if (job == null) {
+        if (jobStateRegistry.update(jobId, status, stage, progressPct, errorMessage, markStarted, markFinished, lastSuccessfulStage, stageDurationsMs)) {
             return;
         }
-        if (status != null) {
-            job.setStatus(status);
+        Instant now = Instant.now();
+        jobRepository.updateProgress(
+                jobId,
+                status,
+                stage,
+                lastSuccessfulStage,
+                Math.max(0, Math.min(progressPct, 100)),
+                errorMessage,
+                markStarted ? now : null,
+                markFinished ? now : null,
+                stageDurationsMs,
+                now,
+                0L
+        );
+    }
+
+    private void recordSkippedStart() {
+        if (meterRegistry != null) {
+            Counter.builder("wallet_analysis_start_skipped").register(meterRegistry).increment();
         }
-        if (stage != null) {
-            job.setStage(stage);
+    }
+
+    private void recordStageThroughput(String stage, int rows, long startedAtNanos) {
+        if (meterRegistry == null || rows <= 0) {
+            return;
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - startedAtNanos);
+        DistributionSummary.builder("wallet_analysis_pipeline_rows_per_second")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(rows * 1_000_000_000d / elapsedNanos);
+    }
+
+    /**
+     * Pages on-chain events into {@code wallet_tx_raw}, one batched upsert per page. Every run first scans
+     * forward from the block watermark to the chain head and saves the watermark after each page, so new
+     * transfers land on the next run whatever state the backfill is in. The newest-first backfill of older
+     * history then continues on its own saved cursor with the remaining page budget; the first backfill page
+     * of a wallet sets the block watermark to the head that pass started at.
+     */
+    private int ingestRawWalletEvents(
+            CryptoWallet wallet,
+            UserAnalysisContext context,
+            WalletAnalysisWatermark watermark,
+            StageProgress progress,
+            Instant now
+    ) {
+        if (!liveEventsEnabled || wallet.getNetwork() == null
+                || wallet.getAddressNormalized() == null || wallet.getAddressNormalized().isBlank()) {
+            return 0;
+        }
+        Instant notBefore = now.minus(backfillDays, ChronoUnit.DAYS);
+        int ingested = 0;
+        int page = 0;
+
+        Long sinceBlock = watermark.getRawBlockNumber();
+        if (sinceBlock != null) {
+            // Leave a page for a pending backfill so a busy chain cannot starve it.
+            int forwardPages = watermark.getRawCursor() == null ? liveEventsMaxPages : Math.max(1, liveEventsMaxPages - 1);
+            String cursor = null;
+            while (page < forwardPages) {
+                if (page++ > 0) {
+                    progress.checkpoint();
+                }
+                WalletEventsProvider.EventsPage events = fetchLiveEvents(wallet,
+                        WalletEventsProvider.PageRequest.forward(sinceBlock, cursor, notBefore));
+                if (events == null) {
+                    return ingested;
+                }
+                ingested += writeLiveEvents(wallet, context, watermark, events.events());
+                if (events.headBlock() != null && events.headBlock() > sinceBlock) {
+                    sinceBlock = events.headBlock();
+                    watermark.setRawBlockNumber(sinceBlock);
+                    watermarkRepository.save(watermark);
+                }
+                if (events.complete()) {
+                    break;
+                }
+                cursor = events.nextCursor();
+            }
+            if (watermark.getRawCursor() == null) {
+                return ingested;
+            }
+        }
+
+        String cursor = watermark.getRawCursor();
+        while (page < liveEventsMaxPages) {
+            if (page++ > 0) {
+                progress.checkpoint();
+            }
+            WalletEventsProvider.EventsPage events = fetchLiveEvents(wallet,
+                    WalletEventsProvider.PageRequest.backfill(cursor, notBefore));
+            if (events == null) {
+                break;
+            }
+            ingested += writeLiveEvents(wallet, context, watermark, events.events());
+            if (watermark.getRawBlockNumber() == null && events.headBlock() != null) {
+                watermark.setRawBlockNumber(events.headBlock());
+            }
+            cursor = events.nextCursor();
+            watermark.setRawCursor(cursor);
+            if (events.complete()) {
+                break;
+            }
+            watermarkRepository.save(watermark);
+        }
+        return ingested;
+    }
+
+    private WalletEventsProvider.EventsPage fetchLiveEvents(CryptoWallet wallet, WalletEventsProvider.PageRequest request) {
+        WalletEventsProvider.EventsPage events;
+        try {
+            events = walletEventsProvider.fetchPage(wallet.getNetwork(), wallet.getAddressNormalized(), request);
+        } catch (RuntimeException ex) {
+            recordLiveEventsPage("failed");
+            log.debug("Live wallet events unavailable for walletId={}: {}", wallet.getId(), ex.getMessage());
+            return null;
+        }
+        if (events != null) {
+            recordLiveEventsPage("ok");
+        }
+        return events;
+    }
+
+    private int writeLiveEvents(
+            CryptoWallet wallet,
+            UserAnalysisContext context,
+            WalletAnalysisWatermark watermark,
+            List<WalletEventsProvider.WalletEvent> events
+    ) {
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+        Long walletUserId = wallet.getUser() == null ? null : wallet.getUser().getId();
+        String network = wallet.getNetwork().name();
+        List<WalletTxBulkRepository.RawRow> batch = new ArrayList<>(events.size());
+        Instant to = null;
+        for (WalletEventsProvider.WalletEvent event : events) {
+            if (event == null || event.txHash() == null || event.txAt() == null || event.amount() == null) {
+                continue;
+            }
+            String assetCode = normalizeCurrency(event.assetCode());
+            batch.add(new WalletTxBulkRepository.RawRow(
+                    walletUserId,
+                    wallet.getId(),
+                    network,
+                    event.txHash(),
+                    event.logIndex(),
+                    event.txAt(),
+                    event.blockNumber(),
+                    "OUT".equalsIgnoreCase(event.direction()) ? "OUT" : "IN",
+                    assetCode,
+                    abs(event.amount()),
+                    scaleAmount(liveEventUsd(abs(event.amount()), assetCode, context.conversion()), 8),
+                    scaleAmount(liveEventUsd(abs(event.fee()), assetCode, context.conversion()), 8),
+                    event.counterparty(),
+                    "LIVE",
+                    null
+            ));
+            to = to == null || event.txAt().isAfter(to) ? event.txAt() : to;
         }
-        if (lastSuccessfulStage != null) {
-            job.setLastSuccessfulStage(lastSuccessfulStage);
+        if (batch.isEmpty()) {
+            return 0;
         }
-        job.setProgressPct(Math.max(0, Math.min(progressPct, 100)));
-        job.setErrorMessage(errorMessage);
-        if (markStarted && job.getStartedAt() == null) {
-            job.setStartedAt(Instant.now());
+        WalletTxBulkRepository.WriteResult result = walletTxBulkRepository.upsertRaw(wallet.getId(), batch);
+        if (watermark.getRawTxAt() == null || to.isAfter(watermark.getRawTxAt())) {
+            watermark.setRawTxAt(to);
         }
-        if (markFinished) {
-            job.setFinishedAt(Instant.now());
+        log.debug("Live raw ingest for walletId={}: inserted={}, updated={}, unchanged={}",
+                wallet.getId(), result.inserted(), result.updated(), result.unchanged());
+        return batch.size();
+    }
+
+    /**
+     * USD value of an on-chain amount: dollar stablecoins at par, native coins and wrapped ether at the
+     * cached crypto price, anything else left unvalued.
+     */
+    private BigDecimal liveEventUsd(BigDecimal amount, String assetCode, ConversionContext conversion) {
+        String code = "WETH".equals(assetCode) ? "ETH" : assetCode;
+        if ("USDC".equals(code) || "USDT".equals(code) || "DAI".equals(code)) {
+            return amount;
         }
-        jobRepository.save(job);
+        BigDecimal price = isCrypto(code) ? conversion.cryptoUsdPrices().get(code) : null;
+        return price == null ? BigDecimal.ZERO : amount.multiply(price);
     }
 
-    private int ingestRawWalletEvents(CryptoWallet wallet, String baseCurrency, Instant now) {
-        // Live wallet events provider is not wired yet in this iteration.
-        // Returning 0 keeps pipeline deterministic; optional transaction fallback remains emergency-only.
-        return 0;
+    private void recordLiveEventsPage(String result) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Counter.builder("wallet_analysis_live_event_pages")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
     }
 
-    private int ingestRawTransactionsFallback(Long userId, CryptoWallet wallet, String baseCurrency, Instant now) {
+    private int ingestRawTransactionsFallback(
+            Long userId,
+            CryptoWallet wallet,
+            UserAnalysisContext context,
+            WalletAnalysisWatermark watermark,
+            Instant now
+    ) {
         Instant from = now.minus(backfillDays, ChronoUnit.DAYS);
         List<Transaction> rows = transactionRepository.findByUserIdAndTransactionDateBetweenOrderByTransactionDateDesc(userId, from, now);
         if (rows.isEmpty()) {
             return 0;
         }
 
-        ConversionContext conversion = conversionContext(baseCurrency, rows.stream().map(Transaction::getCurrency).toList());
-        int persisted = 0;
+        ConversionContext conversion = conversionFor(context, rows.stream().map(Transaction::getCurrency).toList());
+        Long walletUserId = wallet.getUser() == null ? userId : wallet.getUser().getId();
+        String network = wallet.getNetwork() == null ? "EVM" : wallet.getNetwork().name();
+        BigDecimal zeroFee = BigDecimal.ZERO.setScale(8, RoundingMode.HALF_UP);
+        List<WalletTxBulkRepository.RawRow> batch = new ArrayList<>(rows.size());
         for (Transaction tx : rows) {
             if (tx == null || tx.getTransactionDate() == null || tx.getAmount() == null || tx.getType() == null) {
                 continue;
             }
-            String txHash = "txn-" + tx.getId();
-            long logIndex = 0;
-            WalletTxRaw raw = walletTxRawRepository.findByWalletIdAndTxHashAndLogIndex(wallet.getId(), txHash, logIndex).orElseGet(WalletTxRaw::new);
-            raw.setUser(wallet.getUser());
-            raw.setWallet(wallet);
-            raw.setNetwork(wallet.getNetwork() == null ? "EVM" : wallet.getNetwork().name());
-            raw.setTxHash(txHash);
-            raw.setLogIndex(logIndex);
-            raw.setTxAt(tx.getTransactionDate());
-            raw.setBlockNumber(null);
-            raw.setDirection(tx.getType() == TransactionType.INCOME ? "IN" : "OUT");
-            raw.setAssetCode(normalizeCurrency(tx.getCurrency()));
-            raw.setAmount(abs(tx.getAmount()));
-            raw.setAmountUsd(scaleAmount(toUsd(abs(tx.getAmount()), tx.getCurrency(), conversion), 8));
-            raw.setFeeUsd(BigDecimal.ZERO.setScale(8, RoundingMode.HALF_UP));
-            raw.setCounterparty(normalizeCounterparty(tx.getDescription()));
-            raw.setSource("TRANSACTION_FALLBACK");
-            raw.setRawPayload(null);
-            walletTxRawRepository.save(raw);
-            persisted += 1;
-        }
-        return persisted;
-    }
-
-    private int enrichTransactions(Long userId, CryptoWallet wallet, Instant now) {
+            batch.add(new WalletTxBulkRepository.RawRow(
+                    walletUserId,
+                    wallet.getId(),
+                    network,
+                    "txn-" + tx.getId(),
+                    0L,
+                    tx.getTransactionDate(),
+                    null,
+                    tx.getType() == TransactionType.INCOME ? "IN" : "OUT",
+                    normalizeCurrency(tx.getCurrency()),
+                    abs(tx.getAmount()),
+                    scaleAmount(toUsd(abs(tx.getAmount()), tx.getCurrency(), conversion), 8),
+                    zeroFee,
+                    normalizeCounterparty(tx.getDescription()),
+                    "TRANSACTION_FALLBACK",
+                    null
+            ));
+        }
+        WalletTxBulkRepository.WriteResult result = walletTxBulkRepository.upsertRaw(wallet.getId(), batch);
+        batch.stream()
+                .map(WalletTxBulkRepository.RawRow::txAt)
+                .max(Comparator.naturalOrder())
+                .filter(latest -> watermark.getRawTxAt() == null || latest.isAfter(watermark.getRawTxAt()))
+                .ifPresent(watermark::setRawTxAt);
+        log.debug("Raw ingest for walletId={}: inserted={}, updated={}, unchanged={}",
+                wallet.getId(), result.inserted(), result.updated(), result.unchanged());
+        return batch.size();
+    }
+
+    /**
+     * Enriches raw rows changed since the wallet's enrichment watermark; the first run (no watermark)
+     * covers the whole backfill window.
+     */
+    private int enrichTransactions(Long userId, CryptoWallet wallet, WalletAnalysisWatermark watermark, Instant now) {
         Instant from = now.minus(backfillDays, ChronoUnit.DAYS);
-        List<WalletTxRaw> rawRows = walletTxRawRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(wallet.getId(), from, now);
+        Instant readStartedAt = Instant.now();
+        List<WalletTxRaw> rawRows = watermark.getEnrichedThrough() == null
+                ? walletTxRawRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(wallet.getId(), from, now)
+                : walletTxRawRepository.findByWalletIdAndUpdatedAtAfterOrderByTxAtAsc(wallet.getId(), watermark.getEnrichedThrough());
         if (rawRows.isEmpty()) {
+            watermark.setEnrichedThrough(readStartedAt);
             return 0;
         }
 
-        int persisted = 0;
+        Long walletUserId = wallet.getUser() == null ? userId : wallet.getUser().getId();
+        BigDecimal confidence = BigDecimal.valueOf(0.5).setScale(4, RoundingMode.HALF_UP);
+        List<WalletTxBulkRepository.EnrichedRow> batch = new ArrayList<>(rawRows.size());
         for (WalletTxRaw raw : rawRows) {
-            if (raw == null || raw.getTxHash() == null) {
+            if (raw == null || raw.getTxHash() == null || raw.getTxAt() == null || raw.getTxAt().isBefore(from)) {
                 continue;
             }
-            WalletTxEnriched enriched = walletTxEnrichedRepository
-                    .findByWalletIdAndTxHashAndLogIndex(wallet.getId(), raw.getTxHash(), raw.getLogIndex())
-                    .orElseGet(WalletTxEnriched::new);
-
-            enriched.setUser(wallet.getUser());
-            enriched.setWallet(wallet);
-            enriched.setRawTx(raw);
-            enriched.setTxHash(raw.getTxHash());
-            enriched.setLogIndex(raw.getLogIndex());
-            enriched.setTxAt(raw.getTxAt());
-            enriched.setDirection(raw.getDirection());
-            enriched.setAssetCode(raw.getAssetCode());
-            enriched.setAmount(scaleAmount(raw.getAmount(), 8));
-            enriched.setAmountUsd(scaleAmount(raw.getAmountUsd(), 8));
-            enriched.setCategory("OUT".equalsIgnoreCase(raw.getDirection()) ? "expense" : "income");
-            enriched.setCounterpartyNormalized(normalizeRecurringKey(raw.getCounterparty()));
-            enriched.setRecurringCandidate(false);
-            enriched.setConfidence(BigDecimal.valueOf(0.5).setScale(4, RoundingMode.HALF_UP));
-            enriched.setSource(raw.getSource() == null ? "ESTIMATED" : raw.getSource());
-            walletTxEnrichedRepository.save(enriched);
-            persisted += 1;
-        }
-        return persisted;
-    }
-
-    private int buildSnapshots(Long userId, Long walletId, String baseCurrency, Instant now) {
-        Instant from = now.minus(backfillDays, ChronoUnit.DAYS);
-        List<WalletTxEnriched> enrichedRows = walletTxEnrichedRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(walletId, from, now);
+            batch.add(new WalletTxBulkRepository.EnrichedRow(
+                    walletUserId,
+                    wallet.getId(),
+                    raw.getId(),
+                    raw.getTxHash(),
+                    raw.getLogIndex(),
+                    raw.getTxAt(),
+                    raw.getDirection(),
+                    raw.getAssetCode(),
+                    scaleAmount(raw.getAmount(), 8),
+                    scaleAmount(raw.getAmountUsd(), 8),
+                    "OUT".equalsIgnoreCase(raw.getDirection()) ? "expense" : "income",
+                    normalizeRecurringKey(raw.getCounterparty()),
+                    false,
+                    confidence,
+                    raw.getSource() == null ? "ESTIMATED" : raw.getSource()
+            ));
+        }
+        if (batch.isEmpty()) {
+            watermark.setEnrichedThrough(readStartedAt);
+            return 0;
+        }
+        WalletTxBulkRepository.WriteResult result = walletTxBulkRepository.upsertEnriched(wallet.getId(), batch);
+        log.debug("Enrichment for walletId={}: inserted={}, updated={}, unchanged={}",
+                wallet.getId(), result.inserted(), result.updated(), result.unchanged());
+        watermark.setEnrichedThrough(readStartedAt);
+        return batch.size();
+    }
+
+    /**
+     * Rebuilds daily snapshots from the first day touched by enriched rows changed since the snapshot
+     * watermark (and at least the last snapshotted day) up to today. Per-asset holdings are rolled back from
+     * the wallet's current quantities and valued with the local daily price history, so portfolio values and
+     * PnL follow price moves; the result stays anchored on the current wallet value. Days before the rebuilt
+     * range keep their stored values.
+     */
+    private int buildSnapshots(
+            Long userId,
+            Long walletId,
+            UserAnalysisContext context,
+            WalletAnalysisWatermark watermark,
+            WalletTxWorkingSet workingSet,
+            Instant now
+    ) {
+        LocalDate endDay = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        LocalDate startDay = endDay.minusDays(backfillDays - 1L);
+        Instant readStartedAt = Instant.now();
+        LocalDate rebuildFrom = snapshotRebuildStart(walletId, watermark, startDay);
+        boolean incremental = rebuildFrom.isAfter(startDay);
+
+        Instant from = incremental
+                ? rebuildFrom.atStartOfDay(ZoneOffset.UTC).toInstant()
+                : now.minus(backfillDays, ChronoUnit.DAYS);
+        WalletTxWorkingSet.Window window = workingSet.window(from, now);
         CryptoWallet wallet = cryptoWalletRepository.findByIdAndUserId(walletId, userId).orElseThrow(this::walletNotFound);
-        String snapshotSource = resolveSnapshotSource(enrichedRows);
-
-        Map<LocalDate, BigDecimal> inflowUsdByDay = new HashMap<>();
-        Map<LocalDate, BigDecimal> outflowUsdByDay = new HashMap<>();
-        for (WalletTxEnriched tx : enrichedRows) {
-            if (tx == null || tx.getTxAt() == null) {
+        String snapshotSource = incremental && window.isEmpty()
+                ? walletDailySnapshotRepository.findTopByWalletIdOrderByDayDesc(walletId)
+                        .map(WalletDailySnapshot::getSource)
+                        .orElse("ESTIMATED")
+                : resolveSnapshotSource(workingSet, window);
+
+        int days = (int) (endDay.toEpochDay() - rebuildFrom.toEpochDay()) + 1;
+        long[] inflowByDay = new long[days];
+        long[] outflowByDay = new long[days];
+        long firstEpochDay = rebuildFrom.toEpochDay();
+        for (int i = window.start(); i < window.end(); i += 1) {
+            long amount = FixedUsd.abs(workingSet.amountUsdScaled(i));
+            if (amount == 0) {
                 continue;
             }
-            LocalDate day = LocalDate.ofInstant(tx.getTxAt(), ZoneOffset.UTC);
-            BigDecimal amountUsd = scaleAmount(tx.getAmountUsd(), 8);
-            if (amountUsd.signum() == 0) {
+            int dayIndex = (int) (Math.floorDiv(workingSet.txAtMicros(i), MICROS_PER_DAY) - firstEpochDay);
+            if (dayIndex < 0 || dayIndex >= days) {
                 continue;
             }
-            if ("OUT".equalsIgnoreCase(tx.getDirection())) {
-                outflowUsdByDay.merge(day, amountUsd.abs(), BigDecimal::add);
+            if (workingSet.isOutflow(i)) {
+                outflowByDay[dayIndex] = FixedUsd.add(outflowByDay[dayIndex], amount);
             } else {
-                inflowUsdByDay.merge(day, amountUsd.abs(), BigDecimal::add);
+                inflowByDay[dayIndex] = FixedUsd.add(inflowByDay[dayIndex], amount);
             }
         }
 
-        BigDecimal currentValueUsd = currentWalletUsd(userId, walletId, baseCurrency);
-        LocalDate endDay = LocalDate.ofInstant(now, ZoneOffset.UTC);
-        LocalDate startDay = endDay.minusDays(backfillDays - 1L);
-
-        Map<LocalDate, WalletDailySnapshot> snapshots = new LinkedHashMap<>();
-        BigDecimal running = currentValueUsd;
-        for (LocalDate day = endDay; !day.isBefore(startDay); day = day.minusDays(1)) {
-            BigDecimal inflow = scaleAmount(inflowUsdByDay.get(day), 8);
-            BigDecimal outflow = scaleAmount(outflowUsdByDay.get(day), 8);
-            BigDecimal net = inflow.subtract(outflow).setScale(8, RoundingMode.HALF_UP);
-
-            WalletDailySnapshot snapshot = walletDailySnapshotRepository.findByWalletIdAndDay(walletId, day)
-                    .orElseGet(WalletDailySnapshot::new);
-            snapshot.setUser(wallet.getUser());
-            snapshot.setWallet(wallet);
-            snapshot.setDay(day);
-            snapshot.setPortfolioUsd(scaleAmount(running.max(BigDecimal.ZERO), 8));
-            snapshot.setInflowUsd(inflow);
-            snapshot.setOutflowUsd(outflow);
-            snapshot.setNetFlowUsd(net);
-            snapshot.setPnlUsd(net);
-            snapshot.setPnlPct(BigDecimal.ZERO.setScale(6, RoundingMode.HALF_UP));
-            snapshot.setSource(snapshotSource);
-            snapshots.put(day, snapshot);
-
-            running = running.subtract(net);
-        }
-
-        for (WalletDailySnapshot snapshot : snapshots.values()) {
-            walletDailySnapshotRepository.save(snapshot);
+        // Column 0 is the day before the rebuilt range, so the first rebuilt day has a previous value for PnL.
+        WalletHoldingsValuation valuation = valueHoldings(wallet, context, workingSet, window, rebuildFrom.minusDays(1), days + 1);
+        long[] valueByDay = valuation.value(FixedUsd.of(currentWalletUsd(context, walletId)));
+
+        Long walletUserId = wallet.getUser() == null ? userId : wallet.getUser().getId();
+        List<WalletTxBulkRepository.SnapshotRow> snapshots = new ArrayList<>(days);
+        for (LocalDate day = endDay; !day.isBefore(rebuildFrom); day = day.minusDays(1)) {
+            int dayIndex = (int) (day.toEpochDay() - firstEpochDay);
+            long net = FixedUsd.subtract(inflowByDay[dayIndex], outflowByDay[dayIndex]);
+            long value = valueByDay[dayIndex + 1];
+            long previous = valueByDay[dayIndex];
+            long pnl = FixedUsd.subtract(FixedUsd.subtract(value, previous), net);
+            snapshots.add(new WalletTxBulkRepository.SnapshotRow(
+                    walletUserId,
+                    walletId,
+                    day,
+                    FixedUsd.toDecimal(value),
+                    FixedUsd.toDecimal(inflowByDay[dayIndex]),
+                    FixedUsd.toDecimal(outflowByDay[dayIndex]),
+                    FixedUsd.toDecimal(net),
+                    FixedUsd.toDecimal(pnl),
+                    pnlPct(pnl, previous),
+                    snapshotSource,
+                    valuation.packedHoldings(dayIndex + 1)
+            ));
         }
+
+        WalletTxBulkRepository.WriteResult result = walletTxBulkRepository.upsertSnapshots(walletId, rebuildFrom, endDay, snapshots);
+        log.debug("Snapshots for walletId={}: inserted={}, updated={}, unchanged={}",
+                walletId, result.inserted(), result.updated(), result.unchanged());
+        watermark.setSnapshotsThrough(readStartedAt);
+        watermark.setLastSnapshotDay(endDay);
         return snapshots.size();
     }
 
-    private String resolveSnapshotSource(List<WalletTxEnriched> rows) {
-        if (rows == null || rows.isEmpty()) {
+    /**
+     * Holdings over {@code days} days from {@code firstDay}, priced from the local price history index. Today's
+     * spot prices of the wallet's assets (including tokens only the portfolio providers quote) are appended to
+     * the history first, so it grows with every run.
+     */
+    private WalletHoldingsValuation valueHoldings(
+            CryptoWallet wallet,
+            UserAnalysisContext context,
+            WalletTxWorkingSet workingSet,
+            WalletTxWorkingSet.Window window,
+            LocalDate firstDay,
+            int days
+    ) {
+        Map<String, BigDecimal> spotUsd = new HashMap<>(context.conversion().cryptoUsdPrices());
+        cryptoUsdPrices(cryptoRatesService.cachedRates("USD")).forEach(spotUsd::putIfAbsent);
+        Map<String, BigDecimal> currentQuantities = new HashMap<>();
+        List<CryptoAssetHolding> holdings = null;
+        try {
+            holdings = cryptoWalletService.currentHoldings(wallet);
+        } catch (Exception ex) {
+            log.debug("Current holdings unavailable for walletId={}: {}", wallet.getId(), ex.getMessage());
+        }
+        if (holdings != null) {
+            for (CryptoAssetHolding holding : holdings) {
+                if (holding == null || holding.assetCode() == null || holding.quantity() == null) {
+                    continue;
+                }
+                currentQuantities.merge(holding.assetCode(), holding.quantity(), BigDecimal::add);
+                if (holding.priceUsd() != null && holding.priceUsd().signum() > 0) {
+                    spotUsd.putIfAbsent(holding.assetCode(), holding.priceUsd());
+                }
+            }
+        }
+
+        WalletHoldingsValuation valuation = WalletHoldingsValuation.rollBack(workingSet, window, firstDay.toEpochDay(), days, currentQuantities);
+        List<String> assetCodes = List.of(valuation.assetCodes());
+        if (assetCodes.isEmpty()) {
+            return valuation;
+        }
+        LocalDate lastDay = firstDay.plusDays(valuation.days() - 1L);
+        Map<String, BigDecimal> walletSpot = new HashMap<>();
+        for (String code : assetCodes) {
+            BigDecimal price = spotUsd.get(code);
+            if (price != null && price.signum() > 0) {
+                walletSpot.put(code, price);
+            }
+        }
+        try {
+            priceHistoryService.record(walletSpot, Instant.now(), "SPOT");
+        } catch (DataAccessException ex) {
+            log.debug("Failed to append spot prices for walletId={}: {}", wallet.getId(), ex.getMessage());
+        }
+        long firstEpochDay = firstDay.toEpochDay();
+        for (String code : assetCodes) {
+            double[] history = priceHistoryService.prices(code, firstDay, lastDay);
+            for (int day = 0; day < history.length; day += 1) {
+                valuation.price(code, firstEpochDay + day, history[day]);
+            }
+        }
+        walletSpot.forEach((code, price) -> valuation.spotPrice(code, price.doubleValue()));
+        return valuation;
+    }
+
+    private BigDecimal pnlPct(long pnlUsdScaled, long previousUsdScaled) {
+        if (previousUsdScaled <= 0) {
+            return BigDecimal.ZERO.setScale(6, RoundingMode.HALF_UP);
+        }
+        double pct = Math.max(-PNL_PCT_LIMIT, Math.min(PNL_PCT_LIMIT, pnlUsdScaled * 100.0 / previousUsdScaled));
+        return BigDecimal.valueOf(pct).setScale(6, RoundingMode.HALF_UP);
+    }
+
+    private LocalDate snapshotRebuildStart(Long walletId, WalletAnalysisWatermark watermark, LocalDate startDay) {
+        if (watermark.getSnapshotsThrough() == null
+                || watermark.getLastSnapshotDay() == null
+                || watermark.getLastSnapshotDay().isBefore(startDay)) {
+            return startDay;
+        }
+        LocalDate rebuildFrom = watermark.getLastSnapshotDay();
+        Instant earliestChanged = walletTxEnrichedRepository.findEarliestTxAtUpdatedAfter(walletId, watermark.getSnapshotsThrough());
+        if (earliestChanged != null) {
+            LocalDate changedDay = LocalDate.ofInstant(earliestChanged, ZoneOffset.UTC);
+            if (changedDay.isBefore(rebuildFrom)) {
+                rebuildFrom = changedDay;
+            }
+        }
+        return rebuildFrom.isBefore(startDay) ? startDay : rebuildFrom;
+    }
+
+    private WalletAnalysisWatermark loadWatermark(CryptoWallet wallet) {
+        return watermarkRepository.findByWalletId(wallet.getId()).orElseGet(() -> {
+            WalletAnalysisWatermark created = new WalletAnalysisWatermark();
+            created.setUser(wallet.getUser());
+            created.setWallet(wallet);
+            return created;
+        });
+    }
+
+    /**
+     * Loads enriched rows once for every downstream stage: the backfill window for snapshots, which also
+     * covers the recurring (120d) and insight (30d) windows.
+     */
+    private WalletTxWorkingSet loadWorkingSet(Long walletId, Instant now) {
+        Instant from = now.minus(Math.max(backfillDays, RECURRING_WINDOW_DAYS), ChronoUnit.DAYS);
+        WalletTxWorkingSet.Builder builder = WalletTxWorkingSet.builder(256);
+        walletTxBulkRepository.forEachEnriched(walletId, from, now, (txAt, direction, assetCode, amount, amountUsd, counterparty, category, source) ->
+                builder.add(txAt, "OUT".equalsIgnoreCase(direction), assetCode, amount, amountUsd, counterparty, category, source));
+        return builder.build();
+    }
+
+    private String resolveSnapshotSource(WalletTxWorkingSet workingSet, WalletTxWorkingSet.Window window) {
+        if (window.isEmpty()) {
             return "ESTIMATED";
         }
         boolean hasFallback = false;
         boolean hasReliable = false;
-        for (WalletTxEnriched row : rows) {
-            String source = normalizeInsightSource(row == null ? null : row.getSource());
+        for (int i = window.start(); i < window.end(); i += 1) {
+            String source = normalizeInsightSource(workingSet.source(i));
             if ("ESTIMATED".equals(source)) {
                 return "ESTIMATED";
             }
@@ -583,57 +1307,67 @@ public class CryptoWalletAnalysisService {
         return "ESTIMATED";
     }
 
-    private int persistInsights(Long userId, Long walletId, String baseCurrency, RecurringCandidate recurring, Instant now) {
+    private int persistInsights(
+            Long userId,
+            Long walletId,
+            UserAnalysisContext context,
+            List<RecurringCandidate> recurring,
+            WalletTxWorkingSet workingSet,
+            Instant now
+    ) {
         walletInsightRepository.deleteByWalletId(walletId);
+        String baseCurrency = context.baseCurrency();
 
         List<WalletInsight> items = new ArrayList<>();
-        List<WalletTxEnriched> thirtyDays = walletTxEnrichedRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(
-                walletId,
-                now.minus(30, ChronoUnit.DAYS),
-                now
-        );
+        WalletTxWorkingSet.Window thirtyDays = workingSet.window(now.minus(INSIGHT_WINDOW_DAYS, ChronoUnit.DAYS), now);
 
         WalletInsight topOutflow = new WalletInsight();
         topOutflow.setInsightType("TOP_OUTFLOW");
         topOutflow.setTitle("Top outflow");
-        WalletTxEnriched maxOut = thirtyDays.stream()
-                .filter(tx -> tx != null && "OUT".equalsIgnoreCase(tx.getDirection()))
-                .max(Comparator.comparing(tx -> scaleAmount(tx.getAmountUsd(), 8)))
-                .orElse(null);
-        if (maxOut != null) {
-            topOutflow.setValue(scaleAmount(convertUsdToBase(scaleAmount(maxOut.getAmountUsd(), 8), baseCurrency), 2));
+        int maxOut = -1;
+        for (int i = thirtyDays.start(); i < thirtyDays.end(); i += 1) {
+            if (workingSet.isOutflow(i) && (maxOut < 0 || workingSet.amountUsdScaled(i) > workingSet.amountUsdScaled(maxOut))) {
+                maxOut = i;
+            }
+        }
+        if (maxOut >= 0) {
+            topOutflow.setValue(scaleAmount(convertUsdToBase(workingSet.amountUsd(maxOut), context.conversion()), 2));
             topOutflow.setUnit("BASE_CURRENCY");
             topOutflow.setCurrency(baseCurrency);
-            topOutflow.setLabel(firstNonBlank(maxOut.getCounterpartyNormalized(), "Outflow"));
+            topOutflow.setLabel(firstNonBlank(workingSet.counterparty(maxOut), "Outflow"));
             topOutflow.setConfidence(BigDecimal.valueOf(0.88).setScale(4, RoundingMode.HALF_UP));
             topOutflow.setSynthetic(false);
-            topOutflow.setSource(normalizeInsightSource(maxOut.getSource()));
+            topOutflow.setSource(normalizeInsightSource(workingSet.source(maxOut)));
             topOutflow.setAsOf(now);
             items.add(topOutflow);
         }
 
-        if (recurring != null
-                && recurring.amount() != null
-                && recurring.amount().signum() > 0
-                && recurring.confidence() != null
-                && recurring.confidence().compareTo(BigDecimal.ZERO) > 0) {
+        // Saved smallest first: persisted insights are read back newest id first, so the largest charge leads.
+        for (int i = recurring.size() - 1; i >= 0; i -= 1) {
+            RecurringCandidate candidate = recurring.get(i);
+            if (candidate.amount() == null
+                    || candidate.amount().signum() <= 0
+                    || candidate.confidence() == null
+                    || candidate.confidence().compareTo(BigDecimal.ZERO) <= 0) {
+                continue;
+            }
             WalletInsight recurringInsight = new WalletInsight();
             recurringInsight.setInsightType("RECURRING_SPEND");
             recurringInsight.setTitle("Recurring spend");
-            recurringInsight.setValue(scaleAmount(recurring.amount(), 2));
+            recurringInsight.setValue(scaleAmount(candidate.amount(), 2));
             recurringInsight.setUnit("BASE_CURRENCY");
             recurringInsight.setCurrency(baseCurrency);
-            recurringInsight.setLabel(recurring.label());
-            recurringInsight.setAvgAmount(scaleAmount(recurring.avgAmount(), 2));
-            recurringInsight.setNextEstimatedChargeAt(recurring.nextEstimatedChargeAt());
-            recurringInsight.setConfidence(scaleAmount(recurring.confidence(), 4));
+            recurringInsight.setLabel(candidate.label());
+            recurringInsight.setAvgAmount(scaleAmount(candidate.avgAmount(), 2));
+            recurringInsight.setNextEstimatedChargeAt(candidate.nextEstimatedChargeAt());
+            recurringInsight.setConfidence(scaleAmount(candidate.confidence(), 4));
             recurringInsight.setSynthetic(false);
-            recurringInsight.setSource(normalizeInsightSource(recurring.source()));
+            recurringInsight.setSource(normalizeInsightSource(candidate.source()));
             recurringInsight.setAsOf(now);
             items.add(recurringInsight);
         }
 
-        BigDecimal trend = computeWalletTrend30dPct(walletId, baseCurrency);
+        BigDecimal trend = computeWalletTrend30dPct(walletId, context.conversion());
         if (trend != null) {
             WalletInsight trendInsight = new WalletInsight();
             trendInsight.setInsightType("PORTFOLIO_30D_CHANGE");
@@ -648,19 +1382,47 @@ public class CryptoWalletAnalysisService {
             items.add(trendInsight);
         }
 
-        AnomalyResult anomalies = detectAnomaliesFromEnriched(walletId);
-        if (anomalies != null && anomalies.count() != null && anomalies.count().signum() > 0) {
+        List<WalletOutflowAnomalyDetector.Anomaly> anomalies = WalletOutflowAnomalyDetector.detect(workingSet, thirtyDays);
+        if (!anomalies.isEmpty()) {
+            int[] indices = new int[anomalies.size()];
+            for (int i = 0; i < indices.length; i += 1) {
+                indices[i] = anomalies.get(i).index();
+            }
             WalletInsight anomaliesInsight = new WalletInsight();
             anomaliesInsight.setInsightType("ANOMALOUS_OUTFLOWS");
             anomaliesInsight.setTitle("Anomalous outflows");
-            anomaliesInsight.setValue(scaleAmount(anomalies.count(), 0));
+            anomaliesInsight.setValue(BigDecimal.valueOf(anomalies.size()));
             anomaliesInsight.setUnit("COUNT");
             anomaliesInsight.setCurrency(null);
-            anomaliesInsight.setConfidence(scaleAmount(anomalies.confidence(), 4));
+            anomaliesInsight.setConfidence(anomalyConfidence(anomalies.get(0).score()));
             anomaliesInsight.setSynthetic(false);
-            anomaliesInsight.setSource(normalizeInsightSource(anomalies.source()));
+            anomaliesInsight.setSource(normalizeInsightSource(resolveRecurringSource(workingSet, indices)));
             anomaliesInsight.setAsOf(now);
             items.add(anomaliesInsight);
+
+            // Saved lowest score first so the strongest anomaly is read back first.
+            for (int i = Math.min(anomalies.size(), MAX_ANOMALY_INSIGHTS) - 1; i >= 0; i -= 1) {
+                WalletOutflowAnomalyDetector.Anomaly anomaly = anomalies.get(i);
+                int index = anomaly.index();
+                WalletInsight anomalyInsight = new WalletInsight();
+                anomalyInsight.setInsightType("ANOMALOUS_OUTFLOW");
+                anomalyInsight.setTitle("Unusual outflow");
+                anomalyInsight.setValue(scaleAmount(convertUsdToBase(workingSet.amountUsd(index), context.conversion()), 2));
+                anomalyInsight.setUnit("BASE_CURRENCY");
+                anomalyInsight.setCurrency(baseCurrency);
+                anomalyInsight.setLabel(firstNonBlank(
+                        anomaly.basis() == WalletOutflowAnomalyDetector.Basis.ASSET ? workingSet.assetCode(index) : null,
+                        workingSet.counterparty(index),
+                        workingSet.assetCode(index),
+                        "Outflow"));
+                BigDecimal typicalUsd = BigDecimal.valueOf(anomaly.typicalUsd()).setScale(8, RoundingMode.HALF_UP);
+                anomalyInsight.setAvgAmount(scaleAmount(convertUsdToBase(typicalUsd, context.conversion()), 2));
+                anomalyInsight.setConfidence(anomalyConfidence(anomaly.score()));
+                anomalyInsight.setSynthetic(false);
+                anomalyInsight.setSource(normalizeInsightSource(workingSet.source(index)));
+                anomalyInsight.setAsOf(now);
+                items.add(anomalyInsight);
+            }
         }
 
         CryptoWallet wallet = cryptoWalletRepository.findByIdAndUserId(walletId, userId).orElseThrow(this::walletNotFound);
@@ -677,31 +1439,62 @@ public class CryptoWalletAnalysisService {
 
     private List<CryptoWalletAnalysisSeriesResponse.SeriesPoint> buildSeriesFromSnapshots(Long walletId, String baseCurrency, int windowDays, Instant now) {
         LocalDate endDay = LocalDate.ofInstant(now, ZoneOffset.UTC);
-        LocalDate startDay = endDay.minusDays(windowDays - 1L);
-        List<WalletDailySnapshot> rows = walletDailySnapshotRepository.findByWalletIdAndDayBetweenOrderByDayAsc(walletId, startDay, endDay);
-        if (rows.isEmpty()) {
+        Instant snapshotsThrough = watermarkRepository.findByWalletId(walletId)
+                .map(WalletAnalysisWatermark::getSnapshotsThrough)
+                .orElse(null);
+        long[] usdScaled = seriesCache.get(walletId, endDay, snapshotsThrough, day -> loadUsdSeries(walletId, day)).window(windowDays);
+        if (usdScaled == null) {
             return List.of();
         }
 
-        Map<LocalDate, WalletDailySnapshot> byDay = new HashMap<>();
-        for (WalletDailySnapshot row : rows) {
+        int scale = scaleFor(baseCurrency);
+        boolean cryptoBase = isCrypto(baseCurrency);
+        BigDecimal rate = usdToBaseRate(baseCurrency);
+        LocalDate startDay = endDay.minusDays(usdScaled.length - 1L);
+        List<CryptoWalletAnalysisSeriesResponse.SeriesPoint> points = new ArrayList<>(usdScaled.length);
+        for (int i = 0; i < usdScaled.length; i += 1) {
+            BigDecimal usd = FixedUsd.toDecimal(usdScaled[i]);
+            BigDecimal value = cryptoBase
+                    ? usd.divide(rate, scale, RoundingMode.HALF_UP)
+                    : usd.multiply(rate).setScale(scale, RoundingMode.HALF_UP);
+            points.add(new CryptoWalletAnalysisSeriesResponse.SeriesPoint(startDay.plusDays(i).atStartOfDay().toInstant(ZoneOffset.UTC), value));
+        }
+        return points;
+    }
+
+    private long[] loadUsdSeries(Long walletId, LocalDate endDay) {
+        LocalDate startDay = endDay.minusDays(WalletUsdSeriesCache.MAX_DAYS - 1L);
+        long[] values = new long[WalletUsdSeriesCache.MAX_DAYS];
+        Arrays.fill(values, WalletUsdSeriesCache.NO_SNAPSHOT);
+        for (WalletDailySnapshot row : walletDailySnapshotRepository.findByWalletIdAndDayBetweenOrderByDayAsc(walletId, startDay, endDay)) {
             if (row == null || row.getDay() == null) {
                 continue;
             }
-            byDay.put(row.getDay(), row);
+            int index = (int) (row.getDay().toEpochDay() - startDay.toEpochDay());
+            if (index >= 0 && index < values.length) {
+                values[index] = FixedUsd.of(row.getPortfolioUsd());
+            }
         }
+        return values;
+    }
 
-        List<CryptoWalletAnalysisSeriesResponse.SeriesPoint> points = new ArrayList<>(windowDays);
-        BigDecimal previous = BigDecimal.ZERO;
-        int scale = scaleFor(baseCurrency);
-        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
-            WalletDailySnapshot snapshot = byDay.get(day);
-            BigDecimal value = snapshot == null ? previous : convertUsdToBase(scaleAmount(snapshot.getPortfolioUsd(), 8), baseCurrency);
-            value = scaleAmount(value, scale);
-            points.add(new CryptoWalletAnalysisSeriesResponse.SeriesPoint(day.atStartOfDay().toInstant(ZoneOffset.UTC), value));
-            previous = value;
+    /**
+     * USD rate of the base currency from rates this node already holds, so series reads never reach a rates
+     * provider: the FX quote for fiat (multiplied), the USD price for crypto (divided by). Only a node that has
+     * not loaded any rate yet falls back to the regular lookup.
+     */
+    private BigDecimal usdToBaseRate(String baseCurrency) {
+        if ("USD".equalsIgnoreCase(baseCurrency)) {
+            return BigDecimal.ONE;
         }
-        return points;
+        if (isCrypto(baseCurrency)) {
+            Map<String, BigDecimal> cached = cryptoUsdPrices(cryptoRatesService.cachedRates("USD"));
+            BigDecimal price = cached.get(baseCurrency);
+            return price != null && price.signum() != 0 ? price : requireCryptoUsdPrice(fetchCryptoUsdPrices(), baseCurrency);
+        }
+        FxRatesProvider.FxRates local = currencyService.localRates("USD");
+        BigDecimal rate = local == null || local.rates() == null ? null : local.rates().get(baseCurrency);
+        return rate != null && rate.signum() != 0 ? rate : requireFxUsdRate(currencyService.latestRates("USD").rates(), baseCurrency);
     }
 
     private List<CryptoWalletAnalysisInsightItem> mapPersistedInsights(List<WalletInsight> persisted) {
@@ -709,14 +1502,30 @@ public class CryptoWalletAnalysisService {
             return List.of();
         }
         Map<String, WalletInsight> latestByType = new LinkedHashMap<>();
+        int recurringItems = 0;
+        int anomalyItems = 0;
         for (WalletInsight item : persisted) {
-            if (item == null
-                    || item.getInsightType() == null
-                    || item.isSynthetic()
-                    || latestByType.containsKey(item.getInsightType())) {
+            if (item == null || item.getInsightType() == null || item.isSynthetic()) {
                 continue;
             }
-            latestByType.put(item.getInsightType(), item);
+            // Several recurring charges (one per counterparty) and unusual outflows can be reported at once.
+            boolean recurring = "RECURRING_SPEND".equals(item.getInsightType());
+            boolean anomaly = "ANOMALOUS_OUTFLOW".equals(item.getInsightType());
+            String key = recurring ? item.getInsightType() + ":" + item.getLabel()
+                    : anomaly ? item.getInsightType() + ":" + item.getId()
+                    : item.getInsightType();
+            if (latestByType.containsKey(key)
+                    || (recurring && recurringItems >= MAX_RECURRING_INSIGHTS)
+                    || (anomaly && anomalyItems >= MAX_ANOMALY_INSIGHTS)) {
+                continue;
+            }
+            latestByType.put(key, item);
+            if (recurring) {
+                recurringItems += 1;
+            }
+            if (anomaly) {
+                anomalyItems += 1;
+            }
         }
 
         List<CryptoWalletAnalysisInsightItem> result = new ArrayList<>(latestByType.size());
@@ -738,103 +1547,96 @@ public class CryptoWalletAnalysisService {
         return result;
     }
 
-    private RecurringCandidate detectRecurringFromEnriched(Long walletId, String baseCurrency, Instant now) {
-        Instant from = now.minus(120, ChronoUnit.DAYS);
-        List<WalletTxEnriched> rows = walletTxEnrichedRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(walletId, from, now);
-        List<WalletTxEnriched> expenses = rows.stream()
-                .filter(tx -> tx != null
-                        && tx.getTxAt() != null
-                        && "OUT".equalsIgnoreCase(tx.getDirection())
-                        && tx.getAmountUsd() != null
-                        && tx.getAmountUsd().signum() > 0)
-                .toList();
-        if (expenses.size() < 3) {
-            return null;
-        }
-
-        Map<String, List<WalletTxEnriched>> groups = new HashMap<>();
-        for (WalletTxEnriched tx : expenses) {
-            String key = normalizeRecurringKey(firstNonBlank(tx.getCounterpartyNormalized(), tx.getCategory(), "expense"));
-            groups.computeIfAbsent(key, ignored -> new ArrayList<>()).add(tx);
-        }
-
-        RecurringCandidate best = null;
-        for (Map.Entry<String, List<WalletTxEnriched>> entry : groups.entrySet()) {
-            List<WalletTxEnriched> group = entry.getValue();
-            if (group.size() < 3) {
-                continue;
-            }
-            group.sort(Comparator.comparing(WalletTxEnriched::getTxAt));
-
-            int cadenceHits = 0;
-            long cadenceDaysSum = 0;
-            int cadenceSamples = 0;
-            for (int i = 1; i < group.size(); i += 1) {
-                long days = Duration.between(group.get(i - 1).getTxAt(), group.get(i).getTxAt()).toDays();
-                if (days >= 26 && days <= 33) {
-                    cadenceHits += 1;
-                    cadenceDaysSum += days;
-                    cadenceSamples += 1;
-                } else if (days >= 6 && days <= 8) {
-                    cadenceHits += 1;
-                    cadenceDaysSum += days;
-                    cadenceSamples += 1;
-                }
-            }
-            if (cadenceHits < 2) {
-                continue;
+    /**
+     * Folds outflows enriched since the last run into the wallet's per-counterparty cadence models and
+     * returns the recurring charges they currently describe, largest monthly amount first. Enriched rows
+     * changed at or before the last folded charge cannot be applied in order, so the models are replayed
+     * from the working set instead.
+     */
+    private List<RecurringCandidate> detectRecurring(
+            CryptoWallet wallet,
+            WalletAnalysisWatermark watermark,
+            WalletTxWorkingSet workingSet,
+            ConversionContext conversion,
+            Instant now
+    ) {
+        Long walletId = wallet.getId();
+        Instant readStartedAt = Instant.now();
+        Instant appliedThrough = watermark.getRecurringTxAt();
+        boolean replay = watermark.getRecurringThrough() == null || appliedThrough == null;
+        if (!replay) {
+            Instant earliestChanged = walletTxEnrichedRepository.findEarliestTxAtUpdatedAfter(walletId, watermark.getRecurringThrough());
+            replay = earliestChanged != null && !earliestChanged.isAfter(appliedThrough);
+        }
+
+        Map<String, WalletRecurringCadence> models = new HashMap<>();
+        if (replay) {
+            recurringCadenceRepository.deleteAllForWallet(walletId);
+            appliedThrough = null;
+        } else {
+            for (WalletRecurringCadence model : recurringCadenceRepository.findByWalletId(walletId)) {
+                models.put(model.getCounterpartyKey(), model);
             }
+        }
 
-            List<BigDecimal> amounts = group.stream().map(tx -> scaleAmount(tx.getAmountUsd(), 8)).toList();
-            BigDecimal avgUsd = average(amounts);
-            if (avgUsd.signum() <= 0) {
+        WalletTxWorkingSet.Window window = workingSet.window(appliedThrough == null ? null : appliedThrough.plusNanos(1_000), now);
+        Map<String, WalletRecurringCadence> touched = new HashMap<>();
+        for (int i = window.start(); i < window.end(); i += 1) {
+            if (!workingSet.isOutflow(i) || workingSet.amountUsdScaled(i) <= 0) {
                 continue;
             }
-            BigDecimal max = amounts.stream().max(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-            BigDecimal min = amounts.stream().min(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-            BigDecimal spread = max.subtract(min).divide(avgUsd, 4, RoundingMode.HALF_UP);
-            if (spread.compareTo(BigDecimal.valueOf(0.20)) > 0) {
+            String key = normalizeRecurringKey(firstNonBlank(workingSet.counterparty(i), workingSet.category(i), "expense"));
+            WalletRecurringCadence model = models.computeIfAbsent(key, ignored -> newCadenceModel(wallet, key));
+            RecurringCadenceTracker.observe(
+                    model,
+                    workingSet.txAtMicros(i),
+                    FixedUsd.toDouble(workingSet.amountUsdScaled(i)),
+                    "TRANSACTION_FALLBACK".equals(normalizeInsightSource(workingSet.source(i))));
+            touched.put(key, model);
+            appliedThrough = workingSet.txAt(i);
+        }
+        if (!touched.isEmpty()) {
+            recurringCadenceRepository.saveAll(touched.values());
+        }
+        watermark.setRecurringThrough(readStartedAt);
+        watermark.setRecurringTxAt(appliedThrough);
+
+        List<RecurringCandidate> candidates = new ArrayList<>();
+        for (WalletRecurringCadence model : models.values()) {
+            RecurringCadenceTracker.Match match = RecurringCadenceTracker.match(model, now);
+            if (match == null) {
                 continue;
             }
-
-            long cadenceDays = cadenceSamples <= 0 ? 30 : Math.max(1, Math.round((double) cadenceDaysSum / cadenceSamples));
-            BigDecimal monthlyMultiplier = BigDecimal.valueOf(30.0 / cadenceDays);
-            BigDecimal monthlyUsd = avgUsd.multiply(monthlyMultiplier).setScale(8, RoundingMode.HALF_UP);
-            BigDecimal monthlyBase = convertUsdToBase(monthlyUsd, baseCurrency).setScale(2, RoundingMode.HALF_UP);
-            BigDecimal avgBase = convertUsdToBase(avgUsd, baseCurrency).setScale(2, RoundingMode.HALF_UP);
-            Instant lastCharge = group.get(group.size() - 1).getTxAt();
-            Instant nextEstimatedChargeAt = lastCharge == null ? now.plus(14, ChronoUnit.DAYS) : lastCharge.plus(cadenceDays, ChronoUnit.DAYS);
-            BigDecimal confidence = BigDecimal.valueOf(0.62
-                            + Math.min(group.size(), 6) * 0.03
-                            + Math.min(cadenceHits, 3) * 0.05
-                            + (spread.compareTo(BigDecimal.valueOf(0.10)) <= 0 ? 0.08 : 0))
-                    .min(BigDecimal.valueOf(0.98))
-                    .setScale(2, RoundingMode.HALF_UP);
-            String source = resolveRecurringSource(group);
-
-            RecurringCandidate candidate = new RecurringCandidate(
-                    monthlyBase,
-                    avgBase,
-                    prettifyRecurringLabel(entry.getKey()),
-                    confidence,
-                    nextEstimatedChargeAt,
-                    source
-            );
-            if (best == null || candidate.amount().compareTo(best.amount()) > 0) {
-                best = candidate;
-            }
+            BigDecimal monthlyUsd = BigDecimal.valueOf(match.monthlyUsd()).setScale(8, RoundingMode.HALF_UP);
+            BigDecimal avgUsd = BigDecimal.valueOf(match.amountUsd()).setScale(8, RoundingMode.HALF_UP);
+            candidates.add(new RecurringCandidate(
+                    convertUsdToBase(monthlyUsd, conversion).setScale(2, RoundingMode.HALF_UP),
+                    convertUsdToBase(avgUsd, conversion).setScale(2, RoundingMode.HALF_UP),
+                    prettifyRecurringLabel(model.getCounterpartyKey()),
+                    BigDecimal.valueOf(match.confidence()).setScale(2, RoundingMode.HALF_UP),
+                    match.nextChargeAt(),
+                    model.isFallbackOnly() ? "TRANSACTION_FALLBACK" : "PARTIAL"
+            ));
         }
+        candidates.sort(Comparator.comparing(RecurringCandidate::amount).reversed());
+        return candidates.size() > MAX_RECURRING_INSIGHTS ? List.copyOf(candidates.subList(0, MAX_RECURRING_INSIGHTS)) : candidates;
+    }
 
-        return best;
+    private WalletRecurringCadence newCadenceModel(CryptoWallet wallet, String key) {
+        WalletRecurringCadence model = new WalletRecurringCadence();
+        model.setUser(wallet.getUser());
+        model.setWallet(wallet);
+        model.setCounterpartyKey(key);
+        return model;
     }
 
-    private String resolveRecurringSource(List<WalletTxEnriched> rows) {
-        if (rows == null || rows.isEmpty()) {
+    private String resolveRecurringSource(WalletTxWorkingSet workingSet, int[] indices) {
+        if (indices == null || indices.length == 0) {
             return "ESTIMATED";
         }
         boolean allFallback = true;
-        for (WalletTxEnriched row : rows) {
-            String source = normalizeInsightSource(row == null ? null : row.getSource());
+        for (int index : indices) {
+            String source = normalizeInsightSource(workingSet.source(index));
             if (!"TRANSACTION_FALLBACK".equals(source)) {
                 allFallback = false;
                 break;
@@ -843,29 +1645,15 @@ public class CryptoWalletAnalysisService {
         return allFallback ? "TRANSACTION_FALLBACK" : "PARTIAL";
     }
 
-    private AnomalyResult detectAnomaliesFromEnriched(Long walletId) {
-        Instant now = Instant.now();
-        Instant from = now.minus(30, ChronoUnit.DAYS);
-        List<WalletTxEnriched> rows = walletTxEnrichedRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(walletId, from, now);
-        List<BigDecimal> outflows = rows.stream()
-                .filter(tx -> tx != null && "OUT".equalsIgnoreCase(tx.getDirection()) && tx.getAmountUsd() != null)
-                .map(WalletTxEnriched::getAmountUsd)
-                .map(this::scaleUsd)
-                .filter(value -> value.signum() > 0)
-                .toList();
-        if (outflows.isEmpty()) {
-            return null;
-        }
-
-        BigDecimal avg = average(outflows);
-        BigDecimal threshold = avg.multiply(BigDecimal.valueOf(2.2)).max(BigDecimal.valueOf(50));
-        long count = outflows.stream().filter(v -> v.compareTo(threshold) > 0).count();
-        BigDecimal confidence = BigDecimal.valueOf(Math.min(0.95, 0.55 + count * 0.12)).setScale(2, RoundingMode.HALF_UP);
-        String source = resolveRecurringSource(rows);
-        return new AnomalyResult(BigDecimal.valueOf(count).setScale(0, RoundingMode.HALF_UP), confidence, source);
+    /**
+     * Maps an anomaly score to a confidence: just over the threshold reads as 0.60, growing to 0.97.
+     */
+    private BigDecimal anomalyConfidence(double score) {
+        double excess = Math.max(0, score - WalletOutflowAnomalyDetector.SCORE_THRESHOLD);
+        return BigDecimal.valueOf(Math.min(0.97, 0.60 + excess * 0.06)).setScale(4, RoundingMode.HALF_UP);
     }
 
-    private BigDecimal computeWalletTrend30dPct(Long walletId, String baseCurrency) {
+    private BigDecimal computeWalletTrend30dPct(Long walletId, ConversionContext conversion) {
         LocalDate today = LocalDate.now(ZoneOffset.UTC);
         WalletDailySnapshot current = walletDailySnapshotRepository.findTopByWalletIdAndDayBeforeOrderByDayDesc(walletId, today.plusDays(1)).orElse(null);
         WalletDailySnapshot previous = walletDailySnapshotRepository.findTopByWalletIdAndDayBeforeOrderByDayDesc(walletId, today.minusDays(29)).orElse(null);
@@ -879,8 +1667,8 @@ public class CryptoWalletAnalysisService {
             return null;
         }
 
-        BigDecimal curBase = convertUsdToBase(scaleAmount(current.getPortfolioUsd(), 8), baseCurrency);
-        BigDecimal prevBase = convertUsdToBase(scaleAmount(previous.getPortfolioUsd(), 8), baseCurrency);
+        BigDecimal curBase = convertUsdToBase(scaleAmount(current.getPortfolioUsd(), 8), conversion);
+        BigDecimal prevBase = convertUsdToBase(scaleAmount(previous.getPortfolioUsd(), 8), conversion);
         BigDecimal denominator = prevBase.abs().max(BigDecimal.ONE);
         return curBase.subtract(prevBase)
                 .multiply(BigDecimal.valueOf(100))
@@ -912,7 +1700,7 @@ public class CryptoWalletAnalysisService {
         if (rows.isEmpty()) {
             return null;
         }
-        BigDecimal totalUsd = BigDecimal.ZERO;
+        FixedUsd.Sum totalUsd = new FixedUsd.Sum();
         for (WalletDailySnapshot row : rows) {
             if (row == null) {
                 continue;
@@ -921,12 +1709,12 @@ public class CryptoWalletAnalysisService {
             if (valueUsd == null) {
                 continue;
             }
-            totalUsd = totalUsd.add(scaleAmount(valueUsd, 8).abs());
+            totalUsd.add(FixedUsd.abs(FixedUsd.of(valueUsd)));
         }
-        if (totalUsd.signum() == 0) {
+        if (totalUsd.total() == 0) {
             return BigDecimal.ZERO;
         }
-        return convertUsdToBase(scaleAmount(totalUsd, 8), baseCurrency);
+        return convertUsdToBase(FixedUsd.toDecimal(totalUsd.total()), baseCurrency);
     }
 
     private String resolveSummaryMetricsSource(Long walletId, Instant now) {
@@ -959,11 +1747,10 @@ public class CryptoWalletAnalysisService {
         return hasLive ? "LIVE" : "ESTIMATED";
     }
 
-    private BigDecimal currentWalletUsd(Long userId, Long walletId, String baseCurrency) {
-        CryptoWalletSummaryResponse summary = cryptoWalletService.walletsSummary(userId);
-        CryptoWalletDto dto = findWalletDto(summary, walletId);
+    private BigDecimal currentWalletUsd(UserAnalysisContext context, Long walletId) {
+        CryptoWalletDto dto = findWalletDto(context.walletSummary(), walletId);
         BigDecimal inBase = safe(dto == null ? null : dto.valueInBase());
-        return scaleUsd(toUsd(inBase, baseCurrency, conversionContext(baseCurrency, List.of(baseCurrency))));
+        return scaleUsd(toUsd(inBase, context.baseCurrency(), context.conversion()));
     }
 
     private CryptoWalletDto findWalletDto(CryptoWalletSummaryResponse walletSummary, Long walletId) {
@@ -1005,47 +1792,70 @@ public class CryptoWalletAnalysisService {
         ));
     }
 
-    private void sleepStep() {
-        if (simulatedDelayMs <= 0) {
-            return;
-        }
-        try {
-            Thread.sleep(simulatedDelayMs);
-        } catch (InterruptedException ignored) {
-            Thread.currentThread().interrupt();
-        }
-    }
-
-    private CryptoWalletAnalysisStatusResponse toResponse(CryptoWalletAnalysisJob job) {
-        boolean partialReady = job.getStatus() == CryptoWalletAnalysisJobStatus.PARTIAL
-                || job.getStatus() == CryptoWalletAnalysisJobStatus.DONE
-                || isStageAtOrPast(job.getLastSuccessfulStage(), CryptoWalletAnalysisStage.BUILD_SNAPSHOTS);
+    private CryptoWalletAnalysisStatusResponse toResponse(WalletAnalysisJobStateRegistry.JobState job) {
+        boolean partialReady = job.status() == CryptoWalletAnalysisJobStatus.PARTIAL
+                || job.status() == CryptoWalletAnalysisJobStatus.DONE
+                || isStageAtOrPast(job.lastSuccessfulStage(), CryptoWalletAnalysisStage.BUILD_SNAPSHOTS);
 
         return new CryptoWalletAnalysisStatusResponse(
-                job.getStatus() == null ? CryptoWalletAnalysisJobStatus.QUEUED.name() : job.getStatus().name(),
-                Math.max(0, Math.min(job.getProgressPct(), 100)),
-                job.getStage() == null ? CryptoWalletAnalysisStage.FETCH_TX.name() : job.getStage().name(),
-                job.getStartedAt(),
-                job.getUpdatedAt(),
-                job.getFinishedAt(),
+                job.status() == null ? CryptoWalletAnalysisJobStatus.QUEUED.name() : job.status().name(),
+                Math.max(0, Math.min(job.progressPct(), 100)),
+                job.stage() == null ? CryptoWalletAnalysisStage.FETCH_TX.name() : job.stage().name(),
+                job.startedAt(),
+                job.updatedAt(),
+                job.finishedAt(),
                 partialReady,
                 estimateEtaSeconds(job),
-                job.getLastSuccessfulStage() == null ? null : job.getLastSuccessfulStage().name()
+                job.lastSuccessfulStage() == null ? null : job.lastSuccessfulStage().name(),
+                parseStageDurations(job.stageDurationsMs())
         );
     }
 
-    private Integer estimateEtaSeconds(CryptoWalletAnalysisJob job) {
-        if (job == null || job.getStartedAt() == null) {
+    private String formatStageDurations(Map<CryptoWalletAnalysisStage, Long> durationsMs) {
+        if (durationsMs == null || durationsMs.isEmpty()) {
             return null;
         }
-        int progress = Math.max(0, Math.min(job.getProgressPct(), 100));
+        StringBuilder value = new StringBuilder();
+        for (Map.Entry<CryptoWalletAnalysisStage, Long> entry : durationsMs.entrySet()) {
+            if (!value.isEmpty()) {
+                value.append(',');
+            }
+            value.append(entry.getKey().name()).append('=').append(entry.getValue());
+        }
+        return value.toString();
+    }
+
+    private Map<String, Long> parseStageDurations(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return Map.of();
+        }
+        Map<String, Long> durations = new LinkedHashMap<>();
+        for (String part : raw.split(",")) {
+            int separator = part.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            try {
+                durations.put(part.substring(0, separator).trim(), Long.parseLong(part.substring(separator + 1).trim()));
+            } catch (NumberFormatException ignored) {
+                // Skip malformed entries; durations are informational.
+            }
+        }
+        return durations;
+    }
+
+    private Integer estimateEtaSeconds(WalletAnalysisJobStateRegistry.JobState job) {
+        if (job == null || job.startedAt() == null) {
+            return null;
+        }
+        int progress = Math.max(0, Math.min(job.progressPct(), 100));
         if (progress >= 100) {
             return 0;
         }
         if (progress == 0) {
             return null;
         }
-        long elapsedMs = Math.max(1, Duration.between(job.getStartedAt(), Instant.now()).toMillis());
+        long elapsedMs = Math.max(1, Duration.between(job.startedAt(), Instant.now()).toMillis());
         long estimatedTotalMs = Math.max(elapsedMs, Math.round(elapsedMs * (100.0 / progress)));
         long etaMs = Math.max(0, estimatedTotalMs - elapsedMs);
         return (int) Math.min(Integer.MAX_VALUE, Math.ceil(etaMs / 1000.0));
@@ -1086,6 +1896,67 @@ public class CryptoWalletAnalysisService {
         return "30d";
     }
 
+    /**
+     * Per-user inputs shared by the user's wallet pipelines, single-flight and reused for
+     * {@code user-context-ttl-ms} so wallets analysed together do not each refetch balances and rates. Contexts
+     * live in a {@link BoundedCache} of {@code user-context-max-entries}; expired ones are swept from its cold
+     * end on every lookup.
+     */
+    private UserAnalysisContext userContext(Long userId) {
+        long nowNanos = System.nanoTime();
+        userContexts.removeColdestWhile((key, existing) -> isExpired(existing, nowNanos));
+        CompletableFuture<UserAnalysisContext> created = new CompletableFuture<>();
+        CompletableFuture<UserAnalysisContext> current = userContexts.compute(userId, (key, existing) ->
+                existing != null && !isExpired(existing, nowNanos) ? existing : created);
+        if (current == created) {
+            try {
+                created.complete(buildUserContext(userId, nowNanos));
+            } catch (RuntimeException ex) {
+                userContexts.compute(userId, (key, existing) -> existing == created ? null : existing);
+                created.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        try {
+            return current.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private boolean isExpired(CompletableFuture<UserAnalysisContext> future, long nowNanos) {
+        if (!future.isDone()) {
+            return false;
+        }
+        if (future.isCompletedExceptionally()) {
+            return true;
+        }
+        return nowNanos - future.join().createdAtNanos() >= userContextTtlNanos;
+    }
+
+    private UserAnalysisContext buildUserContext(Long userId, long nowNanos) {
+        CryptoWalletSummaryResponse summary = cryptoWalletService.walletsSummary(userId);
+        String baseCurrency = normalizeCurrency(summary == null ? null : summary.baseCurrency());
+        ConversionContext conversion = conversionContext(baseCurrency, List.of("USD", baseCurrency));
+        return new UserAnalysisContext(baseCurrency, summary, conversion, nowNanos);
+    }
+
+    /**
+     * Shared conversion of the user context when it already holds the rates the given currencies need.
+     */
+    private ConversionContext conversionFor(UserAnalysisContext context, Collection<String> currencies) {
+        ConversionContext shared = context.conversion();
+        boolean needCrypto = currencies.stream().anyMatch(this::isCrypto);
+        boolean needFx = needsFxRates(context.baseCurrency(), currencies);
+        if ((needCrypto && shared.cryptoUsdPrices().isEmpty()) || (needFx && shared.usdFxRates().isEmpty())) {
+            return conversionContext(context.baseCurrency(), currencies);
+        }
+        return shared;
+    }
+
     private CryptoWallet requireWallet(Long userId, Long walletId) {
         if (userId == null || walletId == null) {
             throw walletNotFound();
@@ -1138,7 +2009,10 @@ public class CryptoWalletAnalysisService {
 
     private BigDecimal convertUsdToBase(BigDecimal usdAmount, String baseCurrency) {
         String base = normalizeCurrency(baseCurrency);
-        ConversionContext ctx = conversionContext(base, List.of("USD", base));
+        return convertUsdToBase(usdAmount, conversionContext(base, List.of("USD", base)));
+    }
+
+    private BigDecimal convertUsdToBase(BigDecimal usdAmount, ConversionContext ctx) {
         return fromUsd(scaleUsd(usdAmount), ctx);
     }
 
@@ -1174,7 +2048,10 @@ public class CryptoWalletAnalysisService {
     }
 
     private Map<String, BigDecimal> fetchCryptoUsdPrices() {
-        CryptoRatesProvider.CryptoRates rates = cryptoRatesService.latestRates("USD");
+        return cryptoUsdPrices(cryptoRatesService.latestRates("USD"));
+    }
+
+    private Map<String, BigDecimal> cryptoUsdPrices(CryptoRatesProvider.CryptoRates rates) {
         if (rates == null || rates.rates() == null) {
             return Map.of();
         }
@@ -1204,14 +2081,6 @@ public class CryptoWalletAnalysisService {
         return price;
     }
 
-    private BigDecimal average(List<BigDecimal> values) {
-        if (values == null || values.isEmpty()) {
-            return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP);
-        }
-        BigDecimal sum = values.stream().map(this::safe).reduce(BigDecimal.ZERO, BigDecimal::add);
-        return sum.divide(BigDecimal.valueOf(values.size()), 4, RoundingMode.HALF_UP);
-    }
-
     private BigDecimal scalePct(BigDecimal value) {
         return value == null ? null : value.setScale(2, RoundingMode.HALF_UP);
     }
@@ -1317,7 +2186,9 @@ public class CryptoWalletAnalysisService {
     }
 
     private boolean isTerminal(CryptoWalletAnalysisJobStatus status) {
-        return status == CryptoWalletAnalysisJobStatus.DONE || status == CryptoWalletAnalysisJobStatus.FAILED;
+        return status == CryptoWalletAnalysisJobStatus.DONE
+                || status == CryptoWalletAnalysisJobStatus.FAILED
+                || status == CryptoWalletAnalysisJobStatus.CANCELLED;
     }
 
     private ApiException walletNotFound() {
@@ -1345,7 +2216,12 @@ public class CryptoWalletAnalysisService {
     ) {
     }
 
-    private record AnomalyResult(BigDecimal count, BigDecimal confidence, String source) {
+    private record UserAnalysisContext(
+            String baseCurrency,
+            CryptoWalletSummaryResponse walletSummary,
+            ConversionContext conversion,
+            long createdAtNanos
+    ) {
     }
 
     private record ConversionContext(
@@ -1355,4 +2231,13 @@ public class CryptoWalletAnalysisService {
             Map<String, BigDecimal> cryptoUsdPrices
     ) {
     }
+
+    /**
+     * Unwinds a pipeline run whose job was cancelled; the job row already holds its final state.
+     */
+    private static final class PipelineCancelledException extends RuntimeException {
+        private PipelineCancelledException() {
+            super("Wallet analysis cancelled", null, false, false);
+        }
+    }
 }
@@ -1,14 +1,13 @@
 package com.myname.finguard.crypto.service;
 
+import com.myname.finguard.common.cache.SingleFlightCache;
 import com.myname.finguard.common.constants.ErrorCodes;
 import com.myname.finguard.common.exception.ApiException;
 import com.myname.finguard.crypto.model.CryptoNetwork;
+import com.myname.finguard.crypto.repository.WalletBalanceCacheRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Clock;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Comparator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,35 +18,62 @@ import org.springframework.stereotype.Service;
 public class CryptoWalletBalanceService {
 
     private static final long DEFAULT_CACHE_TTL_SECONDS = 60;
+    private static final long DEFAULT_CACHE_HARD_TTL_SECONDS = 600;
     private static final int DEFAULT_CACHE_MAX_ENTRIES = 5000;
 
     private final CryptoWalletBalanceProvider provider;
-    private final Duration cacheTtl;
-    private final int maxEntries;
-    private final Clock clock;
-    private final Map<String, CachedBalance> cache = new ConcurrentHashMap<>();
+    private final SingleFlightCache<String, CryptoWalletBalanceProvider.WalletBalance> cache;
 
     public CryptoWalletBalanceService() {
-        this(null, Duration.ofSeconds(DEFAULT_CACHE_TTL_SECONDS), DEFAULT_CACHE_MAX_ENTRIES, Clock.systemUTC());
+        this(null, Duration.ofSeconds(DEFAULT_CACHE_TTL_SECONDS), Duration.ofSeconds(DEFAULT_CACHE_HARD_TTL_SECONDS),
+                DEFAULT_CACHE_MAX_ENTRIES, Clock.systemUTC());
     }
 
     @Autowired
     public CryptoWalletBalanceService(
             ObjectProvider<CryptoWalletBalanceProvider> provider,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            ObjectProvider<WalletBalanceCacheRepository> cacheRepository,
             @Value("${app.crypto.wallet.cache-ttl-seconds:" + DEFAULT_CACHE_TTL_SECONDS + "}") long cacheTtlSeconds,
-            @Value("${app.crypto.wallet.cache-max-entries:" + DEFAULT_CACHE_MAX_ENTRIES + "}") int maxEntries
+            @Value("${app.crypto.wallet.cache-hard-ttl-seconds:" + DEFAULT_CACHE_HARD_TTL_SECONDS + "}") long cacheHardTtlSeconds,
+            @Value("${app.crypto.wallet.cache-max-entries:" + DEFAULT_CACHE_MAX_ENTRIES + "}") int maxEntries,
+            @Value("${app.crypto.wallet.l2-cache.enabled:false}") boolean secondLevelEnabled
     ) {
         this(provider.getIfAvailable(),
                 Duration.ofSeconds(Math.max(0, cacheTtlSeconds)),
+                Duration.ofSeconds(Math.max(0, cacheHardTtlSeconds)),
                 Math.max(0, maxEntries),
-                Clock.systemUTC());
+                Clock.systemUTC(),
+                WalletCacheStore.create(secondLevelEnabled, cacheRepository.getIfAvailable(), WalletCacheStore.KIND_BALANCE, null,
+                        WalletCacheCodec::packBalance, WalletCacheCodec::unpackBalance));
+        cache.bindTo(meterRegistry.getIfAvailable(), "crypto_wallet_balance");
     }
 
     CryptoWalletBalanceService(CryptoWalletBalanceProvider provider, Duration cacheTtl, int maxEntries, Clock clock) {
+        this(provider, cacheTtl, cacheTtl, maxEntries, clock);
+    }
+
+    CryptoWalletBalanceService(CryptoWalletBalanceProvider provider, Duration cacheTtl, Duration cacheHardTtl, int maxEntries, Clock clock) {
+        this(provider, cacheTtl, cacheHardTtl, maxEntries, clock, null);
+    }
+
+    CryptoWalletBalanceService(
+            CryptoWalletBalanceProvider provider,
+            Duration cacheTtl,
+            Duration cacheHardTtl,
+            int maxEntries,
+            Clock clock,
+            SingleFlightCache.SecondLevel<String, CryptoWalletBalanceProvider.WalletBalance> secondLevel
+    ) {
         this.provider = provider;
-        this.cacheTtl = cacheTtl == null ? Duration.ofSeconds(DEFAULT_CACHE_TTL_SECONDS) : cacheTtl;
-        this.maxEntries = Math.max(0, maxEntries);
-        this.clock = clock == null ? Clock.systemUTC() : clock;
+        this.cache = new SingleFlightCache<>(
+                cacheTtl == null ? Duration.ofSeconds(DEFAULT_CACHE_TTL_SECONDS) : cacheTtl,
+                cacheHardTtl == null ? Duration.ofSeconds(DEFAULT_CACHE_HARD_TTL_SECONDS) : cacheHardTtl,
+                maxEntries,
+                clock,
+                null,
+                secondLevel
+        );
     }
 
     public CryptoWalletBalanceProvider.WalletBalance latestBalance(CryptoNetwork network, String addressNormalized) {
@@ -55,54 +81,31 @@ public class CryptoWalletBalanceService {
             throw new ApiException(ErrorCodes.BAD_REQUEST, "Network and address are required", HttpStatus.BAD_REQUEST);
         }
         String key = network.name() + ":" + addressNormalized;
-        Instant now = Instant.now(clock);
-        CachedBalance cached = cache.get(key);
-        if (cached != null && cacheTtl.compareTo(Duration.ZERO) > 0) {
-            Duration age = Duration.between(cached.fetchedAt(), now);
-            if (age.compareTo(cacheTtl) < 0) {
-                return cached.balance();
-            }
+        return cache.get(key, () -> fetch(network, addressNormalized));
+    }
+
+    /**
+     * Age of the cached balance of the wallet, or {@code null} when none is cached.
+     */
+    public Duration balanceAge(CryptoNetwork network, String addressNormalized) {
+        if (network == null || addressNormalized == null || addressNormalized.isBlank()) {
+            return null;
         }
+        return cache.age(network.name() + ":" + addressNormalized);
+    }
 
+    private CryptoWalletBalanceProvider.WalletBalance fetch(CryptoNetwork network, String addressNormalized) {
         if (provider == null) {
-            if (cached != null) {
-                return cached.balance();
-            }
             throw new ApiException(ErrorCodes.INTERNAL_ERROR, "Crypto wallet balance provider is not configured", HttpStatus.SERVICE_UNAVAILABLE);
         }
-
         try {
             CryptoWalletBalanceProvider.WalletBalance fetched = provider.fetchLatest(network, addressNormalized);
             if (fetched == null || fetched.balance() == null) {
                 throw new IllegalStateException("Empty crypto wallet balance response");
             }
-            cache.put(key, new CachedBalance(fetched, now));
-            evictIfNeeded();
             return fetched;
         } catch (Exception e) {
-            if (cached != null) {
-                return cached.balance();
-            }
             throw new ApiException(ErrorCodes.INTERNAL_ERROR, "Failed to fetch crypto wallet balance", HttpStatus.SERVICE_UNAVAILABLE);
         }
     }
-
-    private void evictIfNeeded() {
-        if (maxEntries <= 0) {
-            return;
-        }
-        int size = cache.size();
-        if (size <= maxEntries) {
-            return;
-        }
-        int toRemove = size - maxEntries;
-        cache.entrySet().stream()
-                .sorted(Comparator.comparing(entry -> entry.getValue().fetchedAt()))
-                .limit(toRemove)
-                .map(Map.Entry::getKey)
-                .forEach(cache::remove);
-    }
-
-    private record CachedBalance(CryptoWalletBalanceProvider.WalletBalance balance, Instant fetchedAt) {
-    }
 }
@@ -9,17 +9,34 @@ import com.myname.finguard.common.service.CryptoRatesProvider;
 import com.myname.finguard.common.service.CryptoRatesService;
 import com.myname.finguard.dashboard.events.UserDataChangedEvent;
 import com.myname.finguard.crypto.dto.CreateCryptoWalletRequest;
+import com.myname.finguard.crypto.dto.CryptoAssetHolding;
 import com.myname.finguard.crypto.dto.CryptoWalletDto;
 import com.myname.finguard.crypto.dto.CryptoWalletSummaryResponse;
 import com.myname.finguard.crypto.model.CryptoNetwork;
 import com.myname.finguard.crypto.model.CryptoWallet;
 import com.myname.finguard.crypto.repository.CryptoWalletRepository;
+import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -48,9 +65,12 @@ public class CryptoWalletService {
     private final ArbitrumWalletPortfolioService arbitrumWalletPortfolioService;
     private final CryptoWalletAnalysisService cryptoWalletAnalysisService;
     private final int maxWalletsPerUser;
+    private final long valuationDeadlineNanos;
+    private final ThreadPoolExecutor valuationPool;
     @Autowired(required = false)
     private ApplicationEventPublisher eventPublisher;
 
+    @Autowired
     public CryptoWalletService(
             CryptoWalletRepository cryptoWalletRepository,
             UserRepository userRepository,
@@ -60,7 +80,10 @@ public class CryptoWalletService {
             EthWalletPortfolioService ethWalletPortfolioService,
             ArbitrumWalletPortfolioService arbitrumWalletPortfolioService,
             CryptoWalletAnalysisService cryptoWalletAnalysisService,
-            @Value("${app.crypto.wallet.max-per-user:25}") int maxWalletsPerUser
+            @Value("${app.crypto.wallet.max-per-user:25}") int maxWalletsPerUser,
+            @Value("${app.crypto.wallet.valuation.parallelism:16}") int valuationParallelism,
+            @Value("${app.crypto.wallet.valuation.queue-capacity:256}") int valuationQueueCapacity,
+            @Value("${app.crypto.wallet.valuation.deadline-ms:4000}") long valuationDeadlineMs
     ) {
         this.cryptoWalletRepository = cryptoWalletRepository;
         this.userRepository = userRepository;
@@ -71,6 +94,21 @@ public class CryptoWalletService {
         this.arbitrumWalletPortfolioService = arbitrumWalletPortfolioService;
         this.cryptoWalletAnalysisService = cryptoWalletAnalysisService;
         this.maxWalletsPerUser = Math.max(0, maxWalletsPerUser);
+        this.valuationDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, valuationDeadlineMs));
+        int threads = Math.max(1, Math.min(valuationParallelism, 64));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.valuationPool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, valuationQueueCapacity)), runnable -> {
+            Thread thread = new Thread(runnable, "wallet-valuation-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.valuationPool.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        valuationPool.shutdownNow();
     }
 
     public CryptoWalletDto createWallet(Long userId, CreateCryptoWalletRequest request) {
@@ -118,7 +156,7 @@ public class CryptoWalletService {
                 log.debug("Failed to enqueue wallet analysis for walletId={}: {}", saved.getId(), ex.getMessage());
             }
             publishUserDataChanged(userId);
-            return new CryptoWalletDto(saved.getId(), saved.getNetwork().name(), saved.getLabel(), saved.getAddress(), null, null, user.getBaseCurrency(), null);
+            return new CryptoWalletDto(saved.getId(), saved.getNetwork().name(), saved.getLabel(), saved.getAddress(), null, null, user.getBaseCurrency(), null, null, null);
         } catch (DataIntegrityViolationException ex) {
             throw new ApiException(ErrorCodes.VALIDATION_GENERIC, "Wallet already exists", HttpStatus.BAD_REQUEST);
         }
@@ -137,9 +175,7 @@ public class CryptoWalletService {
             return List.of();
         }
 
-        return wallets.stream()
-                .map(wallet -> toDto(wallet, baseCurrency, prices))
-                .toList();
+        return toDtos(wallets, baseCurrency, prices);
     }
 
     public CryptoWalletSummaryResponse walletsSummary(Long userId) {
@@ -155,9 +191,7 @@ public class CryptoWalletService {
             return new CryptoWalletSummaryResponse(List.of(), BigDecimal.ZERO, baseCurrency);
         }
 
-        List<CryptoWalletDto> dtos = wallets.stream()
-                .map(wallet -> toDto(wallet, baseCurrency, prices))
-                .toList();
+        List<CryptoWalletDto> dtos = toDtos(wallets, baseCurrency, prices);
 
         BigDecimal total = null;
         boolean hasUnknown = dtos.stream().anyMatch(dto -> dto == null || dto.valueInBase() == null);
@@ -179,6 +213,14 @@ public class CryptoWalletService {
         }
         CryptoWallet wallet = cryptoWalletRepository.findByIdAndUserId(walletId, userId)
                 .orElseThrow(() -> new ApiException(ErrorCodes.BAD_REQUEST, "Wallet not found", HttpStatus.BAD_REQUEST));
+        try {
+            if (cryptoWalletAnalysisService != null) {
+                // Stop an in-flight pipeline before its rows cascade away underneath it.
+                cryptoWalletAnalysisService.cancelActiveJobs(userId, walletId);
+            }
+        } catch (Exception ex) {
+            log.debug("Failed to cancel wallet analysis for walletId={}: {}", walletId, ex.getMessage());
+        }
         log.info("Wallet deleted: userId={}, walletId={}, network={}", userId, walletId, wallet.getNetwork());
         cryptoWalletRepository.delete(wallet);
         publishUserDataChanged(userId);
@@ -212,29 +254,136 @@ public class CryptoWalletService {
         return toDto(saved, baseCurrency, prices);
     }
 
-    private CryptoWalletDto toDto(CryptoWallet wallet, String baseCurrency, Map<String, BigDecimal> prices) {
-        CryptoWalletBalanceProvider.WalletBalance balance = null;
+    /**
+     * Current per-asset quantities of the wallet: the native balance plus the token holdings reported by the
+     * portfolio providers for its network, keyed by upper-case asset code. Tokens are identified by contract:
+     * only the known contracts whose transfers are tracked are kept, under their canonical symbol, so a spam
+     * token calling itself "ETH" or "USDC" is never added to the real asset. Parts that cannot be fetched are
+     * left out; token prices are carried when the provider reports them.
+     */
+    public List<CryptoAssetHolding> currentHoldings(CryptoWallet wallet) {
+        if (wallet == null || wallet.getNetwork() == null) {
+            return List.of();
+        }
+        Map<String, CryptoAssetHolding> holdings = new LinkedHashMap<>();
         try {
-            balance = walletBalanceService.latestBalance(wallet.getNetwork(), wallet.getAddressNormalized());
+            CryptoWalletBalanceProvider.WalletBalance balance = walletBalanceService.latestBalance(wallet.getNetwork(), wallet.getAddressNormalized());
+            if (balance != null && balance.balance() != null) {
+                mergeHolding(holdings, priceCode(wallet.getNetwork()), balance.balance(), null);
+            }
         } catch (Exception ignored) {
-            // ignore balance failures for individual wallets
+            // a missing native balance leaves only the tokens
+        }
+        CryptoNetwork network = wallet.getNetwork();
+        if ((network == CryptoNetwork.ETH || network == CryptoNetwork.EVM) && ethWalletPortfolioService != null) {
+            try {
+                EthWalletPortfolioProvider.EthWalletPortfolio portfolio = ethWalletPortfolioService.latestPortfolio(wallet.getAddressNormalized());
+                if (portfolio != null && portfolio.topTokens() != null) {
+                    for (EthWalletPortfolioProvider.TokenHolding token : portfolio.topTokens()) {
+                        if (token != null) {
+                            String symbol = HttpWalletEventsProvider.knownTokenSymbol(CryptoNetwork.ETH, token.contractAddress());
+                            mergeHolding(holdings, symbol, token.amount(), token.priceUsd());
+                        }
+                    }
+                }
+            } catch (Exception ignored) {
+                // token holdings are best effort
+            }
         }
+        if ((network == CryptoNetwork.ARBITRUM || network == CryptoNetwork.EVM) && arbitrumWalletPortfolioService != null) {
+            try {
+                ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio portfolio = arbitrumWalletPortfolioService.latestPortfolio(wallet.getAddressNormalized());
+                if (portfolio != null && portfolio.topTokens() != null) {
+                    for (ArbitrumWalletPortfolioProvider.TokenHolding token : portfolio.topTokens()) {
+                        if (token != null) {
+                            String symbol = HttpWalletEventsProvider.knownTokenSymbol(CryptoNetwork.ARBITRUM, token.contractAddress());
+                            mergeHolding(holdings, symbol, token.amount(), token.priceUsd());
+                        }
+                    }
+                }
+            } catch (Exception ignored) {
+                // token holdings are best effort
+            }
+        }
+        return List.copyOf(holdings.values());
+    }
 
-        BigDecimal balanceValue = balance == null ? null : balance.balance();
-        BigDecimal valueInBase = computeValueInBase(wallet.getNetwork(), balanceValue, baseCurrency, prices);
-        if (wallet.getNetwork() == CryptoNetwork.ETH) {
-            BigDecimal tokenValueInBase = computeEthTokenValueInBase(wallet.getAddressNormalized(), baseCurrency);
-            valueInBase = mergeValues(valueInBase, tokenValueInBase, baseCurrency);
+    private void mergeHolding(Map<String, CryptoAssetHolding> holdings, String assetCode, BigDecimal quantity, BigDecimal priceUsd) {
+        if (assetCode == null || assetCode.isBlank() || quantity == null || quantity.signum() <= 0) {
+            return;
         }
-        if (wallet.getNetwork() == CryptoNetwork.ARBITRUM) {
-            BigDecimal tokenValueInBase = computeArbitrumTokenValueInBase(wallet.getAddressNormalized(), baseCurrency);
-            valueInBase = mergeValues(valueInBase, tokenValueInBase, baseCurrency);
+        String code = assetCode.trim().toUpperCase(Locale.ROOT);
+        holdings.merge(code, new CryptoAssetHolding(code, quantity, priceUsd), (a, b) -> new CryptoAssetHolding(
+                code,
+                a.quantity().add(b.quantity()),
+                a.priceUsd() != null ? a.priceUsd() : b.priceUsd()
+        ));
+    }
+
+    /**
+     * Values the wallets by queueing every balance and portfolio fetch of every wallet on the valuation pool,
+     * which runs up to {@code parallelism} of them at once. Fetches that the bounded queue rejects, or that
+     * have not started when the per-request deadline passes, are dropped; fetches already running are left to
+     * finish (and warm the provider caches) in the background. Wallets with a late fetch come back with
+     * {@code valueInBase = null}.
+     */
+    private List<CryptoWalletDto> toDtos(List<CryptoWallet> wallets, String baseCurrency, Map<String, BigDecimal> prices) {
+        long deadline = System.nanoTime() + valuationDeadlineNanos;
+        List<WalletFetch> fetches = new ArrayList<>(wallets.size());
+        for (CryptoWallet wallet : wallets) {
+            fetches.add(startFetch(wallet, valuationPool, deadline));
+        }
+        List<CryptoWalletDto> dtos = new ArrayList<>(wallets.size());
+        int late = 0;
+        for (int i = 0; i < wallets.size(); i += 1) {
+            WalletFetch fetch = fetches.get(i);
+            Fetched<CryptoWalletBalanceProvider.WalletBalance> balance = await(fetch.balance(), deadline);
+            Fetched<EthWalletPortfolioProvider.EthWalletPortfolio> ethPortfolio = await(fetch.ethPortfolio(), deadline);
+            Fetched<ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio> arbitrumPortfolio = await(fetch.arbitrumPortfolio(), deadline);
+            boolean missed = balance.missed() || ethPortfolio.missed() || arbitrumPortfolio.missed();
+            late += missed ? 1 : 0;
+            dtos.add(toDto(wallets.get(i), baseCurrency, prices, balance.value(), ethPortfolio.value(), arbitrumPortfolio.value(), missed));
+        }
+        if (late > 0) {
+            for (WalletFetch fetch : fetches) {
+                // Queued fetches see the cancellation and skip their provider call.
+                fetch.balance().cancel(false);
+                fetch.ethPortfolio().cancel(false);
+                fetch.arbitrumPortfolio().cancel(false);
+            }
+            log.debug("Wallet valuation deadline passed for {} of {} wallets", late, wallets.size());
         }
-        if (wallet.getNetwork() == CryptoNetwork.EVM) {
-            BigDecimal ethTokens = computeEthTokenValueInBase(wallet.getAddressNormalized(), baseCurrency);
-            BigDecimal arbTokens = computeArbitrumTokenValueInBase(wallet.getAddressNormalized(), baseCurrency);
-            valueInBase = mergeValues(valueInBase, ethTokens, baseCurrency);
-            valueInBase = mergeValues(valueInBase, arbTokens, baseCurrency);
+        return dtos;
+    }
+
+    private CryptoWalletDto toDto(CryptoWallet wallet, String baseCurrency, Map<String, BigDecimal> prices) {
+        WalletFetch fetch = startFetch(wallet, Runnable::run, System.nanoTime() + valuationDeadlineNanos);
+        return toDto(
+                wallet,
+                baseCurrency,
+                prices,
+                fetch.balance().getNow(null),
+                fetch.ethPortfolio().getNow(null),
+                fetch.arbitrumPortfolio().getNow(null),
+                false
+        );
+    }
+
+    private CryptoWalletDto toDto(
+            CryptoWallet wallet,
+            String baseCurrency,
+            Map<String, BigDecimal> prices,
+            CryptoWalletBalanceProvider.WalletBalance balance,
+            EthWalletPortfolioProvider.EthWalletPortfolio ethPortfolio,
+            ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio arbitrumPortfolio,
+            boolean missedDeadline
+    ) {
+        BigDecimal balanceValue = balance == null ? null : balance.balance();
+        BigDecimal valueInBase = null;
+        if (!missedDeadline) {
+            valueInBase = computeValueInBase(wallet.getNetwork(), balanceValue, baseCurrency, prices);
+            valueInBase = mergeValues(valueInBase, tokenValueInBase(ethPortfolio == null ? null : ethPortfolio.tokenValueUsd(), baseCurrency), baseCurrency);
+            valueInBase = mergeValues(valueInBase, tokenValueInBase(arbitrumPortfolio == null ? null : arbitrumPortfolio.tokenValueUsd(), baseCurrency), baseCurrency);
         }
         return new CryptoWalletDto(
                 wallet.getId(),
@@ -244,30 +393,103 @@ public class CryptoWalletService {
                 balanceValue,
                 valueInBase,
                 baseCurrency,
-                balance == null ? null : balance.asOf()
+                balance == null ? null : balance.asOf(),
+                balance == null ? null : balanceAgeSeconds(wallet),
+                missedDeadline ? null : portfolioAgeSeconds(wallet, ethPortfolio, arbitrumPortfolio)
         );
     }
 
-    private BigDecimal computeEthTokenValueInBase(String addressNormalized, String baseCurrency) {
-        if (ethWalletPortfolioService == null || addressNormalized == null || addressNormalized.isBlank()) {
-            return null;
+    private Long balanceAgeSeconds(CryptoWallet wallet) {
+        Duration age = walletBalanceService.balanceAge(wallet.getNetwork(), wallet.getAddressNormalized());
+        return age == null ? null : age.toSeconds();
+    }
+
+    /**
+     * Age of the oldest cached portfolio whose token value went into {@code valueInBase}, or {@code null}.
+     */
+    private Long portfolioAgeSeconds(
+            CryptoWallet wallet,
+            EthWalletPortfolioProvider.EthWalletPortfolio ethPortfolio,
+            ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio arbitrumPortfolio
+    ) {
+        Duration oldest = null;
+        if (ethPortfolio != null && ethPortfolio.tokenValueUsd() != null && ethWalletPortfolioService != null) {
+            oldest = older(oldest, ethWalletPortfolioService.portfolioAge(wallet.getAddressNormalized()));
         }
+        if (arbitrumPortfolio != null && arbitrumPortfolio.tokenValueUsd() != null && arbitrumWalletPortfolioService != null) {
+            oldest = older(oldest, arbitrumWalletPortfolioService.portfolioAge(wallet.getAddressNormalized()));
+        }
+        return oldest == null ? null : oldest.toSeconds();
+    }
+
+    private static Duration older(Duration a, Duration b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * Starts the provider calls the wallet's network needs on {@code executor}; calls that fail or are not
+     * needed complete with {@code null}, calls that were rejected or not started by {@code deadlineNanos}
+     * are cancelled.
+     */
+    private WalletFetch startFetch(CryptoWallet wallet, Executor executor, long deadlineNanos) {
+        CryptoNetwork network = wallet.getNetwork();
+        String address = wallet.getAddressNormalized();
+        boolean hasAddress = address != null && !address.isBlank();
+        CompletableFuture<CryptoWalletBalanceProvider.WalletBalance> balance =
+                fetchAsync(() -> walletBalanceService.latestBalance(network, address), executor, deadlineNanos);
+        CompletableFuture<EthWalletPortfolioProvider.EthWalletPortfolio> ethPortfolio =
+                (network == CryptoNetwork.ETH || network == CryptoNetwork.EVM) && ethWalletPortfolioService != null && hasAddress
+                        ? fetchAsync(() -> ethWalletPortfolioService.latestPortfolio(address), executor, deadlineNanos)
+                        : CompletableFuture.completedFuture(null);
+        CompletableFuture<ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio> arbitrumPortfolio =
+                (network == CryptoNetwork.ARBITRUM || network == CryptoNetwork.EVM) && arbitrumWalletPortfolioService != null && hasAddress
+                        ? fetchAsync(() -> arbitrumWalletPortfolioService.latestPortfolio(address), executor, deadlineNanos)
+                        : CompletableFuture.completedFuture(null);
+        return new WalletFetch(balance, ethPortfolio, arbitrumPortfolio);
+    }
+
+    private static <T> CompletableFuture<T> fetchAsync(Supplier<T> call, Executor executor, long deadlineNanos) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            if (future.isDone() || System.nanoTime() - deadlineNanos > 0) {
+                // The request already reported this wallet as late.
+                future.cancel(false);
+                return;
+            }
+            try {
+                future.complete(call.get());
+            } catch (Exception ignored) {
+                // ignore provider failures for individual wallets
+                future.complete(null);
+            }
+        };
         try {
-            EthWalletPortfolioProvider.EthWalletPortfolio portfolio = ethWalletPortfolioService.latestPortfolio(addressNormalized);
-            BigDecimal tokenValueUsd = portfolio == null ? null : portfolio.tokenValueUsd();
-            return convertUsdToBase(tokenValueUsd, baseCurrency);
-        } catch (Exception ignored) {
-            return null;
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // The valuation queue is full; report the wallet as late instead of piling up more work.
+            future.cancel(false);
         }
+        return future;
     }
 
-    private BigDecimal computeArbitrumTokenValueInBase(String addressNormalized, String baseCurrency) {
-        if (arbitrumWalletPortfolioService == null || addressNormalized == null || addressNormalized.isBlank()) {
-            return null;
+    private static <T> Fetched<T> await(CompletableFuture<T> future, long deadlineNanos) {
+        try {
+            return new Fetched<>(future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS), false);
+        } catch (TimeoutException | CancellationException ex) {
+            return new Fetched<>(null, true);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new Fetched<>(null, true);
+        } catch (ExecutionException ex) {
+            return new Fetched<>(null, false);
         }
+    }
+
+    private BigDecimal tokenValueInBase(BigDecimal tokenValueUsd, String baseCurrency) {
         try {
-            ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio portfolio = arbitrumWalletPortfolioService.latestPortfolio(addressNormalized);
-            BigDecimal tokenValueUsd = portfolio == null ? null : portfolio.tokenValueUsd();
             return convertUsdToBase(tokenValueUsd, baseCurrency);
         } catch (Exception ignored) {
             return null;
@@ -435,6 +657,16 @@ public class CryptoWalletService {
         return new ApiException(ErrorCodes.AUTH_INVALID_CREDENTIALS, "User is not authenticated", HttpStatus.UNAUTHORIZED);
     }
 
+    private record WalletFetch(
+            CompletableFuture<CryptoWalletBalanceProvider.WalletBalance> balance,
+            CompletableFuture<EthWalletPortfolioProvider.EthWalletPortfolio> ethPortfolio,
+            CompletableFuture<ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio> arbitrumPortfolio
+    ) {
+    }
+
+    private record Fetched<T>(T value, boolean missed) {
+    }
+
     private void publishUserDataChanged(Long userId) {
         if (eventPublisher == null || userId == null) {
             return;
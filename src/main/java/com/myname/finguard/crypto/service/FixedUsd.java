@@ -0,0 +1,108 @@
+package com.myname.finguard.crypto.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point USD amounts for the analysis hot loops: a plain {@code long} holding the amount scaled by
+ * {@link #SCALE}, so per-row and per-day arithmetic allocates nothing. Conversions and arithmetic are
+ * overflow-checked and saturate at the {@code long} range instead of wrapping (a spam token priced at
+ * trillions must not flip a sum negative). {@link BigDecimal} is produced only at DTO and persistence
+ * boundaries through {@link #toDecimal(long)}.
+ */
+final class FixedUsd {
+
+    static final int SCALE = 8;
+    static final long ONE = 100_000_000L;
+
+    private static final double ONE_AS_DOUBLE = ONE;
+
+    private FixedUsd() {
+    }
+
+    /**
+     * Scaled value of {@code amount}, rounded half-up to {@link #SCALE} digits; {@code null} is zero.
+     */
+    static long of(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        BigDecimal scaled = amount.setScale(SCALE, RoundingMode.HALF_UP);
+        if (scaled.unscaledValue().bitLength() >= Long.SIZE) {
+            return scaled.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return scaled.unscaledValue().longValue();
+    }
+
+    static long ofDouble(double usd) {
+        if (Double.isNaN(usd)) {
+            return 0L;
+        }
+        double scaled = usd * ONE_AS_DOUBLE;
+        if (scaled >= Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        if (scaled <= Long.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return Math.round(scaled);
+    }
+
+    static BigDecimal toDecimal(long scaled) {
+        return BigDecimal.valueOf(scaled, SCALE);
+    }
+
+    static double toDouble(long scaled) {
+        return scaled / ONE_AS_DOUBLE;
+    }
+
+    static long add(long a, long b) {
+        long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return sum;
+    }
+
+    static long subtract(long a, long b) {
+        long difference = a - b;
+        if (((a ^ b) & (a ^ difference)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return difference;
+    }
+
+    /**
+     * Whether {@code scaled} sits at either end of the {@code long} range, i.e. a conversion or sum clamped it and
+     * it no longer holds the exact amount.
+     */
+    static boolean saturated(long scaled) {
+        return scaled == Long.MAX_VALUE || scaled == Long.MIN_VALUE;
+    }
+
+    static long abs(long scaled) {
+        return scaled == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(scaled);
+    }
+
+    /**
+     * Mutable running total and count, for sums over rows without boxing.
+     */
+    static final class Sum {
+
+        private long total;
+        private int count;
+
+        void add(long scaled) {
+            total = FixedUsd.add(total, scaled);
+            count += 1;
+        }
+
+        long total() {
+            return total;
+        }
+
+        int count() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.common.service.ExternalProviderGuard;
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Reads wallet transfers from public chain APIs.
+ * BTC pages through Blockstream's {@code /address/{address}/txs/chain}, newest first, with the cursor holding
+ * the chain head seen when the scan started and the last txid of the previous page; a forward scan stops at the
+ * first transaction at or below {@code sinceBlock}. EVM networks read ERC-20 {@code Transfer} logs to and from
+ * the address over fixed block ranges via JSON-RPC. Their forward scan walks ranges oldest first from
+ * {@code sinceBlock} to the head read when it started, which its cursor holds. The backfill pass walks them
+ * newest first so its first page covers recent activity; its cursor holds the head block, the end of the next
+ * range and the pass floor, the block estimated from {@code notBefore} and the chain's configured block time.
+ * A backfill page with a transfer older than {@code notBefore} also ends the pass.
+ */
+@Component
+public class HttpWalletEventsProvider implements WalletEventsProvider {
+
+    static final String TRANSFER_TOPIC = "0xddf252ad1be2c89b69c2b068fc378daa952ba7f163c4a11628f55a4df523b3ef";
+
+    private static final String PROVIDER_BLOCKSTREAM = "blockstream";
+    private static final String PROVIDER_ARBITRUM_RPC = "arbitrum-rpc";
+    private static final String PROVIDER_ETH_RPC = "eth-rpc";
+
+    private static final BigDecimal SATOSHIS_PER_BTC = new BigDecimal("100000000");
+    private static final int BLOCKSTREAM_PAGE_SIZE = 25;
+    private static final int AMOUNT_SCALE = 8;
+
+    private static final ParameterizedTypeReference<List<BlockstreamTx>> BLOCKSTREAM_TXS = new ParameterizedTypeReference<>() {
+    };
+
+    private static final Map<String, Token> ETH_TOKENS = Map.of(
+            "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48", new Token("USDC", 6),
+            "0xdac17f958d2ee523a2206206994597c13d831ec7", new Token("USDT", 6),
+            "0x6b175474e89094c44da98b954eedeac495271d0f", new Token("DAI", 18),
+            "0xc02aaa39b223fe8d0a0e5c4f27ead9083c756cc2", new Token("WETH", 18)
+    );
+    private static final Map<String, Token> ARBITRUM_TOKENS = Map.of(
+            "0xaf88d065e77c8cc2239327c5edb3a432268e5831", new Token("USDC", 6),
+            "0xff970a61a04b1ca14834a43f5de4533ebddb5cc8", new Token("USDC", 6),
+            "0xfd086bc7cd5c481dcc9c85ebe478a1c0b69fcbb9", new Token("USDT", 6),
+            "0xda10009cbd5d07dd0cecc66161fc93d7c9000da1", new Token("DAI", 18),
+            "0x82af49447d8a07e3bd95bd0d56f35241523fbab1", new Token("WETH", 18)
+    );
+
+    private final RestClient btcClient;
+    private final RestClient ethRpcClient;
+    private final RestClient arbitrumRpcClient;
+    private final ExternalProviderGuard guard;
+    private final long evmBlockRange;
+    private final long ethBlockTimeMs;
+    private final long arbitrumBlockTimeMs;
+    private final int blockstreamLimit;
+    private final long blockstreamWindowMs;
+    private final int ethRpcLimit;
+    private final long ethRpcWindowMs;
+    private final int arbitrumRpcLimit;
+    private final long arbitrumRpcWindowMs;
+
+    public HttpWalletEventsProvider(
+            RestClient.Builder builder,
+            String btcBaseUrl,
+            String ethRpcBaseUrl,
+            String arbitrumRpcBaseUrl,
+            long evmBlockRange
+    ) {
+        this(builder, btcBaseUrl, ethRpcBaseUrl, arbitrumRpcBaseUrl, evmBlockRange, 12_000, 250, null, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Autowired
+    public HttpWalletEventsProvider(
+            RestClient.Builder builder,
+            @Value("${app.crypto.wallet.btc.provider-base-url:https://blockstream.info/api}") String btcBaseUrl,
+            @Value("${app.crypto.wallet.eth.rpc-base-url:https://cloudflare-eth.com}") String ethRpcBaseUrl,
+            @Value("${app.crypto.wallet.arbitrum.provider-base-url:https://arb1.arbitrum.io/rpc}") String arbitrumRpcBaseUrl,
+            @Value("${app.crypto.analysis.live-events.evm-block-range:2000}") long evmBlockRange,
+            @Value("${app.crypto.analysis.live-events.eth-block-time-ms:12000}") long ethBlockTimeMs,
+            @Value("${app.crypto.analysis.live-events.arbitrum-block-time-ms:250}") long arbitrumBlockTimeMs,
+            ExternalProviderGuard guard,
+            @Value("${app.external.providers.budget.blockstream.limit:600}") int blockstreamLimit,
+            @Value("${app.external.providers.budget.blockstream.window-ms:60000}") long blockstreamWindowMs,
+            @Value("${app.external.providers.budget.eth-rpc.limit:300}") int ethRpcLimit,
+            @Value("${app.external.providers.budget.eth-rpc.window-ms:60000}") long ethRpcWindowMs,
+            @Value("${app.external.providers.budget.arbitrum-rpc.limit:600}") int arbitrumRpcLimit,
+            @Value("${app.external.providers.budget.arbitrum-rpc.window-ms:60000}") long arbitrumRpcWindowMs
+    ) {
+        this.btcClient = builder.baseUrl(trimTrailingSlash(btcBaseUrl)).build();
+        this.ethRpcClient = builder.baseUrl(trimTrailingSlash(ethRpcBaseUrl)).build();
+        this.arbitrumRpcClient = builder.baseUrl(trimTrailingSlash(arbitrumRpcBaseUrl)).build();
+        this.guard = guard;
+        this.evmBlockRange = Math.max(1, evmBlockRange);
+        this.ethBlockTimeMs = Math.max(1, ethBlockTimeMs);
+        this.arbitrumBlockTimeMs = Math.max(1, arbitrumBlockTimeMs);
+        this.blockstreamLimit = Math.max(0, blockstreamLimit);
+        this.blockstreamWindowMs = Math.max(0, blockstreamWindowMs);
+        this.ethRpcLimit = Math.max(0, ethRpcLimit);
+        this.ethRpcWindowMs = Math.max(0, ethRpcWindowMs);
+        this.arbitrumRpcLimit = Math.max(0, arbitrumRpcLimit);
+        this.arbitrumRpcWindowMs = Math.max(0, arbitrumRpcWindowMs);
+    }
+
+    @Override
+    public EventsPage fetchPage(CryptoNetwork network, String addressNormalized, PageRequest request) {
+        if (network == null) {
+            throw new IllegalArgumentException("Network is required");
+        }
+        if (addressNormalized == null || addressNormalized.isBlank()) {
+            throw new IllegalArgumentException("Address is required");
+        }
+        PageRequest effective = request == null ? new PageRequest(null, null, null) : request;
+        return switch (network) {
+            case BTC -> fetchBtcPage(addressNormalized, effective);
+            case ETH, EVM -> fetchEvmPage(new EvmChain(ethRpcClient, PROVIDER_ETH_RPC, ethRpcLimit, ethRpcWindowMs,
+                    ethBlockTimeMs, ETH_TOKENS), addressNormalized, effective);
+            case ARBITRUM -> fetchEvmPage(new EvmChain(arbitrumRpcClient, PROVIDER_ARBITRUM_RPC, arbitrumRpcLimit,
+                    arbitrumRpcWindowMs, arbitrumBlockTimeMs, ARBITRUM_TOKENS), addressNormalized, effective);
+        };
+    }
+
+    private EventsPage fetchBtcPage(String address, PageRequest request) {
+        Long headBlock = null;
+        String lastSeenTxid = null;
+        if (request.cursor() != null) {
+            String[] parts = request.cursor().split(":", 2);
+            headBlock = parseLong(parts[0]);
+            lastSeenTxid = parts.length > 1 && !parts[1].isBlank() ? parts[1] : null;
+        }
+        String seen = lastSeenTxid;
+        List<BlockstreamTx> page = guarded(PROVIDER_BLOCKSTREAM, blockstreamLimit, blockstreamWindowMs, () -> (seen == null
+                ? btcClient.get().uri("/address/{address}/txs/chain", address)
+                : btcClient.get().uri("/address/{address}/txs/chain/{txid}", address, seen))
+                .retrieve()
+                .body(BLOCKSTREAM_TXS));
+        if (page == null || page.isEmpty()) {
+            return new EventsPage(List.of(), null, headBlock);
+        }
+
+        List<WalletEvent> events = new ArrayList<>(page.size());
+        boolean reachedKnown = false;
+        for (BlockstreamTx tx : page) {
+            if (tx == null || tx.txid() == null || tx.status() == null || tx.status().block_height() == null) {
+                continue;
+            }
+            long height = tx.status().block_height();
+            Instant txAt = tx.status().block_time() == null ? null : Instant.ofEpochSecond(tx.status().block_time());
+            if (headBlock == null || height > headBlock) {
+                headBlock = height;
+            }
+            if ((request.sinceBlock() != null && height <= request.sinceBlock())
+                    || (request.notBefore() != null && txAt != null && txAt.isBefore(request.notBefore()))) {
+                reachedKnown = true;
+                continue;
+            }
+            WalletEvent event = toBtcEvent(address, tx, height, txAt);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        BlockstreamTx last = page.get(page.size() - 1);
+        boolean complete = reachedKnown || page.size() < BLOCKSTREAM_PAGE_SIZE || last == null || last.txid() == null;
+        // Blockstream only lists newest first, so a forward scan is complete through the tip once it reaches a
+        // known block and not before.
+        Long completeThrough = request.isForward() && !complete ? null : headBlock;
+        return new EventsPage(events, complete ? null : headBlock + ":" + last.txid(), completeThrough);
+    }
+
+    private WalletEvent toBtcEvent(String address, BlockstreamTx tx, long height, Instant txAt) {
+        if (txAt == null) {
+            return null;
+        }
+        long received = 0;
+        long spent = 0;
+        String sender = null;
+        String recipient = null;
+        for (BlockstreamVin vin : nullSafe(tx.vin())) {
+            BlockstreamVout prevout = vin == null ? null : vin.prevout();
+            if (prevout == null) {
+                continue;
+            }
+            if (address.equalsIgnoreCase(prevout.scriptpubkey_address())) {
+                spent += safeLong(prevout.value());
+            } else if (sender == null) {
+                sender = prevout.scriptpubkey_address();
+            }
+        }
+        for (BlockstreamVout vout : nullSafe(tx.vout())) {
+            if (vout == null) {
+                continue;
+            }
+            if (address.equalsIgnoreCase(vout.scriptpubkey_address())) {
+                received += safeLong(vout.value());
+            } else if (recipient == null) {
+                recipient = vout.scriptpubkey_address();
+            }
+        }
+        long net = received - spent;
+        if (net == 0) {
+            return null;
+        }
+        boolean outgoing = net < 0;
+        long fee = outgoing ? safeLong(tx.fee()) : 0L;
+        long amount = outgoing ? Math.max(-net - fee, 0L) : net;
+        if (amount == 0) {
+            amount = Math.abs(net);
+        }
+        return new WalletEvent(
+                tx.txid(),
+                0L,
+                height,
+                txAt,
+                outgoing ? "OUT" : "IN",
+                "BTC",
+                satoshisToBtc(amount),
+                satoshisToBtc(fee),
+                outgoing ? recipient : sender
+        );
+    }
+
+    private EventsPage fetchEvmPage(EvmChain chain, String address, PageRequest request) {
+        return request.isForward() ? fetchEvmForwardPage(chain, address, request) : fetchEvmBackfillPage(chain, address, request);
+    }
+
+    /**
+     * Oldest block range first from {@code sinceBlock} up to the head read when the scan started (carried in the
+     * cursor), so every page is complete through its upper block and the caller can move its watermark there.
+     */
+    private EventsPage fetchEvmForwardPage(EvmChain chain, String address, PageRequest request) {
+        long head = request.cursor() == null
+                ? parseHexLong(rpcString(chain, "eth_blockNumber", List.of()))
+                : parseLong(request.cursor());
+        long since = request.sinceBlock();
+        long from = Math.max(since + 1, notBeforeBlock(chain, head, request.notBefore()));
+        if (from > head) {
+            return new EventsPage(List.of(), null, Math.max(since, head));
+        }
+        long to = Math.min(head, from + evmBlockRange - 1);
+        List<WalletEvent> events = transferEvents(chain, address, from, to);
+        if (request.notBefore() != null) {
+            events.removeIf(event -> event.txAt().isBefore(request.notBefore()));
+        }
+        return new EventsPage(events, to < head ? String.valueOf(head) : null, to);
+    }
+
+    /**
+     * Newest block range first from the head pinned when the pass started down to the {@code notBefore} block.
+     */
+    private EventsPage fetchEvmBackfillPage(EvmChain chain, String address, PageRequest request) {
+        long head;
+        long to;
+        long floor;
+        String[] parts = request.cursor() == null ? new String[0] : request.cursor().split(":");
+        if (parts.length == 3) {
+            head = parseLong(parts[0]);
+            to = parseLong(parts[1]);
+            floor = parseLong(parts[2]);
+        } else {
+            // No cursor, or one from the former oldest-first scan: start a new pass at the chain head.
+            head = parseHexLong(rpcString(chain, "eth_blockNumber", List.of()));
+            to = head;
+            floor = notBeforeBlock(chain, head, request.notBefore());
+        }
+        if (to < floor) {
+            return new EventsPage(List.of(), null, head);
+        }
+        long from = Math.max(floor, to - evmBlockRange + 1);
+        List<WalletEvent> events = transferEvents(chain, address, from, to);
+        boolean reachedNotBefore = request.notBefore() != null
+                && events.removeIf(event -> event.txAt().isBefore(request.notBefore()));
+        boolean complete = reachedNotBefore || from <= floor;
+        return new EventsPage(events, complete ? null : head + ":" + (from - 1) + ":" + floor, head);
+    }
+
+    private List<WalletEvent> transferEvents(EvmChain chain, String address, long from, long to) {
+        String topic = addressTopic(address);
+        List<RpcLog> logs = new ArrayList<>();
+        logs.addAll(rpcLogs(chain, from, to, Arrays.asList(TRANSFER_TOPIC, topic)));
+        logs.addAll(rpcLogs(chain, from, to, Arrays.asList(TRANSFER_TOPIC, null, topic)));
+
+        Map<Long, Instant> blockTimes = new HashMap<>();
+        List<WalletEvent> events = new ArrayList<>(logs.size());
+        for (RpcLog item : logs) {
+            WalletEvent event = toEvmEvent(chain, address, item, blockTimes);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        events.sort(Comparator.comparing(WalletEvent::txAt).thenComparingLong(WalletEvent::logIndex));
+        return events;
+    }
+
+    /**
+     * First block estimated to be at or after {@code notBefore} from the chain's block time, or genesis without one.
+     */
+    private long notBeforeBlock(EvmChain chain, long head, Instant notBefore) {
+        if (notBefore == null) {
+            return 0L;
+        }
+        long millis = Math.max(0L, Duration.between(notBefore, Instant.now()).toMillis());
+        return Math.max(0L, head - millis / chain.blockTimeMs());
+    }
+
+    private WalletEvent toEvmEvent(EvmChain chain, String address, RpcLog item, Map<Long, Instant> blockTimes) {
+        if (item == null || item.transactionHash() == null || item.topics() == null || item.topics().size() < 3
+                || item.blockNumber() == null || Boolean.TRUE.equals(item.removed())) {
+            return null;
+        }
+        Token token = item.address() == null ? null : chain.tokens().get(item.address().toLowerCase(Locale.ROOT));
+        if (token == null) {
+            // Unknown contracts are mostly airdrop spam and cannot be valued; they are left out.
+            return null;
+        }
+        String sender = topicAddress(item.topics().get(1));
+        String recipient = topicAddress(item.topics().get(2));
+        boolean outgoing = address.equalsIgnoreCase(sender);
+        long blockNumber = parseHexLong(item.blockNumber());
+        Instant txAt = blockTimes.computeIfAbsent(blockNumber, block -> blockTime(chain, block));
+        if (txAt == null) {
+            return null;
+        }
+        BigDecimal amount = new BigDecimal(parseHex(item.data()))
+                .movePointLeft(token.decimals())
+                .setScale(AMOUNT_SCALE, RoundingMode.DOWN);
+        return new WalletEvent(
+                item.transactionHash(),
+                parseHexLong(item.logIndex()),
+                blockNumber,
+                txAt,
+                outgoing ? "OUT" : "IN",
+                token.symbol(),
+                amount,
+                BigDecimal.ZERO.setScale(AMOUNT_SCALE, RoundingMode.DOWN),
+                outgoing ? recipient : sender
+        );
+    }
+
+    private Instant blockTime(EvmChain chain, long blockNumber) {
+        RpcBlockResponse response = guarded(chain.providerKey(), chain.limit(), chain.windowMs(), () -> chain.client().post()
+                .body(new JsonRpcRequest("2.0", 1L, "eth_getBlockByNumber", List.of(toHex(blockNumber), false)))
+                .retrieve()
+                .body(RpcBlockResponse.class));
+        if (response == null || response.result() == null || response.result().timestamp() == null) {
+            return null;
+        }
+        return Instant.ofEpochSecond(parseHexLong(response.result().timestamp()));
+    }
+
+    private String rpcString(EvmChain chain, String method, List<Object> params) {
+        JsonRpcResponse response = guarded(chain.providerKey(), chain.limit(), chain.windowMs(), () -> chain.client().post()
+                .body(new JsonRpcRequest("2.0", 1L, method, params))
+                .retrieve()
+                .body(JsonRpcResponse.class));
+        if (response == null) {
+            throw new IllegalStateException("Empty " + method + " response");
+        }
+        requireNoError(method, response.error());
+        if (response.result() == null || response.result().isBlank()) {
+            throw new IllegalStateException("Empty " + method + " result");
+        }
+        return response.result();
+    }
+
+    private List<RpcLog> rpcLogs(EvmChain chain, long from, long to, List<String> topics) {
+        Map<String, Object> filter = new HashMap<>();
+        filter.put("fromBlock", toHex(from));
+        filter.put("toBlock", toHex(to));
+        filter.put("topics", topics);
+        RpcLogsResponse response = guarded(chain.providerKey(), chain.limit(), chain.windowMs(), () -> chain.client().post()
+                .body(new JsonRpcRequest("2.0", 1L, "eth_getLogs", List.of(filter)))
+                .retrieve()
+                .body(RpcLogsResponse.class));
+        if (response == null) {
+            throw new IllegalStateException("Empty eth_getLogs response");
+        }
+        requireNoError("eth_getLogs", response.error());
+        return response.result() == null ? List.of() : response.result();
+    }
+
+    private void requireNoError(String method, JsonRpcError error) {
+        if (error != null && error.message() != null && !error.message().isBlank()) {
+            throw new IllegalStateException(method + " provider error: " + error.message());
+        }
+    }
+
+    private <T> T guarded(String providerKey, int limit, long windowMs, Supplier<T> call) {
+        if (guard == null) {
+            return call.get();
+        }
+        return guard.execute(providerKey, limit, windowMs, call);
+    }
+
+    /**
+     * Symbol of the known ERC-20 token at {@code contractAddress} on {@code network} ({@link CryptoNetwork#ETH} or
+     * {@link CryptoNetwork#ARBITRUM}), or {@code null} for contracts whose transfers are not tracked.
+     */
+    static String knownTokenSymbol(CryptoNetwork network, String contractAddress) {
+        if (contractAddress == null) {
+            return null;
+        }
+        Map<String, Token> tokens = network == CryptoNetwork.ETH ? ETH_TOKENS : network == CryptoNetwork.ARBITRUM ? ARBITRUM_TOKENS : Map.of();
+        Token token = tokens.get(contractAddress.trim().toLowerCase(Locale.ROOT));
+        return token == null ? null : token.symbol();
+    }
+
+    static String addressTopic(String address) {
+        String hex = address.trim().toLowerCase(Locale.ROOT);
+        if (hex.startsWith("0x")) {
+            hex = hex.substring(2);
+        }
+        return "0x" + "0".repeat(Math.max(0, 64 - hex.length())) + hex;
+    }
+
+    private String topicAddress(String topic) {
+        if (topic == null || topic.length() < 40) {
+            return null;
+        }
+        return "0x" + topic.substring(topic.length() - 40).toLowerCase(Locale.ROOT);
+    }
+
+    private BigDecimal satoshisToBtc(long satoshis) {
+        return BigDecimal.valueOf(satoshis).divide(SATOSHIS_PER_BTC, AMOUNT_SCALE, RoundingMode.DOWN);
+    }
+
+    private String toHex(long value) {
+        return "0x" + Long.toHexString(value);
+    }
+
+    private long parseHexLong(String raw) {
+        return parseHex(raw).longValueExact();
+    }
+
+    private BigInteger parseHex(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return BigInteger.ZERO;
+        }
+        String value = raw.trim().toLowerCase(Locale.ROOT);
+        if (value.startsWith("0x")) {
+            value = value.substring(2);
+        }
+        if (value.isEmpty()) {
+            return BigInteger.ZERO;
+        }
+        return new BigInteger(value, 16);
+    }
+
+    private long parseLong(String raw) {
+        try {
+            return Long.parseLong(Objects.requireNonNull(raw).trim());
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Malformed wallet events cursor");
+        }
+    }
+
+    private long safeLong(Long value) {
+        return value == null ? 0L : value;
+    }
+
+    private <T> List<T> nullSafe(List<T> values) {
+        return values == null ? List.of() : values;
+    }
+
+    private String trimTrailingSlash(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replaceAll("/+$", "");
+    }
+
+    private record EvmChain(
+            RestClient client,
+            String providerKey,
+            int limit,
+            long windowMs,
+            long blockTimeMs,
+            Map<String, Token> tokens
+    ) {
+    }
+
+    private record Token(String symbol, int decimals) {
+    }
+
+    private record BlockstreamTx(String txid, BlockstreamStatus status, Long fee, List<BlockstreamVin> vin, List<BlockstreamVout> vout) {
+    }
+
+    private record BlockstreamStatus(Boolean confirmed, Long block_height, Long block_time) {
+    }
+
+    private record BlockstreamVin(BlockstreamVout prevout) {
+    }
+
+    private record BlockstreamVout(String scriptpubkey_address, Long value) {
+    }
+
+    private record JsonRpcRequest(String jsonrpc, long id, String method, List<Object> params) {
+    }
+
+    private record JsonRpcResponse(String jsonrpc, Long id, String result, JsonRpcError error) {
+    }
+
+    private record RpcLogsResponse(String jsonrpc, Long id, List<RpcLog> result, JsonRpcError error) {
+    }
+
+    private record RpcLog(
+            String address,
+            List<String> topics,
+            String data,
+            String blockNumber,
+            String transactionHash,
+            String logIndex,
+            Boolean removed
+    ) {
+    }
+
+    private record RpcBlockResponse(String jsonrpc, Long id, RpcBlock result, JsonRpcError error) {
+    }
+
+    private record RpcBlock(String number, String timestamp) {
+    }
+
+    private record JsonRpcError(Integer code, String message) {
+    }
+}
@@ -0,0 +1,162 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.crypto.model.WalletRecurringCadence;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Incremental recurring-charge model over a {@link WalletRecurringCadence}. Charges are folded in one at a
+ * time in {@code tx_at} order with Welford updates of the amount and interval mean/variance, so a run only
+ * touches its new outflows. When an interval falls outside the cadence band of the running mean, the
+ * sequence restarts from that charge and the model follows the counterparty's current billing pattern.
+ */
+final class RecurringCadenceTracker {
+
+    static final double MAX_AMOUNT_VARIATION = 0.15;
+    static final double MAX_INTERVAL_VARIATION = 0.25;
+
+    private static final double MICROS_PER_DAY = 86_400_000_000d;
+    private static final double MIN_INTERVAL_DAYS = 1.0;
+
+    enum Cadence {
+        WEEKLY(7, 6, 8, 2),
+        BIWEEKLY(14, 12, 16, 2),
+        MONTHLY(30, 26, 33, 2),
+        QUARTERLY(91, 84, 98, 2),
+        YEARLY(365, 350, 380, 1);
+
+        private final int days;
+        private final double minDays;
+        private final double maxDays;
+        private final int minIntervals;
+
+        Cadence(int days, double minDays, double maxDays, int minIntervals) {
+            this.days = days;
+            this.minDays = minDays;
+            this.maxDays = maxDays;
+            this.minIntervals = minIntervals;
+        }
+
+        int days() {
+            return days;
+        }
+
+        int minIntervals() {
+            return minIntervals;
+        }
+
+        static Cadence of(double intervalDays) {
+            for (Cadence cadence : values()) {
+                if (intervalDays >= cadence.minDays && intervalDays <= cadence.maxDays) {
+                    return cadence;
+                }
+            }
+            return null;
+        }
+    }
+
+    record Match(Cadence cadence, double amountUsd, double intervalDays, Instant nextChargeAt, double confidence) {
+        double monthlyUsd() {
+            return amountUsd * 30.0 / Math.max(1.0, intervalDays);
+        }
+    }
+
+    private RecurringCadenceTracker() {
+    }
+
+    /**
+     * Folds one outflow into the model. Charges must arrive in {@code tx_at} order; charges less than a day
+     * after the previous one only update the amount statistics.
+     */
+    static void observe(WalletRecurringCadence state, long txAtMicros, double amountUsd, boolean fallback) {
+        Instant txAt = toInstant(txAtMicros);
+        if (state.getChargeCount() == 0 || state.getLastChargeAt() == null) {
+            restart(state, txAt, amountUsd, fallback);
+            return;
+        }
+        double intervalDays = (txAtMicros - toMicros(state.getLastChargeAt())) / MICROS_PER_DAY;
+        if (intervalDays >= MIN_INTERVAL_DAYS) {
+            Cadence cadence = Cadence.of(intervalDays);
+            boolean sameBand = state.getIntervalCount() == 0
+                    ? cadence != null
+                    : cadence != null && cadence == Cadence.of(state.getIntervalMeanDays());
+            if (!sameBand) {
+                restart(state, txAt, amountUsd, fallback);
+                return;
+            }
+            int intervals = state.getIntervalCount() + 1;
+            double delta = intervalDays - state.getIntervalMeanDays();
+            double mean = state.getIntervalMeanDays() + delta / intervals;
+            state.setIntervalCount(intervals);
+            state.setIntervalMeanDays(mean);
+            state.setIntervalM2(state.getIntervalM2() + delta * (intervalDays - mean));
+            state.setLastChargeAt(txAt);
+        }
+        int charges = state.getChargeCount() + 1;
+        double delta = amountUsd - state.getAmountMeanUsd();
+        double mean = state.getAmountMeanUsd() + delta / charges;
+        state.setChargeCount(charges);
+        state.setAmountMeanUsd(mean);
+        state.setAmountM2(state.getAmountM2() + delta * (amountUsd - mean));
+        state.setFallbackOnly(state.isFallbackOnly() && fallback);
+    }
+
+    /**
+     * The recurring charge the model currently describes, or {@code null} when the counterparty is not
+     * billed on a steady cadence or has not been billed for two cadence periods.
+     */
+    static Match match(WalletRecurringCadence state, Instant now) {
+        if (state == null || state.getLastChargeAt() == null || state.getIntervalCount() == 0) {
+            return null;
+        }
+        Cadence cadence = Cadence.of(state.getIntervalMeanDays());
+        if (cadence == null || state.getIntervalCount() < cadence.minIntervals() || state.getAmountMeanUsd() <= 0) {
+            return null;
+        }
+        double amountVariation = variation(state.getAmountM2(), state.getChargeCount(), state.getAmountMeanUsd());
+        double intervalVariation = variation(state.getIntervalM2(), state.getIntervalCount(), state.getIntervalMeanDays());
+        if (amountVariation > MAX_AMOUNT_VARIATION || intervalVariation > MAX_INTERVAL_VARIATION) {
+            return null;
+        }
+        long intervalDays = Math.max(1, Math.round(state.getIntervalMeanDays()));
+        Instant nextChargeAt = state.getLastChargeAt().plus(intervalDays, ChronoUnit.DAYS);
+        if (now != null && nextChargeAt.plus(intervalDays, ChronoUnit.DAYS).isBefore(now)) {
+            return null;
+        }
+        double confidence = Math.min(0.98, 0.62
+                + Math.min(state.getChargeCount(), 6) * 0.03
+                + Math.min(state.getIntervalCount(), 3) * 0.05
+                + (amountVariation <= 0.05 ? 0.08 : 0));
+        return new Match(cadence, state.getAmountMeanUsd(), state.getIntervalMeanDays(), nextChargeAt, confidence);
+    }
+
+    private static void restart(WalletRecurringCadence state, Instant txAt, double amountUsd, boolean fallback) {
+        state.setChargeCount(1);
+        state.setAmountMeanUsd(amountUsd);
+        state.setAmountM2(0);
+        state.setIntervalCount(0);
+        state.setIntervalMeanDays(0);
+        state.setIntervalM2(0);
+        state.setFirstChargeAt(txAt);
+        state.setLastChargeAt(txAt);
+        state.setFallbackOnly(fallback);
+    }
+
+    /**
+     * Sample coefficient of variation; a single observation has none.
+     */
+    private static double variation(double m2, int count, double mean) {
+        if (count < 2 || mean <= 0) {
+            return 0;
+        }
+        return Math.sqrt(Math.max(0, m2) / (count - 1)) / mean;
+    }
+
+    private static long toMicros(Instant instant) {
+        return WalletTxWorkingSet.toMicros(instant);
+    }
+
+    private static Instant toInstant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+}
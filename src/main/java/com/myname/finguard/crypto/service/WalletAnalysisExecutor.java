@@ -0,0 +1,396 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Dedicated worker pool for wallet analysis pipelines. Pipelines block on JPA and provider calls,
+ * so they must not run on the common fork-join pool. Pending work is held in a bounded in-memory
+ * queue that is served round-robin per user, and each user is capped to a number of concurrently
+ * running pipelines so a single user with many wallets cannot occupy every worker.
+ * <p>
+ * The queue has two lanes. INTERACTIVE work (a user watching progress) is served before BACKGROUND work
+ * (sweeps, recovered jobs), except that a waiting background task is taken after {@code interactive-burst}
+ * interactive picks in a row or once no background task was started for {@code background-max-wait-ms}.
+ */
+@Service
+public class WalletAnalysisExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletAnalysisExecutor.class);
+    private static final Long UNKNOWN_USER = -1L;
+
+    private final int workers;
+    private final int queueCapacity;
+    private final int maxConcurrentPerUser;
+    private final int interactiveBurst;
+    private final long backgroundMaxWaitNanos;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Map<CryptoWalletAnalysisJobPriority, Lane> lanes = new EnumMap<>(CryptoWalletAnalysisJobPriority.class);
+    private final Map<Long, Integer> runningByUser = new HashMap<>();
+    private final Set<Long> trackedJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final ExecutorService pool;
+    private final AtomicReference<ScheduledExecutorService> pacer = new AtomicReference<>();
+    private int pendingCount;
+    private int interactiveStreak;
+    private long lastBackgroundStartNanos = System.nanoTime();
+    private volatile boolean stopped;
+
+    @Autowired
+    public WalletAnalysisExecutor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.crypto.analysis.workers:4}") int workers,
+            @Value("${app.crypto.analysis.queue-capacity:500}") int queueCapacity,
+            @Value("${app.crypto.analysis.max-concurrent-per-user:2}") int maxConcurrentPerUser,
+            @Value("${app.crypto.analysis.lanes.interactive-burst:4}") int interactiveBurst,
+            @Value("${app.crypto.analysis.lanes.background-max-wait-ms:30000}") long backgroundMaxWaitMs
+    ) {
+        this(workers, queueCapacity, maxConcurrentPerUser, interactiveBurst, backgroundMaxWaitMs, meterRegistry.getIfAvailable());
+    }
+
+    WalletAnalysisExecutor(int workers, int queueCapacity, int maxConcurrentPerUser, MeterRegistry meterRegistry) {
+        this(workers, queueCapacity, maxConcurrentPerUser, 4, 30_000, meterRegistry);
+    }
+
+    WalletAnalysisExecutor(
+            int workers,
+            int queueCapacity,
+            int maxConcurrentPerUser,
+            int interactiveBurst,
+            long backgroundMaxWaitMs,
+            MeterRegistry meterRegistry
+    ) {
+        this.workers = Math.max(1, Math.min(workers, 64));
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxConcurrentPerUser = Math.max(0, maxConcurrentPerUser);
+        this.interactiveBurst = Math.max(1, interactiveBurst);
+        this.backgroundMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, backgroundMaxWaitMs));
+        this.meterRegistry = meterRegistry;
+        for (CryptoWalletAnalysisJobPriority priority : CryptoWalletAnalysisJobPriority.values()) {
+            lanes.put(priority, new Lane());
+        }
+        this.pool = Executors.newFixedThreadPool(this.workers, workerThreadFactory("wallet-analysis-"));
+        if (meterRegistry != null) {
+            Gauge.builder("wallet_analysis_queue_depth", this, WalletAnalysisExecutor::queuedCount)
+                    .register(meterRegistry);
+            Gauge.builder("wallet_analysis_active_workers", this, WalletAnalysisExecutor::activeWorkers)
+                    .register(meterRegistry);
+            for (CryptoWalletAnalysisJobPriority priority : CryptoWalletAnalysisJobPriority.values()) {
+                Gauge.builder("wallet_analysis_lane_depth", this, executor -> executor.queuedCount(priority))
+                        .tag("lane", priority.name())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    public boolean submit(Long jobId, Long userId, Runnable task) {
+        return submit(jobId, userId, CryptoWalletAnalysisJobPriority.INTERACTIVE, task);
+    }
+
+    /**
+     * Queues a pipeline run in the given lane. Returns {@code false} when the job is already queued or
+     * running on this node, or when the in-memory queue is full; the job then stays QUEUED in the database
+     * and is picked up by a later claim.
+     */
+    public boolean submit(Long jobId, Long userId, CryptoWalletAnalysisJobPriority priority, Runnable task) {
+        if (jobId == null || task == null || stopped) {
+            return false;
+        }
+        if (!trackedJobs.add(jobId)) {
+            return false;
+        }
+        Long userKey = userId == null ? UNKNOWN_USER : userId;
+        lock.lock();
+        try {
+            if (pendingCount >= queueCapacity) {
+                trackedJobs.remove(jobId);
+                recordRejected();
+                return false;
+            }
+            CryptoWalletAnalysisJobPriority lane = priority == null ? CryptoWalletAnalysisJobPriority.BACKGROUND : priority;
+            Lane pending = lanes.get(lane);
+            pending.byUser.computeIfAbsent(userKey, ignored -> new ArrayDeque<>())
+                    .addLast(new Task(jobId, userKey, lane, task, System.nanoTime()));
+            pending.count += 1;
+            pendingCount += 1;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        ensureStarted();
+        return true;
+    }
+
+    /**
+     * Runs {@code action} after {@code delayMs} on a single timer thread, off the worker pool. Used for
+     * demo pacing of progress updates so a paced job does not hold a worker while it waits.
+     */
+    public void schedule(Runnable action, long delayMs) {
+        if (action == null || stopped) {
+            return;
+        }
+        ScheduledExecutorService timer = pacer.get();
+        if (timer == null) {
+            ScheduledExecutorService created = Executors.newSingleThreadScheduledExecutor(workerThreadFactory("wallet-analysis-pacing-"));
+            timer = pacer.compareAndSet(null, created) ? created : pacer.get();
+            if (timer != created) {
+                created.shutdownNow();
+            }
+        }
+        timer.schedule(() -> {
+            try {
+                action.run();
+            } catch (RuntimeException ex) {
+                log.debug("Wallet analysis paced update failed: {}", ex.getMessage());
+            }
+        }, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isTracked(Long jobId) {
+        return jobId != null && trackedJobs.contains(jobId);
+    }
+
+    /**
+     * Jobs this node can claim and start right away: idle workers minus tasks already waiting. Claims are
+     * sized by this rather than by queue capacity so a claimed job does not sit in memory until its claim
+     * expires and another node picks it up.
+     */
+    public int claimableSlots() {
+        lock.lock();
+        try {
+            return Math.max(0, workers - activeWorkers.get() - pendingCount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queuedCount() {
+        lock.lock();
+        try {
+            return pendingCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queuedCount(CryptoWalletAnalysisJobPriority priority) {
+        lock.lock();
+        try {
+            return lanes.get(priority).count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int activeWorkers() {
+        return activeWorkers.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        lock.lock();
+        try {
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        pool.shutdownNow();
+        ScheduledExecutorService timer = pacer.getAndSet(null);
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private void ensureStarted() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        for (int i = 0; i < workers; i += 1) {
+            pool.execute(this::workerLoop);
+        }
+    }
+
+    private void workerLoop() {
+        while (!stopped) {
+            Task task;
+            try {
+                task = takeNext();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task == null) {
+                return;
+            }
+            recordWait(task);
+            activeWorkers.incrementAndGet();
+            try {
+                task.runnable().run();
+            } catch (RuntimeException ex) {
+                log.debug("Wallet analysis task failed for jobId={}: {}", task.jobId(), ex.getMessage());
+            } finally {
+                activeWorkers.decrementAndGet();
+                complete(task);
+            }
+        }
+    }
+
+    private Task takeNext() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!stopped) {
+                Task next = pollLocked();
+                if (next != null) {
+                    return next;
+                }
+                workAvailable.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Picks the next task, interactive lane first unless the starvation guard hands a turn to background.
+     */
+    private Task pollLocked() {
+        Lane background = lanes.get(CryptoWalletAnalysisJobPriority.BACKGROUND);
+        long now = System.nanoTime();
+        boolean backgroundDue = background.count > 0
+                && (interactiveStreak >= interactiveBurst || now - lastBackgroundStartNanos >= backgroundMaxWaitNanos);
+        CryptoWalletAnalysisJobPriority first = backgroundDue ? CryptoWalletAnalysisJobPriority.BACKGROUND : CryptoWalletAnalysisJobPriority.INTERACTIVE;
+        Task task = pollFairLocked(lanes.get(first));
+        if (task == null) {
+            CryptoWalletAnalysisJobPriority second = first == CryptoWalletAnalysisJobPriority.INTERACTIVE
+                    ? CryptoWalletAnalysisJobPriority.BACKGROUND
+                    : CryptoWalletAnalysisJobPriority.INTERACTIVE;
+            task = pollFairLocked(lanes.get(second));
+        }
+        if (task == null) {
+            return null;
+        }
+        if (task.priority() == CryptoWalletAnalysisJobPriority.BACKGROUND) {
+            interactiveStreak = 0;
+            lastBackgroundStartNanos = now;
+        } else if (background.count > 0) {
+            interactiveStreak += 1;
+        } else {
+            interactiveStreak = 0;
+            lastBackgroundStartNanos = now;
+        }
+        return task;
+    }
+
+    private Task pollFairLocked(Lane lane) {
+        if (lane.count == 0) {
+            return null;
+        }
+        Iterator<Map.Entry<Long, ArrayDeque<Task>>> it = lane.byUser.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, ArrayDeque<Task>> entry = it.next();
+            Long userKey = entry.getKey();
+            if (maxConcurrentPerUser > 0 && runningByUser.getOrDefault(userKey, 0) >= maxConcurrentPerUser) {
+                continue;
+            }
+            ArrayDeque<Task> queue = entry.getValue();
+            Task task = queue.pollFirst();
+            it.remove();
+            if (!queue.isEmpty()) {
+                // Re-insert at the tail so the next pick starts with another user.
+                lane.byUser.put(userKey, queue);
+            }
+            if (task == null) {
+                return null;
+            }
+            runningByUser.merge(userKey, 1, Integer::sum);
+            lane.count -= 1;
+            pendingCount -= 1;
+            return task;
+        }
+        return null;
+    }
+
+    private void complete(Task task) {
+        trackedJobs.remove(task.jobId());
+        lock.lock();
+        try {
+            runningByUser.computeIfPresent(task.userKey(), (ignored, running) -> running <= 1 ? null : running - 1);
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordWait(Task task) {
+        if (meterRegistry == null) {
+            return;
+        }
+        long waitedNanos = Math.max(0, System.nanoTime() - task.enqueuedAtNanos());
+        Timer.builder("wallet_analysis_queue_wait")
+                .tag("lane", task.priority().name())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(waitedNanos));
+    }
+
+    private void recordRejected() {
+        if (meterRegistry == null) {
+            return;
+        }
+        Counter.builder("wallet_analysis_queue_rejected").register(meterRegistry).increment();
+    }
+
+    private static ThreadFactory workerThreadFactory(String namePrefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Task(Long jobId, Long userKey, CryptoWalletAnalysisJobPriority priority, Runnable runnable, long enqueuedAtNanos) {
+    }
+
+    /**
+     * Pending tasks of one lane, grouped per user in round-robin order. Guarded by {@code lock}.
+     */
+    private static final class Lane {
+        private final LinkedHashMap<Long, ArrayDeque<Task>> byUser = new LinkedHashMap<>();
+        private int count;
+    }
+}
@@ -0,0 +1,96 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.crypto.repository.CryptoWalletAnalysisJobRepository;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Durable side of the wallet analysis work queue. QUEUED rows in {@code crypto_wallet_analysis_jobs}
+ * are the source of truth; a node claims a batch with {@code FOR UPDATE SKIP LOCKED} so several nodes
+ * can drain the table without handing the same job to two workers.
+ */
+@Service
+public class WalletAnalysisJobQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletAnalysisJobQueue.class);
+    private static final int MAX_CLAIM_BATCH = 200;
+
+    private final CryptoWalletAnalysisJobRepository jobRepository;
+    private final String nodeId;
+    private final AtomicBoolean skipLockedSupported;
+
+    public WalletAnalysisJobQueue(
+            CryptoWalletAnalysisJobRepository jobRepository,
+            @Value("${app.crypto.analysis.node-id:}") String nodeId,
+            @Value("${spring.datasource.url:}") String datasourceUrl
+    ) {
+        this.jobRepository = jobRepository;
+        this.nodeId = normalizeNodeId(nodeId);
+        this.skipLockedSupported = new AtomicBoolean(!isH2Datasource(datasourceUrl));
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Claims up to {@code limit} QUEUED jobs that are unclaimed or whose claim expired before
+     * {@code claimExpiredBefore}. Returned ids are owned by this node until they leave QUEUED.
+     */
+    @Transactional
+    public List<Long> claimQueued(int limit, Instant claimExpiredBefore) {
+        int batchSize = Math.max(0, Math.min(limit, MAX_CLAIM_BATCH));
+        if (batchSize == 0 || claimExpiredBefore == null) {
+            return List.of();
+        }
+        List<Long> ids = lockClaimable(claimExpiredBefore, batchSize);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        jobRepository.markClaimed(ids, nodeId, Instant.now());
+        return ids;
+    }
+
+    @Transactional
+    public void release(Long jobId) {
+        if (jobId == null) {
+            return;
+        }
+        jobRepository.releaseClaim(jobId);
+    }
+
+    private List<Long> lockClaimable(Instant claimExpiredBefore, int batchSize) {
+        if (skipLockedSupported.get()) {
+            try {
+                return jobRepository.lockClaimableJobIdsSkipLocked(claimExpiredBefore, batchSize);
+            } catch (InvalidDataAccessResourceUsageException ex) {
+                // H2 and some SQL dialects do not support the Postgres-specific SKIP LOCKED path.
+                skipLockedSupported.set(false);
+                log.debug("Wallet analysis job claim switched to portable mode: {}", ex.getClass().getSimpleName());
+            }
+        }
+        return jobRepository.findClaimableJobIdsPortable(claimExpiredBefore, batchSize);
+    }
+
+    private String normalizeNodeId(String raw) {
+        String value = raw == null ? "" : raw.trim();
+        if (value.isBlank()) {
+            value = "node-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        return value.length() <= 64 ? value : value.substring(0, 64);
+    }
+
+    private boolean isH2Datasource(String datasourceUrl) {
+        String value = datasourceUrl == null ? "" : datasourceUrl.trim().toLowerCase(Locale.ROOT);
+        return value.contains(":h2:");
+    }
+}
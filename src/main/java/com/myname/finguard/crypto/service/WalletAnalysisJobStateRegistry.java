@@ -0,0 +1,288 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.crypto.events.WalletAnalysisProgressEvent;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJob;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisStage;
+import com.myname.finguard.crypto.repository.CryptoWalletAnalysisJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process state of wallet analysis jobs running on this node. Stage transitions land here first and
+ * status polling for a running job is answered from memory. Intermediate progress is coalesced and
+ * flushed periodically with a single UPDATE; start and terminal transitions are written immediately.
+ * Every transition is also published as a {@link WalletAnalysisProgressEvent} for live progress streams.
+ */
+@Service
+public class WalletAnalysisJobStateRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletAnalysisJobStateRegistry.class);
+
+    private final CryptoWalletAnalysisJobRepository jobRepository;
+    private final MeterRegistry meterRegistry;
+    private final long maxIdleMs;
+    private final Map<Long, Entry> byJob = new ConcurrentHashMap<>();
+    private final Map<Long, Long> jobByWallet = new ConcurrentHashMap<>();
+    @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
+
+    public WalletAnalysisJobStateRegistry(
+            CryptoWalletAnalysisJobRepository jobRepository,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.crypto.analysis.stalled-after-ms:120000}") long maxIdleMs
+    ) {
+        this.jobRepository = jobRepository;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.maxIdleMs = Math.max(30_000, maxIdleMs);
+    }
+
+    /**
+     * Starts tracking a job that is about to run on this node, seeded from its persisted row.
+     */
+    public void track(CryptoWalletAnalysisJob job) {
+        if (job == null || job.getId() == null || job.getWallet() == null || job.getUser() == null) {
+            return;
+        }
+        JobState state = JobState.of(job);
+        byJob.put(job.getId(), new Entry(state));
+        jobByWallet.put(state.walletId(), job.getId());
+        publish(state);
+    }
+
+    /**
+     * Applies a stage transition to a tracked job. Returns {@code false} when the job is not tracked on
+     * this node, in which case the caller must write through to the database itself.
+     */
+    public boolean update(
+            Long jobId,
+            CryptoWalletAnalysisJobStatus status,
+            CryptoWalletAnalysisStage stage,
+            int progressPct,
+            String errorMessage,
+            boolean markStarted,
+            boolean markFinished,
+            CryptoWalletAnalysisStage lastSuccessfulStage,
+            String stageDurationsMs
+    ) {
+        Entry entry = jobId == null ? null : byJob.get(jobId);
+        if (entry == null) {
+            return false;
+        }
+        boolean persisted;
+        JobState next;
+        synchronized (entry) {
+            JobState previous = entry.state;
+            Instant now = Instant.now();
+            next = new JobState(
+                    previous.jobId(),
+                    previous.userId(),
+                    previous.walletId(),
+                    status == null ? previous.status() : status,
+                    stage == null ? previous.stage() : stage,
+                    lastSuccessfulStage == null ? previous.lastSuccessfulStage() : lastSuccessfulStage,
+                    Math.max(0, Math.min(progressPct, 100)),
+                    errorMessage,
+                    markStarted && previous.startedAt() == null ? now : previous.startedAt(),
+                    markFinished ? now : previous.finishedAt(),
+                    now,
+                    stageDurationsMs == null ? previous.stageDurationsMs() : stageDurationsMs,
+                    previous.version() + 1
+            );
+            entry.state = next;
+            entry.dirty = true;
+            if (markStarted || markFinished || isTerminal(next.status())) {
+                persisted = write(entry);
+            } else {
+                persisted = false;
+                recordWrite("coalesced");
+            }
+        }
+        if (persisted && isTerminal(next.status())) {
+            remove(jobId, entry);
+        }
+        publish(next);
+        return true;
+    }
+
+    /**
+     * Latest in-memory state of the wallet's running job, if that job is tracked on this node.
+     */
+    public Optional<JobState> findActive(Long userId, Long walletId) {
+        if (userId == null || walletId == null) {
+            return Optional.empty();
+        }
+        Long jobId = jobByWallet.get(walletId);
+        Entry entry = jobId == null ? null : byJob.get(jobId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        JobState state;
+        synchronized (entry) {
+            state = entry.state;
+        }
+        if (!Objects.equals(state.userId(), userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(state);
+    }
+
+    /**
+     * Flushes any pending progress and stops tracking the job.
+     */
+    public void forget(Long jobId) {
+        Entry entry = jobId == null ? null : byJob.get(jobId);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.dirty) {
+                write(entry);
+            }
+        }
+        remove(jobId, entry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.crypto.analysis.progress-flush-ms:250}")
+    public void flushDirty() {
+        Instant idleBefore = Instant.now().minusMillis(maxIdleMs);
+        for (Map.Entry<Long, Entry> item : byJob.entrySet()) {
+            Entry entry = item.getValue();
+            boolean idle;
+            synchronized (entry) {
+                if (entry.dirty) {
+                    write(entry);
+                }
+                idle = !entry.dirty && entry.state.updatedAt() != null && entry.state.updatedAt().isBefore(idleBefore);
+            }
+            if (idle) {
+                // The run that owned this entry is gone; stale-job recovery takes over from the database row.
+                remove(item.getKey(), entry);
+            }
+        }
+    }
+
+    private boolean write(Entry entry) {
+        JobState state = entry.state;
+        try {
+            jobRepository.updateProgress(
+                    state.jobId(),
+                    state.status(),
+                    state.stage(),
+                    state.lastSuccessfulStage(),
+                    state.progressPct(),
+                    state.errorMessage(),
+                    state.startedAt(),
+                    state.finishedAt(),
+                    state.stageDurationsMs(),
+                    state.updatedAt(),
+                    state.version()
+            );
+            entry.dirty = false;
+            recordWrite("flushed");
+            return true;
+        } catch (RuntimeException ex) {
+            log.debug("Wallet analysis progress flush failed for jobId={}: {}", state.jobId(), ex.getMessage());
+            return false;
+        }
+    }
+
+    private void publish(JobState state) {
+        if (eventPublisher == null) {
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(new WalletAnalysisProgressEvent(state));
+        } catch (RuntimeException ex) {
+            log.debug("Wallet analysis progress event failed for jobId={}: {}", state.jobId(), ex.getMessage());
+        }
+    }
+
+    private void remove(Long jobId, Entry entry) {
+        if (byJob.remove(jobId, entry)) {
+            jobByWallet.remove(entry.state.walletId(), jobId);
+        }
+    }
+
+    private boolean isTerminal(CryptoWalletAnalysisJobStatus status) {
+        return status == CryptoWalletAnalysisJobStatus.DONE
+                || status == CryptoWalletAnalysisJobStatus.FAILED
+                || status == CryptoWalletAnalysisJobStatus.CANCELLED;
+    }
+
+    private void recordWrite(String result) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Counter.builder("wallet_analysis_progress_writes")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public record JobState(
+            Long jobId,
+            Long userId,
+            Long walletId,
+            CryptoWalletAnalysisJobStatus status,
+            CryptoWalletAnalysisStage stage,
+            CryptoWalletAnalysisStage lastSuccessfulStage,
+            int progressPct,
+            String errorMessage,
+            Instant startedAt,
+            Instant finishedAt,
+            Instant updatedAt,
+            String stageDurationsMs,
+            long version
+    ) {
+        public boolean isTerminal() {
+            return status == CryptoWalletAnalysisJobStatus.DONE
+                    || status == CryptoWalletAnalysisJobStatus.FAILED
+                    || status == CryptoWalletAnalysisJobStatus.CANCELLED;
+        }
+
+        /**
+         * Seeds the state from a persisted row. In-memory transitions continue the row's progress version and
+         * write it back, so states read from memory and from the database share one ordering.
+         */
+        public static JobState of(CryptoWalletAnalysisJob job) {
+            return new JobState(
+                    job.getId(),
+                    job.getUser() == null ? null : job.getUser().getId(),
+                    job.getWallet() == null ? null : job.getWallet().getId(),
+                    job.getStatus(),
+                    job.getStage(),
+                    job.getLastSuccessfulStage(),
+                    job.getProgressPct(),
+                    job.getErrorMessage(),
+                    job.getStartedAt(),
+                    job.getFinishedAt(),
+                    job.getUpdatedAt(),
+                    job.getStageDurationsMs(),
+                    job.getProgressVersion()
+            );
+        }
+    }
+
+    private static final class Entry {
+        private JobState state;
+        private boolean dirty;
+
+        private Entry(JobState state) {
+            this.state = state;
+        }
+    }
+}
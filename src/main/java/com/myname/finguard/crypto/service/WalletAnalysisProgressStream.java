@@ -0,0 +1,298 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.common.constants.ErrorCodes;
+import com.myname.finguard.common.exception.ApiException;
+import com.myname.finguard.crypto.dto.CryptoWalletAnalysisStatusResponse;
+import com.myname.finguard.crypto.events.WalletAnalysisProgressEvent;
+import com.myname.finguard.crypto.service.WalletAnalysisJobStateRegistry.JobState;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-sent event streams of wallet analysis progress. Streams are registered per wallet and cost nothing
+ * while idle: transitions of jobs running on this node arrive as {@link WalletAnalysisProgressEvent}s and are
+ * fanned out on a single sender thread, so pipeline workers never write to sockets. Jobs running on another
+ * node are followed by a periodic read of the job row, once per wallet rather than once per stream.
+ * Event ids are {@code <jobId>:<version>}; a reconnect with {@code Last-Event-ID} only receives newer state.
+ */
+@Service
+public class WalletAnalysisProgressStream {
+
+    static final String EVENT_NAME = "status";
+
+    private static final Logger log = LoggerFactory.getLogger(WalletAnalysisProgressStream.class);
+
+    private final CryptoWalletAnalysisService analysisService;
+    private final WalletAnalysisJobStateRegistry jobStateRegistry;
+    private final long timeoutMs;
+    private final long reconnectMs;
+    private final int maxStreamsPerUser;
+    private final Map<Long, Set<Subscriber>> byWallet = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> openByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wallet-analysis-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WalletAnalysisProgressStream(
+            CryptoWalletAnalysisService analysisService,
+            WalletAnalysisJobStateRegistry jobStateRegistry,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.crypto.analysis.stream.timeout-ms:600000}") long timeoutMs,
+            @Value("${app.crypto.analysis.stream.reconnect-ms:3000}") long reconnectMs,
+            @Value("${app.crypto.analysis.stream.max-per-user:5}") int maxStreamsPerUser
+    ) {
+        this.analysisService = analysisService;
+        this.jobStateRegistry = jobStateRegistry;
+        this.timeoutMs = Math.max(10_000, timeoutMs);
+        this.reconnectMs = Math.max(500, reconnectMs);
+        this.maxStreamsPerUser = Math.max(1, maxStreamsPerUser);
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            Gauge.builder("wallet_analysis_streams_open", open, AtomicInteger::get).register(registry);
+        }
+    }
+
+    /**
+     * Opens a progress stream for the wallet, or returns {@code null} when the client already has the final
+     * state of a finished job (answered with 204 so {@code EventSource} stops reconnecting).
+     */
+    public SseEmitter open(Long userId, Long walletId, String lastEventId) {
+        JobState current = analysisService.currentJobState(userId, walletId);
+        long resumeVersion = resumeVersion(lastEventId, current);
+        boolean upToDate = current != null && resumeVersion >= current.version();
+        if (current != null && current.isTerminal() && upToDate) {
+            return null;
+        }
+        AtomicInteger perUser = openByUser.computeIfAbsent(userId, ignored -> new AtomicInteger());
+        if (perUser.incrementAndGet() > maxStreamsPerUser) {
+            perUser.decrementAndGet();
+            throw new ApiException(ErrorCodes.RATE_LIMIT, "Too many open analysis streams.", HttpStatus.TOO_MANY_REQUESTS, 1L);
+        }
+        open.incrementAndGet();
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, walletId, emitter, resumeVersion);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(error -> unregister(subscriber));
+        byWallet.computeIfAbsent(walletId, ignored -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        if (current == null || upToDate) {
+            dispatch(subscriber, () -> sendRetryHint(subscriber));
+        } else {
+            CryptoWalletAnalysisStatusResponse status = analysisService.statusResponse(current);
+            dispatch(subscriber, () -> deliver(subscriber, current, status));
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onProgress(WalletAnalysisProgressEvent event) {
+        JobState state = event == null ? null : event.state();
+        if (state == null || state.walletId() == null) {
+            return;
+        }
+        Set<Subscriber> subscribers = byWallet.get(state.walletId());
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        CryptoWalletAnalysisStatusResponse status = analysisService.statusResponse(state);
+        for (Subscriber subscriber : subscribers) {
+            if (Objects.equals(subscriber.userId, state.userId())) {
+                dispatch(subscriber, () -> deliver(subscriber, state, status));
+            }
+        }
+    }
+
+    /**
+     * Follows jobs that are not running on this node (queued, or claimed elsewhere) by reading the latest
+     * job row once per subscribed wallet.
+     */
+    @Scheduled(fixedDelayString = "${app.crypto.analysis.stream.remote-poll-ms:2000}")
+    public void refreshUntracked() {
+        for (Map.Entry<Long, Set<Subscriber>> item : byWallet.entrySet()) {
+            Set<Subscriber> subscribers = item.getValue();
+            Subscriber first = subscribers.stream().findFirst().orElse(null);
+            if (first == null || jobStateRegistry.findActive(first.userId, item.getKey()).isPresent()) {
+                continue;
+            }
+            JobState state;
+            try {
+                state = analysisService.latestJobState(first.userId, item.getKey());
+            } catch (RuntimeException ex) {
+                log.debug("Wallet analysis stream refresh failed for walletId={}: {}", item.getKey(), ex.getMessage());
+                continue;
+            }
+            if (state != null) {
+                onProgress(new WalletAnalysisProgressEvent(state));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.crypto.analysis.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Set<Subscriber> subscribers : byWallet.values()) {
+            for (Subscriber subscriber : subscribers) {
+                dispatch(subscriber, () -> {
+                    try {
+                        subscriber.emitter.send(SseEmitter.event().comment("keepalive"));
+                    } catch (IOException | IllegalStateException ex) {
+                        drop(subscriber, ex);
+                    }
+                });
+            }
+        }
+    }
+
+    int openStreams() {
+        return open.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<Subscriber> all = new ArrayList<>();
+        byWallet.values().forEach(all::addAll);
+        for (Subscriber subscriber : all) {
+            try {
+                subscriber.emitter.complete();
+            } catch (RuntimeException ignored) {
+                // Container is going away.
+            }
+            unregister(subscriber);
+        }
+        sender.shutdownNow();
+    }
+
+    private void deliver(Subscriber subscriber, JobState state, CryptoWalletAnalysisStatusResponse status) {
+        if (subscriber.closed || !subscriber.advanceTo(state.version())) {
+            return;
+        }
+        try {
+            subscriber.emitter.send(SseEmitter.event()
+                    .id(state.jobId() + ":" + state.version())
+                    .name(EVENT_NAME)
+                    .reconnectTime(reconnectMs)
+                    .data(status));
+            if (state.isTerminal()) {
+                subscriber.emitter.complete();
+                unregister(subscriber);
+            }
+        } catch (IOException | IllegalStateException ex) {
+            drop(subscriber, ex);
+        }
+    }
+
+    private void sendRetryHint(Subscriber subscriber) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().reconnectTime(reconnectMs).comment("subscribed"));
+        } catch (IOException | IllegalStateException ex) {
+            drop(subscriber, ex);
+        }
+    }
+
+    private void dispatch(Subscriber subscriber, Runnable send) {
+        try {
+            sender.execute(send);
+        } catch (RejectedExecutionException ex) {
+            unregister(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber, Exception ex) {
+        log.debug("Closing wallet analysis stream for walletId={}: {}", subscriber.walletId, ex.getMessage());
+        try {
+            subscriber.emitter.completeWithError(ex);
+        } catch (RuntimeException ignored) {
+            // Already completed by the container.
+        }
+        unregister(subscriber);
+    }
+
+    private void unregister(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            subscriber.closed = true;
+        }
+        Set<Subscriber> subscribers = byWallet.get(subscriber.walletId);
+        if (subscribers != null) {
+            subscribers.remove(subscriber);
+            if (subscribers.isEmpty()) {
+                byWallet.remove(subscriber.walletId, subscribers);
+            }
+        }
+        AtomicInteger perUser = openByUser.get(subscriber.userId);
+        if (perUser != null && perUser.decrementAndGet() <= 0) {
+            openByUser.remove(subscriber.userId, perUser);
+        }
+        open.decrementAndGet();
+    }
+
+    static long resumeVersion(String lastEventId, JobState current) {
+        if (lastEventId == null || current == null) {
+            return Long.MIN_VALUE;
+        }
+        int separator = lastEventId.indexOf(':');
+        if (separator <= 0) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            long jobId = Long.parseLong(lastEventId.substring(0, separator).trim());
+            long version = Long.parseLong(lastEventId.substring(separator + 1).trim());
+            return Objects.equals(current.jobId(), jobId) ? version : Long.MIN_VALUE;
+        } catch (NumberFormatException ex) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static final class Subscriber {
+        private final Long userId;
+        private final Long walletId;
+        private final SseEmitter emitter;
+        private long deliveredVersion;
+        private volatile boolean closed;
+
+        private Subscriber(Long userId, Long walletId, SseEmitter emitter, long deliveredVersion) {
+            this.userId = userId;
+            this.walletId = walletId;
+            this.emitter = emitter;
+            this.deliveredVersion = deliveredVersion;
+        }
+
+        /**
+         * Only touched from the sender thread; drops states older than what the client already has.
+         */
+        private boolean advanceTo(long version) {
+            if (version <= deliveredVersion) {
+                return false;
+            }
+            deliveredVersion = version;
+            return true;
+        }
+    }
+}
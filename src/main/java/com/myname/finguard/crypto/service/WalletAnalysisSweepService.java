@@ -0,0 +1,292 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.common.service.ExternalProviderGuard;
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import com.myname.finguard.crypto.model.CryptoWallet;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus;
+import com.myname.finguard.crypto.model.WalletAnalysisSweepLease;
+import com.myname.finguard.crypto.repository.CryptoWalletAnalysisJobRepository;
+import com.myname.finguard.crypto.repository.CryptoWalletRepository;
+import com.myname.finguard.crypto.repository.WalletAnalysisSweepLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Nightly background re-analysis of every active wallet, so snapshots and insights stay fresh for wallets
+ * nobody opens. Wallets are split into shards by {@code id mod shards}; each tick a node leases one
+ * unfinished shard in {@code wallet_analysis_sweep_leases} and queues incremental jobs for its next wallets
+ * in key order. The shard cursor is persisted after every batch and leases expire, so a sweep interrupted
+ * by a crash is resumed by any node from where it stopped. Queueing is throttled by the QUEUED backlog and
+ * by the remaining budget of each wallet's chain provider, which is shared with interactive requests: a
+ * batch queues at most the spare budget above the headroom divided by the calls one wallet is expected to
+ * make, less the jobs still QUEUED, since queued jobs spend their calls only when they run.
+ */
+@Service
+public class WalletAnalysisSweepService {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletAnalysisSweepService.class);
+
+    private final WalletAnalysisSweepLeaseRepository leaseRepository;
+    private final CryptoWalletRepository cryptoWalletRepository;
+    private final CryptoWalletAnalysisJobRepository jobRepository;
+    private final CryptoWalletAnalysisService analysisService;
+    private final ExternalProviderGuard guard;
+    private final String nodeId;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int shards;
+    private final int batchSize;
+    private final int maxQueuedJobs;
+    private final long leaseMs;
+    private final long minIntervalMs;
+    private final long freshForMs;
+    private final double budgetHeadroom;
+    private final int callsPerWallet;
+    private final Map<CryptoNetwork, Integer> budgetLimits;
+    private final Map<CryptoNetwork, String> budgetKeys;
+    private final AtomicLong shardsRemaining = new AtomicLong();
+    private final AtomicLong walletsVisited = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public WalletAnalysisSweepService(
+            WalletAnalysisSweepLeaseRepository leaseRepository,
+            CryptoWalletRepository cryptoWalletRepository,
+            CryptoWalletAnalysisJobRepository jobRepository,
+            CryptoWalletAnalysisService analysisService,
+            WalletAnalysisJobQueue jobQueue,
+            ExternalProviderGuard guard,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.crypto.analysis.sweep.enabled:true}") boolean enabled,
+            @Value("${app.crypto.analysis.sweep.shards:16}") int shards,
+            @Value("${app.crypto.analysis.sweep.batch-size:50}") int batchSize,
+            @Value("${app.crypto.analysis.sweep.max-queued-jobs:200}") int maxQueuedJobs,
+            @Value("${app.crypto.analysis.sweep.lease-ms:120000}") long leaseMs,
+            @Value("${app.crypto.analysis.sweep.min-interval-ms:43200000}") long minIntervalMs,
+            @Value("${app.crypto.analysis.sweep.fresh-for-ms:21600000}") long freshForMs,
+            @Value("${app.crypto.analysis.sweep.budget-headroom-pct:50}") int budgetHeadroomPct,
+            @Value("${app.crypto.analysis.sweep.expected-calls-per-wallet:4}") int callsPerWallet,
+            @Value("${app.external.providers.budget.blockstream.limit:600}") int blockstreamLimit,
+            @Value("${app.external.providers.budget.eth-rpc.limit:300}") int ethRpcLimit,
+            @Value("${app.external.providers.budget.arbitrum-rpc.limit:600}") int arbitrumRpcLimit
+    ) {
+        this.leaseRepository = leaseRepository;
+        this.cryptoWalletRepository = cryptoWalletRepository;
+        this.jobRepository = jobRepository;
+        this.analysisService = analysisService;
+        this.guard = guard;
+        this.nodeId = jobQueue.nodeId();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.enabled = enabled;
+        this.shards = Math.max(1, Math.min(shards, 1024));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxQueuedJobs = Math.max(1, maxQueuedJobs);
+        this.leaseMs = Math.max(10_000, leaseMs);
+        this.minIntervalMs = Math.max(60_000, minIntervalMs);
+        this.freshForMs = Math.max(0, freshForMs);
+        this.budgetHeadroom = Math.max(0, Math.min(budgetHeadroomPct, 100)) / 100.0;
+        this.callsPerWallet = Math.max(1, callsPerWallet);
+        this.budgetLimits = Map.of(
+                CryptoNetwork.BTC, blockstreamLimit,
+                CryptoNetwork.ETH, ethRpcLimit,
+                CryptoNetwork.EVM, ethRpcLimit,
+                CryptoNetwork.ARBITRUM, arbitrumRpcLimit);
+        this.budgetKeys = Map.of(
+                CryptoNetwork.BTC, "blockstream",
+                CryptoNetwork.ETH, "eth-rpc",
+                CryptoNetwork.EVM, "eth-rpc",
+                CryptoNetwork.ARBITRUM, "arbitrum-rpc");
+        if (this.meterRegistry != null) {
+            Gauge.builder("wallet_analysis_sweep_shards_remaining", shardsRemaining, AtomicLong::get).register(this.meterRegistry);
+            Gauge.builder("wallet_analysis_sweep_wallets_visited", walletsVisited, AtomicLong::get).register(this.meterRegistry);
+            Gauge.builder("wallet_analysis_sweep_lag_seconds", lagSeconds, AtomicLong::get).register(this.meterRegistry);
+        }
+    }
+
+    @Scheduled(cron = "${app.crypto.analysis.sweep.cron:0 40 2 * * *}")
+    public void startSweep() {
+        if (enabled) {
+            startSweep(Instant.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.crypto.analysis.sweep.tick-ms:5000}")
+    public void advanceSweep() {
+        if (enabled) {
+            advanceSweep(Instant.now());
+        }
+    }
+
+    /**
+     * Starts a sweep over every shard unless one was started less than {@code min-interval-ms} ago.
+     * Returns whether this call started it.
+     */
+    boolean startSweep(Instant now) {
+        Set<Integer> existing = new HashSet<>();
+        for (WalletAnalysisSweepLease lease : leaseRepository.findAllByOrderByShardIdAsc()) {
+            existing.add(lease.getShardId());
+        }
+        boolean created = false;
+        for (int shard = 0; shard < shards; shard += 1) {
+            if (existing.contains(shard)) {
+                continue;
+            }
+            WalletAnalysisSweepLease lease = new WalletAnalysisSweepLease();
+            lease.setShardId(shard);
+            lease.setSweepStartedAt(now);
+            try {
+                leaseRepository.save(lease);
+                created = true;
+            } catch (DataIntegrityViolationException ex) {
+                // Another node created the shard row first.
+                log.debug("Wallet analysis sweep shard {} already exists", shard);
+            }
+        }
+        int restarted = leaseRepository.restartSweep(now, now.minusMillis(minIntervalMs));
+        boolean started = created || restarted > 0;
+        if (started) {
+            log.info("Wallet analysis sweep started over {} shards by node {}", shards, nodeId);
+        }
+        return started;
+    }
+
+    /**
+     * Leases one unfinished shard and queues jobs for its next batch of wallets. Returns the number of
+     * wallets queued.
+     */
+    int advanceSweep(Instant now) {
+        List<WalletAnalysisSweepLease> leases = leaseRepository.findAllByOrderByShardIdAsc();
+        updateGauges(leases, now);
+        if (shardsRemaining.get() == 0) {
+            return 0;
+        }
+        long queued = jobRepository.countByStatus(CryptoWalletAnalysisJobStatus.QUEUED);
+        long room = Math.min(batchSize, maxQueuedJobs - queued);
+        if (room <= 0) {
+            return 0;
+        }
+        for (WalletAnalysisSweepLease lease : leases) {
+            if (lease.getShardId() >= shards || lease.getCompletedAt() != null) {
+                continue;
+            }
+            if (leaseRepository.tryLease(lease.getShardId(), nodeId, now, now.plusMillis(leaseMs)) == 0) {
+                continue;
+            }
+            // Re-read under the lease: another node may have moved the cursor since the list was loaded.
+            WalletAnalysisSweepLease owned = leaseRepository.findById(lease.getShardId()).orElse(null);
+            return owned == null ? 0 : sweepShard(owned, (int) room, queued, now);
+        }
+        return 0;
+    }
+
+    private int sweepShard(WalletAnalysisSweepLease lease, int limit, long queued, Instant now) {
+        int shard = lease.getShardId();
+        List<Long> ids = cryptoWalletRepository.findSweepBatchIds(shards, shard, lease.getCursorWalletId(), PageRequest.of(0, limit));
+        Map<Long, CryptoWallet> wallets = new HashMap<>();
+        for (CryptoWallet wallet : cryptoWalletRepository.findAllById(ids)) {
+            wallets.put(wallet.getId(), wallet);
+        }
+
+        Instant freshAfter = now.minusMillis(freshForMs);
+        long cursor = lease.getCursorWalletId();
+        int visited = 0;
+        int enqueued = 0;
+        boolean throttled = false;
+        Map<String, Long> allowances = new HashMap<>();
+        for (Long id : ids) {
+            CryptoWallet wallet = wallets.get(id);
+            if (wallet != null) {
+                String budgetKey = budgetKeys.get(wallet.getNetwork());
+                long allowance = budgetKey == null
+                        ? Long.MAX_VALUE
+                        : allowances.computeIfAbsent(budgetKey, key -> walletAllowance(wallet.getNetwork(), queued));
+                if (allowance <= 0) {
+                    // Stop here rather than skip: the wallet is retried on a later tick, keeping key order.
+                    throttled = true;
+                    break;
+                }
+                if (analysisService.enqueueRefresh(wallet, freshAfter)) {
+                    enqueued += 1;
+                    if (budgetKey != null) {
+                        allowances.put(budgetKey, allowance - 1);
+                    }
+                }
+            }
+            cursor = id;
+            visited += 1;
+        }
+
+        leaseRepository.advance(shard, nodeId, cursor, visited, enqueued, now.plusMillis(leaseMs), now);
+        if (!throttled && ids.size() < limit) {
+            leaseRepository.complete(shard, nodeId, now);
+            log.debug("Wallet analysis sweep shard {} completed by node {}", shard, nodeId);
+        }
+        record("enqueued", enqueued);
+        record("skipped", visited - enqueued);
+        if (throttled) {
+            record("throttled", 1);
+        }
+        return enqueued;
+    }
+
+    /**
+     * Wallets of {@code network} that may still be queued: the provider budget above the headroom divided by the
+     * calls one wallet is expected to make, less the {@code queued} jobs that have not spent theirs yet (charged
+     * to every chain, as their networks are not known here).
+     */
+    private long walletAllowance(CryptoNetwork network, long queued) {
+        String key = budgetKeys.get(network);
+        Integer limit = budgetLimits.get(network);
+        if (key == null || limit == null || limit <= 0) {
+            return Long.MAX_VALUE;
+        }
+        double spare = guard.remainingBudget(key, limit) - limit * budgetHeadroom;
+        return spare <= 0 ? 0 : (long) (spare / callsPerWallet) - queued;
+    }
+
+    private void updateGauges(List<WalletAnalysisSweepLease> leases, Instant now) {
+        long remaining = 0;
+        long visited = 0;
+        Instant oldestPending = null;
+        for (WalletAnalysisSweepLease lease : leases) {
+            if (lease.getShardId() >= shards) {
+                continue;
+            }
+            visited += lease.getWalletsVisited();
+            if (lease.getCompletedAt() == null) {
+                remaining += 1;
+                if (oldestPending == null || lease.getSweepStartedAt().isBefore(oldestPending)) {
+                    oldestPending = lease.getSweepStartedAt();
+                }
+            }
+        }
+        shardsRemaining.set(remaining);
+        walletsVisited.set(visited);
+        lagSeconds.set(oldestPending == null ? 0 : Math.max(0, now.getEpochSecond() - oldestPending.getEpochSecond()));
+    }
+
+    private void record(String result, int count) {
+        if (meterRegistry == null || count <= 0) {
+            return;
+        }
+        Counter.builder("wallet_analysis_sweep_wallets")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment(count);
+    }
+}
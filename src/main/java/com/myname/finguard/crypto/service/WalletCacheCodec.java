@@ -0,0 +1,204 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packed form of provider wallet balances and token portfolios, stored in {@code wallet_balance_cache.payload}:
+ * a format version byte, then the record's fields in declaration order. Nullable fields carry a presence byte,
+ * decimals are written as scale plus unscaled bytes and instants as epoch seconds plus nanos, so a payload is
+ * exact and a few dozen bytes per token.
+ */
+final class WalletCacheCodec {
+
+    static final int FORMAT_VERSION = 1;
+
+    private WalletCacheCodec() {
+    }
+
+    static byte[] packBalance(CryptoWalletBalanceProvider.WalletBalance balance) {
+        return write(out -> {
+            writeString(out, balance.network() == null ? null : balance.network().name());
+            writeString(out, balance.address());
+            writeDecimal(out, balance.balance());
+            writeInstant(out, balance.asOf());
+        });
+    }
+
+    static CryptoWalletBalanceProvider.WalletBalance unpackBalance(byte[] packed) {
+        return read(packed, in -> {
+            String network = readString(in);
+            return new CryptoWalletBalanceProvider.WalletBalance(
+                    network == null ? null : CryptoNetwork.valueOf(network),
+                    readString(in),
+                    readDecimal(in),
+                    readInstant(in)
+            );
+        });
+    }
+
+    static byte[] packEthPortfolio(EthWalletPortfolioProvider.EthWalletPortfolio portfolio) {
+        List<Token> tokens = new ArrayList<>();
+        if (portfolio.topTokens() != null) {
+            for (EthWalletPortfolioProvider.TokenHolding token : portfolio.topTokens()) {
+                tokens.add(new Token(token.contractAddress(), token.symbol(), token.amount(), token.priceUsd(), token.valueUsd()));
+            }
+        }
+        return packPortfolio(portfolio.address(), portfolio.asOf(), portfolio.tokenValueUsd(), tokens);
+    }
+
+    static EthWalletPortfolioProvider.EthWalletPortfolio unpackEthPortfolio(byte[] packed) {
+        return read(packed, in -> {
+            String address = readString(in);
+            Instant asOf = readInstant(in);
+            BigDecimal tokenValueUsd = readDecimal(in);
+            List<EthWalletPortfolioProvider.TokenHolding> tokens = new ArrayList<>();
+            for (Token token : readTokens(in)) {
+                tokens.add(new EthWalletPortfolioProvider.TokenHolding(
+                        token.contractAddress(), token.symbol(), token.amount(), token.priceUsd(), token.valueUsd()));
+            }
+            return new EthWalletPortfolioProvider.EthWalletPortfolio(address, asOf, tokenValueUsd, tokens);
+        });
+    }
+
+    static byte[] packArbitrumPortfolio(ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio portfolio) {
+        List<Token> tokens = new ArrayList<>();
+        if (portfolio.topTokens() != null) {
+            for (ArbitrumWalletPortfolioProvider.TokenHolding token : portfolio.topTokens()) {
+                tokens.add(new Token(token.contractAddress(), token.symbol(), token.amount(), token.priceUsd(), token.valueUsd()));
+            }
+        }
+        return packPortfolio(portfolio.address(), portfolio.asOf(), portfolio.tokenValueUsd(), tokens);
+    }
+
+    static ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio unpackArbitrumPortfolio(byte[] packed) {
+        return read(packed, in -> {
+            String address = readString(in);
+            Instant asOf = readInstant(in);
+            BigDecimal tokenValueUsd = readDecimal(in);
+            List<ArbitrumWalletPortfolioProvider.TokenHolding> tokens = new ArrayList<>();
+            for (Token token : readTokens(in)) {
+                tokens.add(new ArbitrumWalletPortfolioProvider.TokenHolding(
+                        token.contractAddress(), token.symbol(), token.amount(), token.priceUsd(), token.valueUsd()));
+            }
+            return new ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio(address, asOf, tokenValueUsd, tokens);
+        });
+    }
+
+    private static byte[] packPortfolio(String address, Instant asOf, BigDecimal tokenValueUsd, List<Token> tokens) {
+        return write(out -> {
+            writeString(out, address);
+            writeInstant(out, asOf);
+            writeDecimal(out, tokenValueUsd);
+            out.writeShort(tokens.size());
+            for (Token token : tokens) {
+                writeString(out, token.contractAddress());
+                writeString(out, token.symbol());
+                writeDecimal(out, token.amount());
+                writeDecimal(out, token.priceUsd());
+                writeDecimal(out, token.valueUsd());
+            }
+        });
+    }
+
+    private static List<Token> readTokens(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i += 1) {
+            tokens.add(new Token(readString(in), readString(in), readDecimal(in), readDecimal(in), readDecimal(in)));
+        }
+        return tokens;
+    }
+
+    private static byte[] write(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            writer.write(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T read(byte[] packed, Reader<T> reader) {
+        if (packed == null || packed.length == 0) {
+            throw new IllegalArgumentException("Empty wallet cache payload");
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported wallet cache format: " + version);
+            }
+            return reader.read(in);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Malformed wallet cache payload", ex);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private record Token(String contractAddress, String symbol, BigDecimal amount, BigDecimal priceUsd, BigDecimal valueUsd) {
+    }
+}
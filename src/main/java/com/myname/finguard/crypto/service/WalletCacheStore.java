@@ -0,0 +1,89 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.common.cache.SingleFlightCache;
+import com.myname.finguard.crypto.repository.WalletBalanceCacheRepository;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * {@code wallet_balance_cache} as the second level of one provider cache. Keys are either {@code NETWORK:address}
+ * (balances, {@code network == null}) or a bare address of the fixed {@code network} (portfolios); {@code kind}
+ * keeps the two apart for the same address. Unreadable payloads count as misses.
+ */
+final class WalletCacheStore<V> implements SingleFlightCache.SecondLevel<String, V> {
+
+    static final String KIND_BALANCE = "BALANCE";
+    static final String KIND_PORTFOLIO = "PORTFOLIO";
+
+    private final WalletBalanceCacheRepository repository;
+    private final String kind;
+    private final String network;
+    private final Function<V, byte[]> pack;
+    private final Function<byte[], V> unpack;
+
+    WalletCacheStore(
+            WalletBalanceCacheRepository repository,
+            String kind,
+            String network,
+            Function<V, byte[]> pack,
+            Function<byte[], V> unpack
+    ) {
+        this.repository = repository;
+        this.kind = kind;
+        this.network = network;
+        this.pack = pack;
+        this.unpack = unpack;
+    }
+
+    /**
+     * Store for {@code repository} when the second level is enabled, {@code null} otherwise.
+     */
+    static <V> WalletCacheStore<V> create(
+            boolean enabled,
+            WalletBalanceCacheRepository repository,
+            String kind,
+            String network,
+            Function<V, byte[]> pack,
+            Function<byte[], V> unpack
+    ) {
+        return enabled && repository != null ? new WalletCacheStore<>(repository, kind, network, pack, unpack) : null;
+    }
+
+    @Override
+    public Stored<V> read(String key) {
+        String[] parts = split(key);
+        if (parts == null) {
+            return null;
+        }
+        WalletBalanceCacheRepository.CachedRow row = repository.find(parts[0], parts[1], kind);
+        if (row == null) {
+            return null;
+        }
+        try {
+            return new Stored<>(unpack.apply(row.payload()), row.fetchedAt());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void write(String key, V value, Instant fetchedAt) {
+        String[] parts = split(key);
+        if (parts != null) {
+            repository.save(parts[0], parts[1], kind, fetchedAt, pack.apply(value));
+        }
+    }
+
+    private String[] split(String key) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        if (network != null) {
+            return new String[] {network, key};
+        }
+        int separator = key.indexOf(':');
+        return separator <= 0 || separator == key.length() - 1
+                ? null
+                : new String[] {key.substring(0, separator), key.substring(separator + 1)};
+    }
+}
@@ -0,0 +1,62 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Confirmed on-chain transfers of a wallet, read one page at a time in one of two scans. The forward scan reads
+ * blocks after a known block up to the current chain head so new transfers land on every run; the backfill pass
+ * reads history newest first from the head it started at. Cursors are opaque to callers; a backfill cursor is
+ * persisted between pages so an interrupted pass resumes where it stopped, and a page without a next cursor ends
+ * its scan.
+ */
+public interface WalletEventsProvider {
+
+    EventsPage fetchPage(CryptoNetwork network, String addressNormalized, PageRequest request);
+
+    /**
+     * @param cursor     cursor returned with the previous page of the same scan, or {@code null} to start one
+     * @param sinceBlock for the forward scan, only events in blocks after this one; {@code null} for the backfill
+     * @param notBefore  only events at or after this time
+     */
+    record PageRequest(String cursor, Long sinceBlock, Instant notBefore) {
+
+        public static PageRequest forward(long sinceBlock, String cursor, Instant notBefore) {
+            return new PageRequest(cursor, sinceBlock, notBefore);
+        }
+
+        public static PageRequest backfill(String cursor, Instant notBefore) {
+            return new PageRequest(cursor, null, notBefore);
+        }
+
+        public boolean isForward() {
+            return sinceBlock != null;
+        }
+    }
+
+    /**
+     * @param headBlock on a forward page, the block every event after {@code sinceBlock} has now been returned
+     *                  through, or {@code null} while that is not known yet; on a backfill page, the chain head
+     *                  the pass started at
+     */
+    record EventsPage(List<WalletEvent> events, String nextCursor, Long headBlock) {
+        public boolean complete() {
+            return nextCursor == null;
+        }
+    }
+
+    record WalletEvent(
+            String txHash,
+            long logIndex,
+            Long blockNumber,
+            Instant txAt,
+            String direction,
+            String assetCode,
+            BigDecimal amount,
+            BigDecimal fee,
+            String counterparty
+    ) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.myname.finguard.crypto.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Packed form of one day's per-asset holdings, stored in {@code wallet_daily_snapshots.holdings}: a format
+ * version byte, the asset count, then per asset its code and its quantity as a long scaled by
+ * {@link FixedUsd#SCALE}. Assets are written in the order given (the valuation keeps them sorted by code), so
+ * unchanged holdings pack to identical bytes and the snapshot upsert can skip them.
+ */
+final class WalletHoldingsCodec {
+
+    static final int FORMAT_VERSION = 1;
+
+    private WalletHoldingsCodec() {
+    }
+
+    /**
+     * Packs the positive quantities of column {@code day} of {@code quantities[asset][day]}; {@code null} when
+     * the wallet held nothing that day.
+     */
+    static byte[] pack(String[] assetCodes, long[][] quantities, int day) {
+        int count = 0;
+        for (long[] column : quantities) {
+            if (column[day] > 0) {
+                count += 1;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(3 + count * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(count);
+            for (int asset = 0; asset < assetCodes.length; asset += 1) {
+                long quantity = quantities[asset][day];
+                if (quantity > 0) {
+                    out.writeUTF(assetCodes[asset]);
+                    out.writeLong(quantity);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Map<String, BigDecimal> unpack(byte[] packed) {
+        Map<String, BigDecimal> holdings = new LinkedHashMap<>();
+        if (packed == null || packed.length == 0) {
+            return holdings;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported holdings format: " + version);
+            }
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i += 1) {
+                String code = in.readUTF();
+                holdings.put(code, FixedUsd.toDecimal(in.readLong()));
+            }
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Malformed holdings payload", ex);
+        }
+        return holdings;
+    }
+}
@@ -0,0 +1,292 @@
+package com.myname.finguard.crypto.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Token-level end-of-day holdings of one wallet over {@code days} consecutive days starting at
+ * {@code firstEpochDay}, rolled back from the current per-asset quantities through the quantity flows of the
+ * working set, and valued per day from a price matrix. Quantities are longs scaled by {@link FixedUsd#SCALE};
+ * prices are USD per unit ({@code NaN} while unknown).
+ * <p>
+ * A day's price comes from the local history when present, otherwise from the day's own transfers (USD amount
+ * over quantity), otherwise from the nearest earlier known day (or the first known day, before it). Assets with
+ * no price at all, and rows without a quantity, cannot be valued per unit: their USD flows walk back a residual
+ * anchored on the part of today's wallet value the priced holdings do not explain, which is exactly the
+ * flow-only estimate snapshots used before holdings existed.
+ * <p>
+ * A quantity the scaled {@code long} cannot hold (about 9.2e10 units at {@link FixedUsd#SCALE} digits, easily
+ * reached by low-priced tokens) is not rolled back from clamped values: the whole asset is marked overflowed,
+ * holds zero on every day and is valued through the residual like an unpriced asset.
+ */
+final class WalletHoldingsValuation {
+
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+    private static final int UNRESOLVED = -2;
+
+    private final WalletTxWorkingSet workingSet;
+    private final WalletTxWorkingSet.Window window;
+    private final long firstEpochDay;
+    private final int days;
+    private final String[] assetCodes;
+    private final int[] columnByDictionaryId;
+    private final long[][] quantities;
+    private final double[][] prices;
+    private final double[][] impliedUsd;
+    private final double[][] impliedQuantity;
+    private final boolean[] overflowed;
+
+    private WalletHoldingsValuation(
+            WalletTxWorkingSet workingSet,
+            WalletTxWorkingSet.Window window,
+            long firstEpochDay,
+            int days,
+            String[] assetCodes
+    ) {
+        this.workingSet = workingSet;
+        this.window = window;
+        this.firstEpochDay = firstEpochDay;
+        this.days = days;
+        this.assetCodes = assetCodes;
+        this.columnByDictionaryId = new int[workingSet.dictionarySize()];
+        Arrays.fill(columnByDictionaryId, UNRESOLVED);
+        this.quantities = new long[assetCodes.length][days];
+        this.prices = new double[assetCodes.length][days];
+        this.impliedUsd = new double[assetCodes.length][days];
+        this.impliedQuantity = new double[assetCodes.length][days];
+        this.overflowed = new boolean[assetCodes.length];
+        for (double[] row : prices) {
+            Arrays.fill(row, Double.NaN);
+        }
+    }
+
+    /**
+     * Builds the holdings matrix: the last day holds {@code currentQuantities} and each earlier day is the next
+     * day minus that day's net quantity flow. Rows outside the day range are ignored.
+     */
+    static WalletHoldingsValuation rollBack(
+            WalletTxWorkingSet workingSet,
+            WalletTxWorkingSet.Window window,
+            long firstEpochDay,
+            int days,
+            Map<String, BigDecimal> currentQuantities
+    ) {
+        Map<String, Long> anchors = new HashMap<>();
+        for (Map.Entry<String, BigDecimal> entry : currentQuantities.entrySet()) {
+            String normalized = normalizeAsset(entry.getKey());
+            if (normalized != null) {
+                anchors.merge(normalized, FixedUsd.of(entry.getValue()), FixedUsd::add);
+            }
+        }
+        TreeSet<String> codes = new TreeSet<>(anchors.keySet());
+        for (int i = window.start(); i < window.end(); i += 1) {
+            if (workingSet.quantityScaled(i) != 0) {
+                String normalized = normalizeAsset(workingSet.assetCode(i));
+                if (normalized != null) {
+                    codes.add(normalized);
+                }
+            }
+        }
+        WalletHoldingsValuation valuation = new WalletHoldingsValuation(workingSet, window, firstEpochDay, Math.max(1, days), codes.toArray(new String[0]));
+        valuation.accumulateFlows();
+        for (int asset = 0; asset < valuation.assetCodes.length; asset += 1) {
+            valuation.rollBackAsset(asset, anchors.getOrDefault(valuation.assetCodes[asset], 0L));
+        }
+        return valuation;
+    }
+
+    String[] assetCodes() {
+        return assetCodes;
+    }
+
+    int days() {
+        return days;
+    }
+
+    /**
+     * Sets the USD price of {@code assetCode} on {@code epochDay}; unknown assets and days outside the range are
+     * ignored.
+     */
+    void price(String assetCode, long epochDay, double usd) {
+        int asset = assetIndex(assetCode);
+        long day = epochDay - firstEpochDay;
+        if (asset < 0 || day < 0 || day >= days || !(usd > 0)) {
+            return;
+        }
+        prices[asset][(int) day] = usd;
+    }
+
+    /**
+     * Uses {@code usd} as the last day's price of {@code assetCode} unless the history already had one.
+     */
+    void spotPrice(String assetCode, double usd) {
+        int asset = assetIndex(assetCode);
+        if (asset >= 0 && Double.isNaN(prices[asset][days - 1])) {
+            price(assetCode, firstEpochDay + days - 1, usd);
+        }
+    }
+
+    long quantity(String assetCode, int day) {
+        int asset = assetIndex(assetCode);
+        return asset < 0 ? 0L : quantities[asset][day];
+    }
+
+    /**
+     * Packed holdings of {@code day}, see {@link WalletHoldingsCodec}.
+     */
+    byte[] packedHoldings(int day) {
+        return WalletHoldingsCodec.pack(assetCodes, quantities, day);
+    }
+
+    /**
+     * End-of-day wallet value per day in scaled USD, anchored so the last day equals {@code currentUsdScaled}
+     * and never negative.
+     */
+    long[] value(long currentUsdScaled) {
+        boolean[] priced = new boolean[assetCodes.length];
+        double[] pricedUsdScaled = new double[days];
+        for (int asset = 0; asset < assetCodes.length; asset += 1) {
+            priced[asset] = !overflowed[asset] && completePrices(asset);
+            if (!priced[asset]) {
+                continue;
+            }
+            long[] held = quantities[asset];
+            double[] price = prices[asset];
+            for (int day = 0; day < days; day += 1) {
+                pricedUsdScaled[day] += Math.max(0L, held[day]) * price[day];
+            }
+        }
+
+        long[] residualFlow = new long[days];
+        for (int i = window.start(); i < window.end(); i += 1) {
+            int day = dayIndex(i);
+            if (day < 0) {
+                continue;
+            }
+            int asset = column(i);
+            if (asset >= 0 && priced[asset] && workingSet.quantityScaled(i) != 0) {
+                continue;
+            }
+            long amount = FixedUsd.abs(workingSet.amountUsdScaled(i));
+            residualFlow[day] = workingSet.isOutflow(i)
+                    ? FixedUsd.subtract(residualFlow[day], amount)
+                    : FixedUsd.add(residualFlow[day], amount);
+        }
+
+        long[] values = new long[days];
+        long residual = FixedUsd.subtract(currentUsdScaled, scaledUsd(pricedUsdScaled[days - 1]));
+        for (int day = days - 1; day >= 0; day -= 1) {
+            values[day] = Math.max(0L, FixedUsd.add(scaledUsd(pricedUsdScaled[day]), residual));
+            residual = FixedUsd.subtract(residual, residualFlow[day]);
+        }
+        return values;
+    }
+
+    private void accumulateFlows() {
+        for (int i = window.start(); i < window.end(); i += 1) {
+            int day = dayIndex(i);
+            int asset = column(i);
+            long quantity = FixedUsd.abs(workingSet.quantityScaled(i));
+            if (day < 0 || asset < 0 || quantity == 0) {
+                continue;
+            }
+            if (FixedUsd.saturated(quantity)) {
+                overflowed[asset] = true;
+            }
+            // Net flows are parked in the holdings matrix and replaced by holdings in rollBackAsset.
+            quantities[asset][day] = workingSet.isOutflow(i)
+                    ? FixedUsd.subtract(quantities[asset][day], quantity)
+                    : FixedUsd.add(quantities[asset][day], quantity);
+            long usd = FixedUsd.abs(workingSet.amountUsdScaled(i));
+            if (usd != 0) {
+                impliedUsd[asset][day] += usd;
+                impliedQuantity[asset][day] += quantity;
+            }
+        }
+    }
+
+    private void rollBackAsset(int asset, long current) {
+        long[] row = quantities[asset];
+        boolean overflow = overflowed[asset] || FixedUsd.saturated(current);
+        long holding = current;
+        for (int day = days - 1; day >= 0 && !overflow; day -= 1) {
+            long flow = row[day];
+            row[day] = holding;
+            overflow = FixedUsd.saturated(flow) || FixedUsd.saturated(holding);
+            holding = FixedUsd.subtract(holding, flow);
+        }
+        if (overflow) {
+            overflowed[asset] = true;
+            Arrays.fill(row, 0L);
+        }
+    }
+
+    /**
+     * Fills the asset's price gaps; returns false when it has no price on any day.
+     */
+    private boolean completePrices(int asset) {
+        double[] price = prices[asset];
+        int firstKnown = -1;
+        double last = Double.NaN;
+        for (int day = 0; day < days; day += 1) {
+            if (Double.isNaN(price[day]) && impliedQuantity[asset][day] > 0) {
+                price[day] = impliedUsd[asset][day] / impliedQuantity[asset][day];
+            }
+            if (Double.isNaN(price[day])) {
+                price[day] = last;
+            } else {
+                last = price[day];
+                if (firstKnown < 0) {
+                    firstKnown = day;
+                }
+            }
+        }
+        if (firstKnown < 0) {
+            return false;
+        }
+        Arrays.fill(price, 0, firstKnown, price[firstKnown]);
+        return true;
+    }
+
+    private int dayIndex(int row) {
+        long day = Math.floorDiv(workingSet.txAtMicros(row), MICROS_PER_DAY) - firstEpochDay;
+        return day < 0 || day >= days ? -1 : (int) day;
+    }
+
+    private int column(int row) {
+        int id = workingSet.assetId(row);
+        if (id == WalletTxWorkingSet.NO_VALUE) {
+            return -1;
+        }
+        int column = columnByDictionaryId[id];
+        if (column == UNRESOLVED) {
+            column = assetIndex(workingSet.assetCode(row));
+            columnByDictionaryId[id] = column;
+        }
+        return column;
+    }
+
+    private int assetIndex(String assetCode) {
+        String normalized = normalizeAsset(assetCode);
+        if (normalized == null) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(assetCodes, normalized);
+        return index < 0 ? -1 : index;
+    }
+
+    private static long scaledUsd(double scaled) {
+        return FixedUsd.ofDouble(scaled / FixedUsd.ONE);
+    }
+
+    static String normalizeAsset(String assetCode) {
+        if (assetCode == null || assetCode.isBlank()) {
+            return null;
+        }
+        return assetCode.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,139 @@
+package com.myname.finguard.crypto.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Scores outflows of a {@link WalletTxWorkingSet} against rolling baselines kept per wallet, per asset and
+ * per counterparty. Each baseline is an exponentially weighted mean/variance of {@code ln(1 + usd)}, so one
+ * pass over the primitive columns is enough and heavy-tailed amounts stay comparable. An outflow's score is
+ * its largest z-score against a baseline with enough history; values above the threshold are clipped before
+ * they are folded in, so a spike does not widen the baseline that judges the next one.
+ */
+final class WalletOutflowAnomalyDetector {
+
+    static final double SCORE_THRESHOLD = 3.5;
+    static final int MIN_BASELINE_OUTFLOWS = 5;
+    static final double MIN_ANOMALY_USD = 50.0;
+
+    private static final double EWMA_ALPHA = 2.0 / (20 + 1);
+    /** Floor on the log-scale deviation (~10% of the amount) so constant charges still have a spread. */
+    private static final double MIN_DEVIATION = 0.10;
+
+    enum Basis {
+        WALLET,
+        ASSET,
+        COUNTERPARTY
+    }
+
+    record Anomaly(int index, double score, Basis basis, double typicalUsd) {
+    }
+
+    private WalletOutflowAnomalyDetector() {
+    }
+
+    /**
+     * Builds the baselines from every row before {@code scored.end()} and returns the anomalous outflows
+     * inside {@code scored}, highest score first.
+     */
+    static List<Anomaly> detect(WalletTxWorkingSet set, WalletTxWorkingSet.Window scored) {
+        if (set == null || scored == null || scored.isEmpty()) {
+            return List.of();
+        }
+        int groups = set.dictionarySize();
+        Baselines wallet = new Baselines(1);
+        Baselines assets = new Baselines(groups);
+        Baselines counterparties = new Baselines(groups);
+        List<Anomaly> anomalies = new ArrayList<>();
+        for (int i = 0; i < scored.end(); i += 1) {
+            long scaled = set.amountUsdScaled(i);
+            if (!set.isOutflow(i) || scaled <= 0) {
+                continue;
+            }
+            double usd = FixedUsd.toDouble(scaled);
+            double x = Math.log1p(usd);
+            int asset = set.assetId(i);
+            int counterparty = set.counterpartyId(i);
+
+            double walletScore = wallet.score(0, x);
+            double assetScore = assets.score(asset, x);
+            double counterpartyScore = counterparties.score(counterparty, x);
+            if (i >= scored.start() && usd >= MIN_ANOMALY_USD) {
+                Basis basis = Basis.WALLET;
+                double score = walletScore;
+                if (assetScore > score) {
+                    basis = Basis.ASSET;
+                    score = assetScore;
+                }
+                if (counterpartyScore > score) {
+                    basis = Basis.COUNTERPARTY;
+                    score = counterpartyScore;
+                }
+                if (score >= SCORE_THRESHOLD) {
+                    Baselines baseline = basis == Basis.WALLET ? wallet : basis == Basis.ASSET ? assets : counterparties;
+                    int group = basis == Basis.WALLET ? 0 : basis == Basis.ASSET ? asset : counterparty;
+                    anomalies.add(new Anomaly(i, score, basis, Math.expm1(baseline.mean[group])));
+                }
+            }
+            wallet.observe(0, x);
+            assets.observe(asset, x);
+            counterparties.observe(counterparty, x);
+        }
+        anomalies.sort(Comparator.comparingDouble(Anomaly::score).reversed());
+        return anomalies;
+    }
+
+    /**
+     * Exponentially weighted mean/variance per dictionary id, in parallel arrays.
+     */
+    private static final class Baselines {
+
+        private final double[] mean;
+        private final double[] variance;
+        private final int[] count;
+
+        private Baselines(int groups) {
+            mean = new double[groups];
+            variance = new double[groups];
+            count = new int[groups];
+        }
+
+        /**
+         * Upward z-score of {@code x}, or zero while the group has too little history.
+         */
+        private double score(int group, double x) {
+            if (group < 0 || count[group] < MIN_BASELINE_OUTFLOWS) {
+                return 0;
+            }
+            return (x - mean[group]) / deviation(group);
+        }
+
+        private void observe(int group, double x) {
+            if (group < 0) {
+                return;
+            }
+            int seen = count[group];
+            if (seen == 0) {
+                mean[group] = x;
+                variance[group] = 0;
+                count[group] = 1;
+                return;
+            }
+            double value = seen >= MIN_BASELINE_OUTFLOWS
+                    ? Math.min(x, mean[group] + SCORE_THRESHOLD * deviation(group))
+                    : x;
+            // Equal weights until the window fills, so early history is not dominated by its first value.
+            double alpha = Math.max(EWMA_ALPHA, 1.0 / (seen + 1));
+            double delta = value - mean[group];
+            double increment = alpha * delta;
+            mean[group] += increment;
+            variance[group] = (1 - alpha) * (variance[group] + delta * increment);
+            count[group] = seen + 1;
+        }
+
+        private double deviation(int group) {
+            return Math.max(MIN_DEVIATION, Math.sqrt(variance[group]));
+        }
+    }
+}
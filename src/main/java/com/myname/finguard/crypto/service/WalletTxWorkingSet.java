@@ -0,0 +1,278 @@
+package com.myname.finguard.crypto.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, columnar view of a wallet's enriched transactions for one pipeline run. Rows are ordered by
+ * {@code tx_at}; timestamps are epoch microseconds, USD amounts and token quantities are longs scaled by
+ * {@link #AMOUNT_SCALE}, and asset/counterparty/category/source strings are interned into a shared dictionary. Stages slice it by time
+ * with {@link #window(Instant, Instant)} instead of re-querying {@code wallet_tx_enriched}.
+ */
+final class WalletTxWorkingSet {
+
+    static final int AMOUNT_SCALE = FixedUsd.SCALE;
+    static final int NO_VALUE = -1;
+
+    private static final WalletTxWorkingSet EMPTY = new Builder(0).build();
+
+    private final int size;
+    private final long[] txAtMicros;
+    private final boolean[] outflow;
+    private final long[] amountUsdScaled;
+    private final long[] quantityScaled;
+    private final int[] assetIds;
+    private final int[] counterpartyIds;
+    private final int[] categoryIds;
+    private final int[] sourceIds;
+    private final String[] dictionary;
+
+    private WalletTxWorkingSet(Builder builder) {
+        this.size = builder.size;
+        this.txAtMicros = Arrays.copyOf(builder.txAtMicros, builder.size);
+        this.outflow = Arrays.copyOf(builder.outflow, builder.size);
+        this.amountUsdScaled = Arrays.copyOf(builder.amountUsdScaled, builder.size);
+        this.quantityScaled = Arrays.copyOf(builder.quantityScaled, builder.size);
+        this.assetIds = Arrays.copyOf(builder.assetIds, builder.size);
+        this.counterpartyIds = Arrays.copyOf(builder.counterpartyIds, builder.size);
+        this.categoryIds = Arrays.copyOf(builder.categoryIds, builder.size);
+        this.sourceIds = Arrays.copyOf(builder.sourceIds, builder.size);
+        this.dictionary = builder.dictionary.toArray(new String[0]);
+    }
+
+    static WalletTxWorkingSet empty() {
+        return EMPTY;
+    }
+
+    static Builder builder(int expectedRows) {
+        return new Builder(expectedRows);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Index range {@code [start, end)} of rows with {@code from <= tx_at <= to}.
+     */
+    Window window(Instant from, Instant to) {
+        int start = from == null ? 0 : lowerBound(toMicros(from));
+        int end = to == null ? size : upperBound(toMicros(to));
+        return new Window(start, Math.max(start, end));
+    }
+
+    long txAtMicros(int index) {
+        return txAtMicros[index];
+    }
+
+    Instant txAt(int index) {
+        long micros = txAtMicros[index];
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    boolean isOutflow(int index) {
+        return outflow[index];
+    }
+
+    long amountUsdScaled(int index) {
+        return amountUsdScaled[index];
+    }
+
+    BigDecimal amountUsd(int index) {
+        return FixedUsd.toDecimal(amountUsdScaled[index]);
+    }
+
+    /**
+     * Token quantity of the row scaled by {@link #AMOUNT_SCALE}; zero when the row carries no quantity.
+     */
+    long quantityScaled(int index) {
+        return quantityScaled[index];
+    }
+
+    String assetCode(int index) {
+        return lookup(assetIds[index]);
+    }
+
+    String counterparty(int index) {
+        return lookup(counterpartyIds[index]);
+    }
+
+    /**
+     * Dictionary id of the row's asset code, or {@link #NO_VALUE}; ids are dense in {@code [0, dictionarySize())}.
+     */
+    int assetId(int index) {
+        return assetIds[index];
+    }
+
+    /**
+     * Dictionary id of the row's counterparty, or {@link #NO_VALUE}.
+     */
+    int counterpartyId(int index) {
+        return counterpartyIds[index];
+    }
+
+    int dictionarySize() {
+        return dictionary.length;
+    }
+
+    String category(int index) {
+        return lookup(categoryIds[index]);
+    }
+
+    String source(int index) {
+        return lookup(sourceIds[index]);
+    }
+
+    static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000L);
+    }
+
+    private String lookup(int id) {
+        return id == NO_VALUE ? null : dictionary[id];
+    }
+
+    private int lowerBound(long micros) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (txAtMicros[mid] < micros) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int upperBound(long micros) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (txAtMicros[mid] <= micros) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    record Window(int start, int end) {
+        boolean isEmpty() {
+            return end <= start;
+        }
+
+        int size() {
+            return end - start;
+        }
+    }
+
+    static final class Builder {
+
+        private int size;
+        private long[] txAtMicros;
+        private boolean[] outflow;
+        private long[] amountUsdScaled;
+        private long[] quantityScaled;
+        private int[] assetIds;
+        private int[] counterpartyIds;
+        private int[] categoryIds;
+        private int[] sourceIds;
+        private final Map<String, Integer> interned = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private long lastTxAtMicros = Long.MIN_VALUE;
+
+        private Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            txAtMicros = new long[capacity];
+            outflow = new boolean[capacity];
+            amountUsdScaled = new long[capacity];
+            quantityScaled = new long[capacity];
+            assetIds = new int[capacity];
+            counterpartyIds = new int[capacity];
+            categoryIds = new int[capacity];
+            sourceIds = new int[capacity];
+        }
+
+        /**
+         * Appends a row; rows must arrive ordered by {@code txAt}.
+         */
+        Builder add(Instant txAt, boolean isOutflow, String assetCode, BigDecimal amountUsd, String counterparty, String category, String source) {
+            return add(txAt, isOutflow, assetCode, null, amountUsd, counterparty, category, source);
+        }
+
+        /**
+         * Appends a row with its token quantity; rows must arrive ordered by {@code txAt}.
+         */
+        Builder add(
+                Instant txAt,
+                boolean isOutflow,
+                String assetCode,
+                BigDecimal quantity,
+                BigDecimal amountUsd,
+                String counterparty,
+                String category,
+                String source
+        ) {
+            if (txAt == null) {
+                return this;
+            }
+            long micros = toMicros(txAt);
+            if (micros < lastTxAtMicros) {
+                throw new IllegalArgumentException("Working set rows must be ordered by tx_at");
+            }
+            ensureCapacity(size + 1);
+            txAtMicros[size] = micros;
+            outflow[size] = isOutflow;
+            amountUsdScaled[size] = FixedUsd.of(amountUsd);
+            quantityScaled[size] = FixedUsd.of(quantity);
+            assetIds[size] = intern(assetCode);
+            counterpartyIds[size] = intern(counterparty);
+            categoryIds[size] = intern(category);
+            sourceIds[size] = intern(source);
+            lastTxAtMicros = micros;
+            size += 1;
+            return this;
+        }
+
+        WalletTxWorkingSet build() {
+            return new WalletTxWorkingSet(this);
+        }
+
+        private int intern(String value) {
+            if (value == null) {
+                return NO_VALUE;
+            }
+            Integer existing = interned.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            int id = dictionary.size();
+            dictionary.add(value);
+            interned.put(value, id);
+            return id;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= txAtMicros.length) {
+                return;
+            }
+            int capacity = Math.max(required, txAtMicros.length * 2);
+            txAtMicros = Arrays.copyOf(txAtMicros, capacity);
+            outflow = Arrays.copyOf(outflow, capacity);
+            amountUsdScaled = Arrays.copyOf(amountUsdScaled, capacity);
+            quantityScaled = Arrays.copyOf(quantityScaled, capacity);
+            assetIds = Arrays.copyOf(assetIds, capacity);
+            counterpartyIds = Arrays.copyOf(counterpartyIds, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+            sourceIds = Arrays.copyOf(sourceIds, capacity);
+        }
+    }
+}
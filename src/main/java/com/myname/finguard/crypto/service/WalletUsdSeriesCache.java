@@ -0,0 +1,92 @@
+package com.myname.finguard.crypto.service;
+
+import com.myname.finguard.common.cache.BoundedCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Materialised daily portfolio series per wallet: the last {@link #MAX_DAYS} days of
+ * {@code wallet_daily_snapshots} as USD longs scaled by {@link WalletTxWorkingSet#AMOUNT_SCALE}, so every
+ * series window is a suffix of one array and is converted to the base currency with a single multiplier.
+ * Entries are keyed by the wallet's snapshot watermark ({@code snapshots_through}); a series built under
+ * another watermark or for another end day is reloaded on the next read, which keeps nodes that did not
+ * run the pipeline consistent without cross-node invalidation. Entries live in a {@link BoundedCache}, so
+ * eviction beyond {@code maxEntries} is O(1); zero disables caching.
+ */
+final class WalletUsdSeriesCache {
+
+    static final int MAX_DAYS = 365;
+    static final long NO_SNAPSHOT = Long.MIN_VALUE;
+
+    private final int maxEntries;
+    private final BoundedCache<Long, Series> entries;
+
+    WalletUsdSeriesCache(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries = new BoundedCache<>(this.maxEntries);
+    }
+
+    /**
+     * Cached series of the wallet ending at {@code endDay}, loaded with {@code loader} when missing or built
+     * under a different snapshot watermark. The loader returns {@link #MAX_DAYS} values ending at
+     * {@code endDay}, {@link #NO_SNAPSHOT} for days without a snapshot.
+     */
+    Series get(Long walletId, LocalDate endDay, Instant snapshotsThrough, Function<LocalDate, long[]> loader) {
+        long endEpochDay = endDay.toEpochDay();
+        Series cached = entries.get(walletId);
+        if (cached != null && cached.endEpochDay() == endEpochDay && Objects.equals(cached.snapshotsThrough(), snapshotsThrough)) {
+            return cached;
+        }
+        long[] values = loader.apply(endDay);
+        if (values == null || values.length != MAX_DAYS) {
+            throw new IllegalArgumentException("Series loader must return " + MAX_DAYS + " days");
+        }
+        Series loaded = new Series(endEpochDay, snapshotsThrough, values);
+        if (maxEntries > 0) {
+            entries.put(walletId, loaded);
+        }
+        return loaded;
+    }
+
+    void invalidate(Long walletId) {
+        if (walletId != null) {
+            entries.remove(walletId);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void bindTo(MeterRegistry registry, String name) {
+        entries.bindTo(registry, name);
+    }
+
+    record Series(long endEpochDay, Instant snapshotsThrough, long[] usdScaled) {
+
+        /**
+         * The last {@code days} values, oldest first. A day without a snapshot repeats the previous day, and
+         * days before the window's first snapshot are zero. Returns {@code null} when the window holds no
+         * snapshot at all.
+         */
+        long[] window(int days) {
+            int length = Math.max(1, Math.min(days, MAX_DAYS));
+            int start = MAX_DAYS - length;
+            long[] values = new long[length];
+            long previous = 0L;
+            boolean any = false;
+            for (int i = 0; i < length; i += 1) {
+                long value = usdScaled[start + i];
+                if (value != NO_SNAPSHOT) {
+                    previous = value;
+                    any = true;
+                }
+                values[i] = previous;
+            }
+            return any ? values : null;
+        }
+    }
+}
@@ -6,9 +6,12 @@ import com.myname.finguard.crypto.model.CryptoNetwork;
 import com.myname.finguard.crypto.service.CryptoWalletBalanceProvider;
 import com.myname.finguard.crypto.service.ArbitrumWalletPortfolioProvider;
 import com.myname.finguard.crypto.service.EthWalletPortfolioProvider;
+import com.myname.finguard.crypto.service.WalletEventsProvider;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -122,6 +125,34 @@ public class E2eStubProvidersConfig {
         );
     }
 
+    @Bean
+    @Primary
+    public WalletEventsProvider walletEventsProvider() {
+        return (network, addressNormalized, request) -> {
+            if (network == null) {
+                throw new IllegalArgumentException("Network is required");
+            }
+            // Monthly outflow to one counterparty, anchored to the current day so it stays inside the analysis windows.
+            Instant today = Instant.now().truncatedTo(ChronoUnit.DAYS);
+            boolean btc = network == CryptoNetwork.BTC;
+            List<WalletEventsProvider.WalletEvent> events = new ArrayList<>();
+            for (int month = 2; month >= 0; month--) {
+                events.add(new WalletEventsProvider.WalletEvent(
+                        "e2e-" + network.name().toLowerCase(Locale.ROOT) + "-" + month,
+                        0L,
+                        800_000L - month,
+                        today.minus(2 + 30L * month, ChronoUnit.DAYS),
+                        "OUT",
+                        btc ? "BTC" : "USDC",
+                        btc ? new BigDecimal("0.00020000") : new BigDecimal("15.00000000"),
+                        BigDecimal.ZERO,
+                        btc ? "bc1qe2ecounterparty0000000000000000000000" : "0x00000000000000000000000000000000000e2e01"
+                ));
+            }
+            return new WalletEventsProvider.EventsPage(events, null, 800_000L);
+        };
+    }
+
     private static BigDecimal toBase(BigDecimal usdPrice, String baseCurrency) {
         if (usdPrice == null) {
             return null;
@@ -13,8 +13,13 @@ public interface FxRateRepository extends JpaRepository<FxRate, Long> {
     @Query("select max(r.asOf) from FxRate r where r.baseCurrency = :baseCurrency")
     Instant findLatestAsOf(@Param("baseCurrency") String baseCurrency);
 
+    @Query("select max(r.asOf) from FxRate r where r.baseCurrency = :baseCurrency and r.asOf <= :at")
+    Instant findLatestAsOfAtOrBefore(@Param("baseCurrency") String baseCurrency, @Param("at") Instant at);
+
     List<FxRate> findByBaseCurrencyAndAsOf(String baseCurrency, Instant asOf);
 
+    List<FxRate> findByBaseCurrencyAndAsOfBetweenOrderByAsOfAsc(String baseCurrency, Instant from, Instant to);
+
     Optional<FxRate> findTopByBaseCurrencyAndQuoteCurrencyOrderByAsOfDesc(String baseCurrency, String quoteCurrency);
 
     void deleteByBaseCurrencyAndAsOf(String baseCurrency, Instant asOf);
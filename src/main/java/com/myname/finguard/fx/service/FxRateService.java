@@ -53,6 +53,19 @@ public class FxRateService {
         return new FxRatesProvider.FxRates(base, asOf, rates);
     }
 
+    /**
+     * Stored rows of the {@code baseCurrency} snapshots in effect during {@code [from, to]}: the last snapshot
+     * taken at or before {@code from} followed by every later one up to {@code to}, ordered by {@code asOf}.
+     */
+    public List<FxRate> snapshotsCovering(String baseCurrency, Instant from, Instant to) {
+        String base = normalize(baseCurrency);
+        if (base.isBlank() || from == null || to == null || to.isBefore(from)) {
+            return List.of();
+        }
+        Instant seed = fxRateRepository.findLatestAsOfAtOrBefore(base, from);
+        return fxRateRepository.findByBaseCurrencyAndAsOfBetweenOrderByAsOfAsc(base, seed == null ? from : seed, to);
+    }
+
     @Transactional
     public FxRatesProvider.FxRates upsertSnapshot(String baseCurrency, Instant asOf, Map<String, BigDecimal> rates) {
         String base = normalize(baseCurrency);
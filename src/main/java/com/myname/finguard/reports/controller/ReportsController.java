@@ -6,6 +6,7 @@ import com.myname.finguard.common.constants.ErrorCodes;
 import com.myname.finguard.common.exception.ApiException;
 import com.myname.finguard.reports.dto.CashFlowResponse;
 import com.myname.finguard.reports.dto.ReportPeriod;
+import com.myname.finguard.reports.dto.ReportRateMode;
 import com.myname.finguard.reports.dto.ReportSummaryResponse;
 import com.myname.finguard.reports.dto.ReportsByCategoryResponse;
 import com.myname.finguard.reports.service.ReportsService;
@@ -41,22 +42,25 @@ public class ReportsController {
 
     @GetMapping("/summary")
     @PreAuthorize("isAuthenticated()")
-    @Operation(summary = "Report summary", description = "Aggregates total income, expense, and net cash flow.")
+    @Operation(summary = "Report summary", description = "Aggregates total income, expense, and net cash flow. "
+            + "With rateMode=historical each day is converted at that day's stored rates.")
     @ApiResponse(responseCode = "200", description = "Summary returned")
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<ReportSummaryResponse> summary(
             @RequestParam(required = false) String period,
             @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
             @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String rateMode,
             Authentication authentication
     ) {
         Long userId = resolveUserId(authentication);
-        return ResponseEntity.ok(reportsService.summary(userId, parsePeriod(period), from, to));
+        return ResponseEntity.ok(reportsService.summary(userId, parsePeriod(period), from, to, parseRateMode(rateMode)));
     }
 
     @GetMapping("/by-category")
     @PreAuthorize("isAuthenticated()")
-    @Operation(summary = "Report by category", description = "Aggregates income and expense totals grouped by category.")
+    @Operation(summary = "Report by category", description = "Aggregates income and expense totals grouped by category. "
+            + "With rateMode=historical each day is converted at that day's stored rates.")
     @ApiResponse(responseCode = "200", description = "Report returned")
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<ReportsByCategoryResponse> byCategory(
@@ -64,24 +68,27 @@ public class ReportsController {
             @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
             @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
             @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String rateMode,
             Authentication authentication
     ) {
         Long userId = resolveUserId(authentication);
-        return ResponseEntity.ok(reportsService.byCategory(userId, parsePeriod(period), from, to, limit));
+        return ResponseEntity.ok(reportsService.byCategory(userId, parsePeriod(period), from, to, limit, parseRateMode(rateMode)));
     }
 
     @GetMapping("/cash-flow")
     @PreAuthorize("isAuthenticated()")
-    @Operation(summary = "Cash flow time series", description = "Returns daily income/expense/net cash flow series.")
+    @Operation(summary = "Cash flow time series", description = "Returns daily income/expense/net cash flow series. "
+            + "With rateMode=historical each day is converted at that day's stored rates.")
     @ApiResponse(responseCode = "200", description = "Report returned")
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<CashFlowResponse> cashFlow(
             @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant from,
             @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String rateMode,
             Authentication authentication
     ) {
         Long userId = resolveUserId(authentication);
-        return ResponseEntity.ok(reportsService.cashFlow(userId, from, to));
+        return ResponseEntity.ok(reportsService.cashFlow(userId, from, to, parseRateMode(rateMode)));
     }
 
     private ReportPeriod parsePeriod(String raw) {
@@ -96,6 +103,18 @@ public class ReportsController {
         }
     }
 
+    private ReportRateMode parseRateMode(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return ReportRateMode.LATEST;
+        }
+        String normalized = raw.trim().toUpperCase();
+        try {
+            return ReportRateMode.valueOf(normalized);
+        } catch (Exception e) {
+            throw new ApiException(ErrorCodes.BAD_REQUEST, "Unsupported rate mode: " + normalized, HttpStatus.BAD_REQUEST);
+        }
+    }
+
     private Long resolveUserId(Authentication authentication) {
         if (authentication == null
                 || authentication.getPrincipal() == null
@@ -0,0 +1,6 @@
+package com.myname.finguard.reports.dto;
+
+public enum ReportRateMode {
+    LATEST,
+    HISTORICAL
+}
@@ -0,0 +1,268 @@
+package com.myname.finguard.reports.service;
+
+import com.myname.finguard.common.constants.ErrorCodes;
+import com.myname.finguard.common.exception.ApiException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Per-day conversion rates of a report range, preloaded once per request into one dense array per currency so
+ * that converting a (currency, day) bucket is two array reads. Fiat rates are units per USD, crypto rates are
+ * USD per unit, and USD needs none. A day's rate is the last one observed on or before it; days before the
+ * first observation take the first one.
+ * <p>
+ * Amounts are bucketed in {@code BigDecimal[currency][day]} grids ({@link #newBuckets()}, {@link #add}); day rows
+ * are only allocated for currencies that occur.
+ */
+final class HistoricalRates {
+
+    private static final int USD_SCALE = 12;
+
+    private final String baseCurrency;
+    private final int scale;
+    private final long firstEpochDay;
+    private final int days;
+    private final String[] codes;
+    private final boolean[] crypto;
+    private final BigDecimal[][] rates;
+    private final int baseIndex;
+
+    private HistoricalRates(String baseCurrency, int scale, long firstEpochDay, int days, String[] codes, boolean[] crypto, BigDecimal[][] rates) {
+        this.baseCurrency = baseCurrency;
+        this.scale = scale;
+        this.firstEpochDay = firstEpochDay;
+        this.days = days;
+        this.codes = codes;
+        this.crypto = crypto;
+        this.rates = rates;
+        this.baseIndex = Arrays.binarySearch(codes, baseCurrency);
+    }
+
+    static Builder builder(String baseCurrency, int scale, LocalDate firstDay, LocalDate lastDay, Collection<String> currencies, Predicate<String> isCrypto) {
+        return new Builder(baseCurrency, scale, firstDay, lastDay, currencies, isCrypto);
+    }
+
+    String baseCurrency() {
+        return baseCurrency;
+    }
+
+    int scale() {
+        return scale;
+    }
+
+    int days() {
+        return days;
+    }
+
+    LocalDate day(int index) {
+        return LocalDate.ofEpochDay(firstEpochDay + index);
+    }
+
+    /**
+     * Index of {@code currency} in the table (case-insensitive, no allocation), or -1 when it was not preloaded.
+     */
+    int currencyIndex(String currency) {
+        if (currency == null) {
+            return -1;
+        }
+        String trimmed = currency.strip();
+        for (int i = 0; i < codes.length; i += 1) {
+            if (codes[i].equalsIgnoreCase(trimmed)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Day index of the UTC day {@code epochDay}, clamped to the range.
+     */
+    int dayIndex(long epochDay) {
+        long day = epochDay - firstEpochDay;
+        return (int) Math.max(0, Math.min(days - 1, day));
+    }
+
+    BigDecimal[][] newBuckets() {
+        return new BigDecimal[codes.length][];
+    }
+
+    void add(BigDecimal[][] buckets, int currency, int day, BigDecimal amount) {
+        if (amount == null) {
+            return;
+        }
+        BigDecimal[] row = buckets[currency];
+        if (row == null) {
+            row = new BigDecimal[days];
+            buckets[currency] = row;
+        }
+        row[day] = row[day] == null ? amount : row[day].add(amount);
+    }
+
+    /**
+     * Sum of every bucket converted to the base currency at its day's rates, rounded to {@link #scale()}.
+     */
+    BigDecimal convert(BigDecimal[][] buckets) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int day = 0; day < days; day += 1) {
+            total = total.add(convertUnscaled(buckets, day));
+        }
+        return total.setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Buckets of {@code day} converted to the base currency at that day's rates, rounded to {@link #scale()}.
+     */
+    BigDecimal convert(BigDecimal[][] buckets, int day) {
+        return convertUnscaled(buckets, day).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal convertUnscaled(BigDecimal[][] buckets, int day) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int currency = 0; currency < codes.length; currency += 1) {
+            BigDecimal[] row = buckets[currency];
+            if (row != null && row[day] != null) {
+                total = total.add(toBase(row[day], currency, day));
+            }
+        }
+        return total;
+    }
+
+    private BigDecimal toBase(BigDecimal amount, int currency, int day) {
+        if (currency == baseIndex) {
+            return amount;
+        }
+        BigDecimal usd = amount;
+        if (rates[currency] != null) {
+            BigDecimal rate = requireRate(currency, day);
+            usd = crypto[currency] ? amount.multiply(rate) : amount.divide(rate, USD_SCALE, RoundingMode.HALF_UP);
+        }
+        if (rates[baseIndex] == null) {
+            return usd;
+        }
+        BigDecimal baseRate = requireRate(baseIndex, day);
+        return crypto[baseIndex] ? usd.divide(baseRate, USD_SCALE, RoundingMode.HALF_UP) : usd.multiply(baseRate);
+    }
+
+    private BigDecimal requireRate(int currency, int day) {
+        BigDecimal rate = rates[currency][day];
+        if (rate == null || rate.signum() == 0) {
+            String kind = crypto[currency] ? "Crypto price" : "FX rate";
+            throw new ApiException(ErrorCodes.INTERNAL_ERROR, kind + " is not available for currency: " + codes[currency], HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return rate;
+    }
+
+    static final class Builder {
+
+        private final String baseCurrency;
+        private final int scale;
+        private final long firstEpochDay;
+        private final int days;
+        private final String[] codes;
+        private final boolean[] crypto;
+        private final BigDecimal[][] rates;
+
+        private Builder(String baseCurrency, int scale, LocalDate firstDay, LocalDate lastDay, Collection<String> currencies, Predicate<String> isCrypto) {
+            this.baseCurrency = baseCurrency;
+            this.scale = scale;
+            this.firstEpochDay = firstDay.toEpochDay();
+            this.days = (int) (lastDay.toEpochDay() - firstEpochDay) + 1;
+            TreeSet<String> all = new TreeSet<>(currencies);
+            all.add(baseCurrency);
+            this.codes = all.toArray(new String[0]);
+            this.crypto = new boolean[codes.length];
+            this.rates = new BigDecimal[codes.length][];
+            for (int i = 0; i < codes.length; i += 1) {
+                crypto[i] = isCrypto.test(codes[i]);
+                if (!"USD".equals(codes[i])) {
+                    rates[i] = new BigDecimal[days];
+                }
+            }
+        }
+
+        boolean needsFx() {
+            for (int i = 0; i < codes.length; i += 1) {
+                if (rates[i] != null && !crypto[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Crypto codes of the table, which are priced from the crypto price history.
+         */
+        List<String> cryptoCodes() {
+            List<String> out = new ArrayList<>();
+            for (int i = 0; i < codes.length; i += 1) {
+                if (crypto[i]) {
+                    out.add(codes[i]);
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Records {@code rate} as observed on {@code day}; observations must arrive in day order, later ones win
+         * within a day, days before the range count as its first day and days after it are ignored.
+         */
+        Builder observe(String currency, LocalDate day, BigDecimal rate) {
+            int index = currency == null ? -1 : Arrays.binarySearch(codes, currency);
+            if (index < 0 || rates[index] == null || day == null || rate == null || rate.signum() <= 0) {
+                return this;
+            }
+            long offset = day.toEpochDay() - firstEpochDay;
+            if (offset < days) {
+                rates[index][(int) Math.max(0, offset)] = rate;
+            }
+            return this;
+        }
+
+        /**
+         * Fills every day from the observations; a currency never observed falls back to the rate in
+         * {@code fxFallback} or {@code cryptoFallback} (each fetched at most once, and only when needed) and stays
+         * unavailable without one.
+         */
+        HistoricalRates build(Supplier<Map<String, BigDecimal>> fxFallback, Supplier<Map<String, BigDecimal>> cryptoFallback) {
+            Map<String, BigDecimal> fxRates = null;
+            Map<String, BigDecimal> cryptoRates = null;
+            for (int i = 0; i < codes.length; i += 1) {
+                BigDecimal[] row = rates[i];
+                if (row == null) {
+                    continue;
+                }
+                BigDecimal first = null;
+                BigDecimal last = null;
+                for (int day = 0; day < days; day += 1) {
+                    if (row[day] == null) {
+                        row[day] = last;
+                    } else {
+                        last = row[day];
+                        first = first == null ? last : first;
+                    }
+                }
+                if (first == null && crypto[i]) {
+                    cryptoRates = cryptoRates == null ? cryptoFallback.get() : cryptoRates;
+                    first = cryptoRates == null ? null : cryptoRates.get(codes[i]);
+                } else if (first == null) {
+                    fxRates = fxRates == null ? fxFallback.get() : fxRates;
+                    first = fxRates == null ? null : fxRates.get(codes[i]);
+                }
+                for (int day = 0; day < days && row[day] == null; day += 1) {
+                    row[day] = first;
+                }
+            }
+            return new HistoricalRates(baseCurrency, scale, firstEpochDay, days, codes, crypto, rates);
+        }
+    }
+}
@@ -7,8 +7,12 @@ import com.myname.finguard.common.exception.ApiException;
 import com.myname.finguard.common.service.CurrencyService;
 import com.myname.finguard.common.service.CryptoRatesProvider;
 import com.myname.finguard.common.service.CryptoRatesService;
+import com.myname.finguard.crypto.service.CryptoPriceHistoryService;
+import com.myname.finguard.fx.model.FxRate;
+import com.myname.finguard.fx.service.FxRateService;
 import com.myname.finguard.reports.dto.CashFlowResponse;
 import com.myname.finguard.reports.dto.ReportPeriod;
+import com.myname.finguard.reports.dto.ReportRateMode;
 import com.myname.finguard.reports.dto.ReportSummaryResponse;
 import com.myname.finguard.reports.dto.ReportsByCategoryResponse;
 import com.myname.finguard.transactions.model.TransactionType;
@@ -19,13 +23,16 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -34,25 +41,36 @@ public class ReportsService {
 
     private static final Duration PERIOD_WEEK = Duration.ofDays(7);
     private static final Duration PERIOD_MONTH = Duration.ofDays(30);
+    private static final int MAX_HISTORICAL_DAYS = 3660;
 
     private final TransactionRepository transactionRepository;
     private final UserRepository userRepository;
     private final CurrencyService currencyService;
     private final CryptoRatesService cryptoRatesService;
+    private final FxRateService fxRateService;
+    private final CryptoPriceHistoryService priceHistoryService;
 
     public ReportsService(
             TransactionRepository transactionRepository,
             UserRepository userRepository,
             CurrencyService currencyService,
-            CryptoRatesService cryptoRatesService
+            CryptoRatesService cryptoRatesService,
+            FxRateService fxRateService,
+            CryptoPriceHistoryService priceHistoryService
     ) {
         this.transactionRepository = transactionRepository;
         this.userRepository = userRepository;
         this.currencyService = currencyService;
         this.cryptoRatesService = cryptoRatesService;
+        this.fxRateService = fxRateService;
+        this.priceHistoryService = priceHistoryService;
     }
 
     public ReportSummaryResponse summary(Long userId, ReportPeriod period, Instant from, Instant to) {
+        return summary(userId, period, from, to, ReportRateMode.LATEST);
+    }
+
+    public ReportSummaryResponse summary(Long userId, ReportPeriod period, Instant from, Instant to, ReportRateMode rateMode) {
         if (userId == null) {
             throw unauthorized();
         }
@@ -60,6 +78,9 @@ public class ReportsService {
         String baseCurrency = normalizeCurrency(user.getBaseCurrency());
 
         DateRange range = resolveRange(period == null ? ReportPeriod.MONTH : period, from, to);
+        if (rateMode == ReportRateMode.HISTORICAL) {
+            return historicalSummary(userId, baseCurrency, range);
+        }
         var rows = transactionRepository.sumByTypeAndCurrency(userId, range.from(), range.to());
 
         Collection<String> currencies = rows.stream().map(TransactionRepository.TypeCurrencyTotal::getCurrency).toList();
@@ -89,6 +110,17 @@ public class ReportsService {
     }
 
     public ReportsByCategoryResponse byCategory(Long userId, ReportPeriod period, Instant from, Instant to, int limit) {
+        return byCategory(userId, period, from, to, limit, ReportRateMode.LATEST);
+    }
+
+    public ReportsByCategoryResponse byCategory(
+            Long userId,
+            ReportPeriod period,
+            Instant from,
+            Instant to,
+            int limit,
+            ReportRateMode rateMode
+    ) {
         if (userId == null) {
             throw unauthorized();
         }
@@ -99,59 +131,40 @@ public class ReportsService {
         String baseCurrency = normalizeCurrency(user.getBaseCurrency());
 
         DateRange range = resolveRange(period == null ? ReportPeriod.MONTH : period, from, to);
+        if (rateMode == ReportRateMode.HISTORICAL) {
+            return historicalByCategory(userId, baseCurrency, range, limit);
+        }
         var rows = transactionRepository.sumByCategoryTypeAndCurrency(userId, range.from(), range.to());
 
         Collection<String> currencies = rows.stream().map(TransactionRepository.CategoryTypeCurrencyTotal::getCurrency).toList();
         ConversionContext ctx = conversionContext(baseCurrency, currencies);
 
-        record Key(Long categoryId, TransactionType type) {
-        }
-
-        Map<Key, BigDecimal> totals = new HashMap<>();
-        Map<Key, String> names = new HashMap<>();
+        Map<CategoryKey, BigDecimal> totals = new HashMap<>();
+        Map<CategoryKey, String> names = new HashMap<>();
 
         for (var row : rows) {
             if (row.getCategoryId() == null || row.getType() == null) {
                 continue;
             }
             BigDecimal amountInBase = convertToBase(row.getTotal(), row.getCurrency(), ctx);
-            Key key = new Key(row.getCategoryId(), row.getType());
+            CategoryKey key = new CategoryKey(row.getCategoryId(), row.getType());
             totals.merge(key, amountInBase, BigDecimal::add);
             if (row.getCategoryName() != null && !row.getCategoryName().isBlank()) {
                 names.putIfAbsent(key, row.getCategoryName());
             }
         }
 
-        Comparator<ReportsByCategoryResponse.CategoryTotal> byTotalDesc = Comparator
-                .comparing(ReportsByCategoryResponse.CategoryTotal::total, Comparator.nullsLast(BigDecimal::compareTo))
-                .reversed();
-
-        var expenses = totals.entrySet().stream()
-                .filter(entry -> TransactionType.EXPENSE == entry.getKey().type())
-                .map(entry -> new ReportsByCategoryResponse.CategoryTotal(
-                        entry.getKey().categoryId(),
-                        names.getOrDefault(entry.getKey(), ""),
-                        entry.getValue().setScale(ctx.scale(), RoundingMode.HALF_UP)
-                ))
-                .sorted(byTotalDesc)
-                .limit(limit)
-                .toList();
-
-        var incomes = totals.entrySet().stream()
-                .filter(entry -> TransactionType.INCOME == entry.getKey().type())
-                .map(entry -> new ReportsByCategoryResponse.CategoryTotal(
-                        entry.getKey().categoryId(),
-                        names.getOrDefault(entry.getKey(), ""),
-                        entry.getValue().setScale(ctx.scale(), RoundingMode.HALF_UP)
-                ))
-                .sorted(byTotalDesc)
-                .limit(limit)
-                .toList();
+        var expenses = topCategories(totals, names, TransactionType.EXPENSE, ctx.scale(), limit);
+        var incomes = topCategories(totals, names, TransactionType.INCOME, ctx.scale(), limit);
 
         return new ReportsByCategoryResponse(ctx.baseCurrency(), range.from(), range.to(), expenses, incomes);
     }
 
     public CashFlowResponse cashFlow(Long userId, Instant from, Instant to) {
+        return cashFlow(userId, from, to, ReportRateMode.LATEST);
+    }
+
+    public CashFlowResponse cashFlow(Long userId, Instant from, Instant to, ReportRateMode rateMode) {
         if (userId == null) {
             throw unauthorized();
         }
@@ -159,6 +172,9 @@ public class ReportsService {
         String baseCurrency = normalizeCurrency(user.getBaseCurrency());
 
         DateRange range = resolveRange(ReportPeriod.MONTH, from, to);
+        if (rateMode == ReportRateMode.HISTORICAL) {
+            return historicalCashFlow(userId, baseCurrency, range);
+        }
         var rows = transactionRepository.findCashFlowRows(userId, range.from(), range.to());
 
         Collection<String> currencies = rows.stream().map(TransactionRepository.CashFlowRow::getCurrency).toList();
@@ -202,6 +218,176 @@ public class ReportsService {
         return new CashFlowResponse(ctx.baseCurrency(), range.from(), range.to(), points);
     }
 
+    private ReportSummaryResponse historicalSummary(Long userId, String baseCurrency, DateRange range) {
+        var rows = transactionRepository.sumByDayTypeAndCurrency(userId, range.from(), range.to());
+        HistoricalRates rates = historicalRates(baseCurrency, range,
+                rows.stream().map(TransactionRepository.DayTypeCurrencyTotal::getCurrency).toList());
+
+        BigDecimal[][] incomeBuckets = rates.newBuckets();
+        BigDecimal[][] expenseBuckets = rates.newBuckets();
+        for (var row : rows) {
+            if (row.getEpochDay() == null || row.getType() == null) {
+                continue;
+            }
+            BigDecimal[][] buckets = TransactionType.INCOME == row.getType() ? incomeBuckets : expenseBuckets;
+            rates.add(buckets, rates.currencyIndex(row.getCurrency()), rates.dayIndex(row.getEpochDay()), row.getTotal());
+        }
+
+        BigDecimal income = rates.convert(incomeBuckets);
+        BigDecimal expense = rates.convert(expenseBuckets);
+        BigDecimal net = income.subtract(expense).setScale(rates.scale(), RoundingMode.HALF_UP);
+        return new ReportSummaryResponse(rates.baseCurrency(), range.from(), range.to(), income, expense, net);
+    }
+
+    private ReportsByCategoryResponse historicalByCategory(Long userId, String baseCurrency, DateRange range, int limit) {
+        var rows = transactionRepository.sumByCategoryDayTypeAndCurrency(userId, range.from(), range.to());
+        HistoricalRates rates = historicalRates(baseCurrency, range,
+                rows.stream().map(TransactionRepository.CategoryDayTypeCurrencyTotal::getCurrency).toList());
+
+        Map<CategoryKey, BigDecimal[][]> buckets = new HashMap<>();
+        Map<CategoryKey, String> names = new HashMap<>();
+        for (var row : rows) {
+            if (row.getCategoryId() == null || row.getType() == null || row.getEpochDay() == null) {
+                continue;
+            }
+            CategoryKey key = new CategoryKey(row.getCategoryId(), row.getType());
+            rates.add(buckets.computeIfAbsent(key, ignored -> rates.newBuckets()),
+                    rates.currencyIndex(row.getCurrency()), rates.dayIndex(row.getEpochDay()), row.getTotal());
+            if (row.getCategoryName() != null && !row.getCategoryName().isBlank()) {
+                names.putIfAbsent(key, row.getCategoryName());
+            }
+        }
+
+        Map<CategoryKey, BigDecimal> totals = new HashMap<>();
+        buckets.forEach((key, grid) -> totals.put(key, rates.convert(grid)));
+        var expenses = topCategories(totals, names, TransactionType.EXPENSE, rates.scale(), limit);
+        var incomes = topCategories(totals, names, TransactionType.INCOME, rates.scale(), limit);
+        return new ReportsByCategoryResponse(rates.baseCurrency(), range.from(), range.to(), expenses, incomes);
+    }
+
+    private CashFlowResponse historicalCashFlow(Long userId, String baseCurrency, DateRange range) {
+        var rows = transactionRepository.sumByDayTypeAndCurrency(userId, range.from(), range.to());
+        HistoricalRates rates = historicalRates(baseCurrency, range,
+                rows.stream().map(TransactionRepository.DayTypeCurrencyTotal::getCurrency).toList());
+
+        BigDecimal[][] incomeBuckets = rates.newBuckets();
+        BigDecimal[][] expenseBuckets = rates.newBuckets();
+        boolean[] active = new boolean[rates.days()];
+        for (var row : rows) {
+            if (row.getEpochDay() == null || row.getType() == null) {
+                continue;
+            }
+            int day = rates.dayIndex(row.getEpochDay());
+            if (TransactionType.INCOME == row.getType()) {
+                rates.add(incomeBuckets, rates.currencyIndex(row.getCurrency()), day, row.getTotal());
+            } else if (TransactionType.EXPENSE == row.getType()) {
+                rates.add(expenseBuckets, rates.currencyIndex(row.getCurrency()), day, row.getTotal());
+            } else {
+                continue;
+            }
+            active[day] = true;
+        }
+
+        List<CashFlowResponse.CashFlowPoint> points = new ArrayList<>();
+        for (int day = 0; day < active.length; day += 1) {
+            if (!active[day]) {
+                continue;
+            }
+            BigDecimal income = rates.convert(incomeBuckets, day);
+            BigDecimal expense = rates.convert(expenseBuckets, day);
+            BigDecimal net = income.subtract(expense).setScale(rates.scale(), RoundingMode.HALF_UP);
+            points.add(new CashFlowResponse.CashFlowPoint(rates.day(day), income, expense, net));
+        }
+        return new CashFlowResponse(rates.baseCurrency(), range.from(), range.to(), points);
+    }
+
+    private List<ReportsByCategoryResponse.CategoryTotal> topCategories(
+            Map<CategoryKey, BigDecimal> totals,
+            Map<CategoryKey, String> names,
+            TransactionType type,
+            int scale,
+            int limit
+    ) {
+        Comparator<ReportsByCategoryResponse.CategoryTotal> byTotalDesc = Comparator
+                .comparing(ReportsByCategoryResponse.CategoryTotal::total, Comparator.nullsLast(BigDecimal::compareTo))
+                .reversed();
+
+        return totals.entrySet().stream()
+                .filter(entry -> type == entry.getKey().type())
+                .map(entry -> new ReportsByCategoryResponse.CategoryTotal(
+                        entry.getKey().categoryId(),
+                        names.getOrDefault(entry.getKey(), ""),
+                        entry.getValue().setScale(scale, RoundingMode.HALF_UP)
+                ))
+                .sorted(byTotalDesc)
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Preloads the day-by-day rates of {@code range} for {@code currencies}: fiat from the stored USD
+     * {@code fx_rates} snapshots in effect on each day, crypto from the local price history. A currency with no
+     * stored rate anywhere in the range falls back to the latest rates.
+     */
+    private HistoricalRates historicalRates(String baseCurrency, DateRange range, Collection<String> currencies) {
+        String base = normalizeCurrency(baseCurrency);
+        if (base.isBlank() || !currencyService.isSupported(base)) {
+            throw new ApiException(ErrorCodes.BAD_REQUEST, "Unsupported base currency", HttpStatus.BAD_REQUEST);
+        }
+        TreeSet<String> codes = new TreeSet<>();
+        for (String currency : currencies) {
+            String code = normalizeCurrency(currency);
+            if (code.isBlank() || !currencyService.isSupported(code)) {
+                throw new ApiException(ErrorCodes.BAD_REQUEST, "Unsupported currency: " + code, HttpStatus.BAD_REQUEST);
+            }
+            codes.add(code);
+        }
+        LocalDate firstDay = LocalDate.ofInstant(range.from(), ZoneOffset.UTC);
+        LocalDate lastDay = LocalDate.ofInstant(range.to(), ZoneOffset.UTC);
+        if (lastDay.toEpochDay() - firstDay.toEpochDay() >= MAX_HISTORICAL_DAYS) {
+            throw new ApiException(ErrorCodes.BAD_REQUEST,
+                    "Historical rates support ranges of up to " + MAX_HISTORICAL_DAYS + " days", HttpStatus.BAD_REQUEST);
+        }
+
+        int scale = isCrypto(base) ? 8 : 2;
+        HistoricalRates.Builder builder = HistoricalRates.builder(base, scale, firstDay, lastDay, codes, this::isCrypto);
+        if (builder.needsFx()) {
+            for (FxRate row : fxRateService.snapshotsCovering("USD", range.from(), range.to())) {
+                if (row != null && row.getAsOf() != null && !isCrypto(row.getQuoteCurrency())) {
+                    builder.observe(normalizeCurrency(row.getQuoteCurrency()), LocalDate.ofInstant(row.getAsOf(), ZoneOffset.UTC), row.getRate());
+                }
+            }
+        }
+        for (String code : builder.cryptoCodes()) {
+            builder.observe(code, firstDay, usdPrice(priceHistoryService.priceAt(code, range.from())));
+            double[] prices = priceHistoryService.prices(code, firstDay, lastDay);
+            for (int day = 0; day < prices.length; day += 1) {
+                builder.observe(code, firstDay.plusDays(day), usdPrice(prices[day]));
+            }
+        }
+        return builder.build(this::latestFxUsdRatesOrEmpty, this::latestCryptoUsdPricesOrEmpty);
+    }
+
+    private Map<String, BigDecimal> latestFxUsdRatesOrEmpty() {
+        try {
+            return currencyService.latestRates("USD").rates();
+        } catch (ApiException e) {
+            return Map.of();
+        }
+    }
+
+    private Map<String, BigDecimal> latestCryptoUsdPricesOrEmpty() {
+        try {
+            return fetchCryptoUsdPrices();
+        } catch (ApiException e) {
+            return Map.of();
+        }
+    }
+
+    private static BigDecimal usdPrice(double price) {
+        return Double.isFinite(price) && price > 0 ? BigDecimal.valueOf(price) : null;
+    }
+
     private DateRange resolveRange(ReportPeriod period, Instant from, Instant to) {
         Duration duration = periodDuration(period);
         Instant now = Instant.now();
@@ -365,6 +551,9 @@ public class ReportsService {
         return new ApiException(ErrorCodes.AUTH_INVALID_CREDENTIALS, "User is not authenticated", HttpStatus.UNAUTHORIZED);
     }
 
+    private record CategoryKey(Long categoryId, TransactionType type) {
+    }
+
     private record DateRange(Instant from, Instant to) {
         DateRange {
             Objects.requireNonNull(from, "from");
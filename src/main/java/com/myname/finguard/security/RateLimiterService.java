@@ -1,5 +1,6 @@
 package com.myname.finguard.security;
 
+import com.myname.finguard.common.cache.BoundedCache;
 import com.myname.finguard.security.model.RateLimitBucket;
 import com.myname.finguard.security.repository.RateLimitBucketRepository;
 import java.nio.charset.StandardCharsets;
@@ -24,7 +25,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class RateLimiterService {
 
     private final RateLimitBucketRepository rateLimitBucketRepository;
-    private final Map<String, InMemoryBucket> inMemoryBuckets;
+    private final BoundedCache<String, InMemoryBucket> inMemoryBuckets;
     private final Map<String, Object> keyLocks;
     private final int limit;
     private final long windowMs;
@@ -78,11 +79,11 @@ public class RateLimiterService {
             LongSupplier nowMs
     ) {
         this.rateLimitBucketRepository = rateLimitBucketRepository;
-        this.inMemoryBuckets = rateLimitBucketRepository == null ? new ConcurrentHashMap<>() : null;
-        this.keyLocks = rateLimitBucketRepository == null ? null : new ConcurrentHashMap<>();
         this.limit = limit;
         this.windowMs = windowMs;
         this.maxEntries = maxEntries <= 0 ? 1000 : maxEntries;
+        this.inMemoryBuckets = rateLimitBucketRepository == null ? new BoundedCache<>(this.maxEntries) : null;
+        this.keyLocks = rateLimitBucketRepository == null ? null : new ConcurrentHashMap<>();
         this.cleanupIntervalMs = cleanupIntervalMs < 0 ? 0 : cleanupIntervalMs;
         this.nowMs = nowMs == null ? System::currentTimeMillis : nowMs;
         this.cleanupInProgress = rateLimitBucketRepository == null ? null : new AtomicBoolean(false);
@@ -172,8 +173,8 @@ public class RateLimiterService {
 
     private void evictExpired(long nowMs) {
         if (inMemoryBuckets != null) {
-            inMemoryBuckets.entrySet().removeIf(entry -> {
-                InMemoryBucket bucket = entry.getValue();
+            // Expired buckets collect at the cold end; stop at the first live one instead of scanning them all.
+            inMemoryBuckets.removeColdestWhile((key, bucket) -> {
                 long window = bucket.windowMs <= 0 ? windowMs : bucket.windowMs;
                 return nowMs - bucket.windowStartMs >= window;
             });
@@ -212,34 +213,28 @@ public class RateLimiterService {
 
     private void evictIfNeeded() {
         if (inMemoryBuckets != null) {
-            int size = inMemoryBuckets.size();
-            if (size <= maxEntries) return;
-            inMemoryBuckets.entrySet().stream()
-                    .sorted((a, b) -> Long.compare(a.getValue().windowStartMs, b.getValue().windowStartMs))
-                    .limit(Math.max(0, size - maxEntries))
-                    .map(Map.Entry::getKey)
-                    .forEach(inMemoryBuckets::remove);
-        } else {
-            long size = rateLimitBucketRepository.count();
-            if (size <= maxEntries) {
-                return;
+            // The bounded cache evicts on insert.
+            return;
+        }
+        long size = rateLimitBucketRepository.count();
+        if (size <= maxEntries) {
+            return;
+        }
+        int toRemove = (int) Math.max(0, size - maxEntries);
+        List<RateLimitBucket> oldest = rateLimitBucketRepository.findTop100ByOrderByUpdatedAtAsc();
+        for (RateLimitBucket b : oldest) {
+            if (toRemove-- <= 0) break;
+            if (b == null || b.getBucketKey() == null || b.getBucketKey().isBlank()) {
+                continue;
             }
-            int toRemove = (int) Math.max(0, size - maxEntries);
-            List<RateLimitBucket> oldest = rateLimitBucketRepository.findTop100ByOrderByUpdatedAtAsc();
-            for (RateLimitBucket b : oldest) {
-                if (toRemove-- <= 0) break;
-                if (b == null || b.getBucketKey() == null || b.getBucketKey().isBlank()) {
-                    continue;
-                }
-                try {
-                    rateLimitBucketRepository.deleteById(b.getBucketKey());
-                } catch (DataAccessException ex) {
-                    log.debug("Rate limiter capacity cleanup skipped key={} due to DB contention: {}",
-                            shortKey(b.getBucketKey()), ex.getClass().getSimpleName());
-                } catch (RuntimeException ex) {
-                    log.debug("Rate limiter capacity cleanup skipped key={} due to runtime contention: {}",
-                            shortKey(b.getBucketKey()), ex.getClass().getSimpleName());
-                }
+            try {
+                rateLimitBucketRepository.deleteById(b.getBucketKey());
+            } catch (DataAccessException ex) {
+                log.debug("Rate limiter capacity cleanup skipped key={} due to DB contention: {}",
+                        shortKey(b.getBucketKey()), ex.getClass().getSimpleName());
+            } catch (RuntimeException ex) {
+                log.debug("Rate limiter capacity cleanup skipped key={} due to runtime contention: {}",
+                        shortKey(b.getBucketKey()), ex.getClass().getSimpleName());
             }
         }
     }
@@ -374,7 +369,7 @@ public class RateLimiterService {
         if (allowed.get()) {
             return new Result(true, 0);
         }
-        InMemoryBucket bucket = inMemoryBuckets.get(key);
+        InMemoryBucket bucket = inMemoryBuckets.peek(key);
         long effectiveWindow = bucket == null || bucket.windowMs <= 0 ? customWindowMs : bucket.windowMs;
         long until = (bucket == null ? now : bucket.windowStartMs) + effectiveWindow;
         long retryAfter = Math.max(0, until - now);
@@ -1,5 +1,6 @@
 package com.myname.finguard.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -74,6 +75,8 @@ public class SecurityConfig {
                         .permissionsPolicy(pp -> pp.policy("geolocation=(), microphone=(), camera=()"))
                 )
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatches (e.g. completing an SSE stream) belong to an already authorized request.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                         "/health",
                         "/actuator/health",
@@ -61,6 +61,48 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
             """)
     List<CashFlowRow> findCashFlowRows(@Param("userId") Long userId, @Param("from") Instant from, @Param("to") Instant to);
 
+    /**
+     * Totals per UTC day (days since the epoch), type and currency, so historical reports bucket one row per
+     * active day and currency instead of one per transaction.
+     */
+    @Query("""
+            select
+                cast(floor(extract(epoch from t.transactionDate) / 86400) as Long) as epochDay,
+                t.type as type,
+                t.currency as currency,
+                coalesce(sum(t.amount), 0) as total
+            from Transaction t
+            where t.user.id = :userId and t.transactionDate between :from and :to
+            group by cast(floor(extract(epoch from t.transactionDate) / 86400) as Long), t.type, t.currency
+            """)
+    List<DayTypeCurrencyTotal> sumByDayTypeAndCurrency(
+            @Param("userId") Long userId,
+            @Param("from") Instant from,
+            @Param("to") Instant to
+    );
+
+    /**
+     * {@link #sumByDayTypeAndCurrency} further split by category.
+     */
+    @Query("""
+            select
+                t.category.id as categoryId,
+                t.category.name as categoryName,
+                cast(floor(extract(epoch from t.transactionDate) / 86400) as Long) as epochDay,
+                t.type as type,
+                t.currency as currency,
+                coalesce(sum(t.amount), 0) as total
+            from Transaction t
+            where t.user.id = :userId and t.transactionDate between :from and :to
+            group by t.category.id, t.category.name, cast(floor(extract(epoch from t.transactionDate) / 86400) as Long),
+                t.type, t.currency
+            """)
+    List<CategoryDayTypeCurrencyTotal> sumByCategoryDayTypeAndCurrency(
+            @Param("userId") Long userId,
+            @Param("from") Instant from,
+            @Param("to") Instant to
+    );
+
     @Query("""
             select t.currency as currency, coalesce(sum(t.amount), 0) as total
             from Transaction t
@@ -120,6 +162,30 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
         BigDecimal getAmount();
     }
 
+    interface DayTypeCurrencyTotal {
+        Long getEpochDay();
+
+        TransactionType getType();
+
+        String getCurrency();
+
+        BigDecimal getTotal();
+    }
+
+    interface CategoryDayTypeCurrencyTotal {
+        Long getCategoryId();
+
+        String getCategoryName();
+
+        Long getEpochDay();
+
+        TransactionType getType();
+
+        String getCurrency();
+
+        BigDecimal getTotal();
+    }
+
     interface CategoryCurrencyTotal {
         String getCurrency();
 
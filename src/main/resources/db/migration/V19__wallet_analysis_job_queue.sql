@@ -0,0 +1,9 @@
+-- Durable work queue for wallet analysis: nodes claim QUEUED jobs with FOR UPDATE SKIP LOCKED.
+ALTER TABLE crypto_wallet_analysis_jobs
+    ADD COLUMN claimed_by VARCHAR(64);
+
+ALTER TABLE crypto_wallet_analysis_jobs
+    ADD COLUMN claimed_at TIMESTAMP WITH TIME ZONE;
+
+CREATE INDEX IF NOT EXISTS idx_crypto_wallet_analysis_jobs_status_created
+    ON crypto_wallet_analysis_jobs(status, created_at);
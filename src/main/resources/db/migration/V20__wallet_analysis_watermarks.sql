@@ -0,0 +1,21 @@
+-- Per-wallet, per-stage progress so re-analysis only processes rows changed since the last run.
+CREATE TABLE wallet_analysis_watermarks (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    wallet_id BIGINT NOT NULL,
+    raw_tx_at TIMESTAMP WITH TIME ZONE,
+    raw_block_number BIGINT,
+    enriched_through TIMESTAMP WITH TIME ZONE,
+    snapshots_through TIMESTAMP WITH TIME ZONE,
+    last_snapshot_day DATE,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT fk_wallet_analysis_watermarks_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT fk_wallet_analysis_watermarks_wallet FOREIGN KEY (wallet_id) REFERENCES crypto_wallets(id) ON DELETE CASCADE,
+    CONSTRAINT uq_wallet_analysis_watermarks_wallet UNIQUE (wallet_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_wallet_tx_raw_wallet_updated_at
+    ON wallet_tx_raw(wallet_id, updated_at);
+
+CREATE INDEX IF NOT EXISTS idx_wallet_tx_enriched_wallet_updated_at
+    ON wallet_tx_enriched(wallet_id, updated_at);
@@ -0,0 +1,3 @@
+-- Measured duration of each completed pipeline stage, e.g. "FETCH_TX=12,ENRICH_TX=40".
+ALTER TABLE crypto_wallet_analysis_jobs
+    ADD COLUMN stage_durations_ms VARCHAR(512);
@@ -0,0 +1,3 @@
+-- Provider cursor of an unfinished live ingestion pass, so the next run resumes paging where the last one stopped.
+ALTER TABLE wallet_analysis_watermarks
+    ADD COLUMN raw_cursor VARCHAR(256);
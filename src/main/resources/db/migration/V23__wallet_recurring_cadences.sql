@@ -0,0 +1,26 @@
+-- Running per-(wallet, counterparty) charge statistics so recurring detection only folds in new outflows.
+CREATE TABLE wallet_recurring_cadences (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    wallet_id BIGINT NOT NULL,
+    counterparty_key VARCHAR(160) NOT NULL,
+    charge_count INT NOT NULL DEFAULT 0,
+    amount_mean_usd DOUBLE PRECISION NOT NULL DEFAULT 0,
+    amount_m2 DOUBLE PRECISION NOT NULL DEFAULT 0,
+    interval_count INT NOT NULL DEFAULT 0,
+    interval_mean_days DOUBLE PRECISION NOT NULL DEFAULT 0,
+    interval_m2 DOUBLE PRECISION NOT NULL DEFAULT 0,
+    first_charge_at TIMESTAMP WITH TIME ZONE,
+    last_charge_at TIMESTAMP WITH TIME ZONE,
+    fallback_only BOOLEAN NOT NULL DEFAULT TRUE,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT fk_wallet_recurring_cadences_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT fk_wallet_recurring_cadences_wallet FOREIGN KEY (wallet_id) REFERENCES crypto_wallets(id) ON DELETE CASCADE,
+    CONSTRAINT uq_wallet_recurring_cadences_wallet_key UNIQUE (wallet_id, counterparty_key)
+);
+
+ALTER TABLE wallet_analysis_watermarks
+    ADD COLUMN recurring_through TIMESTAMP WITH TIME ZONE;
+
+ALTER TABLE wallet_analysis_watermarks
+    ADD COLUMN recurring_tx_at TIMESTAMP WITH TIME ZONE;
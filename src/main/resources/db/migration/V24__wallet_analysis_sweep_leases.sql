@@ -0,0 +1,13 @@
+-- Nightly re-analysis sweep: wallets are split into shards by id and a node leases one shard at a time,
+-- walking it in key order from a persisted cursor so a crashed sweep resumes where it stopped.
+CREATE TABLE wallet_analysis_sweep_leases (
+    shard_id INT PRIMARY KEY,
+    sweep_started_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    cursor_wallet_id BIGINT NOT NULL DEFAULT 0,
+    wallets_visited BIGINT NOT NULL DEFAULT 0,
+    wallets_enqueued BIGINT NOT NULL DEFAULT 0,
+    leased_by VARCHAR(64),
+    lease_until TIMESTAMP WITH TIME ZONE,
+    completed_at TIMESTAMP WITH TIME ZONE,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
@@ -0,0 +1,27 @@
+-- At most one active (QUEUED/RUNNING/PARTIAL) analysis job per wallet. H2 has no partial indexes, so the
+-- index covers a key column that holds wallet_id while the job is active and NULL once it finishes;
+-- unique indexes ignore NULLs on both PostgreSQL and H2.
+ALTER TABLE crypto_wallet_analysis_jobs
+    ADD COLUMN active_wallet_id BIGINT;
+
+-- Older duplicates lose to the newest active job of the same wallet.
+UPDATE crypto_wallet_analysis_jobs
+SET status = 'CANCELLED',
+    error_message = 'Superseded by a newer job',
+    finished_at = CURRENT_TIMESTAMP,
+    updated_at = CURRENT_TIMESTAMP
+WHERE status IN ('QUEUED', 'RUNNING', 'PARTIAL')
+  AND EXISTS (
+      SELECT 1
+      FROM crypto_wallet_analysis_jobs newer
+      WHERE newer.wallet_id = crypto_wallet_analysis_jobs.wallet_id
+        AND newer.status IN ('QUEUED', 'RUNNING', 'PARTIAL')
+        AND newer.id > crypto_wallet_analysis_jobs.id
+  );
+
+UPDATE crypto_wallet_analysis_jobs
+SET active_wallet_id = wallet_id
+WHERE status IN ('QUEUED', 'RUNNING', 'PARTIAL');
+
+CREATE UNIQUE INDEX ux_crypto_wallet_analysis_jobs_active_wallet
+    ON crypto_wallet_analysis_jobs(active_wallet_id);
@@ -0,0 +1,3 @@
+-- Executor lane of each analysis job; interactive jobs are claimed and run ahead of background ones.
+ALTER TABLE crypto_wallet_analysis_jobs
+    ADD COLUMN priority VARCHAR(16) NOT NULL DEFAULT 'BACKGROUND';
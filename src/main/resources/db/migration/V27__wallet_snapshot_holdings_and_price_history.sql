@@ -0,0 +1,12 @@
+-- Packed per-asset end-of-day holdings of each snapshot, and the local daily USD price history they are valued with.
+ALTER TABLE wallet_daily_snapshots
+    ADD COLUMN holdings BYTEA;
+
+CREATE TABLE crypto_price_history (
+    asset_code VARCHAR(24) NOT NULL,
+    price_day DATE NOT NULL,
+    price_usd NUMERIC(38, 18) NOT NULL,
+    source VARCHAR(32) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT pk_crypto_price_history PRIMARY KEY (asset_code, price_day)
+);
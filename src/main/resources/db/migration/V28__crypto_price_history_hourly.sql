@@ -0,0 +1,9 @@
+-- Append-only hourly USD prices recorded from live rate fetches; the daily table keeps the long history.
+CREATE TABLE crypto_price_history_hourly (
+    asset_code VARCHAR(24) NOT NULL,
+    price_hour TIMESTAMP WITH TIME ZONE NOT NULL,
+    price_usd NUMERIC(38, 18) NOT NULL,
+    source VARCHAR(32) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT pk_crypto_price_history_hourly PRIMARY KEY (asset_code, price_hour)
+);
@@ -0,0 +1,10 @@
+-- Optional second-level cache of provider wallet balances and token portfolios shared by all nodes; kind tells a
+-- network balance from a token portfolio of the same address, payload is packed by WalletCacheCodec.
+CREATE TABLE wallet_balance_cache (
+    network VARCHAR(16) NOT NULL,
+    address VARCHAR(128) NOT NULL,
+    kind VARCHAR(16) NOT NULL,
+    fetched_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    payload BYTEA NOT NULL,
+    CONSTRAINT pk_wallet_balance_cache PRIMARY KEY (network, address, kind)
+);
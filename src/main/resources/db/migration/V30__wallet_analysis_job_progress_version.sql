@@ -0,0 +1,4 @@
+-- Monotonic version of a job's visible progress, shared by in-memory transitions and the persisted row so
+-- progress stream event ids compare across nodes and restarts.
+ALTER TABLE crypto_wallet_analysis_jobs
+    ADD COLUMN progress_version BIGINT NOT NULL DEFAULT 0;
@@ -879,6 +879,9 @@
     status: null,
     pollTimer: 0,
     inFlight: false,
+    stream: null,
+    streamWalletId: null,
+    streamUnavailable: false,
     summaryTotal: NaN,
     summaryBase: 'USD',
     pollError: false,
@@ -2110,13 +2113,76 @@
       clearTimeout(analysisState.pollTimer);
       analysisState.pollTimer = 0;
     }
+    closeAnalysisStream();
+    analysisState.streamUnavailable = false;
     analysisState.inFlight = false;
   }
 
+  function closeAnalysisStream() {
+    if (analysisState.stream) {
+      analysisState.stream.close();
+    }
+    analysisState.stream = null;
+    analysisState.streamWalletId = null;
+  }
+
+  function openAnalysisStream() {
+    const walletId = analysisState.activeWalletId;
+    if (analysisState.stream && analysisState.streamWalletId === walletId) {
+      return true;
+    }
+    if (analysisState.streamUnavailable || typeof window.EventSource !== 'function') {
+      return false;
+    }
+    closeAnalysisStream();
+    let source;
+    try {
+      source = new EventSource(`/api/crypto/wallets/${encodeURIComponent(walletId)}/analysis/events`, { withCredentials: true });
+    } catch (_) {
+      analysisState.streamUnavailable = true;
+      return false;
+    }
+    analysisState.stream = source;
+    analysisState.streamWalletId = walletId;
+    source.addEventListener('status', async (event) => {
+      if (analysisState.stream !== source || walletId !== analysisState.activeWalletId) {
+        return;
+      }
+      let payload = null;
+      try {
+        payload = JSON.parse(event.data);
+      } catch (_) {
+        return;
+      }
+      if (!payload || typeof payload !== 'object') return;
+      analysisState.pollError = false;
+      analysisState.status = normalizeAnalysisStatus(payload);
+      const statusName = String(analysisState.status.status || '').toUpperCase();
+      if (isTerminalAnalysisStatus(statusName)) {
+        closeAnalysisStream();
+      }
+      await maybeRefreshAnalysisData(analysisState.status.partialReady || statusName === 'DONE' || statusName === 'PARTIAL');
+      refreshAnalysisPanel();
+    });
+    source.onerror = () => {
+      // EventSource retries on its own; once it gives up, fall back to polling.
+      if (analysisState.stream !== source || source.readyState !== EventSource.CLOSED) {
+        return;
+      }
+      closeAnalysisStream();
+      analysisState.streamUnavailable = true;
+      scheduleAnalysisPolling(analysisPollIntervalMs);
+    };
+    return true;
+  }
+
   function scheduleAnalysisPolling(delayMs) {
     if (!analysisState.activeWalletId || isTerminalAnalysisStatus(analysisState.status && analysisState.status.status)) {
       return;
     }
+    if (openAnalysisStream()) {
+      return;
+    }
     if (analysisState.pollTimer) {
       clearTimeout(analysisState.pollTimer);
       analysisState.pollTimer = 0;
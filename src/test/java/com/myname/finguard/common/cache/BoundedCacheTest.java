@@ -0,0 +1,69 @@
+package com.myname.finguard.common.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedCacheTest {
+
+    @Test
+    void evictsOneOffEntriesBeforeEntriesThatWereReadAgain() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(3);
+        cache.put("hot", 1);
+        assertThat(cache.get("hot")).isEqualTo(1);
+
+        for (int i = 0; i < 10; i += 1) {
+            cache.put("scan-" + i, i);
+        }
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.peek("hot")).isEqualTo(1);
+        assertThat(cache.peek("scan-9")).isEqualTo(9);
+        assertThat(cache.peek("scan-0")).isNull();
+        assertThat(cache.stats().evictions()).isEqualTo(8);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    void boundsTheTotalWeight() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, (key, value) -> value.length());
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+
+        assertThat(cache.weight()).isEqualTo(8);
+        assertThat(cache.peek("a")).isNull();
+
+        cache.put("b", "b");
+        assertThat(cache.weight()).isEqualTo(5);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void computeUpdatesInPlaceAndRemovesOnNull() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(0);
+        assertThat(cache.compute("k", (key, current) -> current == null ? 1 : current + 1)).isEqualTo(1);
+        assertThat(cache.compute("k", (key, current) -> current == null ? 1 : current + 1)).isEqualTo(2);
+        assertThat(cache.compute("k", (key, current) -> null)).isNull();
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.stats().misses()).isEqualTo(1);
+        assertThat(cache.stats().hits()).isEqualTo(2);
+    }
+
+    @Test
+    void removeColdestWhileStopsAtTheFirstLiveEntry() {
+        BoundedCache<String, Long> cache = new BoundedCache<>(100);
+        cache.put("old-1", 1L);
+        cache.put("old-2", 2L);
+        cache.put("live", 10L);
+        cache.put("old-3", 3L);
+
+        int removed = cache.removeColdestWhile((key, expiresAt) -> expiresAt < 5);
+
+        assertThat(removed).isEqualTo(2);
+        assertThat(cache.peek("live")).isEqualTo(10L);
+        assertThat(cache.peek("old-3")).isEqualTo(3L);
+        assertThat(cache.stats().evictions()).isZero();
+    }
+}
@@ -0,0 +1,215 @@
+package com.myname.finguard.common.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightCacheTest {
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofMinutes(1), 100, Clock.systemUTC());
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(pool.submit(() -> cache.get("addr", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return "balance";
+            })));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 7; i += 1) {
+                results.add(pool.submit(() -> cache.get("addr", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            waitForJoiners();
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("balance");
+            }
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(cache.inFlightCount()).isZero();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadFallsBackToTheLastValueAndOtherwiseRethrows() {
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ZERO, 100, Clock.systemUTC());
+
+        assertThatThrownBy(() -> cache.get("rates", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+        assertThatThrownBy(() -> cache.get("rates", () -> {
+            throw new Exception("checked");
+        })).isInstanceOf(SingleFlightCache.CacheLoadException.class);
+
+        assertThat(cache.get("rates", () -> "v1")).isEqualTo("v1");
+        assertThat(cache.get("rates", () -> {
+            throw new IllegalStateException("boom");
+        })).isEqualTo("v1");
+        assertThat(cache.get("rates", () -> "v2")).isEqualTo("v2");
+    }
+
+    @Test
+    void servesFreshValuesAndEvictsColdEntriesBeyondMaxEntries() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(Duration.ofSeconds(60), 2, clock);
+        cache.get("a", () -> "a1");
+        clock.advance(Duration.ofSeconds(30));
+        assertThat(cache.get("a", () -> "a2")).isEqualTo("a1");
+        clock.advance(Duration.ofSeconds(31));
+        assertThat(cache.get("a", () -> "a3")).isEqualTo("a3");
+
+        clock.advance(Duration.ofSeconds(1));
+        cache.get("b", () -> "b1");
+        clock.advance(Duration.ofSeconds(1));
+        cache.get("c", () -> "c1");
+
+        // "a" was read again after its first load, so the one-off "b" is evicted first.
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("a")).isEqualTo("a3");
+        assertThat(cache.getIfPresent("c")).isEqualTo("c1");
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void staleValuesAreServedWhileOneBackgroundRefreshRunsAndBlockOnlyPastTheHardTtl() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        List<Runnable> refreshes = new ArrayList<>();
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(
+                Duration.ofSeconds(60), Duration.ofSeconds(600), 100, clock, refreshes::add);
+        cache.get("rates", () -> "v1");
+
+        clock.advance(Duration.ofSeconds(90));
+        assertThat(cache.get("rates", () -> "v2")).isEqualTo("v1");
+        assertThat(cache.get("rates", () -> "v3")).isEqualTo("v1");
+        assertThat(refreshes).hasSize(1);
+        assertThat(cache.age("rates")).isEqualTo(Duration.ofSeconds(90));
+
+        refreshes.get(0).run();
+        assertThat(cache.inFlightCount()).isZero();
+        assertThat(cache.get("rates", () -> "v4")).isEqualTo("v2");
+        assertThat(cache.age("rates")).isEqualTo(Duration.ZERO);
+
+        clock.advance(Duration.ofSeconds(600));
+        assertThat(cache.get("rates", () -> "v5")).isEqualTo("v5");
+        assertThat(refreshes).hasSize(1);
+        assertThat(cache.age("missing")).isNull();
+    }
+
+    @Test
+    void failedOrRejectedBackgroundRefreshKeepsTheStaleValue() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(
+                Duration.ofSeconds(60), Duration.ofSeconds(600), 100, clock, Runnable::run);
+        cache.get("rates", () -> "v1");
+        clock.advance(Duration.ofSeconds(90));
+
+        assertThat(cache.get("rates", () -> {
+            throw new IllegalStateException("boom");
+        })).isEqualTo("v1");
+        assertThat(cache.inFlightCount()).isZero();
+
+        SingleFlightCache<String, String> rejecting = new SingleFlightCache<>(
+                Duration.ofSeconds(60), Duration.ofSeconds(600), 100, clock, task -> {
+                    throw new RejectedExecutionException("full");
+                });
+        rejecting.get("rates", () -> "v1");
+        clock.advance(Duration.ofSeconds(90));
+        assertThat(rejecting.get("rates", () -> "v2")).isEqualTo("v1");
+        assertThat(rejecting.inFlightCount()).isZero();
+    }
+
+    @Test
+    void memoryMissesAdoptSecondLevelValuesAndProviderLoadsAreWrittenBehind() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        Map<String, SingleFlightCache.SecondLevel.Stored<String>> store = new HashMap<>();
+        SingleFlightCache.SecondLevel<String, String> secondLevel = new SingleFlightCache.SecondLevel<>() {
+            @Override
+            public Stored<String> read(String key) {
+                return store.get(key);
+            }
+
+            @Override
+            public void write(String key, String value, Instant fetchedAt) {
+                store.put(key, new Stored<>(value, fetchedAt));
+            }
+        };
+        SingleFlightCache<String, String> cache = new SingleFlightCache<>(
+                Duration.ofSeconds(60), Duration.ofSeconds(600), 100, clock, Runnable::run, secondLevel);
+        AtomicInteger loads = new AtomicInteger();
+
+        store.put("warm", new SingleFlightCache.SecondLevel.Stored<>("stored", clock.instant().minusSeconds(20)));
+        assertThat(cache.get("warm", () -> "loaded-" + loads.incrementAndGet())).isEqualTo("stored");
+        assertThat(cache.age("warm")).isEqualTo(Duration.ofSeconds(20));
+        assertThat(loads.get()).isZero();
+
+        assertThat(cache.get("cold", () -> "loaded-" + loads.incrementAndGet())).isEqualTo("loaded-1");
+        assertThat(store.get("cold").value()).isEqualTo("loaded-1");
+
+        // A stale stored value is served while it is refreshed, and a value past the hard ttl is ignored.
+        store.put("stale", new SingleFlightCache.SecondLevel.Stored<>("old", clock.instant().minusSeconds(120)));
+        assertThat(cache.get("stale", () -> "loaded-" + loads.incrementAndGet())).isEqualTo("old");
+        assertThat(cache.getIfPresent("stale")).isEqualTo("loaded-2");
+        store.put("expired", new SingleFlightCache.SecondLevel.Stored<>("old", clock.instant().minusSeconds(900)));
+        assertThat(cache.get("expired", () -> "loaded-" + loads.incrementAndGet())).isEqualTo("loaded-3");
+    }
+
+    private static void waitForJoiners() throws InterruptedException {
+        // Joiners block on the in-flight future; give them time to arrive before the load completes.
+        Thread.sleep(100);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -49,6 +49,26 @@ class ExternalProviderGuardTest {
                 .hasMessageContaining("budget exceeded");
     }
 
+    @Test
+    void remainingBudgetPeeksWithoutConsuming() {
+        ExternalProviderGuard guard = new ExternalProviderGuard(
+                1,
+                0,
+                0,
+                10,
+                10_000,
+                1000
+        );
+
+        assertThat(guard.remainingBudget("peek", 3)).isEqualTo(3);
+        guard.execute("peek", 3, 60_000, () -> "ok");
+        guard.execute("PEEK", 3, 60_000, () -> "ok");
+
+        assertThat(guard.remainingBudget("peek", 3)).isEqualTo(1);
+        assertThat(guard.remainingBudget("peek", 3)).isEqualTo(1);
+        assertThat(guard.remainingBudget("peek", 0)).isEqualTo(Integer.MAX_VALUE);
+    }
+
     @Test
     void circuitBreakerOpensAfterFailures() {
         ExternalProviderGuard guard = new ExternalProviderGuard(
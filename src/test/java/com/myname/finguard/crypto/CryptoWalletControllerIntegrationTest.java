@@ -1,12 +1,15 @@
 package com.myname.finguard.crypto;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -15,17 +18,30 @@ import com.myname.finguard.common.constants.ErrorCodes;
 import com.myname.finguard.common.service.CryptoRatesProvider;
 import com.myname.finguard.common.service.MailService;
 import com.myname.finguard.crypto.model.CryptoNetwork;
+import com.myname.finguard.crypto.model.WalletAnalysisWatermark;
+import com.myname.finguard.crypto.model.WalletTxRaw;
 import com.myname.finguard.crypto.repository.CryptoWalletRepository;
+import com.myname.finguard.crypto.repository.WalletAnalysisWatermarkRepository;
+import com.myname.finguard.crypto.repository.WalletTxRawRepository;
 import com.myname.finguard.crypto.service.CryptoWalletBalanceProvider;
 import com.myname.finguard.crypto.service.ArbitrumWalletPortfolioProvider;
 import com.myname.finguard.crypto.service.EthWalletPortfolioProvider;
+import com.myname.finguard.crypto.service.WalletEventsProvider;
+import com.myname.finguard.security.RateLimiterService;
 import java.math.BigDecimal;
 import java.net.URLDecoder;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +52,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 @SpringBootTest
@@ -62,6 +79,15 @@ class CryptoWalletControllerIntegrationTest {
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private WalletTxRawRepository walletTxRawRepository;
+
+    @Autowired
+    private WalletAnalysisWatermarkRepository watermarkRepository;
+
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
     @MockBean
     private CryptoWalletBalanceProvider walletBalanceProvider;
 
@@ -74,11 +100,20 @@ class CryptoWalletControllerIntegrationTest {
     @MockBean
     private ArbitrumWalletPortfolioProvider arbitrumWalletPortfolioProvider;
 
+    @MockBean
+    private WalletEventsProvider walletEventsProvider;
+
     @BeforeEach
     void setup() {
         mailService.clearOutbox();
     }
 
+    @AfterEach
+    void cleanRateLimiter() {
+        // Analysis tests run outside a test transaction, so their verify buckets are committed to the shared H2 DB.
+        rateLimiterService.reset();
+    }
+
     @Test
     @Transactional
     void createListDeleteAndReAddWallet() throws Exception {
@@ -373,6 +408,208 @@ class CryptoWalletControllerIntegrationTest {
         assertThat(finalPayload.get("lastSuccessfulStage").asText()).isEqualTo("BUILD_INSIGHTS");
     }
 
+    @Test
+    void walletAnalysisEventsStreamFinalStatusAndHonorLastEventId() throws Exception {
+        String email = "wallet-analysis-events-" + UUID.randomUUID() + "@example.com";
+        String token = registerVerifyAndLogin(email, "StrongPass1!", "USD");
+        String btcAddress = "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh";
+
+        String createResponse = mockMvc.perform(post("/api/crypto/wallets")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"network":"BTC","address":"%s","label":"Ledger"}
+                                """.formatted(btcAddress)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        long walletId = objectMapper.readTree(createResponse).get("id").asLong();
+
+        MvcResult streamed = mockMvc.perform(get("/api/crypto/wallets/{id}/analysis/events", walletId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streamed.getAsyncResult(10_000);
+        String body = streamed.getResponse().getContentAsString();
+
+        assertThat(body).contains("event:status");
+        assertThat(body).contains("\"status\":\"DONE\"");
+        Matcher lastId = Pattern.compile("(?m)^id:(\\S+)$").matcher(body);
+        String lastEventId = null;
+        while (lastId.find()) {
+            lastEventId = lastId.group(1);
+        }
+        assertThat(lastEventId).isNotNull();
+
+        mockMvc.perform(get("/api/crypto/wallets/{id}/analysis/events", walletId)
+                        .header("Authorization", "Bearer " + token)
+                        .header("Last-Event-ID", lastEventId))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void batchAnalysisQueuesEveryWalletWithoutJobInFlight() throws Exception {
+        String email = "wallet-analysis-batch-" + UUID.randomUUID() + "@example.com";
+        String token = registerVerifyAndLogin(email, "StrongPass1!", "USD");
+
+        long first = createBtcWallet(token, "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh", "Ledger");
+        long second = createBtcWallet(token, "bc1qar0srrr7xfkvy5l643lydnw9re59gtzzwf5mdq", "Trezor");
+        awaitAnalysisDone(token, first);
+        awaitAnalysisDone(token, second);
+
+        String response = mockMvc.perform(post("/api/crypto/wallets/analysis")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isAccepted())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        JsonNode payload = objectMapper.readTree(response);
+        assertThat(payload.get("queued").asInt()).isEqualTo(2);
+        List<Long> walletIds = new ArrayList<>();
+        payload.get("walletIds").forEach(node -> walletIds.add(node.asLong()));
+        assertThat(walletIds).containsExactlyInAnyOrder(first, second);
+
+        assertThat(awaitAnalysisDone(token, first).get("status").asText()).isEqualTo("DONE");
+        assertThat(awaitAnalysisDone(token, second).get("status").asText()).isEqualTo("DONE");
+    }
+
+    @Test
+    void cancellingAnalysisStopsTheRunningPipelineAndKeepsTheJobCancelled() throws Exception {
+        String email = "wallet-analysis-cancel-" + UUID.randomUUID() + "@example.com";
+        String token = registerVerifyAndLogin(email, "StrongPass1!", "USD");
+        String address = "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh";
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(walletEventsProvider.fetchPage(eq(CryptoNetwork.BTC), eq(address), any())).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new WalletEventsProvider.EventsPage(List.of(), null, 900L);
+        });
+
+        long walletId = createBtcWallet(token, address, "Cancel");
+        assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+
+        String response = mockMvc.perform(delete("/api/crypto/wallets/{id}/analysis", walletId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertThat(objectMapper.readTree(response).get("status").asText()).isEqualTo("CANCELLED");
+        release.countDown();
+        Thread.sleep(300);
+
+        String statusResponse = mockMvc.perform(get("/api/crypto/wallets/{id}/analysis/status", walletId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertThat(objectMapper.readTree(statusResponse).get("status").asText()).isEqualTo("CANCELLED");
+        assertThat(watermarkRepository.findByWalletId(walletId).map(WalletAnalysisWatermark::getSnapshotsThrough).orElse(null)).isNull();
+    }
+
+    @Test
+    void finishedAnalysisStatusReportsTheDurationOfEveryStage() throws Exception {
+        String email = "wallet-analysis-durations-" + UUID.randomUUID() + "@example.com";
+        String token = registerVerifyAndLogin(email, "StrongPass1!", "USD");
+
+        long walletId = createBtcWallet(token, "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh", "Durations");
+        JsonNode status = awaitAnalysisDone(token, walletId);
+
+        assertThat(status.get("status").asText()).isEqualTo("DONE");
+        JsonNode durations = status.get("stageDurationsMs");
+        List<String> stages = new ArrayList<>();
+        durations.fieldNames().forEachRemaining(stages::add);
+        assertThat(stages).containsExactly("FETCH_TX", "ENRICH_TX", "BUILD_SNAPSHOTS", "DETECT_RECURRING", "BUILD_INSIGHTS");
+        durations.forEach(duration -> assertThat(duration.isIntegralNumber() && duration.asLong() >= 0).isTrue());
+    }
+
+    @Test
+    void liveWalletEventsArePagedIntoRawRowsAndCompleteTheBlockWatermark() throws Exception {
+        String email = "wallet-analysis-live-" + UUID.randomUUID() + "@example.com";
+        String token = registerVerifyAndLogin(email, "StrongPass1!", "USD");
+        String address = "bc1qar0srrr7xfkvy5l643lydnw9re59gtzzwf5mdq";
+        Instant txAt = Instant.now().minusSeconds(86_400);
+        when(walletEventsProvider.fetchPage(eq(CryptoNetwork.BTC), eq(address), any())).thenAnswer(invocation -> {
+            WalletEventsProvider.PageRequest request = invocation.getArgument(2);
+            if (request.cursor() == null) {
+                return new WalletEventsProvider.EventsPage(List.of(liveEvent("tx-new", 900L, txAt, "IN")), "900:tx-new", 900L);
+            }
+            return new WalletEventsProvider.EventsPage(List.of(liveEvent("tx-old", 850L, txAt.minusSeconds(3_600), "OUT")), null, 900L);
+        });
+
+        long walletId = createBtcWallet(token, address, "Live");
+        assertThat(awaitAnalysisDone(token, walletId).get("status").asText()).isEqualTo("DONE");
+
+        List<WalletTxRaw> rows = walletTxRawRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(
+                walletId, txAt.minusSeconds(7_200), txAt.plusSeconds(1));
+        assertThat(rows).extracting(WalletTxRaw::getTxHash).containsExactly("tx-old", "tx-new");
+        assertThat(rows).extracting(WalletTxRaw::getSource).containsOnly("LIVE");
+        WalletAnalysisWatermark watermark = watermarkRepository.findByWalletId(walletId).orElseThrow();
+        assertThat(watermark.getRawBlockNumber()).isEqualTo(900L);
+        assertThat(watermark.getRawCursor()).isNull();
+    }
+
+    @Test
+    void newTransfersAreIngestedAheadOfAnUnfinishedBackfillPass() throws Exception {
+        String email = "wallet-analysis-forward-" + UUID.randomUUID() + "@example.com";
+        String token = registerVerifyAndLogin(email, "StrongPass1!", "USD");
+        String address = "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh";
+        Instant txAt = Instant.now().minusSeconds(86_400);
+        AtomicLong walletRef = new AtomicLong();
+        AtomicInteger backfillResumes = new AtomicInteger();
+        AtomicLong blockWatermarkOnResume = new AtomicLong();
+        CountDownLatch resumed = new CountDownLatch(1);
+        List<WalletEventsProvider.PageRequest> requests = new CopyOnWriteArrayList<>();
+        when(walletEventsProvider.fetchPage(eq(CryptoNetwork.BTC), eq(address), any())).thenAnswer(invocation -> {
+            WalletEventsProvider.PageRequest request = invocation.getArgument(2);
+            requests.add(request);
+            if (request.isForward()) {
+                // The head moved from 900 to 905 after the backfill pass started.
+                return new WalletEventsProvider.EventsPage(List.of(liveEvent("tx-905", 905L, txAt.plusSeconds(600), "IN")), null, 905L);
+            }
+            if (request.cursor() == null) {
+                return new WalletEventsProvider.EventsPage(List.of(liveEvent("tx-900", 900L, txAt, "IN")), "900:tx-900", 900L);
+            }
+            if (backfillResumes.getAndIncrement() == 0) {
+                throw new IllegalStateException("Provider unavailable");
+            }
+            blockWatermarkOnResume.set(watermarkRepository.findByWalletId(walletRef.get())
+                    .map(WalletAnalysisWatermark::getRawBlockNumber)
+                    .orElse(0L));
+            resumed.countDown();
+            return new WalletEventsProvider.EventsPage(List.of(liveEvent("tx-850", 850L, txAt.minusSeconds(3_600), "OUT")), null, 900L);
+        });
+
+        long walletId = createBtcWallet(token, address, "Forward");
+        walletRef.set(walletId);
+        assertThat(awaitAnalysisDone(token, walletId).get("status").asText()).isEqualTo("DONE");
+        WalletAnalysisWatermark afterCutShortPass = watermarkRepository.findByWalletId(walletId).orElseThrow();
+        assertThat(afterCutShortPass.getRawBlockNumber()).isEqualTo(900L);
+        assertThat(afterCutShortPass.getRawCursor()).isEqualTo("900:tx-900");
+
+        mockMvc.perform(post("/api/crypto/wallets/analysis")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isAccepted());
+        assertThat(resumed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(awaitAnalysisDone(token, walletId).get("status").asText()).isEqualTo("DONE");
+
+        // The second run scans forward from block 900 and saves the new watermark before the backfill resumes.
+        assertThat(requests).hasSize(4);
+        assertThat(requests.get(2).sinceBlock()).isEqualTo(900L);
+        assertThat(requests.get(3).cursor()).isEqualTo("900:tx-900");
+        assertThat(blockWatermarkOnResume.get()).isEqualTo(905L);
+        List<WalletTxRaw> rows = walletTxRawRepository.findByWalletIdAndTxAtBetweenOrderByTxAtAsc(
+                walletId, txAt.minusSeconds(7_200), txAt.plusSeconds(3_600));
+        assertThat(rows).extracting(WalletTxRaw::getTxHash).containsExactly("tx-850", "tx-900", "tx-905");
+        WalletAnalysisWatermark watermark = watermarkRepository.findByWalletId(walletId).orElseThrow();
+        assertThat(watermark.getRawBlockNumber()).isEqualTo(905L);
+        assertThat(watermark.getRawCursor()).isNull();
+    }
+
     @Test
     @Transactional
     void walletAnalysisStatusIsScopedToOwner() throws Exception {
@@ -860,6 +1097,43 @@ class CryptoWalletControllerIntegrationTest {
         assertThat(list).isEmpty();
     }
 
+    private static WalletEventsProvider.WalletEvent liveEvent(String txHash, long block, Instant txAt, String direction) {
+        return new WalletEventsProvider.WalletEvent(txHash, 0L, block, txAt, direction, "BTC",
+                new BigDecimal("0.01000000"), BigDecimal.ZERO, "bc1qcounterparty");
+    }
+
+    private long createBtcWallet(String token, String address, String label) throws Exception {
+        String createResponse = mockMvc.perform(post("/api/crypto/wallets")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"network":"BTC","address":"%s","label":"%s"}
+                                """.formatted(address, label)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(createResponse).get("id").asLong();
+    }
+
+    private JsonNode awaitAnalysisDone(String token, long walletId) throws Exception {
+        JsonNode payload = null;
+        for (int i = 0; i < 80; i += 1) {
+            String statusResponse = mockMvc.perform(get("/api/crypto/wallets/{id}/analysis/status", walletId)
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            payload = objectMapper.readTree(statusResponse);
+            if ("DONE".equals(payload.get("status").asText())) {
+                break;
+            }
+            Thread.sleep(25);
+        }
+        return payload;
+    }
+
     private String registerVerifyAndLogin(String email, String password, String baseCurrency) throws Exception {
         String registerPayload = """
                 {
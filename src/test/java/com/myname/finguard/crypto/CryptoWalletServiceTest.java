@@ -3,6 +3,7 @@ package com.myname.finguard.crypto;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.times;
@@ -15,7 +16,9 @@ import com.myname.finguard.common.service.CurrencyService;
 import com.myname.finguard.common.service.CryptoRatesProvider;
 import com.myname.finguard.common.service.CryptoRatesService;
 import com.myname.finguard.crypto.dto.CreateCryptoWalletRequest;
+import com.myname.finguard.crypto.dto.CryptoAssetHolding;
 import com.myname.finguard.crypto.dto.CryptoWalletDto;
+import com.myname.finguard.crypto.dto.CryptoWalletSummaryResponse;
 import com.myname.finguard.crypto.model.CryptoNetwork;
 import com.myname.finguard.crypto.model.CryptoWallet;
 import com.myname.finguard.crypto.repository.CryptoWalletRepository;
@@ -27,9 +30,12 @@ import com.myname.finguard.crypto.service.ArbitrumWalletPortfolioService;
 import com.myname.finguard.crypto.service.EthWalletPortfolioProvider;
 import com.myname.finguard.crypto.service.EthWalletPortfolioService;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -78,7 +84,10 @@ class CryptoWalletServiceTest {
                 ethWalletPortfolioService,
                 arbitrumWalletPortfolioService,
                 cryptoWalletAnalysisService,
-                25
+                25,
+                16,
+                256,
+                4000
         );
     }
 
@@ -255,6 +264,8 @@ class CryptoWalletServiceTest {
                         new BigDecimal("1000.00"),
                         List.of()
                 ));
+        when(walletBalanceService.balanceAge(CryptoNetwork.ETH, wallet.getAddressNormalized())).thenReturn(Duration.ofSeconds(20));
+        when(ethWalletPortfolioService.portfolioAge(wallet.getAddressNormalized())).thenReturn(Duration.ofSeconds(900));
 
         List<CryptoWalletDto> result = cryptoWalletService.listWallets(1L);
 
@@ -263,6 +274,8 @@ class CryptoWalletServiceTest {
         assertThat(dto.network()).isEqualTo("ETH");
         assertThat(dto.balance()).isEqualByComparingTo("0.00029");
         assertThat(dto.valueInBase()).isEqualByComparingTo("1000.87");
+        assertThat(dto.balanceAgeSeconds()).isEqualTo(20L);
+        assertThat(dto.portfolioAgeSeconds()).isEqualTo(900L);
     }
 
     @Test
@@ -450,6 +463,138 @@ class CryptoWalletServiceTest {
         assertThat(result.get(0).valueInBase()).isEqualByComparingTo("0.10000000");
     }
 
+    @Test
+    void walletsSummaryReturnsPartialResultsWhenAFetchMissesTheDeadline() throws Exception {
+        CryptoWalletService service = new CryptoWalletService(
+                cryptoWalletRepository,
+                userRepository,
+                walletBalanceService,
+                cryptoRatesService,
+                currencyService,
+                ethWalletPortfolioService,
+                arbitrumWalletPortfolioService,
+                cryptoWalletAnalysisService,
+                25,
+                4,
+                256,
+                200
+        );
+        User user = user(1L, "user@example.com", "USD");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        CryptoWallet fast = btcWallet(user, 10L, "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh");
+        CryptoWallet slow = btcWallet(user, 11L, "bc1qar0srrr7xfkvy5l643lydnw9re59gtzzwf5mdq");
+        when(cryptoWalletRepository.findByUserIdAndArchivedFalseOrderByCreatedAtDesc(1L)).thenReturn(List.of(fast, slow));
+        when(cryptoRatesService.latestRates("USD"))
+                .thenReturn(new CryptoRatesProvider.CryptoRates(
+                        "USD",
+                        Instant.parse("2024-01-01T00:00:00Z"),
+                        List.of(new CryptoRatesProvider.CryptoRate("BTC", "Bitcoin", new BigDecimal("60000"), BigDecimal.ZERO, List.of()))
+                ));
+        when(walletBalanceService.latestBalance(CryptoNetwork.BTC, fast.getAddressNormalized()))
+                .thenReturn(new CryptoWalletBalanceProvider.WalletBalance(
+                        CryptoNetwork.BTC, fast.getAddressNormalized(), new BigDecimal("0.5"), Instant.parse("2024-01-01T00:00:00Z")));
+        CountDownLatch release = new CountDownLatch(1);
+        when(walletBalanceService.latestBalance(CryptoNetwork.BTC, slow.getAddressNormalized())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new CryptoWalletBalanceProvider.WalletBalance(
+                    CryptoNetwork.BTC, slow.getAddressNormalized(), BigDecimal.ONE, Instant.parse("2024-01-01T00:00:00Z"));
+        });
+
+        try {
+            long started = System.nanoTime();
+            CryptoWalletSummaryResponse summary = service.walletsSummary(1L);
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(2000);
+            assertThat(summary.wallets()).hasSize(2);
+            assertThat(summary.wallets().get(0).valueInBase()).isEqualByComparingTo("30000.00");
+            assertThat(summary.wallets().get(1).valueInBase()).isNull();
+            assertThat(summary.totalValueInBase()).isNull();
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void walletsSummaryDropsValuationFetchesThatWereRejectedOrNotStartedByTheDeadline() throws Exception {
+        CryptoWalletService service = new CryptoWalletService(
+                cryptoWalletRepository,
+                userRepository,
+                walletBalanceService,
+                cryptoRatesService,
+                currencyService,
+                ethWalletPortfolioService,
+                arbitrumWalletPortfolioService,
+                cryptoWalletAnalysisService,
+                25,
+                1,
+                1,
+                200
+        );
+        User user = user(1L, "user@example.com", "USD");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        CryptoWallet slow = btcWallet(user, 10L, "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh");
+        CryptoWallet queued = btcWallet(user, 11L, "bc1qar0srrr7xfkvy5l643lydnw9re59gtzzwf5mdq");
+        CryptoWallet rejected = btcWallet(user, 12L, "bc1q9vza2e8x573nczrlzms0wvx3gsqjx7vavgkx0l");
+        when(cryptoWalletRepository.findByUserIdAndArchivedFalseOrderByCreatedAtDesc(1L)).thenReturn(List.of(slow, queued, rejected));
+        when(cryptoRatesService.latestRates("USD"))
+                .thenReturn(new CryptoRatesProvider.CryptoRates(
+                        "USD",
+                        Instant.parse("2024-01-01T00:00:00Z"),
+                        List.of(new CryptoRatesProvider.CryptoRate("BTC", "Bitcoin", new BigDecimal("60000"), BigDecimal.ZERO, List.of()))
+                ));
+        CountDownLatch release = new CountDownLatch(1);
+        when(walletBalanceService.latestBalance(CryptoNetwork.BTC, slow.getAddressNormalized())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        try {
+            CryptoWalletSummaryResponse summary = service.walletsSummary(1L);
+
+            assertThat(summary.wallets()).extracting(CryptoWalletDto::valueInBase).containsOnlyNulls();
+            release.countDown();
+            Thread.sleep(100);
+            verify(walletBalanceService, never()).latestBalance(CryptoNetwork.BTC, queued.getAddressNormalized());
+            verify(walletBalanceService, never()).latestBalance(CryptoNetwork.BTC, rejected.getAddressNormalized());
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void currentHoldingsKeepOnlyKnownTokenContractsUnderTheirOwnSymbol() {
+        CryptoWallet wallet = new CryptoWallet();
+        wallet.setId(11L);
+        wallet.setNetwork(CryptoNetwork.ETH);
+        wallet.setAddressNormalized("0xabcdefabcdefabcdefabcdefabcdefabcdefabcd");
+        when(walletBalanceService.latestBalance(CryptoNetwork.ETH, wallet.getAddressNormalized()))
+                .thenReturn(new CryptoWalletBalanceProvider.WalletBalance(
+                        CryptoNetwork.ETH, wallet.getAddressNormalized(), new BigDecimal("1.5"), Instant.parse("2024-01-01T00:00:00Z")));
+        when(ethWalletPortfolioService.latestPortfolio(wallet.getAddressNormalized()))
+                .thenReturn(new EthWalletPortfolioProvider.EthWalletPortfolio(
+                        wallet.getAddressNormalized(),
+                        Instant.parse("2024-01-01T00:00:00Z"),
+                        new BigDecimal("250"),
+                        List.of(
+                                new EthWalletPortfolioProvider.TokenHolding(
+                                        "0xA0b86991c6218b36c1d19d4a2e9eb0ce3606eb48", "usdc", new BigDecimal("250"), BigDecimal.ONE, new BigDecimal("250")),
+                                new EthWalletPortfolioProvider.TokenHolding(
+                                        "0x1111111111111111111111111111111111111111", "ETH", new BigDecimal("1000000"), null, null),
+                                new EthWalletPortfolioProvider.TokenHolding(
+                                        "0x2222222222222222222222222222222222222222", "USDC", new BigDecimal("5000"), BigDecimal.ONE, null),
+                                new EthWalletPortfolioProvider.TokenHolding(null, "UNI", new BigDecimal("3"), null, null)
+                        )
+                ));
+
+        List<CryptoAssetHolding> holdings = cryptoWalletService.currentHoldings(wallet);
+
+        assertThat(holdings).extracting(CryptoAssetHolding::assetCode).containsExactly("ETH", "USDC");
+        assertThat(holdings.get(0).quantity()).isEqualByComparingTo("1.5");
+        assertThat(holdings.get(1).quantity()).isEqualByComparingTo("250");
+    }
+
     @Test
     void deleteWalletRemovesRecord() {
         CryptoWallet wallet = new CryptoWallet();
@@ -459,9 +604,21 @@ class CryptoWalletServiceTest {
 
         cryptoWalletService.deleteWallet(1L, 10L);
 
+        verify(cryptoWalletAnalysisService).cancelActiveJobs(1L, 10L);
         verify(cryptoWalletRepository).delete(wallet);
     }
 
+    private CryptoWallet btcWallet(User user, Long id, String address) {
+        CryptoWallet wallet = new CryptoWallet();
+        wallet.setId(id);
+        wallet.setUser(user);
+        wallet.setNetwork(CryptoNetwork.BTC);
+        wallet.setAddress(address);
+        wallet.setAddressNormalized(address);
+        wallet.setArchived(false);
+        return wallet;
+    }
+
     private User user(Long id, String email, String baseCurrency) {
         User u = new User();
         u.setId(id);
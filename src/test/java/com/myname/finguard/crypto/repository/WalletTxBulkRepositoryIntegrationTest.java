@@ -0,0 +1,194 @@
+package com.myname.finguard.crypto.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.myname.finguard.auth.model.User;
+import com.myname.finguard.auth.repository.UserRepository;
+import com.myname.finguard.common.model.Role;
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import com.myname.finguard.crypto.model.CryptoWallet;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class WalletTxBulkRepositoryIntegrationTest {
+
+    private static final Instant T1 = Instant.parse("2025-03-01T10:00:00Z");
+    private static final Instant T2 = Instant.parse("2025-03-02T10:00:00Z");
+
+    @Autowired
+    private WalletTxBulkRepository bulkRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CryptoWalletRepository walletRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private CryptoWallet wallet;
+
+    @BeforeEach
+    void setup() {
+        user = new User();
+        user.setEmail("bulk-" + UUID.randomUUID() + "@example.com");
+        user.setPasswordHash("hash");
+        user.setRole(Role.USER);
+        user.setEmailVerified(true);
+        user.setFullName("User");
+        user.setBaseCurrency("USD");
+        user = userRepository.saveAndFlush(user);
+
+        wallet = new CryptoWallet();
+        wallet.setUser(user);
+        wallet.setNetwork(CryptoNetwork.ETH);
+        wallet.setAddress("0x" + UUID.randomUUID().toString().replace("-", "").substring(0, 32));
+        wallet.setAddressNormalized(wallet.getAddress());
+        wallet = walletRepository.saveAndFlush(wallet);
+    }
+
+    @Test
+    void rawUpsertInsertsNewRowsSkipsUnchangedOnesAndUpdatesChangedOnes() {
+        WalletTxBulkRepository.WriteResult first = bulkRepository.upsertRaw(wallet.getId(), List.of(
+                raw("0xa", 0, T1, "1.5"),
+                raw("0xb", 0, T1, "2")));
+        assertThat(first).isEqualTo(new WalletTxBulkRepository.WriteResult(2, 0, 0));
+
+        WalletTxBulkRepository.WriteResult second = bulkRepository.upsertRaw(wallet.getId(), List.of(
+                raw("0xa", 0, T1, "1.50"),
+                raw("0xb", 0, T1, "3"),
+                raw("0xb", 1, T1, "4")));
+
+        assertThat(second).isEqualTo(new WalletTxBulkRepository.WriteResult(1, 1, 1));
+        assertThat(rawCount()).isEqualTo(3);
+        assertThat(rawAmount("0xb", 0)).isEqualByComparingTo("3");
+    }
+
+    @Test
+    void rawRowWhoseTxAtMovedIsUpdatedInsteadOfInsertedAgain() {
+        bulkRepository.upsertRaw(wallet.getId(), List.of(raw("0xa", 0, T1, "1")));
+
+        WalletTxBulkRepository.WriteResult moved = bulkRepository.upsertRaw(wallet.getId(), List.of(raw("0xa", 0, T2, "1")));
+
+        assertThat(moved).isEqualTo(new WalletTxBulkRepository.WriteResult(0, 1, 0));
+        assertThat(rawCount()).isEqualTo(1);
+        OffsetDateTime txAt = jdbcTemplate.queryForObject(
+                "select tx_at from wallet_tx_raw where wallet_id = ?", OffsetDateTime.class, wallet.getId());
+        assertThat(txAt.toInstant()).isEqualTo(T2);
+    }
+
+    @Test
+    void enrichedUpsertMatchesExistingRowsByKeyWhateverTheirTxAt() {
+        bulkRepository.upsertEnriched(wallet.getId(), List.of(enriched("0xa", 0, T1, "income"), enriched("0xb", 0, T1, "income")));
+
+        WalletTxBulkRepository.WriteResult result = bulkRepository.upsertEnriched(wallet.getId(), List.of(
+                enriched("0xa", 0, T2, "income"),
+                enriched("0xb", 0, T1, "income"),
+                enriched("0xc", 0, T2, "expense")));
+
+        assertThat(result).isEqualTo(new WalletTxBulkRepository.WriteResult(1, 1, 1));
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from wallet_tx_enriched where wallet_id = ?", Integer.class, wallet.getId())).isEqualTo(3);
+    }
+
+    @Test
+    void lookupCoversBatchesOfMoreThanFiveHundredHashes() {
+        List<WalletTxBulkRepository.RawRow> rows = new ArrayList<>();
+        for (int i = 0; i < 1203; i += 1) {
+            rows.add(raw("0x" + i, 0, T1, "1"));
+        }
+        assertThat(bulkRepository.upsertRaw(wallet.getId(), rows).inserted()).isEqualTo(1203);
+
+        List<WalletTxBulkRepository.RawRow> again = new ArrayList<>(rows);
+        again.set(1100, raw("0x1100", 0, T2, "1"));
+        WalletTxBulkRepository.WriteResult result = bulkRepository.upsertRaw(wallet.getId(), again);
+
+        assertThat(result).isEqualTo(new WalletTxBulkRepository.WriteResult(0, 1, 1202));
+        assertThat(rawCount()).isEqualTo(1203);
+    }
+
+    @Test
+    void snapshotRebuildWritesOnlyChangedAndNewDays() {
+        LocalDate day1 = LocalDate.parse("2025-03-01");
+        LocalDate day2 = day1.plusDays(1);
+        LocalDate day3 = day1.plusDays(2);
+        LocalDate day4 = day1.plusDays(3);
+        bulkRepository.upsertSnapshots(wallet.getId(), day1, day3, List.of(
+                snapshot(day1, "100", null), snapshot(day2, "110", null), snapshot(day3, "120", null)));
+        Timestamp day1Written = snapshotUpdatedAt(day1);
+
+        WalletTxBulkRepository.WriteResult result = bulkRepository.upsertSnapshots(wallet.getId(), day1, day4, List.of(
+                snapshot(day1, "100.00", null),
+                snapshot(day2, "115", null),
+                snapshot(day3, "120", new byte[] {1, 2}),
+                snapshot(day4, "130", null)));
+
+        assertThat(result).isEqualTo(new WalletTxBulkRepository.WriteResult(1, 2, 1));
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from wallet_daily_snapshots where wallet_id = ?", Integer.class, wallet.getId())).isEqualTo(4);
+        assertThat(snapshotUpdatedAt(day1)).isEqualTo(day1Written);
+        assertThat(jdbcTemplate.queryForObject(
+                "select portfolio_usd from wallet_daily_snapshots where wallet_id = ? and snapshot_day = ?",
+                BigDecimal.class, wallet.getId(), day2)).isEqualByComparingTo("115");
+        assertThat(jdbcTemplate.queryForObject(
+                "select holdings from wallet_daily_snapshots where wallet_id = ? and snapshot_day = ?",
+                byte[].class, wallet.getId(), day3)).containsExactly(1, 2);
+
+        // Rebuilding the same range again is a no-op and never trips uq_wallet_daily_snapshots_wallet_day.
+        WalletTxBulkRepository.WriteResult again = bulkRepository.upsertSnapshots(wallet.getId(), day1, day4, List.of(
+                snapshot(day1, "100", null),
+                snapshot(day2, "115", null),
+                snapshot(day3, "120", new byte[] {1, 2}),
+                snapshot(day4, "130", null)));
+        assertThat(again).isEqualTo(new WalletTxBulkRepository.WriteResult(0, 0, 4));
+    }
+
+    private WalletTxBulkRepository.RawRow raw(String txHash, long logIndex, Instant txAt, String amount) {
+        return new WalletTxBulkRepository.RawRow(
+                user.getId(), wallet.getId(), "ETH", txHash, logIndex, txAt, 100L, "IN", "ETH",
+                new BigDecimal(amount), new BigDecimal(amount), BigDecimal.ZERO, "0xfrom", "LIVE", null);
+    }
+
+    private WalletTxBulkRepository.EnrichedRow enriched(String txHash, long logIndex, Instant txAt, String category) {
+        return new WalletTxBulkRepository.EnrichedRow(
+                user.getId(), wallet.getId(), null, txHash, logIndex, txAt, "IN", "ETH", BigDecimal.ONE, BigDecimal.ONE,
+                category, "0xfrom", false, new BigDecimal("0.9"), "LIVE");
+    }
+
+    private WalletTxBulkRepository.SnapshotRow snapshot(LocalDate day, String portfolioUsd, byte[] holdings) {
+        return new WalletTxBulkRepository.SnapshotRow(
+                user.getId(), wallet.getId(), day, new BigDecimal(portfolioUsd), BigDecimal.ZERO, BigDecimal.ZERO,
+                BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, "LIVE", holdings);
+    }
+
+    private Timestamp snapshotUpdatedAt(LocalDate day) {
+        return jdbcTemplate.queryForObject(
+                "select updated_at from wallet_daily_snapshots where wallet_id = ? and snapshot_day = ?",
+                Timestamp.class, wallet.getId(), day);
+    }
+
+    private int rawCount() {
+        return jdbcTemplate.queryForObject("select count(*) from wallet_tx_raw where wallet_id = ?", Integer.class, wallet.getId());
+    }
+
+    private BigDecimal rawAmount(String txHash, long logIndex) {
+        return jdbcTemplate.queryForObject(
+                "select amount from wallet_tx_raw where wallet_id = ? and tx_hash = ? and log_index = ?",
+                BigDecimal.class, wallet.getId(), txHash, logIndex);
+    }
+}
@@ -0,0 +1,146 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.myname.finguard.common.events.CryptoRatesFetchedEvent;
+import com.myname.finguard.common.service.CryptoRatesProvider;
+import com.myname.finguard.crypto.repository.CryptoPriceHistoryRepository;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CryptoPriceHistoryServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-10T12:30:00Z");
+    private static final LocalDate TODAY = LocalDate.parse("2025-03-10");
+
+    private CryptoPriceHistoryRepository repository;
+    private CryptoRatesProvider provider;
+    private CryptoPriceHistoryService service;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(CryptoPriceHistoryRepository.class);
+        provider = mock(CryptoRatesProvider.class);
+        doAnswer(invocation -> {
+            CryptoPriceHistoryRepository.DailyPriceVisitor visitor = invocation.getArgument(1);
+            for (int day = 10; day >= 3; day -= 1) {
+                if (day != 6 && day != 7) {
+                    visitor.accept("BTC", TODAY.minusDays(day), BigDecimal.valueOf(100 - day));
+                }
+            }
+            return null;
+        }).when(repository).forEachDailyPrice(any(LocalDate.class), any());
+        doAnswer(invocation -> {
+            CryptoPriceHistoryRepository.HourlyPriceVisitor visitor = invocation.getArgument(1);
+            visitor.accept("BTC", Instant.parse("2025-03-09T20:00:00Z"), new BigDecimal("98.5"));
+            visitor.accept("BTC", Instant.parse("2025-03-10T09:00:00Z"), new BigDecimal("99.5"));
+            return null;
+        }).when(repository).forEachHourlyPrice(any(Instant.class), any());
+        service = new CryptoPriceHistoryService(repository, provider, null, true, 10, List.of("btc"), 30, 7,
+                Clock.fixed(NOW, ZoneOffset.UTC), Runnable::run);
+    }
+
+    @Test
+    void priceAtPrefersSameDayHourlyPricesThenTheLatestDailyPrice() {
+        assertThat(service.priceAt("BTC", Instant.parse("2025-03-10T11:59:00Z"))).isEqualTo(99.5);
+        assertThat(service.priceAt("btc", Instant.parse("2025-03-10T08:00:00Z"))).isEqualTo(97.0);
+        assertThat(service.priceAt("BTC", Instant.parse("2025-03-05T00:00:00Z"))).isEqualTo(95.0);
+        assertThat(service.priceAt("BTC", Instant.parse("2025-03-04T00:00:00Z"))).isEqualTo(92.0);
+        assertThat(service.priceAt("BTC", Instant.parse("2025-02-01T00:00:00Z"))).isNaN();
+        assertThat(service.priceAt("ETH", NOW)).isNaN();
+    }
+
+    @Test
+    void pricesReturnsStoredDaysAndLeavesGapsUnknown() {
+        double[] prices = service.prices("BTC", TODAY.minusDays(8), TODAY.minusDays(2));
+
+        assertThat(prices).hasSize(7);
+        assertThat(prices[0]).isEqualTo(92.0);
+        assertThat(prices[1]).isNaN();
+        assertThat(prices[2]).isNaN();
+        assertThat(prices[3]).isEqualTo(95.0);
+        assertThat(prices[5]).isEqualTo(97.0);
+        assertThat(prices[6]).isNaN();
+    }
+
+    @Test
+    void fetchedUsdRatesAreAppendedAndServedFromTheIndex() {
+        when(repository.appendDailyPrices(anyList())).thenReturn(1);
+        service.onRatesFetched(new CryptoRatesFetchedEvent(new CryptoRatesProvider.CryptoRates("USD", NOW, List.of(
+                new CryptoRatesProvider.CryptoRate("ETH", "Ethereum", new BigDecimal("3000"), null, List.of())))));
+        service.onRatesFetched(new CryptoRatesFetchedEvent(new CryptoRatesProvider.CryptoRates("EUR", NOW, List.of(
+                new CryptoRatesProvider.CryptoRate("SOL", "Solana", new BigDecimal("100"), null, List.of())))));
+
+        assertThat(service.priceAt("ETH", NOW)).isEqualTo(3000.0);
+        assertThat(service.priceAt("SOL", NOW)).isNaN();
+        verify(repository).appendHourlyPrices(argThat(rows -> rows.size() == 1
+                && rows.get(0).hour().equals(Instant.parse("2025-03-10T12:00:00Z"))));
+        assertThat(service.record(Map.of(), NOW, "LIVE")).isZero();
+    }
+
+    @Test
+    void fetchedRatesAreRecordedOnTheRecordExecutor() {
+        List<Runnable> queued = new ArrayList<>();
+        CryptoPriceHistoryService deferred = new CryptoPriceHistoryService(repository, provider, null, true, 10, List.of("btc"), 30, 7,
+                Clock.fixed(NOW, ZoneOffset.UTC), queued::add);
+
+        deferred.onRatesFetched(new CryptoRatesFetchedEvent(new CryptoRatesProvider.CryptoRates("USD", NOW, List.of(
+                new CryptoRatesProvider.CryptoRate("ETH", "Ethereum", new BigDecimal("3000"), null, List.of())))));
+
+        verifyNoInteractions(repository);
+        assertThat(queued).hasSize(1);
+        queued.get(0).run();
+        assertThat(deferred.priceAt("ETH", NOW)).isEqualTo(3000.0);
+    }
+
+    @Test
+    void reloadPicksUpRowsFromOtherNodesAndKeepsLocalOnes() {
+        when(repository.appendDailyPrices(anyList())).thenReturn(1);
+        assertThat(service.priceAt("BTC", TODAY.minusDays(6).atStartOfDay(ZoneOffset.UTC).toInstant())).isEqualTo(92.0);
+        service.record(Map.of("ETH", new BigDecimal("3000")), NOW, "LIVE");
+        doAnswer(invocation -> {
+            CryptoPriceHistoryRepository.DailyPriceVisitor visitor = invocation.getArgument(1);
+            visitor.accept("BTC", TODAY.minusDays(6), new BigDecimal("94"));
+            return null;
+        }).when(repository).forEachDailyPrice(any(LocalDate.class), any());
+
+        service.reload();
+
+        assertThat(service.priceAt("BTC", TODAY.minusDays(6).atStartOfDay(ZoneOffset.UTC).toInstant())).isEqualTo(94.0);
+        assertThat(service.priceAt("BTC", TODAY.minusDays(8).atStartOfDay(ZoneOffset.UTC).toInstant())).isEqualTo(92.0);
+        assertThat(service.priceAt("ETH", NOW)).isEqualTo(3000.0);
+    }
+
+    @Test
+    void backfillFetchesOnlyTheMissingSpan() {
+        when(provider.fetchDailyHistory(eq("BTC"), any(), any())).thenReturn(List.of(
+                new CryptoRatesProvider.HistoricalPrice(TODAY.minusDays(7), new BigDecimal("93")),
+                new CryptoRatesProvider.HistoricalPrice(TODAY.minusDays(6), new BigDecimal("94"))));
+        when(repository.appendDailyPrices(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        // Window is the 10 days up to yesterday; days 10..3 are stored apart from 7 and 6, and 2..1 are missing.
+        assertThat(service.backfill()).isEqualTo(2);
+
+        verify(provider).fetchDailyHistory("BTC", TODAY.minusDays(7), TODAY.minusDays(1));
+        verify(provider, never()).fetchDailyHistory(eq("ETH"), any(), any());
+        assertThat(service.priceAt("BTC", TODAY.minusDays(6).atStartOfDay(ZoneOffset.UTC).toInstant())).isEqualTo(94.0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+
+import com.myname.finguard.auth.model.User;
+import com.myname.finguard.auth.repository.UserRepository;
+import com.myname.finguard.common.model.Role;
+import com.myname.finguard.crypto.dto.CryptoWalletAnalysisStatusResponse;
+import com.myname.finguard.crypto.dto.CryptoWalletSummaryResponse;
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import com.myname.finguard.crypto.model.CryptoWallet;
+import com.myname.finguard.crypto.repository.CryptoWalletRepository;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "app.crypto.analysis.demo-pacing=true",
+        "app.crypto.analysis.simulated-delay-ms=" + CryptoWalletAnalysisDemoPacingIntegrationTest.STEP_MS
+})
+class CryptoWalletAnalysisDemoPacingIntegrationTest {
+
+    static final long STEP_MS = 500;
+
+    @Autowired
+    private CryptoWalletAnalysisService analysisService;
+    @Autowired
+    private WalletAnalysisExecutor analysisExecutor;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CryptoWalletRepository walletRepository;
+
+    @SpyBean
+    private CryptoWalletService cryptoWalletService;
+
+    @MockBean
+    private WalletEventsProvider walletEventsProvider;
+
+    @Test
+    void workerIsReleasedBeforeThePacedTransitionsArePublished() throws Exception {
+        User user = new User();
+        user.setEmail("analysis-paced-" + UUID.randomUUID() + "@example.com");
+        user.setPasswordHash("hash");
+        user.setRole(Role.USER);
+        user.setEmailVerified(true);
+        user.setFullName("User");
+        user.setBaseCurrency("USD");
+        user = userRepository.saveAndFlush(user);
+        CryptoWallet wallet = new CryptoWallet();
+        wallet.setUser(user);
+        wallet.setNetwork(CryptoNetwork.ETH);
+        wallet.setAddress("0x" + UUID.randomUUID().toString().replace("-", "") + "00000000");
+        wallet.setAddressNormalized(wallet.getAddress());
+        wallet = walletRepository.saveAndFlush(wallet);
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            return new CryptoWalletSummaryResponse(List.of(), BigDecimal.ZERO, "USD");
+        }).when(cryptoWalletService).walletsSummary(user.getId());
+
+        assertThat(analysisService.enqueueUserAnalysis(user.getId())).containsExactly(wallet.getId());
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        long releasedAfterMs = 0;
+        while (analysisExecutor.activeWorkers() > 0 && releasedAfterMs < 3 * STEP_MS) {
+            Thread.sleep(10);
+            releasedAfterMs += 10;
+        }
+
+        // All stages ran back to back; the replay of their transitions is still on the executor's timer.
+        assertThat(analysisExecutor.activeWorkers()).isZero();
+        CryptoWalletAnalysisStatusResponse released = analysisService.status(user.getId(), wallet.getId());
+        assertThat(released.status()).isNotEqualTo("DONE");
+        assertThat(released.progressPct()).isLessThan(100);
+
+        CryptoWalletAnalysisStatusResponse finished = released;
+        for (int i = 0; i < 100 && !"DONE".equals(finished.status()); i += 1) {
+            Thread.sleep(STEP_MS / 5);
+            finished = analysisService.status(user.getId(), wallet.getId());
+        }
+        assertThat(finished.status()).isEqualTo("DONE");
+        assertThat(finished.stageDurationsMs()).containsOnlyKeys(
+                "FETCH_TX", "ENRICH_TX", "BUILD_SNAPSHOTS", "DETECT_RECURRING", "BUILD_INSIGHTS");
+    }
+}
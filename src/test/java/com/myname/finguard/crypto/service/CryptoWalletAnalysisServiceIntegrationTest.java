@@ -0,0 +1,255 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.myname.finguard.auth.model.User;
+import com.myname.finguard.auth.repository.UserRepository;
+import com.myname.finguard.common.model.Role;
+import com.myname.finguard.crypto.dto.CryptoWalletSummaryResponse;
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import com.myname.finguard.crypto.model.CryptoWallet;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJob;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobPriority;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisStage;
+import com.myname.finguard.crypto.model.WalletAnalysisWatermark;
+import com.myname.finguard.crypto.repository.CryptoWalletAnalysisJobRepository;
+import com.myname.finguard.crypto.repository.CryptoWalletRepository;
+import com.myname.finguard.crypto.repository.WalletAnalysisWatermarkRepository;
+import com.myname.finguard.crypto.repository.WalletTxBulkRepository;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "app.crypto.analysis.simulated-delay-ms=1",
+        "app.crypto.analysis.user-context-ttl-ms=" + CryptoWalletAnalysisServiceIntegrationTest.CONTEXT_TTL_MS
+})
+class CryptoWalletAnalysisServiceIntegrationTest {
+
+    static final long CONTEXT_TTL_MS = 2_000;
+
+    @Autowired
+    private CryptoWalletAnalysisService analysisService;
+    @Autowired
+    private CryptoWalletAnalysisJobRepository jobRepository;
+    @Autowired
+    private WalletAnalysisJobQueue jobQueue;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CryptoWalletRepository walletRepository;
+    @Autowired
+    private WalletAnalysisWatermarkRepository watermarkRepository;
+
+    @SpyBean
+    private CryptoWalletService cryptoWalletService;
+
+    @SpyBean
+    private WalletTxBulkRepository bulkRepository;
+
+    @MockBean
+    private WalletEventsProvider walletEventsProvider;
+
+    private User user;
+    private CryptoWallet wallet;
+
+    @BeforeEach
+    void setup() {
+        user = new User();
+        user.setEmail("analysis-" + UUID.randomUUID() + "@example.com");
+        user.setPasswordHash("hash");
+        user.setRole(Role.USER);
+        user.setEmailVerified(true);
+        user.setFullName("User");
+        user.setBaseCurrency("USD");
+        user = userRepository.saveAndFlush(user);
+
+        wallet = new CryptoWallet();
+        wallet.setUser(user);
+        wallet.setNetwork(CryptoNetwork.ETH);
+        wallet.setAddress("0x" + UUID.randomUUID().toString().replace("-", "") + "00000000");
+        wallet.setAddressNormalized(wallet.getAddress());
+        wallet = walletRepository.saveAndFlush(wallet);
+
+        doReturn(summary()).when(cryptoWalletService).walletsSummary(user.getId());
+        doReturn(List.of()).when(cryptoWalletService).currentHoldings(any());
+    }
+
+    @Test
+    void userContextIsSharedWithinItsTtlAndRebuiltOnceExpired() throws Exception {
+        Long first = runQueuedJob();
+        Long second = runQueuedJob();
+        verify(cryptoWalletService, times(1)).walletsSummary(user.getId());
+
+        Thread.sleep(CONTEXT_TTL_MS + 100);
+        Long afterTtl = runQueuedJob();
+
+        verify(cryptoWalletService, times(2)).walletsSummary(user.getId());
+        assertThat(List.of(first, second, afterTtl)).allSatisfy(jobId ->
+                assertThat(status(jobId)).isEqualTo(CryptoWalletAnalysisJobStatus.DONE));
+    }
+
+    @Test
+    void failedUserContextBuildIsNotCached() {
+        doThrow(new IllegalStateException("Rates unavailable"))
+                .doReturn(summary())
+                .when(cryptoWalletService).walletsSummary(user.getId());
+
+        Long failed = runQueuedJob();
+        Long retried = runQueuedJob();
+
+        assertThat(status(failed)).isEqualTo(CryptoWalletAnalysisJobStatus.FAILED);
+        assertThat(status(retried)).isEqualTo(CryptoWalletAnalysisJobStatus.DONE);
+        verify(cryptoWalletService, times(2)).walletsSummary(user.getId());
+    }
+
+    @Test
+    void enqueueUserAnalysisLeavesTheUserContextToTheWorker() throws Exception {
+        List<Thread> callers = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            callers.add(Thread.currentThread());
+            return summary();
+        }).when(cryptoWalletService).walletsSummary(user.getId());
+
+        List<Long> queued = analysisService.enqueueUserAnalysis(user.getId());
+
+        assertThat(queued).containsExactly(wallet.getId());
+        assertThat(callers).doesNotContain(Thread.currentThread());
+        CryptoWalletAnalysisJob job = awaitTerminalJob();
+        assertThat(job.getStatus()).isEqualTo(CryptoWalletAnalysisJobStatus.DONE);
+        assertThat(callers).hasSize(1).doesNotContain(Thread.currentThread());
+    }
+
+    @Test
+    void enrichmentReadsOnlyRawRowsPastItsWatermark() {
+        Instant now = Instant.now();
+        bulkRepository.upsertRaw(wallet.getId(), List.of(raw("0xa", now.minus(2, ChronoUnit.DAYS))));
+        runQueuedJob();
+        Instant enrichedThrough = watermark().getEnrichedThrough();
+
+        bulkRepository.upsertRaw(wallet.getId(), List.of(raw("0xb", now.minus(1, ChronoUnit.DAYS))));
+        Long second = runQueuedJob();
+
+        ArgumentCaptor<List<WalletTxBulkRepository.EnrichedRow>> batches = enrichedBatchCaptor();
+        verify(bulkRepository, times(2)).upsertEnriched(eq(wallet.getId()), batches.capture());
+        assertThat(batches.getAllValues().get(0)).extracting(WalletTxBulkRepository.EnrichedRow::txHash).containsExactly("0xa");
+        assertThat(batches.getAllValues().get(1)).extracting(WalletTxBulkRepository.EnrichedRow::txHash).containsExactly("0xb");
+        assertThat(status(second)).isEqualTo(CryptoWalletAnalysisJobStatus.DONE);
+        assertThat(watermark().getEnrichedThrough()).isAfter(enrichedThrough);
+    }
+
+    @Test
+    void snapshotsAreRebuiltFromTheEarliestTouchedDayButNoLaterThanTheLastSnapshottedDay() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        runQueuedJob();
+        assertThat(watermark().getLastSnapshotDay()).isEqualTo(today);
+
+        bulkRepository.upsertRaw(wallet.getId(), List.of(raw("0xa", today.minusDays(10).atTime(12, 0).toInstant(ZoneOffset.UTC))));
+        runQueuedJob();
+        runQueuedJob();
+
+        ArgumentCaptor<LocalDate> fromDays = ArgumentCaptor.forClass(LocalDate.class);
+        ArgumentCaptor<LocalDate> toDays = ArgumentCaptor.forClass(LocalDate.class);
+        verify(bulkRepository, times(3)).upsertSnapshots(eq(wallet.getId()), fromDays.capture(), toDays.capture(), anyList());
+        // First run: the whole backfill window; then the day of the late row; then only the last snapshotted day.
+        assertThat(fromDays.getAllValues()).containsExactly(today.minusDays(364), today.minusDays(10), today);
+        assertThat(toDays.getAllValues()).containsOnly(today);
+    }
+
+    @Test
+    void runFailingAfterEnrichmentResumesFromTheSavedWatermark() {
+        bulkRepository.upsertRaw(wallet.getId(), List.of(raw("0xa", Instant.now().minus(2, ChronoUnit.DAYS))));
+        doThrow(new IllegalStateException("Snapshot write failed"))
+                .doCallRealMethod()
+                .when(bulkRepository).upsertSnapshots(eq(wallet.getId()), any(), any(), anyList());
+
+        Long failed = runQueuedJob();
+        WalletAnalysisWatermark afterFailure = watermark();
+        Long resumed = runQueuedJob();
+
+        assertThat(status(failed)).isEqualTo(CryptoWalletAnalysisJobStatus.FAILED);
+        assertThat(afterFailure.getEnrichedThrough()).isNotNull();
+        assertThat(afterFailure.getSnapshotsThrough()).isNull();
+        assertThat(status(resumed)).isEqualTo(CryptoWalletAnalysisJobStatus.DONE);
+        // The resumed run finds nothing past the enrichment watermark and only redoes the snapshots.
+        verify(bulkRepository, times(1)).upsertEnriched(eq(wallet.getId()), anyList());
+        verify(bulkRepository, times(2)).upsertSnapshots(eq(wallet.getId()), any(), any(), anyList());
+        assertThat(watermark().getSnapshotsThrough()).isNotNull();
+    }
+
+    private Long runQueuedJob() {
+        CryptoWalletAnalysisJob job = new CryptoWalletAnalysisJob();
+        job.setUser(user);
+        job.setWallet(wallet);
+        job.setStatus(CryptoWalletAnalysisJobStatus.QUEUED);
+        job.setStage(CryptoWalletAnalysisStage.FETCH_TX);
+        job.setProgressPct(0);
+        job.setActiveWalletId(wallet.getId());
+        job.setPriority(CryptoWalletAnalysisJobPriority.INTERACTIVE);
+        job.setClaimedBy(jobQueue.nodeId());
+        Long jobId = jobRepository.saveAndFlush(job).getId();
+        analysisService.runPipeline(jobId);
+        return jobId;
+    }
+
+    private CryptoWalletAnalysisJobStatus status(Long jobId) {
+        return jobRepository.findById(jobId).orElseThrow().getStatus();
+    }
+
+    private CryptoWalletAnalysisJob awaitTerminalJob() throws InterruptedException {
+        CryptoWalletAnalysisJob job = null;
+        for (int i = 0; i < 200; i += 1) {
+            job = jobRepository.findTopByWalletIdOrderByCreatedAtDesc(wallet.getId()).orElse(null);
+            if (job != null && (job.getStatus() == CryptoWalletAnalysisJobStatus.DONE
+                    || job.getStatus() == CryptoWalletAnalysisJobStatus.FAILED)) {
+                break;
+            }
+            Thread.sleep(25);
+        }
+        return job;
+    }
+
+    private WalletAnalysisWatermark watermark() {
+        return watermarkRepository.findByWalletId(wallet.getId()).orElseThrow();
+    }
+
+    private WalletTxBulkRepository.RawRow raw(String txHash, Instant txAt) {
+        return new WalletTxBulkRepository.RawRow(
+                user.getId(), wallet.getId(), "ETH", txHash, 0L, txAt, 100L, "IN", "ETH",
+                BigDecimal.ONE, new BigDecimal("3000"), BigDecimal.ZERO, "0xfrom", "LIVE", null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<WalletTxBulkRepository.EnrichedRow>> enrichedBatchCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private CryptoWalletSummaryResponse summary() {
+        return new CryptoWalletSummaryResponse(List.of(), BigDecimal.ZERO, "USD");
+    }
+}
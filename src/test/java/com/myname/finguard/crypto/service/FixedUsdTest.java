@@ -0,0 +1,45 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+
+class FixedUsdTest {
+
+    @Test
+    void convertsAtDeclaredScaleWithHalfUpRounding() {
+        assertThat(FixedUsd.of(new BigDecimal("12.123456785"))).isEqualTo(1_212_345_679L);
+        assertThat(FixedUsd.of(new BigDecimal("-0.000000005"))).isEqualTo(-1L);
+        assertThat(FixedUsd.of(null)).isZero();
+        assertThat(FixedUsd.toDecimal(1_212_345_679L)).isEqualByComparingTo("12.12345679");
+        assertThat(FixedUsd.toDecimal(FixedUsd.ONE).scale()).isEqualTo(FixedUsd.SCALE);
+        assertThat(FixedUsd.ofDouble(0.1)).isEqualTo(10_000_000L);
+        assertThat(FixedUsd.toDouble(250_000_000L)).isEqualTo(2.5);
+    }
+
+    @Test
+    void overflowSaturatesInsteadOfWrapping() {
+        assertThat(FixedUsd.of(new BigDecimal("1e12"))).isEqualTo(Long.MAX_VALUE);
+        assertThat(FixedUsd.of(new BigDecimal("-1e12"))).isEqualTo(Long.MIN_VALUE);
+        assertThat(FixedUsd.ofDouble(1e300)).isEqualTo(Long.MAX_VALUE);
+        assertThat(FixedUsd.ofDouble(Double.NaN)).isZero();
+        assertThat(FixedUsd.add(Long.MAX_VALUE - 1, 5)).isEqualTo(Long.MAX_VALUE);
+        assertThat(FixedUsd.add(Long.MIN_VALUE + 1, -5)).isEqualTo(Long.MIN_VALUE);
+        assertThat(FixedUsd.subtract(Long.MIN_VALUE + 1, 5)).isEqualTo(Long.MIN_VALUE);
+        assertThat(FixedUsd.subtract(Long.MAX_VALUE - 1, -5)).isEqualTo(Long.MAX_VALUE);
+        assertThat(FixedUsd.subtract(5, 7)).isEqualTo(-2);
+        assertThat(FixedUsd.abs(Long.MIN_VALUE)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void sumAccumulatesWithoutBoxing() {
+        FixedUsd.Sum sum = new FixedUsd.Sum();
+        sum.add(FixedUsd.of(new BigDecimal("1.5")));
+        sum.add(FixedUsd.of(new BigDecimal("2.25")));
+        sum.add(Long.MAX_VALUE);
+
+        assertThat(sum.count()).isEqualTo(3);
+        assertThat(sum.total()).isEqualTo(Long.MAX_VALUE);
+    }
+}
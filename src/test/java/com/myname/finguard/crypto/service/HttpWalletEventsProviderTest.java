@@ -0,0 +1,298 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import java.time.Instant;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+class HttpWalletEventsProviderTest {
+
+    private static final String BTC_ADDRESS = "bc1qxy2kgdygjrsqtzq2n0yrf2493p83kkfjhx0wlh";
+    private static final String EVM_ADDRESS = "0xabcdefabcdefabcdefabcdefabcdefabcdefabcd";
+
+    @Test
+    void btcPagesNewestFirstAndCarriesHeadInCursor() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        HttpWalletEventsProvider provider = provider(builder);
+
+        String fullPage = IntStream.range(0, 25)
+                .mapToObj(i -> btcTx("tx" + i, 900 - i, 1_700_000_000L - i * 600L, BTC_ADDRESS, "bc1qsender", 15_000))
+                .collect(Collectors.joining(",", "[", "]"));
+        server.expect(requestTo("https://btc.example/api/address/" + BTC_ADDRESS + "/txs/chain"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(fullPage, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://btc.example/api/address/" + BTC_ADDRESS + "/txs/chain/tx24"))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess("[" + btcTx("tx25", 870, 1_699_980_000L, "bc1qrecipient", BTC_ADDRESS, 40_000) + "]",
+                        MediaType.APPLICATION_JSON));
+
+        WalletEventsProvider.EventsPage first = provider.fetchPage(CryptoNetwork.BTC, BTC_ADDRESS,
+                WalletEventsProvider.PageRequest.backfill(null, null));
+        WalletEventsProvider.EventsPage second = provider.fetchPage(CryptoNetwork.BTC, BTC_ADDRESS,
+                WalletEventsProvider.PageRequest.backfill(first.nextCursor(), null));
+
+        assertThat(first.events()).hasSize(25);
+        assertThat(first.nextCursor()).isEqualTo("900:tx24");
+        assertThat(first.events().get(0).direction()).isEqualTo("IN");
+        assertThat(first.events().get(0).amount()).isEqualByComparingTo("0.00014");
+        assertThat(first.events().get(0).counterparty()).isEqualTo("bc1qsender");
+        assertThat(second.complete()).isTrue();
+        assertThat(second.headBlock()).isEqualTo(900L);
+        WalletEventsProvider.WalletEvent outgoing = second.events().get(0);
+        assertThat(outgoing.direction()).isEqualTo("OUT");
+        // 40000 spent, 1000 fee, nothing back to the address.
+        assertThat(outgoing.amount()).isEqualByComparingTo("0.00039");
+        assertThat(outgoing.fee()).isEqualByComparingTo("0.00001");
+        assertThat(outgoing.counterparty()).isEqualTo("bc1qrecipient");
+        server.verify();
+    }
+
+    @Test
+    void btcStopsAtPreviouslyIngestedBlock() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        HttpWalletEventsProvider provider = provider(builder);
+
+        server.expect(requestTo("https://btc.example/api/address/" + BTC_ADDRESS + "/txs/chain"))
+                .andRespond(withSuccess("[" + btcTx("new", 905, 1_700_003_000L, BTC_ADDRESS, "bc1qsender", 5_000)
+                        + "," + btcTx("known", 900, 1_700_000_000L, BTC_ADDRESS, "bc1qsender", 5_000) + "]",
+                        MediaType.APPLICATION_JSON));
+
+        WalletEventsProvider.EventsPage page = provider.fetchPage(CryptoNetwork.BTC, BTC_ADDRESS,
+                WalletEventsProvider.PageRequest.forward(900L, null, Instant.EPOCH));
+
+        assertThat(page.events()).extracting(WalletEventsProvider.WalletEvent::txHash).containsExactly("new");
+        assertThat(page.complete()).isTrue();
+        assertThat(page.headBlock()).isEqualTo(905L);
+        server.verify();
+    }
+
+    @Test
+    void evmScansTransferLogsNewestFirstAndResolvesBlockTimes() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        HttpWalletEventsProvider provider = provider(builder);
+        String topic = HttpWalletEventsProvider.addressTopic(EVM_ADDRESS);
+        String usdc = "0xaf88d065e77c8cc2239327c5edb3a432268e5831";
+
+        server.expect(requestTo("https://arb.example/rpc"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().string(containsString("\"eth_blockNumber\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":"0x1f4"}
+                        """, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://arb.example/rpc"))
+                .andExpect(content().string(containsString("\"fromBlock\":\"0x191\"")))
+                .andExpect(content().string(containsString("\"toBlock\":\"0x1f4\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[
+                          {"address":"%s","topics":["%s","%s","0x000000000000000000000000000000000000000000000000000000000000beef"],
+                           "data":"0x00000000000000000000000000000000000000000000000000000000000f4240",
+                           "blockNumber":"0x1f0","transactionHash":"0xout","logIndex":"0x2"}
+                        ]}
+                        """.formatted(usdc, HttpWalletEventsProvider.TRANSFER_TOPIC, topic), MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://arb.example/rpc"))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[
+                          {"address":"0x000000000000000000000000000000000000dead","topics":["%s","0x000000000000000000000000000000000000000000000000000000000000beef","%s"],
+                           "data":"0x01","blockNumber":"0x1f1","transactionHash":"0xspam","logIndex":"0x0"}
+                        ]}
+                        """.formatted(HttpWalletEventsProvider.TRANSFER_TOPIC, topic), MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://arb.example/rpc"))
+                .andExpect(content().string(containsString("\"eth_getBlockByNumber\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":{"number":"0x1f0","timestamp":"0x6553f100"}}
+                        """, MediaType.APPLICATION_JSON));
+
+        WalletEventsProvider.EventsPage page = provider.fetchPage(CryptoNetwork.ARBITRUM, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.backfill(null, null));
+
+        assertThat(page.nextCursor()).isEqualTo("500:400:0");
+        assertThat(page.headBlock()).isEqualTo(500L);
+        assertThat(page.events()).hasSize(1);
+        WalletEventsProvider.WalletEvent event = page.events().get(0);
+        assertThat(event.direction()).isEqualTo("OUT");
+        assertThat(event.assetCode()).isEqualTo("USDC");
+        assertThat(event.amount()).isEqualByComparingTo("1");
+        assertThat(event.logIndex()).isEqualTo(2L);
+        assertThat(event.blockNumber()).isEqualTo(496L);
+        assertThat(event.txAt()).isEqualTo(Instant.ofEpochSecond(0x6553f100L));
+        assertThat(event.counterparty()).isEqualTo("0x000000000000000000000000000000000000beef");
+        server.verify();
+    }
+
+    @Test
+    void evmPassEndsAtTheFloorOrAtTheFirstTransferBeforeNotBefore() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        HttpWalletEventsProvider provider = provider(builder);
+        String topic = HttpWalletEventsProvider.addressTopic(EVM_ADDRESS);
+        String usdc = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"fromBlock\":\"0x65\"")))
+                .andExpect(content().string(containsString("\"toBlock\":\"0x96\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[]}
+                        """, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[]}
+                        """, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"fromBlock\":\"0x12d\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[
+                          {"address":"%s","topics":["%s","%s","0x000000000000000000000000000000000000000000000000000000000000beef"],
+                           "data":"0x01","blockNumber":"0x130","transactionHash":"0xold","logIndex":"0x0"}
+                        ]}
+                        """.formatted(usdc, HttpWalletEventsProvider.TRANSFER_TOPIC, topic), MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[]}
+                        """, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"eth_getBlockByNumber\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":{"number":"0x130","timestamp":"0x10"}}
+                        """, MediaType.APPLICATION_JSON));
+
+        WalletEventsProvider.EventsPage atFloor = provider.fetchPage(CryptoNetwork.ETH, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.backfill("500:150:101", null));
+        WalletEventsProvider.EventsPage beforeNotBefore = provider.fetchPage(CryptoNetwork.ETH, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.backfill("500:400:0", Instant.ofEpochSecond(1_000)));
+
+        assertThat(atFloor.complete()).isTrue();
+        assertThat(atFloor.headBlock()).isEqualTo(500L);
+        assertThat(beforeNotBefore.complete()).isTrue();
+        assertThat(beforeNotBefore.events()).isEmpty();
+        server.verify();
+    }
+
+    @Test
+    void evmForwardScanWalksRangesOldestFirstUpToTheHeadItStartedAt() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        HttpWalletEventsProvider provider = provider(builder);
+
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"eth_blockNumber\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":"0x1f4"}
+                        """, MediaType.APPLICATION_JSON));
+        expectEmptyLogs(server, "https://eth.example/rpc", "0x15f", "0x1c2");
+        // The second page reuses the head carried in the cursor instead of reading it again.
+        expectEmptyLogs(server, "https://eth.example/rpc", "0x1c3", "0x1f4");
+
+        WalletEventsProvider.EventsPage first = provider.fetchPage(CryptoNetwork.ETH, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.forward(350L, null, null));
+        WalletEventsProvider.EventsPage second = provider.fetchPage(CryptoNetwork.ETH, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.forward(first.headBlock(), first.nextCursor(), null));
+
+        assertThat(first.headBlock()).isEqualTo(450L);
+        assertThat(first.nextCursor()).isEqualTo("500");
+        assertThat(second.headBlock()).isEqualTo(500L);
+        assertThat(second.complete()).isTrue();
+        server.verify();
+    }
+
+    @Test
+    void evmForwardScanPicksUpBlocksPastTheHeadABackfillPassIsPinnedTo() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        HttpWalletEventsProvider provider = provider(builder);
+        String topic = HttpWalletEventsProvider.addressTopic(EVM_ADDRESS);
+        String usdc = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"eth_blockNumber\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":"0x1f4"}
+                        """, MediaType.APPLICATION_JSON));
+        expectEmptyLogs(server, "https://eth.example/rpc", "0x191", "0x1f4");
+        // The head moves to 550 before the next run.
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"eth_blockNumber\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":"0x226"}
+                        """, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"fromBlock\":\"0x1f5\"")))
+                .andExpect(content().string(containsString("\"toBlock\":\"0x226\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[]}
+                        """, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[
+                          {"address":"%s","topics":["%s","0x000000000000000000000000000000000000000000000000000000000000beef","%s"],
+                           "data":"0x00000000000000000000000000000000000000000000000000000000000f4240",
+                           "blockNumber":"0x220","transactionHash":"0xnew","logIndex":"0x0"}
+                        ]}
+                        """.formatted(usdc, HttpWalletEventsProvider.TRANSFER_TOPIC, topic), MediaType.APPLICATION_JSON));
+        server.expect(requestTo("https://eth.example/rpc"))
+                .andExpect(content().string(containsString("\"eth_getBlockByNumber\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":{"number":"0x220","timestamp":"0x6553f100"}}
+                        """, MediaType.APPLICATION_JSON));
+        // The backfill resumes below the head it was pinned to.
+        expectEmptyLogs(server, "https://eth.example/rpc", "0x12d", "0x190");
+
+        WalletEventsProvider.EventsPage backfillFirst = provider.fetchPage(CryptoNetwork.ETH, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.backfill(null, null));
+        WalletEventsProvider.EventsPage forward = provider.fetchPage(CryptoNetwork.ETH, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.forward(backfillFirst.headBlock(), null, null));
+        WalletEventsProvider.EventsPage backfillSecond = provider.fetchPage(CryptoNetwork.ETH, EVM_ADDRESS,
+                WalletEventsProvider.PageRequest.backfill(backfillFirst.nextCursor(), null));
+
+        assertThat(backfillFirst.headBlock()).isEqualTo(500L);
+        assertThat(backfillFirst.nextCursor()).isEqualTo("500:400:0");
+        assertThat(forward.complete()).isTrue();
+        assertThat(forward.headBlock()).isEqualTo(550L);
+        assertThat(forward.events()).extracting(WalletEventsProvider.WalletEvent::txHash).containsExactly("0xnew");
+        assertThat(forward.events().get(0).direction()).isEqualTo("IN");
+        assertThat(backfillSecond.nextCursor()).isEqualTo("500:300:0");
+        assertThat(backfillSecond.headBlock()).isEqualTo(500L);
+        server.verify();
+    }
+
+    private static void expectEmptyLogs(MockRestServiceServer server, String url, String fromBlock, String toBlock) {
+        server.expect(requestTo(url))
+                .andExpect(content().string(containsString("\"fromBlock\":\"" + fromBlock + "\"")))
+                .andExpect(content().string(containsString("\"toBlock\":\"" + toBlock + "\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[]}
+                        """, MediaType.APPLICATION_JSON));
+        server.expect(requestTo(url))
+                .andExpect(content().string(containsString("\"fromBlock\":\"" + fromBlock + "\"")))
+                .andRespond(withSuccess("""
+                        {"jsonrpc":"2.0","id":1,"result":[]}
+                        """, MediaType.APPLICATION_JSON));
+    }
+
+    private static HttpWalletEventsProvider provider(RestClient.Builder builder) {
+        return new HttpWalletEventsProvider(builder, "https://btc.example/api/", "https://eth.example/rpc/", "https://arb.example/rpc/", 100);
+    }
+
+    private static String btcTx(String txid, long height, long blockTime, String to, String from, long value) {
+        long fee = 1_000;
+        return """
+                {"txid":"%s","status":{"confirmed":true,"block_height":%d,"block_time":%d},"fee":%d,
+                 "vin":[{"prevout":{"scriptpubkey_address":"%s","value":%d}}],
+                 "vout":[{"scriptpubkey_address":"%s","value":%d}]}
+                """.formatted(txid, height, blockTime, fee, from, value, to, value - fee);
+    }
+}
@@ -0,0 +1,84 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.myname.finguard.crypto.model.WalletRecurringCadence;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.Test;
+
+class RecurringCadenceTrackerTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-05T09:00:00Z");
+
+    @Test
+    void monthlyChargesFoldedOneByOneMatchMonthlyCadence() {
+        WalletRecurringCadence state = new WalletRecurringCadence();
+        observe(state, T0, 15.0);
+        observe(state, T0.plus(31, ChronoUnit.DAYS), 15.0);
+        assertThat(RecurringCadenceTracker.match(state, T0.plus(32, ChronoUnit.DAYS))).isNull();
+
+        observe(state, T0.plus(60, ChronoUnit.DAYS), 15.5);
+        RecurringCadenceTracker.Match match = RecurringCadenceTracker.match(state, T0.plus(61, ChronoUnit.DAYS));
+
+        assertThat(match).isNotNull();
+        assertThat(match.cadence()).isEqualTo(RecurringCadenceTracker.Cadence.MONTHLY);
+        assertThat(state.getChargeCount()).isEqualTo(3);
+        assertThat(state.getIntervalMeanDays()).isEqualTo(30.0);
+        assertThat(match.amountUsd()).isBetween(15.16, 15.17);
+        assertThat(match.nextChargeAt()).isEqualTo(T0.plus(90, ChronoUnit.DAYS));
+        assertThat(match.monthlyUsd()).isBetween(15.16, 15.17);
+    }
+
+    @Test
+    void recognisesBiweeklyQuarterlyAndYearlyCadences() {
+        assertThat(cadenceAfter(14, 3)).isEqualTo(RecurringCadenceTracker.Cadence.BIWEEKLY);
+        assertThat(cadenceAfter(91, 3)).isEqualTo(RecurringCadenceTracker.Cadence.QUARTERLY);
+        assertThat(cadenceAfter(365, 2)).isEqualTo(RecurringCadenceTracker.Cadence.YEARLY);
+        assertThat(cadenceAfter(45, 4)).isNull();
+    }
+
+    @Test
+    void intervalOutsideTheBandRestartsTheSequence() {
+        WalletRecurringCadence state = new WalletRecurringCadence();
+        observe(state, T0, 40.0);
+        observe(state, T0.plus(80, ChronoUnit.DAYS), 9.99);
+        observe(state, T0.plus(110, ChronoUnit.DAYS), 9.99);
+        observe(state, T0.plus(140, ChronoUnit.DAYS), 9.99);
+
+        RecurringCadenceTracker.Match match = RecurringCadenceTracker.match(state, T0.plus(141, ChronoUnit.DAYS));
+
+        assertThat(match).isNotNull();
+        assertThat(state.getFirstChargeAt()).isEqualTo(T0.plus(80, ChronoUnit.DAYS));
+        assertThat(match.amountUsd()).isEqualTo(9.99);
+    }
+
+    @Test
+    void unsteadyAmountsAndLapsedChargesAreNotRecurring() {
+        WalletRecurringCadence unsteady = new WalletRecurringCadence();
+        observe(unsteady, T0, 10.0);
+        observe(unsteady, T0.plus(30, ChronoUnit.DAYS), 30.0);
+        observe(unsteady, T0.plus(60, ChronoUnit.DAYS), 10.0);
+        assertThat(RecurringCadenceTracker.match(unsteady, T0.plus(61, ChronoUnit.DAYS))).isNull();
+
+        WalletRecurringCadence lapsed = new WalletRecurringCadence();
+        observe(lapsed, T0, 10.0);
+        observe(lapsed, T0.plus(7, ChronoUnit.DAYS), 10.0);
+        observe(lapsed, T0.plus(14, ChronoUnit.DAYS), 10.0);
+        assertThat(RecurringCadenceTracker.match(lapsed, T0.plus(20, ChronoUnit.DAYS))).isNotNull();
+        assertThat(RecurringCadenceTracker.match(lapsed, T0.plus(40, ChronoUnit.DAYS))).isNull();
+    }
+
+    private static RecurringCadenceTracker.Cadence cadenceAfter(int days, int charges) {
+        WalletRecurringCadence state = new WalletRecurringCadence();
+        for (int i = 0; i < charges; i += 1) {
+            observe(state, T0.plus((long) days * i, ChronoUnit.DAYS), 20.0);
+        }
+        RecurringCadenceTracker.Match match = RecurringCadenceTracker.match(state, T0.plus((long) days * charges - days + 1, ChronoUnit.DAYS));
+        return match == null ? null : match.cadence();
+    }
+
+    private static void observe(WalletRecurringCadence state, Instant txAt, double amountUsd) {
+        RecurringCadenceTracker.observe(state, WalletTxWorkingSet.toMicros(txAt), amountUsd, false);
+    }
+}
@@ -0,0 +1,158 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobPriority;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class WalletAnalysisExecutorTest {
+
+    private WalletAnalysisExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void servesUsersRoundRobin() throws Exception {
+        executor = new WalletAnalysisExecutor(1, 100, 0, null);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        executor.submit(1L, 10L, () -> {
+            await(gate);
+            order.add("a1");
+            done.countDown();
+        });
+        waitUntil(() -> executor.activeWorkers() == 1);
+        executor.submit(2L, 10L, recording(order, "a2", done));
+        executor.submit(3L, 10L, recording(order, "a3", done));
+        executor.submit(4L, 20L, recording(order, "b1", done));
+        gate.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("a1", "a2", "b1", "a3");
+    }
+
+    @Test
+    void servesInteractiveLaneFirstAndLetsBackgroundThroughAfterABurst() throws Exception {
+        executor = new WalletAnalysisExecutor(1, 100, 0, 2, 60_000, null);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        executor.submit(1L, 10L, CryptoWalletAnalysisJobPriority.INTERACTIVE, () -> {
+            await(gate);
+            order.add("i0");
+            done.countDown();
+        });
+        waitUntil(() -> executor.activeWorkers() == 1);
+        executor.submit(2L, 20L, CryptoWalletAnalysisJobPriority.BACKGROUND, recording(order, "b1", done));
+        executor.submit(3L, 21L, CryptoWalletAnalysisJobPriority.BACKGROUND, recording(order, "b2", done));
+        executor.submit(4L, 30L, CryptoWalletAnalysisJobPriority.INTERACTIVE, recording(order, "i1", done));
+        executor.submit(5L, 31L, CryptoWalletAnalysisJobPriority.INTERACTIVE, recording(order, "i2", done));
+        executor.submit(6L, 32L, CryptoWalletAnalysisJobPriority.INTERACTIVE, recording(order, "i3", done));
+        assertThat(executor.queuedCount(CryptoWalletAnalysisJobPriority.BACKGROUND)).isEqualTo(2);
+        assertThat(executor.queuedCount(CryptoWalletAnalysisJobPriority.INTERACTIVE)).isEqualTo(3);
+        gate.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("i0", "i1", "i2", "b1", "i3", "b2");
+    }
+
+    @Test
+    void capsConcurrentPipelinesPerUser() throws Exception {
+        executor = new WalletAnalysisExecutor(3, 100, 1, null);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch otherUserRan = new CountDownLatch(1);
+        AtomicInteger runningForUser = new AtomicInteger();
+        AtomicInteger maxRunningForUser = new AtomicInteger();
+
+        for (long jobId = 1; jobId <= 3; jobId += 1) {
+            executor.submit(jobId, 10L, () -> {
+                int running = runningForUser.incrementAndGet();
+                maxRunningForUser.accumulateAndGet(running, Math::max);
+                await(gate);
+                runningForUser.decrementAndGet();
+            });
+        }
+        executor.submit(99L, 20L, otherUserRan::countDown);
+
+        assertThat(otherUserRan.await(5, TimeUnit.SECONDS)).isTrue();
+        waitUntil(() -> executor.activeWorkers() == 1);
+        assertThat(executor.queuedCount()).isEqualTo(2);
+        gate.countDown();
+        waitUntil(() -> executor.queuedCount() == 0 && executor.activeWorkers() == 0);
+        assertThat(maxRunningForUser.get()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsDuplicatesAndWorkBeyondCapacity() throws Exception {
+        executor = new WalletAnalysisExecutor(1, 2, 0, null);
+        CountDownLatch gate = new CountDownLatch(1);
+
+        assertThat(executor.submit(1L, 10L, () -> await(gate))).isTrue();
+        waitUntil(() -> executor.activeWorkers() == 1);
+        assertThat(executor.submit(1L, 10L, () -> { })).isFalse();
+        assertThat(executor.submit(2L, 10L, () -> { })).isTrue();
+        assertThat(executor.submit(3L, 20L, () -> { })).isTrue();
+        assertThat(executor.submit(4L, 30L, () -> { })).isFalse();
+        assertThat(executor.isTracked(4L)).isFalse();
+
+        gate.countDown();
+        waitUntil(() -> !executor.isTracked(1L) && !executor.isTracked(2L) && !executor.isTracked(3L));
+        assertThat(executor.submit(4L, 30L, () -> { })).isTrue();
+    }
+
+    @Test
+    void claimableSlotsCountIdleWorkersNotQueueCapacity() throws Exception {
+        executor = new WalletAnalysisExecutor(2, 100, 0, null);
+        CountDownLatch gate = new CountDownLatch(1);
+        assertThat(executor.claimableSlots()).isEqualTo(2);
+
+        executor.submit(1L, 10L, () -> await(gate));
+        waitUntil(() -> executor.activeWorkers() == 1);
+        assertThat(executor.claimableSlots()).isEqualTo(1);
+        executor.submit(2L, 20L, () -> await(gate));
+        executor.submit(3L, 30L, () -> await(gate));
+        waitUntil(() -> executor.activeWorkers() == 2);
+        assertThat(executor.claimableSlots()).isZero();
+
+        gate.countDown();
+        waitUntil(() -> executor.queuedCount() == 0 && executor.activeWorkers() == 0);
+        assertThat(executor.claimableSlots()).isEqualTo(2);
+    }
+
+    private static Runnable recording(List<String> order, String label, CountDownLatch done) {
+        return () -> {
+            order.add(label);
+            done.countDown();
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
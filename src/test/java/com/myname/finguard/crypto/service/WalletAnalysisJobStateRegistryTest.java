@@ -0,0 +1,112 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.myname.finguard.auth.model.User;
+import com.myname.finguard.crypto.model.CryptoWallet;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJob;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisStage;
+import com.myname.finguard.crypto.repository.CryptoWalletAnalysisJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+class WalletAnalysisJobStateRegistryTest {
+
+    private CryptoWalletAnalysisJobRepository jobRepository;
+    private WalletAnalysisJobStateRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        jobRepository = mock(CryptoWalletAnalysisJobRepository.class);
+        registry = new WalletAnalysisJobStateRegistry(jobRepository, mock(ObjectProvider.class), 60_000);
+    }
+
+    @Test
+    void untrackedJobsAreLeftToTheCaller() {
+        boolean handled = registry.update(7L, CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.ENRICH_TX,
+                40, null, false, false, null, null);
+
+        assertThat(handled).isFalse();
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void intermediateProgressIsServedFromMemoryAndFlushedOnce() {
+        registry.track(job(1L, 10L, 100L));
+
+        registry.update(1L, CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.FETCH_TX, 10, null, true, false, null, null);
+        registry.update(1L, CryptoWalletAnalysisJobStatus.RUNNING, CryptoWalletAnalysisStage.ENRICH_TX, 30, null, false, false,
+                CryptoWalletAnalysisStage.FETCH_TX, "FETCH_TX=4");
+        registry.update(1L, CryptoWalletAnalysisJobStatus.PARTIAL, CryptoWalletAnalysisStage.BUILD_SNAPSHOTS, 55, null, false, false,
+                CryptoWalletAnalysisStage.ENRICH_TX, "FETCH_TX=4,ENRICH_TX=9");
+
+        WalletAnalysisJobStateRegistry.JobState state = registry.findActive(10L, 100L).orElseThrow();
+        assertThat(state.status()).isEqualTo(CryptoWalletAnalysisJobStatus.PARTIAL);
+        assertThat(state.progressPct()).isEqualTo(55);
+        assertThat(state.startedAt()).isNotNull();
+        assertThat(registry.findActive(11L, 100L)).isEmpty();
+        // Only the start transition was written so far.
+        verify(jobRepository, times(1)).updateProgress(eq(1L), any(), any(), any(), anyInt(), any(), any(), any(), any(), any(), anyLong());
+
+        registry.flushDirty();
+        registry.flushDirty();
+
+        verify(jobRepository, times(1)).updateProgress(eq(1L), eq(CryptoWalletAnalysisJobStatus.PARTIAL),
+                eq(CryptoWalletAnalysisStage.BUILD_SNAPSHOTS), eq(CryptoWalletAnalysisStage.ENRICH_TX), eq(55), isNull(),
+                any(), isNull(), eq("FETCH_TX=4,ENRICH_TX=9"), any(), eq(3L));
+    }
+
+    @Test
+    void terminalTransitionIsWrittenImmediatelyAndStopsTracking() {
+        CryptoWalletAnalysisJob job = job(2L, 10L, 200L);
+        job.setProgressVersion(7L);
+        registry.track(job);
+
+        registry.update(2L, CryptoWalletAnalysisJobStatus.DONE, CryptoWalletAnalysisStage.DONE, 100, null, false, true,
+                CryptoWalletAnalysisStage.DONE, "FETCH_TX=1");
+
+        verify(jobRepository).updateProgress(eq(2L), eq(CryptoWalletAnalysisJobStatus.DONE), eq(CryptoWalletAnalysisStage.DONE),
+                eq(CryptoWalletAnalysisStage.DONE), eq(100), isNull(), isNull(), any(), eq("FETCH_TX=1"), any(), eq(8L));
+        assertThat(registry.findActive(10L, 200L)).isEmpty();
+
+        registry.flushDirty();
+        verify(jobRepository, times(1)).updateProgress(any(), any(), any(), any(), anyInt(), any(), any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void forgetWithoutPendingProgressDoesNotWrite() {
+        registry.track(job(3L, 10L, 300L));
+
+        registry.forget(3L);
+
+        verify(jobRepository, never()).updateProgress(any(), any(), any(), any(), anyInt(), any(), any(), any(), any(), any(), anyLong());
+        assertThat(registry.findActive(10L, 300L)).isEmpty();
+    }
+
+    private static CryptoWalletAnalysisJob job(Long jobId, Long userId, Long walletId) {
+        User user = new User();
+        user.setId(userId);
+        CryptoWallet wallet = new CryptoWallet();
+        wallet.setId(walletId);
+        CryptoWalletAnalysisJob job = new CryptoWalletAnalysisJob();
+        job.setId(jobId);
+        job.setUser(user);
+        job.setWallet(wallet);
+        job.setStatus(CryptoWalletAnalysisJobStatus.QUEUED);
+        job.setStage(CryptoWalletAnalysisStage.FETCH_TX);
+        return job;
+    }
+}
@@ -0,0 +1,161 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.myname.finguard.auth.model.User;
+import com.myname.finguard.common.service.ExternalProviderGuard;
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import com.myname.finguard.crypto.model.CryptoWallet;
+import com.myname.finguard.crypto.model.CryptoWalletAnalysisJobStatus;
+import com.myname.finguard.crypto.model.WalletAnalysisSweepLease;
+import com.myname.finguard.crypto.repository.CryptoWalletAnalysisJobRepository;
+import com.myname.finguard.crypto.repository.CryptoWalletRepository;
+import com.myname.finguard.crypto.repository.WalletAnalysisSweepLeaseRepository;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+
+class WalletAnalysisSweepServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-01T02:40:00Z");
+
+    private WalletAnalysisSweepLeaseRepository leaseRepository;
+    private CryptoWalletRepository walletRepository;
+    private CryptoWalletAnalysisJobRepository jobRepository;
+    private CryptoWalletAnalysisService analysisService;
+    private ExternalProviderGuard guard;
+    private WalletAnalysisSweepService sweep;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        leaseRepository = mock(WalletAnalysisSweepLeaseRepository.class);
+        walletRepository = mock(CryptoWalletRepository.class);
+        jobRepository = mock(CryptoWalletAnalysisJobRepository.class);
+        analysisService = mock(CryptoWalletAnalysisService.class);
+        guard = new ExternalProviderGuard(1, 0, 0, 10, 10_000, 1000);
+        WalletAnalysisJobQueue jobQueue = mock(WalletAnalysisJobQueue.class);
+        when(jobQueue.nodeId()).thenReturn("node-a");
+        sweep = new WalletAnalysisSweepService(leaseRepository, walletRepository, jobRepository, analysisService, jobQueue, guard,
+                mock(ObjectProvider.class), true, 2, 3, 100, 60_000, 3_600_000, 0, 50, 1, 4, 4, 4);
+    }
+
+    @Test
+    void startCreatesMissingShardsAndRestartsOnlyStaleSweeps() {
+        when(leaseRepository.findAllByOrderByShardIdAsc()).thenReturn(List.of(lease(0, 0L, null)));
+
+        assertThat(sweep.startSweep(NOW)).isTrue();
+
+        verify(leaseRepository).save(argThat(lease -> lease.getShardId() == 1));
+        verify(leaseRepository).restartSweep(NOW, NOW.minusMillis(3_600_000));
+    }
+
+    @Test
+    void leasedShardQueuesNextWalletsInKeyOrderAndCompletesWhenExhausted() {
+        when(leaseRepository.findAllByOrderByShardIdAsc()).thenReturn(List.of(lease(0, 0L, NOW), lease(1, 5L, null)));
+        when(jobRepository.countByStatus(CryptoWalletAnalysisJobStatus.QUEUED)).thenReturn(0L);
+        when(leaseRepository.tryLease(eq(1), eq("node-a"), eq(NOW), any())).thenReturn(1);
+        when(leaseRepository.findById(1)).thenReturn(Optional.of(lease(1, 5L, null)));
+        when(walletRepository.findSweepBatchIds(eq(2), eq(1), eq(5L), any(Pageable.class))).thenReturn(List.of(7L, 9L));
+        CryptoWallet seven = wallet(7L, CryptoNetwork.BTC);
+        CryptoWallet nine = wallet(9L, CryptoNetwork.ETH);
+        when(walletRepository.findAllById(List.of(7L, 9L))).thenReturn(List.of(nine, seven));
+        when(analysisService.enqueueRefresh(eq(seven), any())).thenReturn(true);
+        when(analysisService.enqueueRefresh(eq(nine), any())).thenReturn(false);
+
+        int queued = sweep.advanceSweep(NOW);
+
+        assertThat(queued).isEqualTo(1);
+        verify(leaseRepository, never()).tryLease(eq(0), any(), any(), any());
+        verify(leaseRepository).advance(eq(1), eq("node-a"), eq(9L), eq(2L), eq(1L), eq(NOW.plusMillis(60_000)), eq(NOW));
+        verify(leaseRepository).complete(1, "node-a", NOW);
+    }
+
+    @Test
+    void exhaustedProviderBudgetStopsTheBatchWithoutSkippingWallets() {
+        when(leaseRepository.findAllByOrderByShardIdAsc()).thenReturn(List.of(lease(0, 0L, null)));
+        when(jobRepository.countByStatus(CryptoWalletAnalysisJobStatus.QUEUED)).thenReturn(0L);
+        when(leaseRepository.tryLease(eq(0), eq("node-a"), eq(NOW), any())).thenReturn(1);
+        when(leaseRepository.findById(0)).thenReturn(Optional.of(lease(0, 0L, null)));
+        when(walletRepository.findSweepBatchIds(eq(2), eq(0), eq(0L), any(Pageable.class))).thenReturn(List.of(2L, 4L));
+        CryptoWallet eth = wallet(2L, CryptoNetwork.ETH);
+        CryptoWallet btc = wallet(4L, CryptoNetwork.BTC);
+        when(walletRepository.findAllById(List.of(2L, 4L))).thenReturn(List.of(eth, btc));
+        when(analysisService.enqueueRefresh(eq(eth), any())).thenReturn(true);
+        // Leaves 2 of 4 blockstream calls, which is not above the 50% headroom.
+        guard.execute("blockstream", 4, 60_000, () -> "ok");
+        guard.execute("blockstream", 4, 60_000, () -> "ok");
+
+        sweep.advanceSweep(NOW);
+
+        verify(analysisService, never()).enqueueRefresh(eq(btc), any());
+        verify(leaseRepository).advance(eq(0), eq("node-a"), eq(2L), eq(1L), eq(1L), any(), eq(NOW));
+        verify(leaseRepository, never()).complete(anyInt(), any(), any());
+    }
+
+    @Test
+    void batchQueuesOnlyWhatTheSpareBudgetCanServeLessTheQueuedBacklog() {
+        when(leaseRepository.findAllByOrderByShardIdAsc()).thenReturn(List.of(lease(0, 0L, null)));
+        when(jobRepository.countByStatus(CryptoWalletAnalysisJobStatus.QUEUED)).thenReturn(1L);
+        when(leaseRepository.tryLease(eq(0), eq("node-a"), eq(NOW), any())).thenReturn(1);
+        when(leaseRepository.findById(0)).thenReturn(Optional.of(lease(0, 0L, null)));
+        when(walletRepository.findSweepBatchIds(eq(2), eq(0), eq(0L), any(Pageable.class))).thenReturn(List.of(2L, 4L, 6L));
+        CryptoWallet first = wallet(2L, CryptoNetwork.ETH);
+        CryptoWallet second = wallet(4L, CryptoNetwork.EVM);
+        CryptoWallet third = wallet(6L, CryptoNetwork.ETH);
+        when(walletRepository.findAllById(List.of(2L, 4L, 6L))).thenReturn(List.of(first, second, third));
+        when(analysisService.enqueueRefresh(any(), any())).thenReturn(true);
+
+        // 2 eth-rpc calls above the 50% headroom at 1 call per wallet, one of them already owed to the queued job.
+        assertThat(sweep.advanceSweep(NOW)).isEqualTo(1);
+
+        verify(analysisService, never()).enqueueRefresh(eq(second), any());
+        verify(leaseRepository).advance(eq(0), eq("node-a"), eq(2L), eq(1L), eq(1L), any(), eq(NOW));
+        verify(leaseRepository, never()).complete(anyInt(), any(), any());
+    }
+
+    @Test
+    void fullBacklogOrFinishedSweepQueuesNothing() {
+        when(leaseRepository.findAllByOrderByShardIdAsc()).thenReturn(List.of(lease(0, 0L, null)));
+        when(jobRepository.countByStatus(CryptoWalletAnalysisJobStatus.QUEUED)).thenReturn(100L);
+
+        assertThat(sweep.advanceSweep(NOW)).isZero();
+
+        when(leaseRepository.findAllByOrderByShardIdAsc()).thenReturn(List.of(lease(0, 9L, NOW), lease(1, 8L, NOW)));
+        assertThat(sweep.advanceSweep(NOW)).isZero();
+        verify(leaseRepository, never()).tryLease(anyInt(), any(), any(), any());
+        verify(walletRepository, never()).findSweepBatchIds(anyInt(), anyInt(), anyLong(), any(Pageable.class));
+    }
+
+    private static WalletAnalysisSweepLease lease(int shard, long cursor, Instant completedAt) {
+        WalletAnalysisSweepLease lease = new WalletAnalysisSweepLease();
+        lease.setShardId(shard);
+        lease.setSweepStartedAt(NOW.minusSeconds(600));
+        lease.setCursorWalletId(cursor);
+        lease.setCompletedAt(completedAt);
+        return lease;
+    }
+
+    private static CryptoWallet wallet(Long id, CryptoNetwork network) {
+        User user = new User();
+        user.setId(100L);
+        CryptoWallet wallet = new CryptoWallet();
+        wallet.setId(id);
+        wallet.setUser(user);
+        wallet.setNetwork(network);
+        return wallet;
+    }
+}
@@ -0,0 +1,43 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.myname.finguard.crypto.model.CryptoNetwork;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class WalletCacheCodecTest {
+
+    @Test
+    void balancesAndPortfoliosRoundTripExactly() {
+        CryptoWalletBalanceProvider.WalletBalance balance = new CryptoWalletBalanceProvider.WalletBalance(
+                CryptoNetwork.BTC, "bc1qexample", new BigDecimal("0.00012345"), Instant.parse("2025-03-10T12:30:00.123Z"));
+        assertThat(WalletCacheCodec.unpackBalance(WalletCacheCodec.packBalance(balance))).isEqualTo(balance);
+
+        EthWalletPortfolioProvider.EthWalletPortfolio portfolio = new EthWalletPortfolioProvider.EthWalletPortfolio(
+                "0xabc",
+                Instant.parse("2025-03-10T12:30:00Z"),
+                new BigDecimal("1234.500000000000000001"),
+                List.of(
+                        new EthWalletPortfolioProvider.TokenHolding("0xusdc", "USDC", new BigDecimal("1000"), BigDecimal.ONE, new BigDecimal("1000")),
+                        new EthWalletPortfolioProvider.TokenHolding(null, "UNI", new BigDecimal("-0.5"), null, null)
+                )
+        );
+        assertThat(WalletCacheCodec.unpackEthPortfolio(WalletCacheCodec.packEthPortfolio(portfolio))).isEqualTo(portfolio);
+
+        ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio empty = new ArbitrumWalletPortfolioProvider.ArbitrumWalletPortfolio(
+                "0xdef", null, BigDecimal.ZERO, List.of());
+        assertThat(WalletCacheCodec.unpackArbitrumPortfolio(WalletCacheCodec.packArbitrumPortfolio(empty))).isEqualTo(empty);
+    }
+
+    @Test
+    void rejectsUnknownFormats() {
+        assertThatThrownBy(() -> WalletCacheCodec.unpackBalance(new byte[] {9}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> WalletCacheCodec.unpackBalance(new byte[] {1, 1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
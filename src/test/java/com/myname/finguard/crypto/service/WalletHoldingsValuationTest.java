@@ -0,0 +1,96 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class WalletHoldingsValuationTest {
+
+    private static final LocalDate DAY0 = LocalDate.parse("2025-03-01");
+
+    @Test
+    void valuesRolledBackHoldingsWithDailyPrices() {
+        WalletTxWorkingSet set = WalletTxWorkingSet.builder(4)
+                .add(noon(1), false, "eth", new BigDecimal("1"), new BigDecimal("1500"), "exchange", "income", "LIVE")
+                .build();
+        WalletHoldingsValuation valuation = WalletHoldingsValuation.rollBack(
+                set, set.window(null, null), DAY0.toEpochDay(), 3, Map.of("ETH", new BigDecimal("2")));
+        valuation.price("ETH", DAY0.toEpochDay(), 1000);
+        valuation.price("ETH", DAY0.toEpochDay() + 1, 1500);
+        valuation.price("ETH", DAY0.toEpochDay() + 2, 2000);
+
+        long[] values = valuation.value(usd("4000"));
+
+        assertThat(values).containsExactly(usd("1000"), usd("3000"), usd("4000"));
+        assertThat(valuation.quantity("ETH", 0)).isEqualTo(FixedUsd.ONE);
+        assertThat(WalletHoldingsCodec.unpack(valuation.packedHoldings(0)))
+                .containsOnlyKeys("ETH")
+                .hasEntrySatisfying("ETH", quantity -> assertThat(quantity).isEqualByComparingTo("1"));
+    }
+
+    @Test
+    void fallsBackToImpliedPricesAndFlowResidualForUnpricedValue() {
+        WalletTxWorkingSet set = WalletTxWorkingSet.builder(4)
+                .add(noon(1), false, "USDC", new BigDecimal("100"), new BigDecimal("100"), "employer", "income", "LIVE")
+                .add(noon(2), true, "ETH", null, new BigDecimal("20"), "shop", "expense", "TRANSACTION_FALLBACK")
+                .build();
+        WalletHoldingsValuation valuation = WalletHoldingsValuation.rollBack(
+                set, set.window(null, null), DAY0.toEpochDay(), 3, Map.of("USDC", new BigDecimal("100")));
+
+        long[] values = valuation.value(usd("130"));
+
+        assertThat(valuation.assetCodes()).containsExactly("USDC");
+        assertThat(values).containsExactly(usd("50"), usd("150"), usd("130"));
+        assertThat(valuation.packedHoldings(0)).isNull();
+    }
+
+    @Test
+    void withoutAnyPricesMatchesTheFlowOnlyWalk() {
+        WalletTxWorkingSet set = WalletTxWorkingSet.builder(4)
+                .add(noon(1), false, "SPAM", new BigDecimal("5"), null, null, "income", "LIVE")
+                .add(noon(1), false, "USDC", null, new BigDecimal("40"), "employer", "income", "LIVE")
+                .add(noon(2), true, "USDC", null, new BigDecimal("10"), "shop", "expense", "LIVE")
+                .build();
+        WalletHoldingsValuation valuation = WalletHoldingsValuation.rollBack(
+                set, set.window(null, null), DAY0.toEpochDay(), 3, Map.of("SPAM", new BigDecimal("5")));
+
+        long[] values = valuation.value(usd("100"));
+
+        assertThat(values).containsExactly(usd("70"), usd("110"), usd("100"));
+        assertThat(WalletHoldingsCodec.unpack(valuation.packedHoldings(2))).containsOnlyKeys("SPAM");
+        assertThat(valuation.packedHoldings(0)).isNull();
+    }
+
+    @Test
+    void quantitiesBeyondTheScaledRangeAreValuedThroughTheResidualInsteadOfClamped() {
+        WalletTxWorkingSet set = WalletTxWorkingSet.builder(4)
+                .add(noon(1), false, "PEPE", new BigDecimal("100000000000"), new BigDecimal("10"), "exchange", "income", "LIVE")
+                .build();
+        WalletHoldingsValuation valuation = WalletHoldingsValuation.rollBack(
+                set, set.window(null, null), DAY0.toEpochDay(), 3,
+                Map.of("PEPE", new BigDecimal("200000000000"), "ETH", new BigDecimal("1")));
+        for (int day = 0; day < 3; day += 1) {
+            valuation.price("PEPE", DAY0.toEpochDay() + day, 0.00001);
+            valuation.price("ETH", DAY0.toEpochDay() + day, 1000);
+        }
+
+        long[] values = valuation.value(usd("2001000"));
+
+        assertThat(values).containsExactly(usd("2000990"), usd("2001000"), usd("2001000"));
+        assertThat(valuation.quantity("PEPE", 2)).isZero();
+        assertThat(WalletHoldingsCodec.unpack(valuation.packedHoldings(2))).containsOnlyKeys("ETH");
+    }
+
+    private static Instant noon(int day) {
+        return DAY0.plusDays(day).atTime(12, 0).toInstant(ZoneOffset.UTC);
+    }
+
+    private static long usd(String amount) {
+        return FixedUsd.of(new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,90 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class WalletOutflowAnomalyDetectorTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T12:00:00Z");
+
+    @Test
+    void spikeAgainstSteadyCounterpartyIsScoredAndKeepsTypicalAmount() {
+        WalletTxWorkingSet.Builder builder = WalletTxWorkingSet.builder(16);
+        for (int day = 0; day < 10; day += 1) {
+            builder.add(T0.plus(day, ChronoUnit.DAYS), true, "USDC", new BigDecimal(day % 2 == 0 ? "100" : "104"), "grocer", "expense", "LIVE");
+        }
+        builder.add(T0.plus(10, ChronoUnit.DAYS), false, "USDC", new BigDecimal("5000"), "employer", "income", "LIVE");
+        builder.add(T0.plus(11, ChronoUnit.DAYS), true, "USDC", new BigDecimal("2000"), "grocer", "expense", "LIVE");
+        builder.add(T0.plus(12, ChronoUnit.DAYS), true, "USDC", new BigDecimal("101"), "grocer", "expense", "LIVE");
+        WalletTxWorkingSet set = builder.build();
+
+        List<WalletOutflowAnomalyDetector.Anomaly> anomalies = WalletOutflowAnomalyDetector.detect(set, set.window(T0.plus(5, ChronoUnit.DAYS), null));
+
+        assertThat(anomalies).hasSize(1);
+        WalletOutflowAnomalyDetector.Anomaly anomaly = anomalies.get(0);
+        assertThat(anomaly.index()).isEqualTo(11);
+        assertThat(anomaly.score()).isGreaterThan(WalletOutflowAnomalyDetector.SCORE_THRESHOLD);
+        assertThat(anomaly.typicalUsd()).isBetween(100.0, 104.0);
+    }
+
+    @Test
+    void assetBaselineCatchesOutflowThatLooksOrdinaryForTheWallet() {
+        WalletTxWorkingSet.Builder builder = WalletTxWorkingSet.builder(16);
+        for (int day = 0; day < 12; day += 1) {
+            boolean eth = day % 2 == 0;
+            builder.add(T0.plus(day, ChronoUnit.DAYS), true, eth ? "ETH" : "USDC", new BigDecimal(eth ? "5000" : "60"), null, "expense", "LIVE");
+        }
+        builder.add(T0.plus(12, ChronoUnit.DAYS), true, "USDC", new BigDecimal("3000"), null, "expense", "LIVE");
+        WalletTxWorkingSet set = builder.build();
+
+        List<WalletOutflowAnomalyDetector.Anomaly> anomalies = WalletOutflowAnomalyDetector.detect(set, set.window(null, null));
+
+        assertThat(anomalies).hasSize(1);
+        assertThat(anomalies.get(0).index()).isEqualTo(12);
+        assertThat(anomalies.get(0).basis()).isEqualTo(WalletOutflowAnomalyDetector.Basis.ASSET);
+        assertThat(anomalies.get(0).typicalUsd()).isCloseTo(60.0, offset(0.5));
+    }
+
+    @Test
+    void spikesDoNotWidenTheBaselineForTheNextOne() {
+        WalletTxWorkingSet.Builder builder = WalletTxWorkingSet.builder(16);
+        for (int day = 0; day < 10; day += 1) {
+            builder.add(T0.plus(day, ChronoUnit.DAYS), true, "USDC", new BigDecimal("100"), "rent", "expense", "LIVE");
+        }
+        builder.add(T0.plus(10, ChronoUnit.DAYS), true, "USDC", new BigDecimal("2000"), "rent", "expense", "LIVE");
+        builder.add(T0.plus(11, ChronoUnit.DAYS), true, "USDC", new BigDecimal("1500"), "rent", "expense", "LIVE");
+        WalletTxWorkingSet set = builder.build();
+
+        List<WalletOutflowAnomalyDetector.Anomaly> anomalies = WalletOutflowAnomalyDetector.detect(set, set.window(null, null));
+
+        assertThat(anomalies).extracting(WalletOutflowAnomalyDetector.Anomaly::index).containsExactly(10, 11);
+        assertThat(anomalies.get(1).score()).isGreaterThan(WalletOutflowAnomalyDetector.SCORE_THRESHOLD);
+    }
+
+    @Test
+    void shortHistoryAndSmallAmountsAreNotFlagged() {
+        WalletTxWorkingSet.Builder shortHistory = WalletTxWorkingSet.builder(4);
+        for (int day = 0; day < 3; day += 1) {
+            shortHistory.add(T0.plus(day, ChronoUnit.DAYS), true, "USDC", new BigDecimal("10"), "cafe", "expense", "LIVE");
+        }
+        shortHistory.add(T0.plus(3, ChronoUnit.DAYS), true, "USDC", new BigDecimal("900"), "cafe", "expense", "LIVE");
+        WalletTxWorkingSet first = shortHistory.build();
+
+        WalletTxWorkingSet.Builder smallAmounts = WalletTxWorkingSet.builder(8);
+        for (int day = 0; day < 8; day += 1) {
+            smallAmounts.add(T0.plus(day, ChronoUnit.DAYS), true, "USDC", new BigDecimal("1"), "cafe", "expense", "LIVE");
+        }
+        smallAmounts.add(T0.plus(8, ChronoUnit.DAYS), true, "USDC", new BigDecimal("40"), "cafe", "expense", "LIVE");
+        WalletTxWorkingSet second = smallAmounts.build();
+
+        assertThat(WalletOutflowAnomalyDetector.detect(first, first.window(null, null))).isEmpty();
+        assertThat(WalletOutflowAnomalyDetector.detect(second, second.window(null, null))).isEmpty();
+        assertThat(WalletOutflowAnomalyDetector.detect(WalletTxWorkingSet.empty(), WalletTxWorkingSet.empty().window(null, null))).isEmpty();
+    }
+}
@@ -0,0 +1,60 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class WalletTxWorkingSetTest {
+
+    private static final Instant T0 = Instant.parse("2024-03-01T10:00:00.123456Z");
+
+    @Test
+    void slicesRowsByInclusiveTimeWindow() {
+        WalletTxWorkingSet set = WalletTxWorkingSet.builder(2)
+                .add(T0, true, "USDC", new BigDecimal("10"), "netflix", "expense", "LIVE")
+                .add(T0.plusSeconds(60), false, "USDC", new BigDecimal("5"), null, "income", "LIVE")
+                .add(T0.plusSeconds(60), true, "USDC", new BigDecimal("7"), "netflix", "expense", "LIVE")
+                .add(T0.plusSeconds(3600), true, "USDC", new BigDecimal("1"), "spotify", "expense", "LIVE")
+                .build();
+
+        assertThat(set.size()).isEqualTo(4);
+        assertThat(set.window(T0, T0.plusSeconds(60))).isEqualTo(new WalletTxWorkingSet.Window(0, 3));
+        assertThat(set.window(T0.plusSeconds(1), T0.plusSeconds(3600))).isEqualTo(new WalletTxWorkingSet.Window(1, 4));
+        assertThat(set.window(T0.plusSeconds(7200), T0.plusSeconds(9000)).isEmpty()).isTrue();
+        assertThat(set.window(null, null).size()).isEqualTo(4);
+    }
+
+    @Test
+    void keepsMicrosecondTimestampsScaledAmountsAndInternedStrings() {
+        WalletTxWorkingSet set = WalletTxWorkingSet.builder(0)
+                .add(T0, true, "USDC", new BigDecimal("12.123456789"), "netflix", "expense", "TRANSACTION_FALLBACK")
+                .add(T0.plusSeconds(1), true, "USDC", null, "netflix", null, "TRANSACTION_FALLBACK")
+                .build();
+
+        assertThat(set.txAt(0)).isEqualTo(T0);
+        assertThat(set.isOutflow(0)).isTrue();
+        assertThat(set.amountUsdScaled(0)).isEqualTo(1_212_345_679L);
+        assertThat(set.amountUsd(0)).isEqualByComparingTo("12.12345679");
+        assertThat(set.amountUsdScaled(1)).isZero();
+        assertThat(set.counterparty(1)).isSameAs(set.counterparty(0));
+        assertThat(set.assetCode(0)).isEqualTo("USDC");
+        assertThat(set.assetId(1)).isEqualTo(set.assetId(0));
+        assertThat(set.counterpartyId(0)).isNotEqualTo(set.assetId(0));
+        assertThat(set.dictionarySize()).isEqualTo(4);
+        assertThat(set.category(1)).isNull();
+        assertThat(set.source(1)).isEqualTo("TRANSACTION_FALLBACK");
+    }
+
+    @Test
+    void rejectsRowsOutOfTimeOrder() {
+        WalletTxWorkingSet.Builder builder = WalletTxWorkingSet.builder(4)
+                .add(T0, true, "USDC", BigDecimal.ONE, null, null, "LIVE");
+
+        assertThatThrownBy(() -> builder.add(T0.minusSeconds(1), true, "USDC", BigDecimal.ONE, null, null, "LIVE"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(WalletTxWorkingSet.empty().window(T0, T0).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,85 @@
+package com.myname.finguard.crypto.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class WalletUsdSeriesCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.parse("2025-03-01");
+    private static final Instant WATERMARK = Instant.parse("2025-03-01T00:00:00Z");
+
+    @Test
+    void windowCarriesLastSnapshotForwardAndStartsFromZero() {
+        WalletUsdSeriesCache cache = new WalletUsdSeriesCache(10);
+        long[] values = empty();
+        values[WalletUsdSeriesCache.MAX_DAYS - 3] = 500L;
+        values[WalletUsdSeriesCache.MAX_DAYS - 1] = 700L;
+
+        WalletUsdSeriesCache.Series series = cache.get(1L, TODAY, WATERMARK, day -> values);
+
+        assertThat(series.window(5)).containsExactly(0L, 0L, 500L, 500L, 700L);
+        assertThat(series.window(1000)).hasSize(WalletUsdSeriesCache.MAX_DAYS);
+    }
+
+    @Test
+    void windowWithoutSnapshotsIsNull() {
+        WalletUsdSeriesCache cache = new WalletUsdSeriesCache(10);
+        long[] values = empty();
+        values[0] = 100L;
+
+        WalletUsdSeriesCache.Series series = cache.get(1L, TODAY, WATERMARK, day -> values);
+
+        assertThat(series.window(30)).isNull();
+        assertThat(series.window(365)).isNotNull();
+    }
+
+    @Test
+    void reloadsOnlyWhenWatermarkOrEndDayChanges() {
+        WalletUsdSeriesCache cache = new WalletUsdSeriesCache(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, TODAY, WATERMARK, day -> counted(loads));
+        cache.get(1L, TODAY, WATERMARK, day -> counted(loads));
+        assertThat(loads).hasValue(1);
+
+        cache.get(1L, TODAY, WATERMARK.plusSeconds(60), day -> counted(loads));
+        cache.get(1L, TODAY.plusDays(1), WATERMARK.plusSeconds(60), day -> counted(loads));
+        assertThat(loads).hasValue(3);
+
+        cache.invalidate(1L);
+        cache.get(1L, TODAY.plusDays(1), WATERMARK.plusSeconds(60), day -> counted(loads));
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    void evictsColdEntriesBeyondCapacity() {
+        WalletUsdSeriesCache cache = new WalletUsdSeriesCache(2);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, TODAY, WATERMARK, day -> counted(loads));
+        cache.get(2L, TODAY, WATERMARK, day -> counted(loads));
+        cache.get(3L, TODAY, WATERMARK, day -> counted(loads));
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.get(3L, TODAY, WATERMARK, day -> counted(loads));
+        assertThat(loads).hasValue(3);
+        cache.get(1L, TODAY, WATERMARK, day -> counted(loads));
+        assertThat(loads).hasValue(4);
+    }
+
+    private static long[] counted(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return empty();
+    }
+
+    private static long[] empty() {
+        long[] values = new long[WalletUsdSeriesCache.MAX_DAYS];
+        Arrays.fill(values, WalletUsdSeriesCache.NO_SNAPSHOT);
+        return values;
+    }
+}
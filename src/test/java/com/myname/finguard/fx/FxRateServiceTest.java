@@ -175,5 +175,20 @@ class FxRateServiceTest {
         assertThat(service.latestRateOrNull("usd", "eur")).isEqualByComparingTo("0.9");
         verify(fxRateRepository).findTopByBaseCurrencyAndQuoteCurrencyOrderByAsOfDesc("USD", "EUR");
     }
-}
 
+    @Test
+    void snapshotsCoveringStartsFromTheSnapshotInEffectAtTheRangeStart() {
+        Instant from = Instant.parse("2024-01-02T00:00:00Z");
+        Instant to = Instant.parse("2024-01-31T00:00:00Z");
+        Instant seed = Instant.parse("2023-12-31T00:00:00Z");
+        when(fxRateRepository.findLatestAsOfAtOrBefore("USD", from)).thenReturn(seed);
+        when(fxRateRepository.findByBaseCurrencyAndAsOfBetweenOrderByAsOfAsc("USD", seed, to)).thenReturn(List.of(new FxRate()));
+
+        assertThat(service.snapshotsCovering("usd", from, to)).hasSize(1);
+        assertThat(service.snapshotsCovering("USD", to, from)).isEmpty();
+
+        when(fxRateRepository.findLatestAsOfAtOrBefore("EUR", from)).thenReturn(null);
+        service.snapshotsCovering("EUR", from, to);
+        verify(fxRateRepository).findByBaseCurrencyAndAsOfBetweenOrderByAsOfAsc("EUR", from, to);
+    }
+}
@@ -11,6 +11,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.myname.finguard.common.service.CryptoRatesProvider;
 import com.myname.finguard.common.service.FxRatesProvider;
 import com.myname.finguard.common.service.MailService;
+import com.myname.finguard.crypto.service.CryptoPriceHistoryService;
+import com.myname.finguard.fx.service.FxRateService;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
@@ -50,6 +52,12 @@ class ReportsIntegrationTest {
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    private CryptoPriceHistoryService priceHistoryService;
+
     @MockBean
     private FxRatesProvider fxRatesProvider;
 
@@ -196,6 +204,49 @@ class ReportsIntegrationTest {
         assertThat(points.get(1).get("net").decimalValue()).isEqualByComparingTo("-40.00");
     }
 
+    @Test
+    @Transactional
+    void historicalRateModeConvertsEachDayAtThatDaysStoredRates() throws Exception {
+        String token = registerAndVerify("rep-hist-" + UUID.randomUUID() + "@example.com", "StrongPass1!", "USD");
+
+        long eur = createAccount(token, "Euro", "EUR", "0");
+        long btc = createAccount(token, "BTC", "BTC", "0");
+
+        long food = findCategoryId(token, "Еда");
+        long salary = createCategory(token, "Salary", "INCOME");
+
+        fxRateService.upsertSnapshot("USD", Instant.parse("2023-12-31T00:00:00Z"), Map.of("EUR", new BigDecimal("0.5")));
+        fxRateService.upsertSnapshot("USD", Instant.parse("2024-01-06T00:00:00Z"), Map.of("EUR", new BigDecimal("0.25")));
+        priceHistoryService.record(Map.of("BTC", new BigDecimal("20000")), Instant.parse("2024-01-05T08:00:00Z"), "TEST");
+
+        createTransaction(token, eur, food, "EXPENSE", "10.00", "2024-01-03T12:00:00Z"); // 1 EUR = 2 USD that day
+        createTransaction(token, eur, food, "EXPENSE", "5.00", "2024-01-03T23:30:00Z"); // same UTC day, summed in SQL
+        createTransaction(token, btc, salary, "INCOME", "0.01", "2024-01-05T12:00:00Z"); // 1 BTC = 20000 USD that day
+        createTransaction(token, eur, food, "EXPENSE", "10.00", "2024-01-07T12:00:00Z"); // 1 EUR = 4 USD that day
+
+        JsonNode summary = getReport(token, "/api/reports/summary");
+        assertThat(summary.get("income").decimalValue()).isEqualByComparingTo("200.00");
+        assertThat(summary.get("expense").decimalValue()).isEqualByComparingTo("70.00");
+        assertThat(summary.get("net").decimalValue()).isEqualByComparingTo("130.00");
+
+        JsonNode byCategory = getReport(token, "/api/reports/by-category");
+        assertThat(byCategory.get("expenses").get(0).get("total").decimalValue()).isEqualByComparingTo("70.00");
+        assertThat(byCategory.get("incomes").get(0).get("total").decimalValue()).isEqualByComparingTo("200.00");
+
+        JsonNode points = getReport(token, "/api/reports/cash-flow").get("points");
+        assertThat(points).hasSize(3);
+        assertThat(points.get(0).get("date").asText()).isEqualTo("2024-01-03");
+        assertThat(points.get(0).get("expense").decimalValue()).isEqualByComparingTo("30.00");
+        assertThat(points.get(1).get("income").decimalValue()).isEqualByComparingTo("200.00");
+        assertThat(points.get(2).get("date").asText()).isEqualTo("2024-01-07");
+        assertThat(points.get(2).get("expense").decimalValue()).isEqualByComparingTo("40.00");
+
+        mockMvc.perform(get("/api/reports/summary")
+                        .header("Authorization", "Bearer " + token)
+                        .param("rateMode", "yesterday"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void anonymousIsForbidden() throws Exception {
         mockMvc.perform(get("/api/reports/summary"))
@@ -212,6 +263,19 @@ class ReportsIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    private JsonNode getReport(String token, String path) throws Exception {
+        String response = mockMvc.perform(get(path)
+                        .header("Authorization", "Bearer " + token)
+                        .param("from", "2024-01-02T00:00:00Z")
+                        .param("to", "2024-01-31T23:59:59Z")
+                        .param("rateMode", "historical"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+        return objectMapper.readTree(response);
+    }
+
     private String registerAndVerify(String email, String password, String baseCurrency) throws Exception {
         mockMvc.perform(post("/api/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)